@@ -0,0 +1,67 @@
+package com.david.patientrecords
+
+import android.os.Debug
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.utils.AvatarCache
+import com.david.patientrecords.utils.Constants
+import com.david.patientrecords.utils.ImageUtils
+import de.hdodenhof.circleimageview.CircleImageView
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Checks that rebinding initials avatars draws no new bitmaps.
+ *
+ * Binds a page of names once to fill AvatarCache, then rebinds it several times while
+ * counting allocations on the main thread, so every lookup is a cache hit. The cache must
+ * not create any avatar, and once the first pass has done any one-off setup, no page of
+ * rebinds may allocate as many bytes as a single avatar's pixels. Counts are logged
+ * under AvatarCacheAllocation.
+ */
+@RunWith(AndroidJUnit4::class)
+class AvatarCacheAllocationTest {
+
+    @Test
+    @Suppress("DEPRECATION") // Allocation counting is deprecated but still the per-thread counter
+    fun rebindingAvatarsAllocatesNoBitmaps() {
+        val instrumentation = InstrumentationRegistry.getInstrumentation()
+        val names = (1..PAGE).map { i -> "${'A' + i % 26}nna ${'Z' - i % 26}ane" }
+        val cache = AvatarCache.getInstance()
+        cache.clear()
+
+        instrumentation.runOnMainSync {
+            val view = CircleImageView(instrumentation.targetContext)
+            names.forEach { ImageUtils.setInitialsAvatar(it, view) }
+
+            val createdBefore = cache.stats.created
+            // Counted a page at a time: any one avatar's pixels outweigh a whole page of rebinds
+            val avatarBytes = Constants.DEFAULT_AVATAR_SIZE * Constants.DEFAULT_AVATAR_SIZE * 4
+            repeat(REBINDS) { pass ->
+                Debug.resetThreadAllocCount()
+                Debug.resetThreadAllocSize()
+                Debug.startAllocCounting()
+                names.forEach { ImageUtils.setInitialsAvatar(it, view) }
+                Debug.stopAllocCounting()
+
+                val allocatedBytes = Debug.getThreadAllocSize()
+                Log.d(TAG, "Pass $pass, $PAGE rebinds: ${Debug.getThreadAllocCount()} objects, $allocatedBytes bytes")
+                if (pass > 0) {
+                    assertTrue("Rebinding a page allocated $allocatedBytes bytes", allocatedBytes < avatarBytes)
+                }
+            }
+
+            Log.d(TAG, cache.stats.summary)
+            assertEquals("Rebinding drew new avatars", createdBefore, cache.stats.created)
+        }
+    }
+
+    companion object {
+        private const val TAG = "AvatarCacheAllocation"
+        private const val PAGE = 20
+        private const val REBINDS = 5
+    }
+}
@@ -0,0 +1,149 @@
+package com.david.patientrecords
+
+import android.database.sqlite.SQLiteDatabase
+import android.os.Debug
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.Locale
+
+/**
+ * Compares date columns stored as yyyy-MM-dd text with the epoch values the schema uses now.
+ *
+ * Two in-memory tables hold the same visits, one with TEXT dates and one with INTEGER
+ * epoch days and milliseconds, each indexed on the visit date. The same date-range query
+ * runs against both and every row is read into the fields a model would keep: Strings
+ * for the text table, longs for the other. Latency and allocations per row are logged
+ * under EpochDateColumns.
+ */
+@RunWith(AndroidJUnit4::class)
+class EpochDateColumnsBenchmarkTest {
+
+    private lateinit var db: SQLiteDatabase
+
+    @Before
+    fun setUp() {
+        db = SQLiteDatabase.create(null)
+        db.execSQL("CREATE TABLE text_visits (_id INTEGER PRIMARY KEY, patient_id INTEGER, visit_date TEXT, updated_at TEXT)")
+        db.execSQL("CREATE TABLE epoch_visits (_id INTEGER PRIMARY KEY, patient_id INTEGER, visit_date INTEGER, updated_at INTEGER)")
+        db.execSQL("CREATE INDEX idx_text_visits_date ON text_visits(visit_date)")
+        db.execSQL("CREATE INDEX idx_epoch_visits_date ON epoch_visits(visit_date)")
+
+        db.beginTransaction()
+        try {
+            val text = db.compileStatement("INSERT INTO text_visits VALUES (?, ?, ?, ?)")
+            val epoch = db.compileStatement("INSERT INTO epoch_visits VALUES (?, ?, ?, ?)")
+            for (i in 0 until ROWS) {
+                val day = FIRST_DAY + (i * 7919L) % SPAN_DAYS
+                val wallSeconds = day * 86_400 + (i % 86_400)
+                text.bindLong(1, i.toLong())
+                text.bindLong(2, (i % 500).toLong())
+                text.bindString(3, DateCodec.formatEpochDay(day))
+                text.bindString(4, DateCodec.formatDateTime(wallSeconds))
+                text.executeInsert()
+                epoch.bindLong(1, i.toLong())
+                epoch.bindLong(2, (i % 500).toLong())
+                epoch.bindLong(3, day)
+                epoch.bindLong(4, wallSeconds * 1000)
+                epoch.executeInsert()
+            }
+            text.close()
+            epoch.close()
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun epochColumnsAllocateLessPerRow() {
+        val from = FIRST_DAY + SPAN_DAYS / 2
+        val to = from + WINDOW_DAYS
+        val textArgs = arrayOf(DateCodec.formatEpochDay(from), DateCodec.formatEpochDay(to))
+        val epochArgs = arrayOf(from.toString(), to.toString())
+
+        // Warm up the statement caches and check both tables return the same visits
+        val rows = readText(textArgs)
+        assertEquals(rows, readEpoch(epochArgs))
+        assertTrue(rows > 0)
+
+        val textNanos = LongArray(RUNS)
+        val epochNanos = LongArray(RUNS)
+        for (run in 0 until RUNS) {
+            textNanos[run] = timed { readText(textArgs) }
+            epochNanos[run] = timed { readEpoch(epochArgs) }
+        }
+        textNanos.sort()
+        epochNanos.sort()
+
+        val textBytes = allocatedBytes { readText(textArgs) }.toDouble() / rows
+        val epochBytes = allocatedBytes { readEpoch(epochArgs) }.toDouble() / rows
+
+        Log.d(TAG, String.format(Locale.US,
+                "%d rows in range: TEXT median %.2f ms, %.0f bytes/row; INTEGER median %.2f ms, %.0f bytes/row",
+                rows, textNanos[RUNS / 2] / 1e6, textBytes, epochNanos[RUNS / 2] / 1e6, epochBytes))
+        assertTrue("INTEGER rows allocated $epochBytes bytes vs $textBytes for TEXT", epochBytes < textBytes)
+    }
+
+    // Rows read into String fields, as the models kept dates before
+    private fun readText(args: Array<String>): Int {
+        var rows = 0
+        db.rawQuery("SELECT _id, visit_date, updated_at FROM text_visits WHERE visit_date BETWEEN ? AND ?", args).use {
+            while (it.moveToNext()) {
+                val visitDate: String? = it.getString(1)
+                val updatedAt: String? = it.getString(2)
+                if (visitDate != null && updatedAt != null) rows++
+            }
+        }
+        return rows
+    }
+
+    // Rows read into long fields, as the models keep dates now
+    private fun readEpoch(args: Array<String>): Int {
+        var rows = 0
+        db.rawQuery("SELECT _id, visit_date, updated_at FROM epoch_visits WHERE visit_date BETWEEN ? AND ?", args).use {
+            while (it.moveToNext()) {
+                val visitDay = it.getLong(1)
+                val updatedAt = it.getLong(2)
+                if (visitDay != DateCodec.INVALID && updatedAt != 0L) rows++
+            }
+        }
+        return rows
+    }
+
+    private inline fun timed(block: () -> Int): Long {
+        val start = SystemClock.elapsedRealtimeNanos()
+        block()
+        return SystemClock.elapsedRealtimeNanos() - start
+    }
+
+    @Suppress("DEPRECATION") // Allocation counting is deprecated but still the per-thread counter
+    private inline fun allocatedBytes(block: () -> Int): Long {
+        Debug.resetThreadAllocSize()
+        Debug.startAllocCounting()
+        block()
+        Debug.stopAllocCounting()
+        return Debug.getThreadAllocSize().toLong()
+    }
+
+    companion object {
+        private const val TAG = "EpochDateColumns"
+        private const val ROWS = 20_000
+        private const val RUNS = 15
+        private const val FIRST_DAY = 16_000L // 2013-10-22
+        private const val SPAN_DAYS = 3_650L
+        private const val WINDOW_DAYS = 90L
+    }
+}
@@ -0,0 +1,135 @@
+package com.david.patientrecords
+
+import android.os.SystemClock
+import android.util.Log
+import android.view.ContextThemeWrapper
+import android.view.View
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.adapters.MedicalRecordsAdapter
+import com.david.patientrecords.models.MedicalRecord
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Counts the rows rebound by each kind of list update on a 5,000-item list.
+ *
+ * A MedicalRecordsAdapter with 5,000 visits is laid out in a phone-sized RecyclerView.
+ * Every update replaces the list with fresh objects and is applied twice: once through
+ * the adapter's background diff, and once with notifyDataSetChanged as the adapters used
+ * to do. Bind counts and diff times are logged under ListUpdateBindBenchmark. A refresh
+ * that changed nothing must bind no rows, and a single edit must bind only its own row.
+ */
+@RunWith(AndroidJUnit4::class)
+class ListUpdateBindBenchmarkTest {
+
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+    private lateinit var recyclerView: RecyclerView
+    private lateinit var adapter: MedicalRecordsAdapter
+    private var binds = 0
+    private var refreshStamp = 1L
+
+    @Before
+    fun setUp() {
+        instrumentation.runOnMainSync {
+            val context = ContextThemeWrapper(instrumentation.targetContext, R.style.Theme_PatientRecords)
+            adapter = object : MedicalRecordsAdapter(context, records(), false) {
+                override fun onBindViewHolder(holder: MedicalRecordViewHolder, position: Int) {
+                    binds++
+                    super.onBindViewHolder(holder, position)
+                }
+            }
+            recyclerView = RecyclerView(context).apply {
+                layoutManager = LinearLayoutManager(context)
+                itemAnimator = null // Changed rows are rebound in place rather than cross-faded
+                this.adapter = this@ListUpdateBindBenchmarkTest.adapter
+            }
+            layout()
+        }
+    }
+
+    @Test
+    fun diffedUpdatesRebindOnlyChangedRows() {
+        val visible = onMain { recyclerView.childCount }
+        assertTrue("Nothing was laid out", visible > 0)
+
+        val unchanged = measure("refresh, nothing changed") { records() }
+        val edited: (Int) -> String = { if (it == SIZE - 1) "Acute bronchitis" else DIAGNOSIS }
+        val oneEdit = measure("one visible visit edited") { records(SIZE, edited) }
+        val inserted = measure("visit added at the top") { records(SIZE + 1, edited) }
+        val allEdited = measure("every visit edited") { records(SIZE + 1) { "$DIAGNOSIS, reviewed" } }
+
+        assertEquals("Binds for an unchanged refresh", 0, unchanged)
+        assertEquals("Binds for one edited row", 1, oneEdit)
+        assertTrue("Binds for an insert: $inserted", inserted <= 1)
+        assertTrue("Binds when every row changed: $allEdited", allEdited <= visible)
+    }
+
+    // Returns the binds of the diffed update, after logging them next to notifyDataSetChanged
+    private fun measure(name: String, update: () -> List<MedicalRecord>): Int {
+        val next = update()
+        val start = SystemClock.elapsedRealtime()
+        binds = 0
+        instrumentation.runOnMainSync { adapter.updateRecords(next) }
+        // The diff runs on a background thread and is committed on the main thread
+        while (onMain { adapter.getRecord(0) !== next[0] }) {
+            SystemClock.sleep(1)
+        }
+        val diffMs = SystemClock.elapsedRealtime() - start
+        val diffedBinds = onMain { layout(); binds }
+
+        val fullBinds = onMain {
+            binds = 0
+            adapter.notifyDataSetChanged()
+            layout()
+            binds
+        }
+        Log.d(TAG, "$name: diffed $diffedBinds binds in ${diffMs}ms, notifyDataSetChanged $fullBinds binds")
+        return diffedBinds
+    }
+
+    // Newest first, as the repository orders them; diagnosis is chosen by record id
+    private fun records(count: Int = SIZE, diagnosis: (Int) -> String = { DIAGNOSIS }): List<MedicalRecord> {
+        val stamp = refreshStamp++
+        return (count downTo 1).map { i ->
+            MedicalRecord().apply {
+                id = i.toLong()
+                patientId = 1
+                visitDay = 19_000L + i
+                visitType = "Regular"
+                doctorName = "Dr. Smith"
+                doctorSpecialty = "General Practice"
+                symptoms = "Cough"
+                this.diagnosis = diagnosis(i)
+                treatment = "Rest"
+                updatedAt = stamp // Bumped on every refresh, the diff must not rebind for it alone
+            }
+        }
+    }
+
+    private fun layout() {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY))
+        recyclerView.layout(0, 0, WIDTH, HEIGHT)
+    }
+
+    private fun <T> onMain(block: () -> T): T {
+        var result: T? = null
+        instrumentation.runOnMainSync { result = block() }
+        @Suppress("UNCHECKED_CAST")
+        return result as T
+    }
+
+    companion object {
+        private const val TAG = "ListUpdateBindBenchmark"
+        private const val SIZE = 5_000
+        private const val WIDTH = 1080
+        private const val HEIGHT = 2200
+        private const val DIAGNOSIS = "Bronchitis"
+    }
+}
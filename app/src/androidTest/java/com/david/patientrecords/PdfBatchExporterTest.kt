@@ -0,0 +1,168 @@
+package com.david.patientrecords
+
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.database.DatabaseContract
+import com.david.patientrecords.database.DatabaseHelper
+import com.david.patientrecords.database.PatientRepository
+import com.david.patientrecords.models.MedicalRecord
+import com.david.patientrecords.models.Medication
+import com.david.patientrecords.models.Patient
+import com.david.patientrecords.utils.DateCodec
+import com.david.patientrecords.utils.PdfBatchExporter
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs PdfBatchExporter in both modes and cancels it part way.
+ *
+ * The patients are added to the app database at an age no real patient has, so an
+ * age-range filter selects exactly them, and they are deleted afterwards. Each patient
+ * has visits and medications. A combined report must hold every patient in one file, at
+ * least a page each. A cancelled per-patient batch keeps only the reports it finished,
+ * and a cancelled combined batch writes nothing.
+ */
+@RunWith(AndroidJUnit4::class)
+class PdfBatchExporterTest {
+
+    private val context = InstrumentationRegistry.getInstrumentation().targetContext
+    private val filter = PdfBatchExporter.PatientFilter.ageRange(AGE, AGE)
+    private lateinit var directory: File
+
+    @Before
+    fun setUp() {
+        val repository = PatientRepository.getInstance(context)
+        val today = DateCodec.todayEpochDay()
+        repeat(PATIENTS) { i ->
+            val patientId = repository.insertPatient(Patient().apply {
+                patientName = "Batch Patient $i"
+                age = AGE
+                gender = "Female"
+                registrationDay = today
+                isActive = true
+            })
+            repeat(VISITS) { visit ->
+                repository.insertMedicalRecord(MedicalRecord().apply {
+                    this.patientId = patientId
+                    visitDay = today - visit
+                    doctorName = "Dr. Smith"
+                    diagnosis = "Checkup $visit"
+                })
+            }
+            repository.insertMedication(Medication().apply {
+                this.patientId = patientId
+                medicationName = "Amoxicillin"
+                dosage = "500mg"
+                isActive = true
+            })
+        }
+        directory = File(context.cacheDir, "pdf_batch_test").apply { deleteRecursively() }
+    }
+
+    @After
+    fun tearDown() {
+        val db = DatabaseHelper.getInstance(context).writableDatabase
+        val patients = "SELECT ${DatabaseContract.PatientEntry._ID} FROM ${DatabaseContract.PatientEntry.TABLE_NAME}" +
+                " WHERE ${DatabaseContract.PatientEntry.COLUMN_AGE} = $AGE"
+        db.delete(DatabaseContract.MedicalRecordEntry.TABLE_NAME,
+                "${DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID} IN ($patients)", null)
+        db.delete(DatabaseContract.MedicationEntry.TABLE_NAME,
+                "${DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID} IN ($patients)", null)
+        db.delete(DatabaseContract.PatientEntry.TABLE_NAME, "${DatabaseContract.PatientEntry.COLUMN_AGE} = $AGE", null)
+        PatientRepository.getInstance(context).invalidateCaches()
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun combinedReportHoldsEveryPatient() {
+        val report = run(PdfBatchExporter.Mode.COMBINED)
+
+        assertFalse(report.isCancelled)
+        assertEquals(PATIENTS, report.total)
+        assertEquals(PATIENTS, report.completed)
+        assertEquals(0, report.failed)
+        assertTrue("A page per patient at least, got ${report.pages}", report.pages >= PATIENTS)
+        val file = File(report.files.single())
+        assertTrue(file.exists())
+        val header = ByteArray(4)
+        file.inputStream().use { it.read(header) }
+        assertEquals("%PDF", String(header, Charsets.US_ASCII))
+    }
+
+    @Test
+    fun perPatientReportsOneFileEach() {
+        val report = run(PdfBatchExporter.Mode.PER_PATIENT)
+
+        assertFalse(report.isCancelled)
+        assertEquals(PATIENTS, report.completed)
+        assertEquals(PATIENTS, report.files.size)
+        assertEquals(PATIENTS, pdfFiles().size)
+    }
+
+    @Test
+    fun cancelledPerPatientBatchKeepsFinishedReports() {
+        val report = run(PdfBatchExporter.Mode.PER_PATIENT, cancelOnFirstProgress = true)
+
+        assertTrue(report.isCancelled)
+        assertTrue("Cancel came too late, ${report.completed} of $PATIENTS done", report.completed < PATIENTS)
+        assertEquals(report.completed, report.files.size)
+        assertEquals(report.files.map { File(it).name }.toSet(), pdfFiles().map { it.name }.toSet())
+    }
+
+    @Test
+    fun cancelledCombinedBatchWritesNothing() {
+        val report = run(PdfBatchExporter.Mode.COMBINED, cancelOnFirstProgress = true)
+
+        assertTrue(report.isCancelled)
+        assertTrue("Cancel came too late, ${report.completed} of $PATIENTS done", report.completed < PATIENTS)
+        assertTrue(report.files.isEmpty())
+        assertTrue(pdfFiles().isEmpty())
+    }
+
+    // Listener calls arrive on the main thread, so cancelling from onProgress is what the UI does
+    private fun run(mode: PdfBatchExporter.Mode, cancelOnFirstProgress: Boolean = false): PdfBatchExporter.BatchReport {
+        val done = CountDownLatch(1)
+        var result: PdfBatchExporter.BatchReport? = null
+        var failure: Exception? = null
+        var job: PdfBatchExporter.Job? = null
+        InstrumentationRegistry.getInstrumentation().runOnMainSync {
+            job = PdfBatchExporter(context).start(directory, filter, mode, object : PdfBatchExporter.Listener {
+                override fun onProgress(progress: PdfBatchExporter.Progress) {
+                    if (cancelOnFirstProgress) job?.cancel()
+                }
+
+                override fun onFinished(report: PdfBatchExporter.BatchReport) {
+                    result = report
+                    done.countDown()
+                }
+
+                override fun onFailed(e: Exception) {
+                    failure = e
+                    done.countDown()
+                }
+            })
+        }
+        assertTrue("Batch timed out", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        failure?.let { throw it }
+        return result!!.also { Log.d(TAG, it.summary) }
+    }
+
+    private fun pdfFiles(): List<File> = directory.listFiles { file -> file.name.endsWith(".pdf") }?.toList() ?: emptyList()
+
+    companion object {
+        private const val TAG = "PdfBatchExporterTest"
+        private const val AGE = 131 // No real patient is this old
+        private const val PATIENTS = 60
+        private const val VISITS = 5
+        private const val TIMEOUT_SECONDS = 120L
+    }
+}
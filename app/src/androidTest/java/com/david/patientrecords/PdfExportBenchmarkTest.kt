@@ -0,0 +1,94 @@
+package com.david.patientrecords
+
+import android.os.Debug
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.models.MedicalRecord
+import com.david.patientrecords.models.Medication
+import com.david.patientrecords.models.Patient
+import com.david.patientrecords.utils.PdfExportUtils
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+
+/**
+ * Times the PDF report for a patient with 2,000 visits and checks it paginates.
+ *
+ * The report is built five times and the median run, divided by the number of pages,
+ * must stay within MAX_MS_PER_PAGE, so a layout that slows down as the report grows
+ * fails here rather than only on large exports in the field.
+ *
+ * Run with ./gradlew connectedAndroidTest; timings are logged under PdfExportBenchmark.
+ */
+@RunWith(AndroidJUnit4::class)
+class PdfExportBenchmarkTest {
+
+    @Test
+    fun exportPatientWith2000Visits() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        val patient = Patient().apply {
+            patientName = "Benchmark Patient"
+            age = 54
+            address = "12 Long Street Name, Apartment 45, Some District, A City With A Long Name"
+            medicalConditions = "Type 2 diabetes, hypertension, chronic kidney disease stage 3, hypothyroidism"
+        }
+        val medications = (1..30).map { i ->
+            Medication().apply {
+                medicationName = "Medication $i"
+                dosage = "500mg"
+                frequency = "Twice daily"
+                instructions = "Take with food"
+            }
+        }
+
+        val file = File(context.cacheDir, "benchmark_report.pdf")
+        val timings = LongArray(5)
+        var pageCount = 0
+        for (run in timings.indices) {
+            // Records are generated lazily, the way the report reads them from the database
+            val records = (1..VISITS).asSequence().map { i -> visit(i) }.iterator()
+
+            val heapBefore = Debug.getNativeHeapAllocatedSize()
+            val start = SystemClock.elapsedRealtime()
+            val result = PdfExportUtils.exportPatientToPdf(file, patient, records, medications)
+            timings[run] = SystemClock.elapsedRealtime() - start
+
+            assertTrue(result.errorMessage, result.success)
+            pageCount = result.pageCount
+            Log.d(TAG, "Run $run: ${timings[run]}ms, ${result.pageCount} pages, ${file.length() / 1024} KB, " +
+                    "native heap +${(Debug.getNativeHeapAllocatedSize() - heapBefore) / 1024} KB")
+        }
+
+        timings.sort()
+        val median = timings[timings.size / 2]
+        val msPerPage = median.toDouble() / pageCount
+        Log.d(TAG, "$VISITS visits: median ${median}ms, $pageCount pages, ${"%.2f".format(msPerPage)} ms/page")
+        assertTrue("Expected a multi-page report, got $pageCount pages", pageCount > 100)
+        assertTrue("Median ${median}ms for $pageCount pages is ${"%.2f".format(msPerPage)} ms/page",
+                msPerPage <= MAX_MS_PER_PAGE)
+        file.delete()
+    }
+
+    private fun visit(i: Int) = MedicalRecord().apply {
+        id = i.toLong()
+        visitDate = "2024-01-01"
+        doctorName = "Dr. Smith"
+        symptoms = if (i % 7 == 0) {
+            "Persistent cough for three weeks with intermittent fever, night sweats, fatigue and shortness of breath"
+        } else {
+            "Cough"
+        }
+        diagnosis = "Acute bronchitis"
+        treatment = if (i % 50 == 0) "Rest ".repeat(400) else "Rest and fluids"
+    }
+
+    companion object {
+        private const val TAG = "PdfExportBenchmark"
+        private const val VISITS = 2000
+        // Layout, drawing and writing the document; generous for low-end devices
+        private const val MAX_MS_PER_PAGE = 25.0
+    }
+}
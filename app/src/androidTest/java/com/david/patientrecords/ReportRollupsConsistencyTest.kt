@@ -0,0 +1,151 @@
+package com.david.patientrecords
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.david.patientrecords.database.DatabaseContract
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import kotlin.random.Random
+
+/**
+ * Checks the trigger-maintained report rollups against a full recount.
+ *
+ * An in-memory database gets the patient, record and medication tables plus the rollup
+ * table and its triggers. Random inserts, updates and deletes then run against it, with
+ * blank and padded names, inactive patients and records moved between patients, and
+ * after every batch the rollups must equal SQL_SELECT_EXPECTED_REPORT_ROLLUPS with no
+ * rows left at zero. Rebuilding from scratch must give the same rows again.
+ */
+@RunWith(AndroidJUnit4::class)
+class ReportRollupsConsistencyTest {
+
+    private lateinit var db: SQLiteDatabase
+    private val random = Random(SEED)
+
+    @Before
+    fun setUp() {
+        db = SQLiteDatabase.create(null)
+        db.setForeignKeyConstraintsEnabled(true)
+        db.execSQL(DatabaseContract.SQL_CREATE_PATIENTS_TABLE)
+        db.execSQL(DatabaseContract.SQL_CREATE_MEDICAL_RECORDS_TABLE)
+        db.execSQL(DatabaseContract.SQL_CREATE_MEDICATIONS_TABLE)
+        db.execSQL(DatabaseContract.SQL_CREATE_REPORT_ROLLUPS_TABLE)
+        DatabaseContract.SQL_CREATE_REPORT_ROLLUP_TRIGGERS.forEach { db.execSQL(it) }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun rollupsMatchRecountAfterRandomWrites() {
+        for (step in 1..STEPS) {
+            mutate()
+            if (step % CHECK_EVERY == 0) {
+                assertEquals("Rollups after $step writes", expected(), actual())
+            }
+        }
+        assertTrue("No rollup rows were written", actual().isNotEmpty())
+    }
+
+    @Test
+    fun rebuildMatchesTriggers() {
+        repeat(STEPS / 2) { mutate() }
+        val maintained = actual()
+
+        db.execSQL("UPDATE report_rollups SET value = value + 1") // Simulated drift
+        DatabaseContract.SQL_REBUILD_REPORT_ROLLUPS.forEach { db.execSQL(it) }
+        assertEquals(maintained, actual())
+    }
+
+    private fun mutate() {
+        val patients = ids("patients")
+        when (if (patients.isEmpty()) 0 else random.nextInt(12)) {
+            0 -> db.execSQL("INSERT INTO patients (patient_name, age, gender, blood_type, registration_date, is_active) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)",
+                    arrayOf("Patient", random.nextInt(95), pick(GENDERS), pick(BLOOD_TYPES),
+                            if (random.nextInt(5) == 0) null else FIRST_DAY + random.nextInt(SPAN_DAYS), pick(ACTIVE)))
+            1 -> db.execSQL("UPDATE patients SET age = ?, gender = ?, blood_type = ?, registration_date = ?, is_active = ? " +
+                    "WHERE _id = ?",
+                    arrayOf(random.nextInt(95), pick(GENDERS), pick(BLOOD_TYPES), FIRST_DAY + random.nextInt(SPAN_DAYS),
+                            pick(ACTIVE), patients.random(random)))
+            2 -> db.execSQL("UPDATE patients SET is_active = ? WHERE _id = ?", arrayOf(pick(ACTIVE), patients.random(random)))
+            3 -> {
+                // Patients with records or medications cannot be deleted under the foreign keys
+                val patient = patients.random(random)
+                db.execSQL("DELETE FROM patients WHERE _id = ? AND _id NOT IN (SELECT patient_id FROM medical_records) " +
+                        "AND _id NOT IN (SELECT patient_id FROM medications)", arrayOf(patient))
+            }
+            4, 5 -> db.execSQL("INSERT INTO medical_records (patient_id, visit_date, visit_type, doctor_name, doctor_specialty) " +
+                    "VALUES (?, ?, ?, ?, ?)",
+                    arrayOf(patients.random(random), FIRST_DAY + random.nextInt(SPAN_DAYS), pick(VISIT_TYPES), pick(DOCTORS),
+                            pick(SPECIALTIES)))
+            6 -> ids("medical_records").takeIf { it.isNotEmpty() }?.let { records ->
+                db.execSQL("UPDATE medical_records SET visit_date = ?, doctor_name = ?, patient_id = ? WHERE _id = ?",
+                        arrayOf(FIRST_DAY + random.nextInt(SPAN_DAYS), pick(DOCTORS), patients.random(random),
+                                records.random(random)))
+            }
+            7 -> ids("medical_records").takeIf { it.isNotEmpty() }?.let { records ->
+                db.execSQL("DELETE FROM medical_records WHERE _id = ?", arrayOf(records.random(random)))
+            }
+            8, 9 -> db.execSQL("INSERT INTO medications (patient_id, medication_name, is_active) VALUES (?, ?, ?)",
+                    arrayOf(patients.random(random), pick(DRUGS), pick(ACTIVE)))
+            10 -> ids("medications").takeIf { it.isNotEmpty() }?.let { medications ->
+                db.execSQL("UPDATE medications SET is_active = ?, medication_name = ?, patient_id = ? WHERE _id = ?",
+                        arrayOf(pick(ACTIVE), pick(DRUGS), patients.random(random), medications.random(random)))
+            }
+            11 -> ids("medications").takeIf { it.isNotEmpty() }?.let { medications ->
+                db.execSQL("DELETE FROM medications WHERE _id = ?", arrayOf(medications.random(random)))
+            }
+        }
+    }
+
+    private fun <T> pick(values: Array<T>): T = values[random.nextInt(values.size)]
+
+    private fun ids(table: String): List<Long> {
+        val ids = ArrayList<Long>()
+        db.rawQuery("SELECT _id FROM $table", null).use {
+            while (it.moveToNext()) ids.add(it.getLong(0))
+        }
+        return ids
+    }
+
+    // The recount lists buckets that went back to zero, which the triggers delete
+    private fun expected(): Map<String, Long> =
+            read(DatabaseContract.SQL_SELECT_EXPECTED_REPORT_ROLLUPS).filterValues { it != 0L }
+
+    private fun actual(): Map<String, Long> {
+        val rollups = read("SELECT report, bucket, value FROM report_rollups")
+        assertTrue("Zero rows left in the rollups: $rollups", rollups.values.none { it == 0L })
+        return rollups
+    }
+
+    private fun read(sql: String): Map<String, Long> {
+        val rows = HashMap<String, Long>()
+        db.rawQuery(sql, null).use {
+            while (it.moveToNext()) rows[it.getString(0) + "/" + it.getString(1)] = it.getLong(2)
+        }
+        return rows
+    }
+
+    companion object {
+        private const val SEED = 7
+        private const val STEPS = 3_000
+        private const val CHECK_EVERY = 50
+        private const val FIRST_DAY = 19_000L // 2022-01-08
+        private const val SPAN_DAYS = 900
+
+        private val GENDERS = arrayOf("Male", "Female", "Other", null, " Female ")
+        private val BLOOD_TYPES = arrayOf("O+", "A-", "AB+", null, "")
+        private val ACTIVE = arrayOf(0, 1, 1)
+        private val VISIT_TYPES = arrayOf("Regular", "Follow-up", "Emergency", null)
+        private val DOCTORS = arrayOf("Dr. Adams", "Dr. Baker", " Dr. Adams", null)
+        private val SPECIALTIES = arrayOf("Cardiology", "General Practice", null)
+        private val DRUGS = arrayOf("Aspirin", "Metformin", " Aspirin", "Lisinopril")
+    }
+}
@@ -0,0 +1,144 @@
+package com.david.patientrecords
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.david.patientrecords.database.DatabaseContract
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import kotlin.random.Random
+
+/**
+ * Checks the trigger-maintained dashboard counters against a full recount.
+ *
+ * An in-memory database gets the patient, record and medication tables plus the
+ * stats_counters table and its triggers. Random inserts, updates, soft deletes and
+ * deletes then run against it, including patients toggled active with records and
+ * medications attached, and after every batch the counters must equal
+ * SQL_SELECT_EXPECTED_STATS_COUNTERS. Counters left at zero count as missing, as in
+ * DatabaseHelper.checkStatsCounters. Rebuilding from scratch must give the same values.
+ */
+@RunWith(AndroidJUnit4::class)
+class StatsCountersConsistencyTest {
+
+    private lateinit var db: SQLiteDatabase
+    private val random = Random(SEED)
+
+    @Before
+    fun setUp() {
+        db = SQLiteDatabase.create(null)
+        db.setForeignKeyConstraintsEnabled(true)
+        db.execSQL(DatabaseContract.SQL_CREATE_PATIENTS_TABLE)
+        db.execSQL(DatabaseContract.SQL_CREATE_MEDICAL_RECORDS_TABLE)
+        db.execSQL(DatabaseContract.SQL_CREATE_MEDICATIONS_TABLE)
+        db.execSQL(DatabaseContract.SQL_CREATE_STATS_COUNTERS_TABLE)
+        DatabaseContract.SQL_REBUILD_STATS_COUNTERS.forEach { db.execSQL(it) } // Seeds the fixed counters at zero
+        DatabaseContract.SQL_CREATE_STATS_COUNTER_TRIGGERS.forEach { db.execSQL(it) }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun countersMatchRecountAfterRandomWrites() {
+        for (step in 1..STEPS) {
+            mutate()
+            if (step % CHECK_EVERY == 0) {
+                assertEquals("Counters after $step writes", expected(), actual())
+            }
+        }
+        assertTrue("No patient was counted", (actual()["active_patients"] ?: 0L) > 0)
+    }
+
+    @Test
+    fun rebuildMatchesTriggers() {
+        repeat(STEPS / 2) { mutate() }
+        val maintained = actual()
+
+        db.execSQL("UPDATE stats_counters SET value = value + 1") // Simulated drift
+        DatabaseContract.SQL_REBUILD_STATS_COUNTERS.forEach { db.execSQL(it) }
+        assertEquals(maintained, actual())
+    }
+
+    private fun mutate() {
+        val patients = ids("patients")
+        when (if (patients.isEmpty()) 0 else random.nextInt(12)) {
+            0 -> db.execSQL("INSERT INTO patients (patient_name, age, gender, blood_type, registration_date, is_active) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)",
+                    arrayOf("Patient", random.nextInt(95), pick(GENDERS), pick(BLOOD_TYPES),
+                            if (random.nextInt(5) == 0) null else FIRST_DAY + random.nextInt(SPAN_DAYS), pick(ACTIVE)))
+            1 -> db.execSQL("UPDATE patients SET age = ?, gender = ?, blood_type = ?, registration_date = ? WHERE _id = ?",
+                    arrayOf(random.nextInt(95), pick(GENDERS), pick(BLOOD_TYPES), FIRST_DAY + random.nextInt(SPAN_DAYS),
+                            patients.random(random)))
+            2 -> db.execSQL("UPDATE patients SET is_active = ? WHERE _id = ?", arrayOf(pick(ACTIVE), patients.random(random)))
+            3 -> {
+                // Patients with records or medications cannot be deleted under the foreign keys
+                val patient = patients.random(random)
+                db.execSQL("DELETE FROM patients WHERE _id = ? AND _id NOT IN (SELECT patient_id FROM medical_records) " +
+                        "AND _id NOT IN (SELECT patient_id FROM medications)", arrayOf(patient))
+            }
+            4, 5 -> db.execSQL("INSERT INTO medical_records (patient_id, visit_date) VALUES (?, ?)",
+                    arrayOf(patients.random(random), FIRST_DAY + random.nextInt(SPAN_DAYS)))
+            6 -> ids("medical_records").takeIf { it.isNotEmpty() }?.let { records ->
+                db.execSQL("UPDATE medical_records SET patient_id = ? WHERE _id = ?",
+                        arrayOf(patients.random(random), records.random(random)))
+            }
+            7 -> ids("medical_records").takeIf { it.isNotEmpty() }?.let { records ->
+                db.execSQL("DELETE FROM medical_records WHERE _id = ?", arrayOf(records.random(random)))
+            }
+            8, 9 -> db.execSQL("INSERT INTO medications (patient_id, medication_name, is_active) VALUES (?, ?, ?)",
+                    arrayOf(patients.random(random), "Aspirin", pick(ACTIVE)))
+            10 -> ids("medications").takeIf { it.isNotEmpty() }?.let { medications ->
+                db.execSQL("UPDATE medications SET is_active = ?, patient_id = ? WHERE _id = ?",
+                        arrayOf(pick(ACTIVE), patients.random(random), medications.random(random)))
+            }
+            11 -> ids("medications").takeIf { it.isNotEmpty() }?.let { medications ->
+                db.execSQL("DELETE FROM medications WHERE _id = ?", arrayOf(medications.random(random)))
+            }
+        }
+    }
+
+    private fun <T> pick(values: Array<T>): T = values[random.nextInt(values.size)]
+
+    private fun ids(table: String): List<Long> {
+        val ids = ArrayList<Long>()
+        db.rawQuery("SELECT _id FROM $table", null).use {
+            while (it.moveToNext()) ids.add(it.getLong(0))
+        }
+        return ids
+    }
+
+    private fun expected(): Map<String, Long> = read(DatabaseContract.SQL_SELECT_EXPECTED_STATS_COUNTERS)
+
+    private fun actual(): Map<String, Long> {
+        val counters = read("SELECT name, value FROM stats_counters")
+        assertTrue("Negative counters: $counters", counters.values.none { it < 0L })
+        return counters
+    }
+
+    // Counters that went back to zero stay in the table, the recount leaves them out
+    private fun read(sql: String): Map<String, Long> {
+        val rows = HashMap<String, Long>()
+        db.rawQuery(sql, null).use {
+            while (it.moveToNext()) rows[it.getString(0)] = it.getLong(1)
+        }
+        return rows.filterValues { it != 0L }
+    }
+
+    companion object {
+        private const val SEED = 11
+        private const val STEPS = 3_000
+        private const val CHECK_EVERY = 50
+        private const val FIRST_DAY = 19_000L // 2022-01-08
+        private const val SPAN_DAYS = 900
+
+        private val GENDERS = arrayOf("Male", "Female", "Other", null, "")
+        private val BLOOD_TYPES = arrayOf("O+", "A-", "AB+", null, "")
+        private val ACTIVE = arrayOf(0, 1, 1)
+    }
+}
@@ -0,0 +1,94 @@
+package com.david.patientrecords
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.david.patientrecords.utils.VitalSignsParser
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.Locale
+
+/**
+ * Parses vital signs text against tables of inputs and the readings they must give.
+ *
+ * Readings are compared as "metric=value" rounded to one decimal, in the order the
+ * parser reports them, and the count parse returns must match. JSON goes through
+ * android.util.JsonReader, so this runs on a device.
+ */
+@RunWith(AndroidJUnit4::class)
+class VitalSignsParserTest {
+
+    @Test
+    fun convertsUnitsToTheMetricUnit() = check(
+            "Weight: 154 lbs" to listOf("weight=69.9"),
+            "Weight (lbs): 154" to listOf("weight=69.9"),
+            "Wt 70 kg" to listOf("weight=70.0"),
+            "Height: 1.75" to listOf("height=175.0"),
+            "Height 69 in" to listOf("height=175.3"),
+            "Ht 175 cm" to listOf("height=175.0"),
+            "Glucose: 5.5 mmol/L" to listOf("glucose=99.0"),
+            "Blood sugar 110 mg/dL" to listOf("glucose=110.0"),
+            "BMI 22.9 kg/m²" to listOf("bmi=22.9"),
+            "SpO2 98%, RR 16" to listOf("spo2=98.0", "respiratory_rate=16.0"),
+            "Pulse=64|Resp=18" to listOf("heart_rate=64.0", "respiratory_rate=18.0"))
+
+    @Test
+    fun readsTemperaturesOver45AsFahrenheit() = check(
+            "Temp: 37.2" to listOf("temperature=37.2"),
+            "Temp 37.5°C" to listOf("temperature=37.5"),
+            "Temp: 99" to listOf("temperature=37.2"),
+            "Temp: 98.6F" to listOf("temperature=37.0"),
+            "Temp: 98.6 °F" to listOf("temperature=37.0"),
+            // 46°C is out of range and 46°F is far too cold, so neither is kept
+            "Temp: 46" to emptyList())
+
+    @Test
+    fun splitsBloodPressureIntoSystolicAndDiastolic() = check(
+            "BP: 120/80, HR: 72, Temp: 98.6F" to
+                    listOf("bp_systolic=120.0", "bp_diastolic=80.0", "heart_rate=72.0", "temperature=37.0"),
+            "BP 120 / 80 mmHg" to listOf("bp_systolic=120.0", "bp_diastolic=80.0"),
+            "Systolic 130; Diastolic 85" to listOf("bp_systolic=130.0", "bp_diastolic=85.0"),
+            // Only a full pair with the higher reading first counts
+            "BP: 80/120" to emptyList(),
+            "BP: 120" to emptyList())
+
+    @Test
+    fun readsJsonShapes() = check(
+            """{"bp": "120/80", "heart_rate": 72}""" to
+                    listOf("bp_systolic=120.0", "bp_diastolic=80.0", "heart_rate=72.0"),
+            """{"systolic": 120, "diastolic": 80}""" to listOf("bp_systolic=120.0", "bp_diastolic=80.0"),
+            """{"vitals": {"temp": "38.5 C", "pulse": 90}}""" to listOf("temperature=38.5", "heart_rate=90.0"),
+            """{"Temp": 99}""" to listOf("temperature=37.2"),
+            """{"temperature": {"value": 37.8, "unit": "C"}}""" to listOf("temperature=37.8"),
+            """[{"metric": "hr", "value": 72}, {"type": "weight", "value": 150, "unit": "lb"}]""" to
+                    listOf("heart_rate=72.0", "weight=68.0"),
+            """{"notes": "HR 66, SpO2 97%"}""" to listOf("heart_rate=66.0", "spo2=97.0"))
+
+    @Test
+    fun skipsMalformedInput() = check(
+            "" to emptyList(),
+            "Patient looks well" to emptyList(),
+            "BP: /80, HR: abc, Temp: ." to emptyList(),
+            // Out of the plausible range, taken as typos
+            "HR: 400, SpO2: 120%, Temp: 20" to emptyList(),
+            """{"hr": 72, "spo2": true, "weight": null}""" to listOf("heart_rate=72.0"),
+            // Readings before the error in truncated JSON are kept
+            """{"hr": 72, "temp": """ to listOf("heart_rate=72.0"),
+            """{"hr" 72}""" to emptyList(),
+            "[1, 2, 3]" to emptyList())
+
+    @Test
+    fun ignoresNull() {
+        assertEquals(0, VitalSignsParser.parse(null) { _, _ -> throw AssertionError("No readings expected") })
+    }
+
+    private fun check(vararg cases: Pair<String, List<String>>) {
+        for ((text, expected) in cases) {
+            val readings = ArrayList<String>()
+            val count = VitalSignsParser.parse(text) { metric, value ->
+                readings.add(String.format(Locale.US, "%s=%.1f", metric, value))
+            }
+            assertEquals("Readings of '$text'", expected, readings)
+            assertEquals("Count of '$text'", expected.size, count)
+        }
+    }
+}
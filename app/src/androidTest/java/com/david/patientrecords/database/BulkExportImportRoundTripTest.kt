@@ -0,0 +1,260 @@
+package com.david.patientrecords.database
+
+import android.content.ContentValues
+import android.database.Cursor
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.models.MedicalRecord
+import com.david.patientrecords.models.Medication
+import com.david.patientrecords.models.Patient
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.io.FileInputStream
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Exports a database with BulkExporter, imports the files with BulkImporter into an
+ * empty one, and compares the two.
+ *
+ * The source is an in-memory database with the sample data, a few patients whose text
+ * needs CSV quoting (commas, quotes, line breaks, non-ASCII), and enough generated rows
+ * to span several export pages and import batches. Only active patients are exported,
+ * so the comparison covers them and their records and medications. Timestamps are
+ * exported to the second, and blank text imports as NULL, so both sides are compared
+ * that way.
+ */
+@RunWith(AndroidJUnit4::class)
+class BulkExportImportRoundTripTest {
+
+    private val context = InstrumentationRegistry.getInstrumentation().targetContext
+    private lateinit var source: DatabaseHelper
+    private lateinit var target: DatabaseHelper
+    private lateinit var directory: File
+
+    @Before
+    fun setUp() {
+        source = DatabaseHelper(context, null, null)
+        seed(PatientRepository(source))
+        target = DatabaseHelper(context, null, null)
+        target.writableDatabase.apply {
+            delete(DatabaseContract.MedicationEntry.TABLE_NAME, null, null)
+            delete(DatabaseContract.MedicalRecordEntry.TABLE_NAME, null, null)
+            delete(DatabaseContract.PatientEntry.TABLE_NAME, null, null)
+        }
+        directory = File(context.cacheDir, "round_trip_test").apply { deleteRecursively() }
+    }
+
+    @After
+    fun tearDown() {
+        source.close()
+        target.close()
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun csvRoundTrip() {
+        roundTripCsv(gzip = false)
+    }
+
+    @Test
+    fun gzipCsvRoundTrip() {
+        roundTripCsv(gzip = true)
+    }
+
+    @Test
+    fun ndjsonPatientsRoundTrip() {
+        val export = export(BulkExporter.Format.NDJSON, gzip = true)
+        val report = import(BulkImporter.Target.PATIENTS, BulkImporter.Format.JSON, File(export.files.single()))
+
+        assertEquals(export.patients, report.rowsImported)
+        // The nested records and medications are not patient columns
+        assertEquals(setOf(DatabaseContract.MedicalRecordEntry.TABLE_NAME, DatabaseContract.MedicationEntry.TABLE_NAME),
+                report.ignoredColumns.toSet())
+        assertEquals(rows(source, PATIENTS), rows(target, PATIENTS))
+    }
+
+    private fun roundTripCsv(gzip: Boolean) {
+        val export = export(BulkExporter.Format.CSV, gzip)
+        assertEquals(3, export.files.size)
+        assertTrue("Gzip output not compressed", !gzip || export.files.all { it.endsWith(".csv.gz") })
+
+        val imported = listOf(
+                BulkImporter.Target.PATIENTS to DatabaseContract.PatientEntry.TABLE_NAME,
+                BulkImporter.Target.MEDICAL_RECORDS to DatabaseContract.MedicalRecordEntry.TABLE_NAME,
+                BulkImporter.Target.MEDICATIONS to DatabaseContract.MedicationEntry.TABLE_NAME
+        ).map { (importTarget, table) ->
+            val file = File(export.files.single { File(it).name.startsWith(table + "_") })
+            import(importTarget, BulkImporter.Format.CSV, file)
+        }
+
+        assertEquals(listOf(export.patients, export.medicalRecords, export.medications), imported.map { it.rowsImported })
+        assertTrue("Failed rows: ${imported.flatMap { it.errors }.map { it.message }}", imported.all { it.rowsFailed == 0L })
+        assertTrue("Ignored columns: ${imported.flatMap { it.ignoredColumns }}", imported.all { it.ignoredColumns.isEmpty() })
+        for (query in listOf(PATIENTS, MEDICAL_RECORDS, MEDICATIONS)) {
+            assertEquals(rows(source, query), rows(target, query))
+        }
+    }
+
+    private fun export(format: BulkExporter.Format, gzip: Boolean): BulkExporter.ExportReport {
+        val done = CountDownLatch(1)
+        var result: BulkExporter.ExportReport? = null
+        var failure: Exception? = null
+        BulkExporter(context, source, PatientRepository(source)).start(directory, format, gzip, null, "all",
+                object : BulkExporter.Listener {
+                    override fun onProgress(progress: BulkExporter.Progress) {}
+
+                    override fun onFinished(report: BulkExporter.ExportReport) {
+                        result = report
+                        done.countDown()
+                    }
+
+                    override fun onFailed(e: Exception) {
+                        failure = e
+                        done.countDown()
+                    }
+                })
+        assertTrue("Export timed out", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        failure?.let { throw it }
+        return result!!.also { assertTrue("Export cancelled", !it.isCancelled) }
+    }
+
+    private fun import(importTarget: BulkImporter.Target, format: BulkImporter.Format, file: File): BulkImporter.ImportReport {
+        val done = CountDownLatch(1)
+        var result: BulkImporter.ImportReport? = null
+        var failure: Exception? = null
+        BulkImporter(target, PatientRepository(target)).start("round_trip:" + file.name, importTarget, format,
+                FileInputStream(file), object : BulkImporter.Listener {
+                    override fun onProgress(progress: BulkImporter.Progress) {}
+
+                    override fun onFinished(report: BulkImporter.ImportReport) {
+                        result = report
+                        done.countDown()
+                    }
+
+                    override fun onFailed(e: Exception) {
+                        failure = e
+                        done.countDown()
+                    }
+                })
+        assertTrue("Import of ${file.name} timed out", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        failure?.let { throw it }
+        return result!!
+    }
+
+    private fun rows(helper: DatabaseHelper, query: String): List<List<Any?>> {
+        val rows = ArrayList<List<Any?>>()
+        helper.readableDatabase.rawQuery(query, null).use { cursor ->
+            while (cursor.moveToNext()) {
+                rows.add((0 until cursor.columnCount).map { value(cursor, it) })
+            }
+        }
+        return rows
+    }
+
+    private fun value(cursor: Cursor, index: Int): Any? = when (cursor.getType(index)) {
+        Cursor.FIELD_TYPE_NULL -> null
+        Cursor.FIELD_TYPE_INTEGER -> cursor.getLong(index).let {
+            if (DatabaseContract.isEpochMillisColumn(cursor.getColumnName(index))) it / 1000 else it
+        }
+        Cursor.FIELD_TYPE_FLOAT -> cursor.getDouble(index)
+        else -> cursor.getString(index).takeIf { it.isNotBlank() }
+    }
+
+    private fun seed(repository: PatientRepository) {
+        val today = DateCodec.todayEpochDay()
+        val quoted = repository.insertPatient(patient("O'Brien, \"Danny\"").apply {
+            address = "12 Main St\nApt 4"
+            medicalConditions = "Zoë's asthma — mild 😷"
+            phone = null
+        })
+        repository.insertMedicalRecord(MedicalRecord().apply {
+            patientId = quoted
+            visitDay = today - 3
+            visitType = "Emergency"
+            symptoms = "Wheezing, \"tight\" chest"
+            diagnosis = "Asthma"
+            vitalSigns = "{\"bp\":\"120/80\",\"hr\":72}"
+            notes = "Line one\r\nLine two"
+            followUpDay = today + 14
+        })
+        repository.insertMedication(medication(quoted, "Salbutamol").apply { sideEffects = "Tremor, rarely" })
+        repository.insertMedication(medication(quoted, "Prednisolone").apply { isActive = false })
+
+        // Not exported, with children that must stay behind too
+        val inactive = repository.insertPatient(patient("Former Patient").apply { isActive = false })
+        repository.insertMedicalRecord(MedicalRecord().apply {
+            patientId = inactive
+            visitDay = today - 400
+            diagnosis = "Discharged"
+        })
+
+        val db = source.writableDatabase
+        db.beginTransaction()
+        try {
+            for (i in 1..GENERATED_PATIENTS) {
+                val patientId = db.insertOrThrow(DatabaseContract.PatientEntry.TABLE_NAME, null, ContentValues().apply {
+                    put(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME, "Patient $i")
+                    put(DatabaseContract.PatientEntry.COLUMN_AGE, 18 + i % 70)
+                    put(DatabaseContract.PatientEntry.COLUMN_GENDER, if (i % 2 == 0) "Female" else "Male")
+                    put(DatabaseContract.PatientEntry.COLUMN_PHONE, "+1-555-$i")
+                    put(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE, today - i % 900)
+                    put(DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE, if (i % 10 == 0) 0 else 1)
+                })
+                repeat(2) { visit ->
+                    db.insertOrThrow(DatabaseContract.MedicalRecordEntry.TABLE_NAME, null, ContentValues().apply {
+                        put(DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID, patientId)
+                        put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, today - i % 300 - visit)
+                        put(DatabaseContract.MedicalRecordEntry.COLUMN_DIAGNOSIS, "Checkup $visit")
+                    })
+                }
+                db.insertOrThrow(DatabaseContract.MedicationEntry.TABLE_NAME, null, ContentValues().apply {
+                    put(DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID, patientId)
+                    put(DatabaseContract.MedicationEntry.COLUMN_MEDICATION_NAME, "Metformin")
+                    put(DatabaseContract.MedicationEntry.COLUMN_REFILLS_REMAINING, i % 4)
+                })
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    private fun patient(name: String) = Patient().apply {
+        patientName = name
+        age = 36
+        gender = "Male"
+        bloodType = "O-"
+        allergies = ""
+        registrationDay = DateCodec.todayEpochDay() - 30
+        isActive = true
+    }
+
+    private fun medication(patientId: Long, name: String) = Medication().apply {
+        this.patientId = patientId
+        medicationName = name
+        dosage = "100mcg"
+        frequency = "As needed"
+        startDay = DateCodec.todayEpochDay() - 3
+        endDay = DateCodec.todayEpochDay() + 30
+        refillsRemaining = 2
+        isActive = true
+    }
+
+    companion object {
+        private const val TIMEOUT_SECONDS = 60L
+        private const val GENERATED_PATIENTS = 1_200 // Three export pages, several import batches of records
+
+        private const val PATIENTS = "SELECT * FROM patients WHERE is_active = 1 ORDER BY _id"
+        private const val MEDICAL_RECORDS = "SELECT r.* FROM medical_records r" +
+                " INNER JOIN patients p ON p._id = r.patient_id WHERE p.is_active = 1 ORDER BY r._id"
+        private const val MEDICATIONS = "SELECT m.* FROM medications m" +
+                " INNER JOIN patients p ON p._id = m.patient_id WHERE p.is_active = 1 ORDER BY m._id"
+    }
+}
@@ -0,0 +1,195 @@
+package com.david.patientrecords.database
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.ByteArrayInputStream
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Imports generated CSV through BulkImporter jobs into a file-backed database.
+ *
+ * Unlike BulkImportThroughputTest on the JVM, this runs the whole job: reading and
+ * parsing the CSV, binding the typed columns, the vital signs of each record, the
+ * checkpoints and the reindex at the end. A warm-up import goes into a separate
+ * database first. Every target must keep MIN_ROWS_PER_SECOND as the import report
+ * counts it, no row may fail, and the stats counters and report rollups must equal
+ * a recount afterwards.
+ *
+ * A record whose vital signs cannot all be written must not be left behind either,
+ * with or without the readings written before the failure.
+ */
+@RunWith(AndroidJUnit4::class)
+class BulkImporterCsvThroughputTest {
+
+    private val context = InstrumentationRegistry.getInstrumentation().targetContext
+    private lateinit var helper: DatabaseHelper
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(WARMUP_NAME)
+        context.deleteDatabase(NAME)
+        helper = emptyDatabase(NAME)
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+        context.deleteDatabase(WARMUP_NAME)
+        context.deleteDatabase(NAME)
+    }
+
+    @Test
+    fun csvImportKeepsTheRowRate() {
+        emptyDatabase(WARMUP_NAME).let { warmup ->
+            importAll(warmup, WARMUP_PATIENTS)
+            warmup.close()
+        }
+
+        for (report in importAll(helper, PATIENTS)) {
+            println(report.summary)
+            assertEquals("Failed rows: ${report.errors.map { it.message }}", 0L, report.rowsFailed)
+            assertTrue("${report.target} imported ${report.rowsPerSecond} rows/s",
+                    report.rowsPerSecond >= MIN_ROWS_PER_SECOND)
+        }
+
+        assertEquals(PATIENTS.toLong(), count("SELECT COUNT(*) FROM patients"))
+        assertEquals(PATIENTS * VITALS_PER_RECORD.toLong(), count("SELECT COUNT(*) FROM vital_observations"))
+        assertEquals(read(DatabaseContract.SQL_SELECT_EXPECTED_STATS_COUNTERS),
+                read("SELECT name, value FROM stats_counters"))
+        assertEquals(read(DatabaseContract.SQL_SELECT_EXPECTED_REPORT_ROLLUPS),
+                read("SELECT report || '/' || bucket, value FROM report_rollups"))
+    }
+
+    @Test
+    fun recordWithFailedVitalsIsNotKept() {
+        import(helper, BulkImporter.Target.PATIENTS, "_id,patient_name,age\n1,Patient 1,40\n")
+        // Only on the writer connection, which the import shares; the blood pressure is written before the pulse
+        helper.writableDatabase.execSQL("CREATE TEMP TRIGGER reject_pulse BEFORE INSERT ON main.vital_observations" +
+                " WHEN new.metric = 'heart_rate' AND new.value = 123 BEGIN SELECT RAISE(ABORT, 'Reading rejected'); END")
+
+        val report = import(helper, BulkImporter.Target.MEDICAL_RECORDS, "_id,patient_id,visit_date,vital_signs\n" +
+                "1,1,2024-03-01,\"BP: 120/80, HR: 72\"\n" +
+                "2,1,2024-03-02,\"BP: 130/85, HR: 123\"\n" +
+                "3,1,2024-03-03,\"BP: 125/82, HR: 70\"\n")
+
+        assertEquals(2L, report.rowsImported)
+        assertEquals(1L, report.rowsFailed)
+        assertEquals(listOf(1L, 3L), column("SELECT _id FROM medical_records ORDER BY _id"))
+        assertEquals(listOf(1L, 3L), column("SELECT DISTINCT record_id FROM vital_observations ORDER BY record_id"))
+        assertEquals(read(DatabaseContract.SQL_SELECT_EXPECTED_STATS_COUNTERS),
+                read("SELECT name, value FROM stats_counters"))
+        assertEquals(read(DatabaseContract.SQL_SELECT_EXPECTED_REPORT_ROLLUPS),
+                read("SELECT report || '/' || bucket, value FROM report_rollups"))
+    }
+
+    // The schema without the sample data onCreate adds
+    private fun emptyDatabase(name: String) = DatabaseHelper(context, name, null).apply {
+        writableDatabase.apply {
+            delete(DatabaseContract.MedicationEntry.TABLE_NAME, null, null)
+            delete(DatabaseContract.MedicalRecordEntry.TABLE_NAME, null, null)
+            delete(DatabaseContract.PatientEntry.TABLE_NAME, null, null)
+        }
+    }
+
+    // Patients first so records and medications can reference them, two visits per patient
+    private fun importAll(target: DatabaseHelper, patients: Int): List<BulkImporter.ImportReport> {
+        val today = DateCodec.todayEpochDay()
+        return listOf(
+                import(target, BulkImporter.Target.PATIENTS, csv(PATIENT_COLUMNS, patients) { i ->
+                    "$i,Patient $i,${20 + i % 70},${GENDERS[i % GENDERS.size]},+1-555-$i,\"$i Main St, Springfield\"," +
+                            "${BLOOD_TYPES[i % BLOOD_TYPES.size]},${if (i % 3 == 0) "Asthma" else ""}," +
+                            "${DateCodec.formatEpochDay(today - i % SPAN_DAYS)},${if (i % 10 == 0) 0 else 1}"
+                }),
+                import(target, BulkImporter.Target.MEDICAL_RECORDS, csv(RECORD_COLUMNS, patients * 2) { i ->
+                    "$i,${1 + i % patients},${DateCodec.formatEpochDay(today - i % SPAN_DAYS)},Regular,Cough," +
+                            "Bronchitis,Dr. Smith,${if (i % 2 == 0) "\"BP: 120/80, HR: 72, Temp: 98.6F\"" else ""}"
+                }),
+                import(target, BulkImporter.Target.MEDICATIONS, csv(MEDICATION_COLUMNS, patients) { i ->
+                    "$i,${1 + i % patients},${MEDICATIONS[i % MEDICATIONS.size]},500mg,Twice daily," +
+                            "${DateCodec.formatEpochDay(today - i % SPAN_DAYS)},${if (i % 5 == 0) 0 else 1}"
+                }))
+    }
+
+    private fun csv(header: String, rows: Int, row: (Int) -> String): String {
+        val csv = StringBuilder(header).append('\n')
+        for (i in 1..rows) {
+            csv.append(row(i)).append('\n')
+        }
+        return csv.toString()
+    }
+
+    private fun import(target: DatabaseHelper, importTarget: BulkImporter.Target, csv: String): BulkImporter.ImportReport {
+        val done = CountDownLatch(1)
+        var result: BulkImporter.ImportReport? = null
+        var failure: Exception? = null
+        BulkImporter(target, PatientRepository(target)).start("csv_throughput:" + importTarget, importTarget,
+                BulkImporter.Format.CSV, ByteArrayInputStream(csv.toByteArray()), object : BulkImporter.Listener {
+                    override fun onProgress(progress: BulkImporter.Progress) {}
+
+                    override fun onFinished(report: BulkImporter.ImportReport) {
+                        result = report
+                        done.countDown()
+                    }
+
+                    override fun onFailed(e: Exception) {
+                        failure = e
+                        done.countDown()
+                    }
+                })
+        assertTrue("Import of $importTarget timed out", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        failure?.let { throw it }
+        return result!!
+    }
+
+    private fun count(sql: String): Long = column(sql).single()
+
+    private fun column(sql: String): List<Long> {
+        val values = ArrayList<Long>()
+        helper.readableDatabase.rawQuery(sql, null).use {
+            while (it.moveToNext()) values.add(it.getLong(0))
+        }
+        return values
+    }
+
+    // Rows that went back to zero stay in the tables, the recount leaves them out
+    private fun read(sql: String): Map<String, Long> {
+        val rows = HashMap<String, Long>()
+        helper.readableDatabase.rawQuery(sql, null).use {
+            while (it.moveToNext()) {
+                val key = if (it.columnCount == 3) it.getString(0) + "/" + it.getString(1) else it.getString(0)
+                rows[key] = it.getLong(it.columnCount - 1)
+            }
+        }
+        return rows.filterValues { it != 0L }
+    }
+
+    companion object {
+        private const val NAME = "csv_import_test.db"
+        private const val WARMUP_NAME = "csv_import_warmup.db"
+        private const val PATIENTS = 10_000
+        private const val WARMUP_PATIENTS = 2_000
+        private const val TIMEOUT_SECONDS = 300L
+        // Whole jobs, so parsing and the reindex count too; well under the JVM insert floor
+        private const val MIN_ROWS_PER_SECOND = 5_000L
+        private const val SPAN_DAYS = 900
+        // Every other record has systolic, diastolic, pulse and temperature
+        private const val VITALS_PER_RECORD = 4
+
+        private const val PATIENT_COLUMNS =
+                "_id,patient_name,age,gender,phone,address,blood_type,medical_conditions,registration_date,is_active"
+        private const val RECORD_COLUMNS = "_id,patient_id,visit_date,visit_type,symptoms,diagnosis,doctor_name,vital_signs"
+        private const val MEDICATION_COLUMNS = "_id,patient_id,medication_name,dosage,frequency,start_date,is_active"
+
+        private val GENDERS = arrayOf("Male", "Female", "Other")
+        private val BLOOD_TYPES = arrayOf("O+", "A-", "B+", "AB+")
+        private val MEDICATIONS = arrayOf("Amoxicillin", "Metformin", "Lisinopril")
+    }
+}
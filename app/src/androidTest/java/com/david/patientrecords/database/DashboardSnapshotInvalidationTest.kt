@@ -0,0 +1,135 @@
+package com.david.patientrecords.database
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.models.DashboardSnapshot
+import com.david.patientrecords.models.MedicalRecord
+import com.david.patientrecords.models.Medication
+import com.david.patientrecords.models.Patient
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Checks that every repository write drops the cached dashboard snapshot.
+ *
+ * Each step caches a snapshot, runs one write through the repository, and then
+ * requires the cache to be empty and the next snapshot to show the write. Reads in
+ * between must keep serving the cached instance.
+ */
+@RunWith(AndroidJUnit4::class)
+class DashboardSnapshotInvalidationTest {
+
+    private lateinit var helper: DatabaseHelper
+    private lateinit var repository: PatientRepository
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        helper = DatabaseHelper(context, null, null)
+        repository = PatientRepository(helper)
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+    }
+
+    @Test
+    fun readsKeepTheCachedSnapshot() {
+        val snapshot = repository.dashboardSnapshot
+        repository.allPatients
+        repository.getPatientsPage(null, "all", null, 0, 20)
+        assertSame(snapshot, repository.cachedDashboardSnapshot)
+        assertSame(snapshot, repository.dashboardSnapshot)
+    }
+
+    @Test
+    fun everyWriteInvalidatesTheSnapshot() {
+        var patientId = 0L
+        afterWrite("insertPatient", { patientId = repository.insertPatient(patient()) }) { before, after ->
+            assertEquals(before.totalPatients + 1, after.totalPatients)
+            assertEquals(before.maleCount + 1, after.maleCount)
+        }
+        afterWrite("updatePatient", {
+            repository.updatePatient(repository.getPatientById(patientId).apply { gender = "Female" })
+        }) { before, after ->
+            assertEquals(before.maleCount - 1, after.maleCount)
+            assertEquals(before.femaleCount + 1, after.femaleCount)
+        }
+
+        val record = record(patientId, followUpDay = DateCodec.todayEpochDay() + 7)
+        afterWrite("insertMedicalRecord", { record.id = repository.insertMedicalRecord(record) }) { before, after ->
+            assertEquals(before.medicalRecordCount + 1, after.medicalRecordCount)
+            assertEquals(before.upcomingFollowUpCount + 1, after.upcomingFollowUpCount)
+        }
+        afterWrite("updateMedicalRecord", {
+            repository.updateMedicalRecord(record.apply { followUpDay = DateCodec.todayEpochDay() - 7 })
+        }) { before, after ->
+            assertEquals(before.upcomingFollowUpCount - 1, after.upcomingFollowUpCount)
+        }
+        afterWrite("deleteMedicalRecord", { repository.deleteMedicalRecord(record.id) }) { before, after ->
+            assertEquals(before.medicalRecordCount - 1, after.medicalRecordCount)
+        }
+
+        val medication = medication(patientId)
+        afterWrite("insertMedication", { medication.id = repository.insertMedication(medication) }) { before, after ->
+            assertEquals(before.activeMedicationCount + 1, after.activeMedicationCount)
+        }
+        afterWrite("updateMedication", {
+            repository.updateMedication(medication.apply { isActive = false })
+        }) { before, after ->
+            assertEquals(before.activeMedicationCount - 1, after.activeMedicationCount)
+        }
+        val second = medication(patientId).apply { id = repository.insertMedication(this) }
+        afterWrite("deactivateMedication", { repository.deactivateMedication(second.id) }) { before, after ->
+            assertEquals(before.activeMedicationCount - 1, after.activeMedicationCount)
+        }
+
+        afterWrite("deletePatient", { repository.deletePatient(patientId) }) { before, after ->
+            assertEquals(before.totalPatients - 1, after.totalPatients)
+            assertEquals(before.femaleCount - 1, after.femaleCount)
+        }
+    }
+
+    private fun afterWrite(name: String, write: () -> Unit, check: (DashboardSnapshot, DashboardSnapshot) -> Unit) {
+        val before = repository.dashboardSnapshot
+        assertSame("Snapshot cached before $name", before, repository.cachedDashboardSnapshot)
+        write()
+        assertNull("Snapshot still cached after $name", repository.cachedDashboardSnapshot)
+        check(before, repository.dashboardSnapshot)
+    }
+
+    private fun patient() = Patient().apply {
+        patientName = "Dashboard Test"
+        age = 41
+        gender = "Male"
+        bloodType = "A+"
+        registrationDay = DateCodec.todayEpochDay()
+        isActive = true
+    }
+
+    private fun record(patientId: Long, followUpDay: Long) = MedicalRecord().apply {
+        this.patientId = patientId
+        visitDay = DateCodec.todayEpochDay()
+        visitType = "Regular"
+        doctorName = "Dr. Smith"
+        diagnosis = "Checkup"
+        this.followUpDay = followUpDay
+    }
+
+    private fun medication(patientId: Long) = Medication().apply {
+        this.patientId = patientId
+        medicationName = "Amoxicillin"
+        dosage = "500mg"
+        frequency = "Twice daily"
+        startDay = DateCodec.todayEpochDay()
+        endDay = DateCodec.todayEpochDay() + 10
+        isActive = true
+    }
+}
@@ -0,0 +1,247 @@
+package com.david.patientrecords.database
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.models.MedicalRecord
+import com.david.patientrecords.models.Patient
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.GZIPInputStream
+
+/**
+ * Backs up a file-backed database with DatabaseBackup and restores the backup.
+ *
+ * Restoring means unzipping the backup into a database file of its own, which is then
+ * opened read-only so nothing repairs it on the way in. Its schema, user_version and
+ * the rows of every table, shadow tables and sqlite_sequence included, must match the
+ * database that was backed up. Without write-ahead logging the snapshot is the stepped
+ * copy; with it, VACUUM INTO where the device's SQLite has it.
+ *
+ * A stepped copy that keeps seeing saves land must still finish, by starting over and
+ * in the end copying in one transaction, and give a consistent snapshot: the stats
+ * counters in it must equal a recount of its rows.
+ */
+@RunWith(AndroidJUnit4::class)
+class DatabaseBackupRestoreTest {
+
+    private lateinit var context: Context
+    private lateinit var directory: File
+    private lateinit var helper: DatabaseHelper
+
+    @Before
+    fun setUp() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        directory = File(context.cacheDir, "backup_test")
+        context.deleteDatabase(NAME)
+        context.deleteDatabase(RESTORED_NAME)
+        directory.deleteRecursively()
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+        context.deleteDatabase(NAME)
+        context.deleteDatabase(RESTORED_NAME)
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun backupRestoresTheSameData() {
+        helper = DatabaseHelper(context, NAME, null)
+        addPatients(PATIENTS)
+
+        val restored = restore(backup())
+        try {
+            assertSameData(helper.readableDatabase, restored)
+        } finally {
+            restored.close()
+        }
+    }
+
+    @Test
+    fun steppedCopyRestoresTheSameData() {
+        helper = DatabaseHelper(context, NAME, null).apply { setWriteAheadLoggingEnabled(false) }
+        addPatients(PATIENTS)
+
+        val report = backup()
+        assertEquals(DatabaseBackup.Method.STEPPED_COPY, report.method)
+        assertEquals(1, report.attempts)
+        val restored = restore(report)
+        try {
+            assertSameData(helper.readableDatabase, restored)
+        } finally {
+            restored.close()
+        }
+    }
+
+    @Test
+    fun steppedCopyFinishesWhileSavesKeepLanding() {
+        helper = DatabaseHelper(context, NAME, null).apply { setWriteAheadLoggingEnabled(false) }
+        addPatients(PATIENTS)
+        val repository = PatientRepository(helper)
+
+        // Saves go through the writer lane like the app's, one after the other until the backup ends
+        val saving = AtomicBoolean(true)
+        val saved = AtomicInteger()
+        val saver = Thread {
+            while (saving.get()) {
+                DbExecutor.getInstance().submitWrite { repository.insertPatient(patient(saved.get())) }.get()
+                saved.incrementAndGet()
+            }
+        }
+        saver.start()
+        val report = try {
+            backup()
+        } finally {
+            saving.set(false)
+            saver.join()
+        }
+
+        assertEquals(DatabaseBackup.Method.STEPPED_COPY, report.method)
+        assertTrue("Saves landed during ${report.attempts} attempts", report.attempts > 1)
+        assertTrue("${saved.get()} saves", saved.get() > 0)
+        val restored = restore(report)
+        try {
+            assertEquals(counters(restored, DatabaseContract.SQL_SELECT_EXPECTED_STATS_COUNTERS),
+                    counters(restored, "SELECT name, value FROM stats_counters"))
+            assertEquals(listOf("0"), column(restored, "SELECT COUNT(*) FROM vital_observations" +
+                    " WHERE record_id NOT IN (SELECT _id FROM medical_records)"))
+        } finally {
+            restored.close()
+        }
+    }
+
+    // ==================== BACKUP AND RESTORE ====================
+
+    private fun backup(): DatabaseBackup.BackupReport {
+        val done = CountDownLatch(1)
+        var result: DatabaseBackup.BackupReport? = null
+        var failure: Exception? = null
+        DatabaseBackup(context, helper, directory).start(object : DatabaseBackup.Listener {
+            override fun onProgress(progress: DatabaseBackup.Progress) {}
+
+            override fun onFinished(report: DatabaseBackup.BackupReport) {
+                result = report
+                done.countDown()
+            }
+
+            override fun onFailed(e: Exception) {
+                failure = e
+                done.countDown()
+            }
+        })
+        assertTrue("Backup timed out", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        failure?.let { throw it }
+        println(result!!.summary)
+        return result!!
+    }
+
+    private fun restore(report: DatabaseBackup.BackupReport): SQLiteDatabase {
+        val file = context.getDatabasePath(RESTORED_NAME)
+        GZIPInputStream(File(directory, report.fileName).inputStream()).use { input ->
+            file.outputStream().use { input.copyTo(it) }
+        }
+        return SQLiteDatabase.openDatabase(file.path, null, SQLiteDatabase.OPEN_READONLY)
+    }
+
+    private fun assertSameData(live: SQLiteDatabase, restored: SQLiteDatabase) {
+        assertEquals(schema(live), schema(restored))
+        assertEquals(live.version, restored.version)
+        val tables = column(live, "SELECT name FROM sqlite_master WHERE type = 'table' AND name <> 'android_metadata'")
+        assertTrue(tables.containsAll(listOf("patients", "patient_search_segments", "sqlite_sequence")))
+        for (table in tables) {
+            assertEquals("Rows of $table", rows(live, table), rows(restored, table))
+        }
+    }
+
+    // ==================== DATA ====================
+
+    // Patients with a record each, vital signs included, and every tenth deactivated. The
+    // last record is deleted so sqlite_sequence runs ahead of the largest id.
+    private fun addPatients(count: Int) {
+        val repository = PatientRepository(helper)
+        val db = helper.writableDatabase
+        db.beginTransaction()
+        try {
+            for (i in 0 until count) {
+                val patientId = repository.insertPatient(patient(i))
+                repository.insertMedicalRecord(MedicalRecord().apply {
+                    this.patientId = patientId
+                    visitDay = DateCodec.todayEpochDay() - i % 365
+                    visitType = "Regular"
+                    doctorName = "Dr. Smith"
+                    vitalSigns = "BP: 120/80, HR: ${60 + i % 40}"
+                })
+                if (i % 10 == 9) {
+                    repository.deletePatient(patientId)
+                }
+            }
+            db.delete(DatabaseContract.MedicalRecordEntry.TABLE_NAME, "_id = (SELECT MAX(_id) FROM medical_records)", null)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    private fun patient(i: Int) = Patient().apply {
+        patientName = "Backup Patient $i"
+        age = 20 + i % 70
+        gender = if (i % 2 == 0) "Female" else "Male"
+        bloodType = "O+"
+        medicalConditions = if (i % 3 == 0) "Asthma" else null
+        registrationDay = DateCodec.todayEpochDay() - i % 365
+        isActive = i % 7 != 0
+    }
+
+    // ==================== QUERIES ====================
+
+    private fun schema(db: SQLiteDatabase): List<String> =
+            column(db, "SELECT type || ' ' || name || ': ' || sql FROM sqlite_master " +
+                    "WHERE sql IS NOT NULL AND name <> 'android_metadata' ORDER BY type, name")
+
+    // Every column quoted, so blobs compare too; in a fixed order, as rowids can differ between copies
+    private fun rows(db: SQLiteDatabase, table: String): List<String> {
+        val columns = ArrayList<String>()
+        db.rawQuery("PRAGMA table_info(\"$table\")", null).use {
+            while (it.moveToNext()) columns.add("quote(\"" + it.getString(it.getColumnIndexOrThrow("name")) + "\")")
+        }
+        return column(db, "SELECT " + columns.joinToString(" || '|' || ") + " FROM \"$table\"").sorted()
+    }
+
+    // Counters that went back to zero stay in the table, the recount leaves them out
+    private fun counters(db: SQLiteDatabase, sql: String): Map<String, Long> {
+        val counters = HashMap<String, Long>()
+        db.rawQuery(sql, null).use {
+            while (it.moveToNext()) counters[it.getString(0)] = it.getLong(1)
+        }
+        return counters.filterValues { it != 0L }
+    }
+
+    private fun column(db: SQLiteDatabase, sql: String): List<String> {
+        val values = ArrayList<String>()
+        db.rawQuery(sql, null).use {
+            while (it.moveToNext()) values.add(it.getString(0))
+        }
+        return values
+    }
+
+    companion object {
+        private const val NAME = "backup_test.db"
+        private const val RESTORED_NAME = "backup_restored.db"
+        // Several chunks of the stepped copy per table
+        private const val PATIENTS = 5_000
+        private const val TIMEOUT_SECONDS = 120L
+    }
+}
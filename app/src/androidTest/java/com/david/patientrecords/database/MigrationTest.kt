@@ -0,0 +1,148 @@
+package com.david.patientrecords.database
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Upgrades databases written by older versions of the app and compares them with a
+ * fresh install.
+ *
+ * The old database is built on disk from the schema its version shipped with, then
+ * opened through DatabaseHelper so every migration step runs. Its tables, indexes and
+ * triggers must come out with the same SQL as onCreate gives, and the rows must survive.
+ * Readings in the vital signs text of records written before version 8 must be
+ * backfilled into vital_observations.
+ */
+@RunWith(AndroidJUnit4::class)
+class MigrationTest {
+
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        context.deleteDatabase(NAME)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(NAME)
+    }
+
+    @Test
+    fun upgradeFromVersion1MatchesFreshInstall() {
+        SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(NAME), null).use { db ->
+            V1_SCHEMA.forEach { db.execSQL(it) }
+            db.execSQL("INSERT INTO patients (patient_name, age, gender, blood_type, registration_date) " +
+                    "VALUES ('John Doe', 40, 'Male', 'O+', '2024-03-05')")
+            db.execSQL("INSERT INTO medical_records (patient_id, visit_date, diagnosis, follow_up_date) " +
+                    "VALUES (1, '2024-03-06', 'Flu', '2024-03-20')")
+            db.execSQL("INSERT INTO medications (patient_id, medication_name, start_date) VALUES (1, 'Aspirin', '2024-03-06')")
+            db.version = 1
+        }
+
+        val upgraded = DatabaseHelper(context, NAME, null)
+        val fresh = DatabaseHelper(context, null, null)
+        try {
+            assertEquals(schema(fresh.readableDatabase), schema(upgraded.readableDatabase))
+
+            val db = upgraded.readableDatabase
+            assertEquals(listOf("19787"), column(db, "SELECT registration_date FROM patients")) // 2024-03-05
+            assertEquals(listOf("19788|19802"), column(db, "SELECT visit_date || '|' || follow_up_date FROM medical_records"))
+            assertEquals(listOf("Aspirin|19788"), column(db, "SELECT medication_name || '|' || start_date FROM medications"))
+        } finally {
+            upgraded.close()
+            fresh.close()
+        }
+    }
+
+    @Test
+    fun upgradeFromVersion7BackfillsVitalObservations() {
+        SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(NAME), null).use { db ->
+            v7Schema().forEach { db.execSQL(it) }
+            db.execSQL("INSERT INTO patients (patient_name, age, gender, blood_type, registration_date) " +
+                    "VALUES ('John Doe', 40, 'Male', 'O+', 19787)")
+            val records = listOf(19788L to "BP: 120/80, HR: 72, Temp: 98.6F",
+                    19790L to "{\"weight\": \"154 lbs\", \"spo2\": 97}",
+                    19791L to "", 19792L to null, 19793L to "Patient looks well")
+            for ((visitDay, vitalSigns) in records) {
+                db.execSQL("INSERT INTO medical_records (patient_id, visit_date, vital_signs) VALUES (1, ?, ?)",
+                        arrayOf<Any?>(visitDay, vitalSigns))
+            }
+            db.version = 7
+        }
+
+        val upgraded = DatabaseHelper(context, NAME, null)
+        val fresh = DatabaseHelper(context, null, null)
+        try {
+            assertEquals(schema(fresh.readableDatabase), schema(upgraded.readableDatabase))
+
+            // Timed at the start of the visit day in local time
+            val first = DateCodec.toEpochMillis(19788L * 24 * 60 * 60)
+            val second = DateCodec.toEpochMillis(19790L * 24 * 60 * 60)
+            assertEquals(listOf("1|1|$first|bp_systolic|120.0", "1|1|$first|bp_diastolic|80.0",
+                    "1|1|$first|heart_rate|72.0", "1|1|$first|temperature|37.0",
+                    "2|1|$second|weight|69.9", "2|1|$second|spo2|97.0"),
+                    column(upgraded.readableDatabase, "SELECT record_id || '|' || patient_id || '|' || observed_at" +
+                            " || '|' || metric || '|' || printf('%.1f', value) FROM vital_observations ORDER BY _id"))
+        } finally {
+            upgraded.close()
+            fresh.close()
+        }
+    }
+
+    // The schema versions 3 to 7 left behind, from the SQL those steps ran
+    private fun v7Schema(): List<String> =
+            listOf(MigrationSql.V7_CREATE_PATIENTS_TABLE, MigrationSql.V7_CREATE_MEDICAL_RECORDS_TABLE,
+                    MigrationSql.V7_CREATE_MEDICATIONS_TABLE) +
+                    MigrationSql.V3_CREATE_INDEXES +
+                    MigrationSql.V4_CREATE_PATIENT_SEARCH +
+                    // The table, without the text date triggers version 7 replaced
+                    MigrationSql.V5_CREATE_STATS_COUNTERS[0] +
+                    MigrationSql.V7_CREATE_STATS_COUNTER_TRIGGERS +
+                    MigrationSql.V7_REBUILD_STATS_COUNTERS +
+                    MigrationSql.V6_CREATE_IMPORT_TABLES
+
+    private fun schema(db: SQLiteDatabase): List<String> =
+            column(db, "SELECT type || ' ' || name || ': ' || sql FROM sqlite_master " +
+                    "WHERE name NOT LIKE 'sqlite_%' AND name NOT LIKE 'android_%' ORDER BY type, name")
+
+    private fun column(db: SQLiteDatabase, sql: String): List<String> {
+        val values = ArrayList<String>()
+        db.rawQuery(sql, null).use {
+            while (it.moveToNext()) values.add(it.getString(0))
+        }
+        return values
+    }
+
+    companion object {
+        private const val NAME = "migration_test.db"
+
+        // The tables as the first release created them, before image_path
+        private val V1_SCHEMA = arrayOf(
+                "CREATE TABLE patients (_id INTEGER PRIMARY KEY AUTOINCREMENT,patient_name TEXT NOT NULL," +
+                        "age INTEGER NOT NULL,gender TEXT,phone TEXT,address TEXT,blood_type TEXT," +
+                        "emergency_contact TEXT,emergency_phone TEXT,medical_conditions TEXT,allergies TEXT," +
+                        "profile_image TEXT,registration_date TEXT,is_active INTEGER DEFAULT 1," +
+                        "created_at TEXT DEFAULT CURRENT_TIMESTAMP,updated_at TEXT DEFAULT CURRENT_TIMESTAMP)",
+                "CREATE TABLE medical_records (_id INTEGER PRIMARY KEY AUTOINCREMENT,patient_id INTEGER NOT NULL," +
+                        "visit_date TEXT NOT NULL,visit_type TEXT,symptoms TEXT,diagnosis TEXT,treatment TEXT," +
+                        "doctor_name TEXT,doctor_specialty TEXT,vital_signs TEXT,notes TEXT,follow_up_date TEXT," +
+                        "created_at TEXT DEFAULT CURRENT_TIMESTAMP,updated_at TEXT DEFAULT CURRENT_TIMESTAMP," +
+                        "FOREIGN KEY(patient_id) REFERENCES patients(_id))",
+                "CREATE TABLE medications (_id INTEGER PRIMARY KEY AUTOINCREMENT,patient_id INTEGER NOT NULL," +
+                        "medication_name TEXT NOT NULL,generic_name TEXT,dosage TEXT,frequency TEXT,start_date TEXT," +
+                        "end_date TEXT,prescribed_by TEXT,instructions TEXT,side_effects TEXT," +
+                        "refills_remaining INTEGER DEFAULT 0,pharmacy_name TEXT,is_active INTEGER DEFAULT 1," +
+                        "created_at TEXT DEFAULT CURRENT_TIMESTAMP,updated_at TEXT DEFAULT CURRENT_TIMESTAMP," +
+                        "FOREIGN KEY(patient_id) REFERENCES patients(_id))")
+    }
+}
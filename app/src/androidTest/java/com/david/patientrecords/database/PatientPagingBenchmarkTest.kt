@@ -0,0 +1,139 @@
+package com.david.patientrecords.database
+
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures what the patient list costs before its first frame as the table grows from
+ * 100 to 100,000 patients.
+ *
+ * At each size a fresh PatientPagingSource loads its first page against an in-memory
+ * database. The test logs the time until that page is delivered and the Java heap the
+ * source holds, under PatientPagingBenchmark. It asserts that only one page is in memory
+ * at every size and that the retained heap stays under a fixed bound. Timings are only
+ * logged, since they depend on the device.
+ */
+@RunWith(AndroidJUnit4::class)
+class PatientPagingBenchmarkTest {
+
+    private lateinit var helper: DatabaseHelper
+    private lateinit var repository: PatientRepository
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        helper = DatabaseHelper(context, null, null)
+        repository = PatientRepository(helper)
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+    }
+
+    @Test
+    fun firstPageStaysFlatFrom100To100kPatients() {
+        val heaps = LongArray(SIZES.size)
+        for ((i, size) in SIZES.withIndex()) {
+            insertPatientsUpTo(size)
+
+            val timings = LongArray(RUNS)
+            var retained = 0L
+            for (run in 0 until RUNS) {
+                val heapBefore = usedHeap()
+                val start = SystemClock.elapsedRealtimeNanos()
+                val source = loadFirstPage()
+                timings[run] = SystemClock.elapsedRealtimeNanos() - start
+                retained = usedHeap() - heapBefore
+
+                assertEquals("Rows loaded at $size patients", PAGE_SIZE, source.loadedCount)
+                assertEquals("Rows shown at $size patients", activePatients(), source.itemCount)
+            }
+            heaps[i] = retained
+
+            timings.sort()
+            Log.d(TAG, "$size patients: first page median ${timings[RUNS / 2] / 1000} us, " +
+                    "min ${timings[0] / 1000} us, heap held ${retained / 1024} KB")
+        }
+
+        heaps.forEachIndexed { i, retained ->
+            assertTrue("Source held ${retained / 1024} KB at ${SIZES[i]} patients", retained < MAX_RETAINED_BYTES)
+        }
+    }
+
+    private fun loadFirstPage(): PatientPagingSource {
+        val loaded = CountDownLatch(1)
+        var error: Exception? = null
+        lateinit var source: PatientPagingSource
+        InstrumentationRegistry.getInstrumentation().runOnMainSync {
+            source = PatientPagingSource(repository, null, PAGE_SIZE, PREFETCH_DISTANCE,
+                    object : PatientPagingSource.Listener {
+                        override fun onRefreshed(totalCount: Int, unfilteredCount: Int) = loaded.countDown()
+
+                        override fun onLoadError(e: Exception) {
+                            error = e
+                            loaded.countDown()
+                        }
+                    })
+            source.refresh("", "all")
+        }
+        assertTrue("First page never arrived", loaded.await(30, TimeUnit.SECONDS))
+        error?.let { throw it }
+        return source
+    }
+
+    private fun insertPatientsUpTo(size: Int) {
+        val db = helper.writableDatabase
+        val existing = activePatients()
+        db.beginTransaction()
+        try {
+            val insert = db.compileStatement("INSERT INTO patients " +
+                    "(patient_name, age, gender, phone, blood_type, registration_date, is_active) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, 1)")
+            for (i in existing until size) {
+                insert.bindString(1, "Patient %06d".format((i * 7919L % 1_000_003).toInt()))
+                insert.bindLong(2, (18 + i % 80).toLong())
+                insert.bindString(3, if (i % 2 == 0) "Male" else "Female")
+                insert.bindString(4, "+1-555-%04d".format(i % 10_000))
+                insert.bindString(5, BLOOD_TYPES[i % BLOOD_TYPES.size])
+                insert.bindLong(6, 19_000L + i % 900)
+                insert.executeInsert()
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        repository.invalidateCaches()
+    }
+
+    private fun activePatients(): Int = repository.totalPatientsCount
+
+    private fun usedHeap(): Long {
+        val runtime = Runtime.getRuntime()
+        repeat(2) {
+            runtime.gc()
+            System.runFinalization()
+        }
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    companion object {
+        private const val TAG = "PatientPagingBenchmark"
+        private val SIZES = intArrayOf(100, 1_000, 10_000, 100_000)
+        private const val RUNS = 5
+        private const val PAGE_SIZE = 20
+        private const val PREFETCH_DISTANCE = 10
+        private const val MAX_RETAINED_BYTES = 2L * 1024 * 1024 // A page is a few KB, 100k patients would be tens of MB
+        private val BLOOD_TYPES = arrayOf("O+", "A+", "B-", "AB+")
+    }
+}
@@ -0,0 +1,118 @@
+package com.david.patientrecords.database
+
+import android.database.sqlite.SQLiteCursor
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.models.VitalObservation
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Checks that the repository's hot lookups are served by an index.
+ *
+ * The repository runs against an in-memory database whose cursor factory records the
+ * SQL of every query it builds. Each lookup's statements then go through EXPLAIN QUERY
+ * PLAN with their parameters unbound, and no step may scan a whole table. Scans of the
+ * full-text table through its own index are fine.
+ */
+@RunWith(AndroidJUnit4::class)
+class QueryPlanTest {
+
+    private val statements = ArrayList<String>()
+    private lateinit var helper: DatabaseHelper
+    private lateinit var repository: PatientRepository
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        helper = DatabaseHelper(context, null, SQLiteDatabase.CursorFactory { _, driver, editTable, query ->
+            synchronized(statements) {
+                statements.add(query.toString().removePrefix("SQLiteQuery: "))
+            }
+            SQLiteCursor(driver, editTable, query)
+        })
+        repository = PatientRepository(helper)
+        helper.writableDatabase // Creates the schema and sample data before anything is recorded
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+    }
+
+    @Test
+    fun hotLookupsUseIndexes() {
+        val today = DateCodec.todayEpochDay()
+        val lookups = linkedMapOf<String, () -> Unit>(
+                "getAllPatients" to { repository.allPatients },
+                "getPatientById" to { repository.getPatientById(PATIENT_ID) },
+                "getPatientsPage" to { repository.getPatientsPage(null, "all", null, 0, PAGE_SIZE) },
+                "getPatientsPage (next page)" to { repository.getPatientsPage(null, "recent", "M", 1, PAGE_SIZE) },
+                "getPatientsPage (search)" to { repository.getPatientsPage("john", "female", null, 0, PAGE_SIZE) },
+                "getPatientsPage (blood type)" to { repository.getPatientsPage("O+", "male", null, 0, PAGE_SIZE) },
+                "getPatientsCount" to { repository.getPatientsCount("john", "all") },
+                "searchPatients" to { repository.searchPatients("john") },
+                "getMedicalRecordsByPatientId" to { repository.getMedicalRecordsByPatientId(PATIENT_ID) },
+                "getMedicalRecordsPage" to { repository.getMedicalRecordsPage(PATIENT_ID, today, Long.MAX_VALUE, PAGE_SIZE) },
+                "getLatestMedicalRecord" to { repository.getLatestMedicalRecord(PATIENT_ID) },
+                "hasPatientMedicalRecords" to { repository.hasPatientMedicalRecords(PATIENT_ID) },
+                "getMedicationsByPatientId" to { repository.getMedicationsByPatientId(PATIENT_ID) },
+                "hasPatientActiveMedications" to { repository.hasPatientActiveMedications(PATIENT_ID) },
+                "getUpcomingFollowUps" to { repository.upcomingFollowUps },
+                "getPatientsWithUpcomingFollowUps" to { repository.patientsWithUpcomingFollowUps },
+                "getMedicationsExpiringInDays" to { repository.getMedicationsExpiringInDays(30) },
+                "getPatientSummaries" to { repository.getPatientSummaries(listOf(1L, 2L, 3L)) },
+                "getDashboardSnapshot" to { repository.dashboardSnapshot },
+                "getPatientCountByBloodType" to { repository.patientCountByBloodType },
+                "getReportSnapshot" to { repository.getReportSnapshot(12) },
+                "getVitalObservations" to {
+                    repository.getVitalObservations(PATIENT_ID, VitalObservation.METRIC_HEART_RATE, 0, Long.MAX_VALUE)
+                },
+                "getVitalSeries" to {
+                    repository.getVitalSeries(PATIENT_ID, VitalObservation.METRIC_HEART_RATE, 0, Long.MAX_VALUE, DAY_MS)
+                },
+                "getVitalMetrics" to { repository.getVitalMetrics(PATIENT_ID) }
+        )
+
+        val scans = ArrayList<String>()
+        for ((name, lookup) in lookups) {
+            val recorded = synchronized(statements) {
+                statements.clear()
+                lookup()
+                ArrayList(statements)
+            }
+            assertTrue("$name ran no query", recorded.isNotEmpty())
+            for (sql in recorded) {
+                fullTableScans(sql).forEach { scans.add("$name: $it <- $sql") }
+            }
+        }
+        assertTrue("Full table scans:\n" + scans.joinToString("\n"), scans.isEmpty())
+    }
+
+    // Older SQLite versions print "SCAN TABLE patients", newer ones "SCAN patients"
+    private fun fullTableScans(sql: String): List<String> {
+        val scans = ArrayList<String>()
+        helper.readableDatabase.rawQuery("EXPLAIN QUERY PLAN $sql", null).use {
+            val detail = it.getColumnIndexOrThrow("detail")
+            while (it.moveToNext()) {
+                val step = it.getString(detail)
+                if (step.startsWith("SCAN") && !step.contains("INDEX") && !step.contains("SUBQUERY") &&
+                        !step.contains("CONSTANT ROW")) {
+                    scans.add(step)
+                }
+            }
+        }
+        return scans
+    }
+
+    companion object {
+        private const val PATIENT_ID = 1L
+        private const val PAGE_SIZE = 20
+        private const val DAY_MS = 24L * 60 * 60 * 1000
+    }
+}
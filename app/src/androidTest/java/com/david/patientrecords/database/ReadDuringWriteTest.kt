@@ -0,0 +1,97 @@
+package com.david.patientrecords.database
+
+import android.content.Context
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.utils.Constants
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Checks that a read on the reader pool finishes while the writer lane holds a
+ * transaction open.
+ *
+ * A file-backed database with the balanced (write-ahead logging) profile gets an
+ * uncommitted insert from a task on DbExecutor's writer lane, which then waits. A count
+ * submitted to the reader lane must return within the timeout, without the pending
+ * row, while the write is still open. Under the rollback journal the same read would
+ * wait for the commit.
+ */
+@RunWith(AndroidJUnit4::class)
+class ReadDuringWriteTest {
+
+    private val context: Context = InstrumentationRegistry.getInstrumentation().targetContext
+    private val release = CountDownLatch(1)
+    private var savedProfile: String? = null
+    private lateinit var helper: DatabaseHelper
+
+    @Before
+    fun setUp() {
+        val prefs = context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE)
+        savedProfile = prefs.getString(Constants.PREF_STORAGE_PROFILE, null)
+        prefs.edit().putString(Constants.PREF_STORAGE_PROFILE, StorageProfile.BALANCED.name).commit()
+
+        context.deleteDatabase(DATABASE_NAME)
+        helper = DatabaseHelper(context, DATABASE_NAME, null)
+        assertTrue("Write-ahead logging is off", helper.writableDatabase.isWriteAheadLoggingEnabled)
+    }
+
+    @After
+    fun tearDown() {
+        release.countDown()
+        helper.close()
+        context.deleteDatabase(DATABASE_NAME)
+        context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(Constants.PREF_STORAGE_PROFILE, savedProfile).commit()
+    }
+
+    @Test
+    fun readerPoolReadsWhileWriterHoldsTransaction() {
+        val executor = DbExecutor.getInstance()
+        val before = countPatients()
+        val inTransaction = CountDownLatch(1)
+
+        val write = executor.submitWrite {
+            val db = helper.writableDatabase
+            db.beginTransaction()
+            try {
+                db.execSQL("INSERT INTO patients (patient_name, age, is_active) VALUES ('Pending', 30, 1)")
+                inTransaction.countDown()
+                release.await(WRITE_HOLD_SECONDS, TimeUnit.SECONDS)
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+        }
+        assertTrue("Writer never opened its transaction", inTransaction.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+
+        val duringWrite = AtomicLong(-1)
+        executor.submitRead { duringWrite.set(countPatients()) }.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        assertFalse("Write finished before the read", write.isDone)
+        assertEquals("Read saw the uncommitted row", before, duringWrite.get())
+
+        release.countDown()
+        write.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        assertEquals(before + 1, countPatients())
+    }
+
+    private fun countPatients(): Long =
+            helper.readableDatabase.rawQuery("SELECT COUNT(*) FROM patients", null).use {
+                it.moveToFirst()
+                it.getLong(0)
+            }
+
+    companion object {
+        private const val DATABASE_NAME = "read_during_write_test.db"
+        private const val TIMEOUT_SECONDS = 5L
+        private const val WRITE_HOLD_SECONDS = 30L // Longer than the read timeout, so a blocked read fails the test
+    }
+}
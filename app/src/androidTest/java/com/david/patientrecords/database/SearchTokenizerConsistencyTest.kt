@@ -0,0 +1,69 @@
+package com.david.patientrecords.database
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Checks that narrowing search results in memory matches what the full-text index returns.
+ *
+ * Names with accents, non-Latin scripts, punctuation, a no-break space and mixed case
+ * go into an in-memory patient_search table. For every query, the rows
+ * FullTextSearch.matchesAll accepts must be exactly the rows that the toMatchQuery
+ * expression matches in SQLite.
+ */
+@RunWith(AndroidJUnit4::class)
+class SearchTokenizerConsistencyTest {
+
+    private lateinit var db: SQLiteDatabase
+
+    @Before
+    fun setUp() {
+        db = SQLiteDatabase.create(null)
+        db.execSQL(DatabaseContract.SQL_CREATE_PATIENT_SEARCH_TABLE)
+        DOCUMENTS.forEachIndexed { i, name ->
+            db.execSQL("INSERT INTO patient_search (docid, name) VALUES (?, ?)", arrayOf(i + 1, name))
+        }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun inMemoryMatchesAgreeWithTheIndex() {
+        val tokens = DOCUMENTS.map { FullTextSearch.sortedTokens(it) }
+        for (query in QUERIES) {
+            val terms = FullTextSearch.tokenize(query)
+            val inMemory = tokens.indices.filter { FullTextSearch.matchesAll(tokens[it], terms) }.map { it + 1L }
+            assertEquals("Matches for '$query'", indexed(FullTextSearch.toMatchQuery(query)), inMemory)
+        }
+    }
+
+    private fun indexed(matchQuery: String?): List<Long> {
+        val ids = ArrayList<Long>()
+        if (matchQuery == null) {
+            return ids
+        }
+        db.rawQuery("SELECT docid FROM patient_search WHERE patient_search MATCH ? ORDER BY docid",
+                arrayOf(matchQuery)).use {
+            while (it.moveToNext()) ids.add(it.getLong(0))
+        }
+        return ids
+    }
+
+    companion object {
+        private val DOCUMENTS = listOf("Émile Zoë", "ÉMILE zoe", "O'Brien-Smith", "José-María García", "Straße 12b",
+                "İstanbul istanbul", "Ñoño niño", "日本語テキスト 東京", "Ümit_Öz", "abc def", "abc\u00A0def", "x–y",
+                "MÜLLER müller", "R2-D2", "😀smile", "Ærø Åse")
+        private val QUERIES = listOf("émile", "Émile", "ÉMI", "zo", "zoë", "o brien", "BRIEN", "josé maría", "jos",
+                "straße", "strasse", "12", "İst", "ist", "niño", "ñoño", "Ñoñ", "日本", "東", "ümit", "_öz", "öz",
+                "abc", "def", "abc def", "x", "y", "x–y", "müller", "MÜLLER", "mü", "r2 d2", "d2", "😀",
+                "smile", "ærø", "Ærø", "åse", "'", "---")
+    }
+}
@@ -0,0 +1,112 @@
+package com.david.patientrecords.database
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.david.patientrecords.models.MedicalRecord
+import com.david.patientrecords.models.Patient
+import com.david.patientrecords.models.VitalObservation
+import com.david.patientrecords.models.VitalSeries
+import com.david.patientrecords.utils.DateCodec
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Buckets a patient's readings with getVitalSeries.
+ *
+ * Records are written through the repository, so their vital signs text is parsed into
+ * vital_observations at the start of each visit day. A series of week-wide buckets from
+ * the first visit must hold only the patient's readings of the metric inside the range,
+ * with each bucket's start, minimum, maximum, average and count.
+ */
+@RunWith(AndroidJUnit4::class)
+class VitalSeriesQueryTest {
+
+    private lateinit var helper: DatabaseHelper
+    private lateinit var repository: PatientRepository
+    private var patientId = 0L
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        helper = DatabaseHelper(context, null, null)
+        repository = PatientRepository(helper)
+        patientId = repository.insertPatient(patient())
+    }
+
+    @After
+    fun tearDown() {
+        helper.close()
+    }
+
+    @Test
+    fun bucketsReadingsInsideTheRange() {
+        record(patientId, 0, "HR: 60, Temp: 37.0")
+        record(patientId, 1, "HR: 70")
+        record(patientId, 2, "HR: 80")
+        // Second bucket; a day into it so a daylight saving change cannot move it to the first
+        record(patientId, 8, "HR: 90")
+        // Past the end of the range
+        record(patientId, 20, "HR: 100")
+        // Another patient's readings are left out
+        record(repository.insertPatient(patient()), 1, "HR: 150")
+
+        val from = startOfDay(0)
+        val series = repository.getVitalSeries(patientId, VitalObservation.METRIC_HEART_RATE, from, startOfDay(14), WEEK)
+
+        assertEquals(VitalObservation.METRIC_HEART_RATE, series.metric)
+        assertEquals(WEEK, series.bucketMillis)
+        assertEquals(listOf("$from: 60.0-80.0 avg 70.0 x3", "${from + WEEK}: 90.0-90.0 avg 90.0 x1"), buckets(series))
+        assertEquals(4, series.totalCount)
+    }
+
+    @Test
+    fun rangeWithoutReadingsIsEmpty() {
+        record(patientId, 0, "HR: 60")
+
+        val series = repository.getVitalSeries(patientId, VitalObservation.METRIC_HEART_RATE,
+                startOfDay(1), startOfDay(14), WEEK)
+
+        assertTrue(series.isEmpty)
+        assertTrue(repository.getVitalSeries(patientId, VitalObservation.METRIC_SPO2,
+                startOfDay(0), startOfDay(14), WEEK).isEmpty)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsEmptyBuckets() {
+        repository.getVitalSeries(patientId, VitalObservation.METRIC_HEART_RATE, startOfDay(0), startOfDay(14), 0)
+    }
+
+    private fun buckets(series: VitalSeries) = (0 until series.size()).map {
+        "${series.getBucketStart(it)}: ${series.getMin(it)}-${series.getMax(it)} avg ${series.getAverage(it)} x${series.getCount(it)}"
+    }
+
+    // Readings are timed at the start of the visit day in local time
+    private fun startOfDay(day: Int) = DateCodec.toEpochMillis((FIRST_DAY + day) * 24 * 60 * 60)
+
+    private fun record(patientId: Long, day: Int, vitalSigns: String) {
+        repository.insertMedicalRecord(MedicalRecord().apply {
+            this.patientId = patientId
+            visitDay = FIRST_DAY + day
+            visitType = "Regular"
+            doctorName = "Dr. Smith"
+            this.vitalSigns = vitalSigns
+        })
+    }
+
+    private fun patient() = Patient().apply {
+        patientName = "Series Test"
+        age = 52
+        gender = "Female"
+        registrationDay = FIRST_DAY
+        isActive = true
+    }
+
+    companion object {
+        private const val FIRST_DAY = 19_788L // 2024-03-06
+        private const val WEEK = 7L * 24 * 60 * 60 * 1000
+    }
+}
@@ -12,8 +12,6 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
-import android.media.ExifInterface;
 import android.util.Log;
 import android.net.Uri;
 import android.os.Bundle;
@@ -41,18 +39,18 @@ import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 
 import com.david.patientrecords.R;
+import com.david.patientrecords.database.DbExecutor;
 import com.david.patientrecords.database.PatientRepository;
 import com.david.patientrecords.models.Patient;
 import com.david.patientrecords.utils.Constants;
 import com.david.patientrecords.utils.DateUtils;
+import com.david.patientrecords.utils.ImageIngestor;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -111,6 +109,7 @@ public class AddEditPatientActivity extends AppCompatActivity {
     // Image handling variables
     private Uri currentPhotoUri;
     private String currentPhotoPath;
+    private String cameraCapturePath; // Full-size camera output, deleted once it is ingested
     private ActivityResultLauncher<Intent> cameraLauncher;
     private ActivityResultLauncher<Intent> galleryLauncher;
     private ActivityResultLauncher<String[]> permissionLauncher;
@@ -434,7 +433,7 @@ public class AddEditPatientActivity extends AppCompatActivity {
                         photoFile);
 
                 Log.d(TAG, "Photo URI created: " + currentPhotoUri.toString());
-                Log.d(TAG, "Photo file path: " + currentPhotoPath);
+                Log.d(TAG, "Photo file path: " + cameraCapturePath);
 
                 cameraIntent.putExtra(MediaStore.EXTRA_OUTPUT, currentPhotoUri);
 
@@ -516,47 +515,65 @@ public class AddEditPatientActivity extends AppCompatActivity {
                 storageDir
         );
 
-        currentPhotoPath = image.getAbsolutePath();
+        cameraCapturePath = image.getAbsolutePath();
         return image;
     }
 
     private void handleCameraResult() {
         Log.d(TAG, "Handling camera result...");
 
-        if (currentPhotoUri != null && currentPhotoPath != null) {
-            try {
-                // Check if file exists
-                File imageFile = new File(currentPhotoPath);
-                if (!imageFile.exists()) {
-                    Log.e(TAG, "Camera image file does not exist: " + currentPhotoPath);
-                    Toast.makeText(this, "Camera image file not found", Toast.LENGTH_SHORT).show();
-                    return;
-                }
+        if (currentPhotoUri != null && cameraCapturePath != null) {
+            // Check if file exists
+            File imageFile = new File(cameraCapturePath);
+            if (!imageFile.exists() || imageFile.length() == 0) {
+                Log.e(TAG, "Camera image file does not exist: " + cameraCapturePath);
+                Toast.makeText(this, "Camera image file not found", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            Log.d(TAG, "Camera image file size: " + imageFile.length() + " bytes");
+            ingestPhoto(Uri.fromFile(imageFile), imageFile, "Photo captured successfully!");
+        } else {
+            Log.e(TAG, "Camera result: currentPhotoUri or cameraCapturePath is null");
+            Toast.makeText(this, "Error: No photo captured", Toast.LENGTH_SHORT).show();
+        }
+    }
 
-                Log.d(TAG, "Camera image file size: " + imageFile.length() + " bytes");
+    // Decode, orient, store and thumbnail the photo off the main thread; saving waits for it
+    private void ingestPhoto(Uri source, File captureFile, String successMessage) {
+        buttonSavePatient.setEnabled(false);
+        buttonSelectImage.setEnabled(false);
 
-                // Try to decode the image
-                Bitmap bitmap = BitmapFactory.decodeFile(currentPhotoPath);
-                if (bitmap != null) {
-                    Log.d(TAG, "Camera bitmap decoded successfully: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+        ImageIngestor.getInstance(this).ingest(source, new ImageIngestor.Listener() {
+            @Override
+            public void onIngested(ImageIngestor.IngestResult result) {
+                if (captureFile != null) {
+                    captureFile.delete();
+                }
+                if (isDestroyed()) {
+                    return;
+                }
+                buttonSavePatient.setEnabled(true);
+                buttonSelectImage.setEnabled(true);
 
-                    Bitmap processedBitmap = processImageBitmap(bitmap, currentPhotoPath);
-                    imagePatientProfile.setImageBitmap(processedBitmap);
-                    buttonSelectImage.setText("Change Photo");
+                currentPhotoPath = result.getImagePath();
+                imagePatientProfile.setImageBitmap(result.getThumbnail());
+                buttonSelectImage.setText("Change Photo");
+                Log.d(TAG, "Photo saved to: " + currentPhotoPath);
+                Toast.makeText(AddEditPatientActivity.this, successMessage, Toast.LENGTH_SHORT).show();
+            }
 
-                    Toast.makeText(this, "Photo captured successfully!", Toast.LENGTH_SHORT).show();
-                } else {
-                    Log.e(TAG, "Failed to decode camera image from: " + currentPhotoPath);
-                    Toast.makeText(this, "Failed to process captured photo", Toast.LENGTH_SHORT).show();
+            @Override
+            public void onFailed(Exception e) {
+                if (isDestroyed()) {
+                    return;
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing camera result", e);
-                Toast.makeText(this, "Error processing photo: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                buttonSavePatient.setEnabled(true);
+                buttonSelectImage.setEnabled(true);
+                Toast.makeText(AddEditPatientActivity.this, "Error processing photo: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show();
             }
-        } else {
-            Log.e(TAG, "Camera result: currentPhotoUri or currentPhotoPath is null");
-            Toast.makeText(this, "Error: No photo captured", Toast.LENGTH_SHORT).show();
-        }
+        });
     }
 
     @Override
@@ -639,113 +656,7 @@ public class AddEditPatientActivity extends AppCompatActivity {
             // Continue anyway, it might still work
         }
 
-        try {
-            InputStream inputStream = getContentResolver().openInputStream(imageUri);
-            if (inputStream == null) {
-                Log.e(TAG, "Could not open input stream for: " + imageUri);
-                Toast.makeText(this, "Could not access selected image", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-            inputStream.close();
-
-            if (bitmap != null) {
-                Log.d(TAG, "Gallery bitmap decoded successfully: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-
-                Bitmap processedBitmap = processImageBitmap(bitmap, null);
-                imagePatientProfile.setImageBitmap(processedBitmap);
-
-                // Save the processed image to internal storage
-                currentPhotoPath = saveImageToInternalStorage(processedBitmap);
-                if (currentPhotoPath != null) {
-                    Log.d(TAG, "Gallery image saved to: " + currentPhotoPath);
-                }
-
-                buttonSelectImage.setText("Change Photo");
-                Toast.makeText(this, "Photo selected successfully!", Toast.LENGTH_SHORT).show();
-            } else {
-                Log.e(TAG, "Failed to decode gallery image from: " + imageUri);
-                Toast.makeText(this, "Failed to process selected image", Toast.LENGTH_SHORT).show();
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "IOException loading gallery image", e);
-            Toast.makeText(this, "Error loading image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error loading gallery image", e);
-            Toast.makeText(this, "Unexpected error loading image", Toast.LENGTH_SHORT).show();
-        }
-    }
-
-    private Bitmap processImageBitmap(Bitmap originalBitmap, String imagePath) {
-        int maxSize = 512;
-        int originalWidth = originalBitmap.getWidth();
-        int originalHeight = originalBitmap.getHeight();
-
-        float ratio = Math.min(
-                (float) maxSize / originalWidth,
-                (float) maxSize / originalHeight
-        );
-
-        int newWidth = Math.round(originalWidth * ratio);
-        int newHeight = Math.round(originalHeight * ratio);
-
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(originalBitmap, newWidth, newHeight, true);
-
-        if (imagePath != null) {
-            resizedBitmap = rotateImageIfRequired(resizedBitmap, imagePath);
-        }
-
-        return resizedBitmap;
-    }
-
-    private Bitmap rotateImageIfRequired(Bitmap bitmap, String imagePath) {
-        try {
-            ExifInterface exif = new ExifInterface(imagePath);
-            int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    return rotateImage(bitmap, 90);
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    return rotateImage(bitmap, 180);
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    return rotateImage(bitmap, 270);
-                default:
-                    return bitmap;
-            }
-        } catch (IOException e) {
-            return bitmap;
-        }
-    }
-
-    private Bitmap rotateImage(Bitmap bitmap, float degrees) {
-        Matrix matrix = new Matrix();
-        matrix.postRotate(degrees);
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-    }
-
-    private String saveImageToInternalStorage(Bitmap bitmap) {
-        try {
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String filename = "patient_" + timeStamp + ".jpg";
-
-            File internalDir = new File(getFilesDir(), "patient_images");
-            if (!internalDir.exists()) {
-                internalDir.mkdirs();
-            }
-
-            File imageFile = new File(internalDir, filename);
-            FileOutputStream outputStream = new FileOutputStream(imageFile);
-
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, outputStream);
-            outputStream.flush();
-            outputStream.close();
-
-            return imageFile.getAbsolutePath();
-        } catch (IOException e) {
-            return null;
-        }
+        ingestPhoto(imageUri, null, "Photo selected successfully!");
     }
 
     private void getIntentData() {
@@ -787,15 +698,16 @@ public class AddEditPatientActivity extends AppCompatActivity {
     }
 
     private void loadPatientData() {
-        new Thread(() -> {
-            currentPatient = patientRepository.getPatientById(patientId);
-            if (currentPatient != null) {
-                runOnUiThread(() -> {
-                    populateForm(currentPatient);
-                    loadPatientImage(currentPatient.getImagePath());
-                });
-            }
-        }).start();
+        DbExecutor.getInstance().read(this,
+                () -> patientRepository.getPatientById(patientId),
+                patient -> {
+                    currentPatient = patient;
+                    if (currentPatient != null) {
+                        populateForm(currentPatient);
+                        loadPatientImage(currentPatient.getImagePath());
+                    }
+                },
+                null);
     }
 
     private void populateForm(Patient patient) {
@@ -925,19 +837,18 @@ public class AddEditPatientActivity extends AppCompatActivity {
         buttonSavePatient.setEnabled(false);
         buttonSavePatient.setText("Saving...");
 
-        new Thread(() -> {
-            try {
-                Patient patient = createPatientFromForm();
-
-                long result;
-                if (isEditMode && currentPatient != null) {
-                    patient.setId(currentPatient.getId());
-                    result = patientRepository.updatePatient(patient);
-                } else {
-                    result = patientRepository.insertPatient(patient);
-                }
+        // Build the patient on the UI thread, the writer lane only touches the database
+        Patient patient = createPatientFromForm();
+        boolean isUpdate = isEditMode && currentPatient != null;
+        if (isUpdate) {
+            patient.setId(currentPatient.getId());
+        }
 
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().write(this,
+                () -> isUpdate
+                        ? (long) patientRepository.updatePatient(patient)
+                        : patientRepository.insertPatient(patient),
+                result -> {
                     buttonSavePatient.setEnabled(true);
                     buttonSavePatient.setText("Save Patient");
 
@@ -951,15 +862,12 @@ public class AddEditPatientActivity extends AppCompatActivity {
                         Toast.makeText(this, "Error saving patient. Please try again.",
                                 Toast.LENGTH_LONG).show();
                     }
-                });
-            } catch (Exception e) {
-                runOnUiThread(() -> {
+                },
+                e -> {
                     buttonSavePatient.setEnabled(true);
                     buttonSavePatient.setText("Save Patient");
                     Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
                 });
-            }
-        }).start();
     }
 
     private Patient createPatientFromForm() {
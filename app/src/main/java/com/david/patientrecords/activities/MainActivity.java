@@ -1,14 +1,15 @@
 package com.david.patientrecords.activities;
 
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.text.format.DateUtils;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
-import android.view.LayoutInflater;
-import android.view.ViewGroup;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBarDrawerToggle;
@@ -21,6 +22,10 @@ import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
 import com.david.patientrecords.R;
+import com.david.patientrecords.database.BulkImporter;
+import com.david.patientrecords.database.DatabaseBackup;
+import com.david.patientrecords.database.DbExecutor;
+import com.david.patientrecords.database.ImageStore;
 import com.david.patientrecords.database.PatientRepository;
 import com.david.patientrecords.fragments.DashboardFragment;
 import com.david.patientrecords.fragments.PatientsFragment;
@@ -29,6 +34,10 @@ import com.david.patientrecords.utils.Constants;
 import com.google.android.material.navigation.NavigationView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
 public class MainActivity extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
 
     private static final String TAG = "MainActivity";
@@ -43,6 +52,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     // Data
     private PatientRepository patientRepository;
     private String currentFragmentTag = "dashboard";
+    private BulkImporter.Target pendingImportTarget; // Chosen before the file picker opens
 
     // Fragment tags
     private static final String FRAGMENT_DASHBOARD = "dashboard";
@@ -66,6 +76,10 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         // Load default fragment
         if (savedInstanceState == null) {
             loadFragment(new DashboardFragment(), FRAGMENT_DASHBOARD, "Dashboard");
+            // Reclaim photos no patient uses any more, at most once a day
+            ImageStore.getInstance(this).collectGarbageIfDue();
+            // Back up in the background at most once a day; saves keep working while it runs
+            DatabaseBackup.getInstance(this).backupIfDue();
         }
     }
 
@@ -253,11 +267,16 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     }
 
     private void showSettingsDialog() {
-        androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
-        builder.setTitle("Settings")
-                .setMessage("Settings functionality will be implemented in future updates.")
-                .setPositiveButton("OK", null)
-                .show();
+        ImageStore.getInstance(this).getUsageReport(this,
+                usage -> {
+                    androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
+                    builder.setTitle("Settings")
+                            .setMessage("Settings functionality will be implemented in future updates.\n\n" +
+                                    "Photo storage:\n" + usage.getSummary())
+                            .setPositiveButton("OK", null)
+                            .show();
+                },
+                e -> Toast.makeText(this, "Error loading storage usage", Toast.LENGTH_SHORT).show());
     }
 
     private void showAboutDialog() {
@@ -292,6 +311,10 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         } else if (itemId == R.id.action_backup) {
             showBackupDialog();
             return true;
+
+        } else if (itemId == R.id.action_import) {
+            showImportDialog();
+            return true;
         }
 
         return super.onOptionsItemSelected(item);
@@ -299,11 +322,9 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
     private void showNotificationsDialog() {
         // Get upcoming follow-ups and expiring medications
-        new Thread(() -> {
-            try {
-                int[] stats = patientRepository.getDashboardStats();
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().read(this,
+                () -> patientRepository.getDashboardStats(),
+                stats -> {
                     String message = "📊 Current Status:\n\n" +
                             "👥 Total Patients: " + stats[0] + "\n" +
                             "📋 Medical Records: " + stats[1] + "\n" +
@@ -315,23 +336,123 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                             .setMessage(message)
                             .setPositiveButton("OK", null)
                             .show();
-                });
-            } catch (Exception e) {
-                runOnUiThread(() -> {
-                    Toast.makeText(this, "Error loading notifications", Toast.LENGTH_SHORT).show();
-                });
-            }
-        }).start();
+                },
+                e -> Toast.makeText(this, "Error loading notifications", Toast.LENGTH_SHORT).show());
     }
 
     private void showBackupDialog() {
+        DatabaseBackup backup = DatabaseBackup.getInstance(this);
+        SharedPreferences prefs = getSharedPreferences(Constants.PREFS_NAME, MODE_PRIVATE);
+        long lastBackup = prefs.getLong(Constants.PREF_LAST_BACKUP, 0);
+
+        String message;
+        if (lastBackup == 0) {
+            message = "No backup has been made yet.";
+        } else {
+            message = "Last backup: " + DateUtils.getRelativeTimeSpanString(lastBackup) + "\n\n" +
+                    prefs.getString(Constants.PREF_LAST_BACKUP_SUMMARY, "");
+        }
+        message += "\n\n" + backup.getBackups().size() + " of the last " + Constants.BACKUP_GENERATIONS +
+                " backups are kept. You can keep working while a backup runs.";
+
         androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
         builder.setTitle("Backup Data")
-                .setMessage("Backup functionality will be implemented in future updates. Your data is automatically saved locally.")
-                .setPositiveButton("OK", null)
+                .setMessage(message)
+                .setPositiveButton("Back Up Now", (dialog, which) -> startBackup())
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    private void startBackup() {
+        // The backup can outlive this activity
+        Context appContext = getApplicationContext();
+        DatabaseBackup.Job job = DatabaseBackup.getInstance(this).start(new DatabaseBackup.Listener() {
+            @Override
+            public void onProgress(DatabaseBackup.Progress progress) {
+                // Runs in the background, the toasts mark start and end
+            }
+
+            @Override
+            public void onFinished(DatabaseBackup.BackupReport report) {
+                Toast.makeText(appContext, String.format(Locale.US,
+                        "Backup complete: %.1f MB in %.1fs", report.getCompressedBytes() / 1048576.0,
+                        report.getDurationMs() / 1000.0), Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                Toast.makeText(appContext, "Backup failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+
+        if (job == null) {
+            Toast.makeText(this, "A backup is already running", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, "Backup started", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void showImportDialog() {
+        String[] targets = {"Patients", "Medical Records", "Medications"};
+
+        androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
+        builder.setTitle("Import Data")
+                .setItems(targets, (dialog, which) -> {
+                    pendingImportTarget = BulkImporter.Target.values()[which];
+                    // CSV or JSON with the database column names, plain or gzip-compressed
+                    Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                    intent.addCategory(Intent.CATEGORY_OPENABLE);
+                    intent.setType("*/*");
+                    startActivityForResult(intent, Constants.REQUEST_IMPORT_FILE);
+                })
+                .setNegativeButton("Cancel", null)
                 .show();
     }
 
+    private void startImport(BulkImporter.Target target, Uri uri) {
+        InputStream input;
+        try {
+            input = getContentResolver().openInputStream(uri);
+        } catch (IOException | SecurityException e) {
+            input = null;
+        }
+        if (input == null) {
+            Toast.makeText(this, "Could not open the file", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String type = getContentResolver().getType(uri);
+        boolean json = (type != null && type.contains("json")) ||
+                uri.toString().toLowerCase(Locale.US).contains(".json");
+        // Importing the same file again resumes after the rows already committed
+        String jobId = target + ":" + uri;
+
+        // The import can outlive this activity
+        Context appContext = getApplicationContext();
+        new BulkImporter(this).start(jobId, target, json ? BulkImporter.Format.JSON : BulkImporter.Format.CSV,
+                input, new BulkImporter.Listener() {
+                    @Override
+                    public void onProgress(BulkImporter.Progress progress) {
+                        // Runs in the background, the toasts mark start and end
+                    }
+
+                    @Override
+                    public void onFinished(BulkImporter.ImportReport report) {
+                        Toast.makeText(appContext, String.format(Locale.US, "Import complete: %d imported, %d failed",
+                                report.getRowsImported(), report.getRowsFailed()), Toast.LENGTH_LONG).show();
+                        if (!isDestroyed()) {
+                            refreshCurrentFragment();
+                        }
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        Toast.makeText(appContext, "Import failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    }
+                });
+        Toast.makeText(this, "Import started", Toast.LENGTH_SHORT).show();
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -346,6 +467,11 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                     Toast.makeText(this, Constants.SUCCESS_PATIENT_UPDATED, Toast.LENGTH_SHORT).show();
                     refreshCurrentFragment();
                     break;
+                case Constants.REQUEST_IMPORT_FILE:
+                    if (data != null && data.getData() != null && pendingImportTarget != null) {
+                        startImport(pendingImportTarget, data.getData());
+                    }
+                    break;
             }
         }
     }
@@ -357,6 +483,8 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 ((DashboardFragment) currentFragment).refreshData();
             } else if (currentFragment instanceof PatientsFragment) {
                 ((PatientsFragment) currentFragment).refreshData();
+            } else if (currentFragment instanceof ReportsFragment) {
+                ((ReportsFragment) currentFragment).refreshData();
             }
         }
     }
@@ -394,15 +522,6 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         refreshCurrentFragment();
     }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        // Close database connections
-        if (patientRepository != null) {
-            patientRepository.close();
-        }
-    }
-
     // Helper method to get current fragment
     public String getCurrentFragmentTag() {
         return currentFragmentTag;
@@ -425,19 +544,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 break;
 
             case "reports":
-                // Create a simple placeholder fragment for now
-                Fragment reportsFragment = new Fragment() {
-                    @Override
-                    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-                        View view = inflater.inflate(android.R.layout.simple_list_item_1, container, false);
-                        TextView textView = view.findViewById(android.R.id.text1);
-                        textView.setText("Reports feature coming soon!");
-                        textView.setGravity(android.view.Gravity.CENTER);
-                        textView.setTextSize(18);
-                        return view;
-                    }
-                };
-                loadFragment(reportsFragment, "reports", "Reports");
+                loadFragment(new ReportsFragment(), "reports", "Reports");
                 navigationView.setCheckedItem(R.id.nav_reports);
                 break;
 
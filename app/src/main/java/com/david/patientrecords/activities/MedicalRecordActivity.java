@@ -21,6 +21,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.david.patientrecords.R;
 import com.david.patientrecords.adapters.MedicalRecordsAdapter;
+import com.david.patientrecords.database.DbExecutor;
 import com.david.patientrecords.database.PatientRepository;
 import com.david.patientrecords.models.MedicalRecord;
 import com.david.patientrecords.models.Patient;
@@ -199,26 +200,21 @@ public class MedicalRecordActivity extends AppCompatActivity implements MedicalR
     }
 
     private void loadPatientData() {
-        new Thread(() -> {
-            try {
-                currentPatient = patientRepository.getPatientById(patientId);
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().read(this,
+                () -> patientRepository.getPatientById(patientId),
+                patient -> {
+                    currentPatient = patient;
                     if (currentPatient != null) {
                         populatePatientInfo();
                     } else {
                         showError("Patient not found");
                         finish();
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> {
+                },
+                e -> {
                     showError("Error loading patient data: " + e.getMessage());
                     finish();
                 });
-            }
-        }).start();
     }
 
     private void populatePatientInfo() {
@@ -230,11 +226,9 @@ public class MedicalRecordActivity extends AppCompatActivity implements MedicalR
     }
 
     private void loadMedicalRecords() {
-        new Thread(() -> {
-            try {
-                List<MedicalRecord> records = patientRepository.getMedicalRecordsByPatientId(patientId);
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().read(this,
+                () -> patientRepository.getMedicalRecordsByPatientId(patientId),
+                records -> {
                     medicalRecords.clear();
                     medicalRecords.addAll(records);
                     medicalRecordsAdapter.updateRecords(medicalRecords);
@@ -247,35 +241,26 @@ public class MedicalRecordActivity extends AppCompatActivity implements MedicalR
                         textNoRecords.setVisibility(View.GONE);
                         recyclerMedicalRecords.setVisibility(View.VISIBLE);
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> showError("Error loading medical records"));
-            }
-        }).start();
+                },
+                e -> showError("Error loading medical records"));
     }
 
     private void loadRecordForEdit(long recordId) {
-        new Thread(() -> {
-            try {
-                currentRecord = patientRepository.getMedicalRecordById(recordId);
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().read(this,
+                () -> patientRepository.getMedicalRecordById(recordId),
+                record -> {
+                    currentRecord = record;
                     if (currentRecord != null) {
                         populateFormWithRecord();
                     } else {
                         showError("Medical record not found");
                         finish();
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> {
+                },
+                e -> {
                     showError("Error loading medical record");
                     finish();
                 });
-            }
-        }).start();
     }
 
     private void populateFormWithRecord() {
@@ -417,31 +402,27 @@ public class MedicalRecordActivity extends AppCompatActivity implements MedicalR
         buttonSaveRecord.setEnabled(false);
         buttonSaveRecord.setText(isEditMode ? "Updating..." : "Saving...");
 
-        new Thread(() -> {
-            try {
-                MedicalRecord record = isEditMode ? currentRecord : new MedicalRecord();
-
-                // Set record data
-                record.setPatientId(patientId);
-                record.setSymptoms(editSymptoms.getText().toString().trim());
-                record.setDiagnosis(editDiagnosis.getText().toString().trim());
-                record.setTreatment(editTreatment.getText().toString().trim());
-                record.setDoctorName(editDoctorName.getText().toString().trim());
-                record.setDoctorSpecialty(spinnerDoctorSpecialty.getSelectedItem().toString());
-                record.setVisitType(spinnerVisitType.getSelectedItem().toString());
-                record.setNotes(editNotes.getText().toString().trim());
-                record.setVitalSigns(editVitalSigns.getText().toString().trim());
-                record.setVisitDate(selectedVisitDate);
-                record.setFollowUpDate(selectedFollowUpDate);
-
-                long result;
-                if (isEditMode) {
-                    result = patientRepository.updateMedicalRecord(record);
-                } else {
-                    result = patientRepository.insertMedicalRecord(record);
-                }
-
-                runOnUiThread(() -> {
+        // Read the form on the UI thread, the writer lane only touches the database
+        MedicalRecord record = isEditMode ? currentRecord : new MedicalRecord();
+
+        // Set record data
+        record.setPatientId(patientId);
+        record.setSymptoms(editSymptoms.getText().toString().trim());
+        record.setDiagnosis(editDiagnosis.getText().toString().trim());
+        record.setTreatment(editTreatment.getText().toString().trim());
+        record.setDoctorName(editDoctorName.getText().toString().trim());
+        record.setDoctorSpecialty(spinnerDoctorSpecialty.getSelectedItem().toString());
+        record.setVisitType(spinnerVisitType.getSelectedItem().toString());
+        record.setNotes(editNotes.getText().toString().trim());
+        record.setVitalSigns(editVitalSigns.getText().toString().trim());
+        record.setVisitDate(selectedVisitDate);
+        record.setFollowUpDate(selectedFollowUpDate);
+
+        DbExecutor.getInstance().write(this,
+                () -> isEditMode
+                        ? (long) patientRepository.updateMedicalRecord(record)
+                        : patientRepository.insertMedicalRecord(record),
+                result -> {
                     buttonSaveRecord.setEnabled(true);
                     buttonSaveRecord.setText(isEditMode ? "Update Record" : "Save Record");
 
@@ -460,16 +441,12 @@ public class MedicalRecordActivity extends AppCompatActivity implements MedicalR
                     } else {
                         Toast.makeText(this, "Error saving medical record", Toast.LENGTH_SHORT).show();
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> {
+                },
+                e -> {
                     buttonSaveRecord.setEnabled(true);
                     buttonSaveRecord.setText(isEditMode ? "Update Record" : "Save Record");
                     Toast.makeText(this, "Error saving medical record: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 });
-            }
-        }).start();
     }
 
     private void clearForm() {
@@ -525,23 +502,17 @@ public class MedicalRecordActivity extends AppCompatActivity implements MedicalR
     }
 
     private void deleteMedicalRecord(MedicalRecord record) {
-        new Thread(() -> {
-            try {
-                int result = patientRepository.deleteMedicalRecord(record.getId());
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().write(this,
+                () -> patientRepository.deleteMedicalRecord(record.getId()),
+                result -> {
                     if (result > 0) {
                         Toast.makeText(this, "Medical record deleted", Toast.LENGTH_SHORT).show();
                         loadMedicalRecords(); // Refresh the list
                     } else {
                         showError("Failed to delete medical record");
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> showError("Error deleting medical record"));
-            }
-        }).start();
+                },
+                e -> showError("Error deleting medical record"));
     }
 
     @Override
@@ -580,12 +551,4 @@ public class MedicalRecordActivity extends AppCompatActivity implements MedicalR
             }
         }
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (patientRepository != null) {
-            patientRepository.close();
-        }
-    }
 }
\ No newline at end of file
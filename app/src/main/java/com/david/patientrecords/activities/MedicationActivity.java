@@ -20,7 +20,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.david.patientrecords.R;
-import com.david.patientrecords.database.PatientRepository;
+import com.david.patientrecords.database.AsyncPatientRepository;
 import com.david.patientrecords.models.Medication;
 import com.david.patientrecords.utils.DateUtils;
 import com.david.patientrecords.utils.ToastHelper;
@@ -28,6 +28,7 @@ import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
 import java.util.Calendar;
+import java.util.concurrent.CompletableFuture;
 
 public class MedicationActivity extends AppCompatActivity {
 
@@ -42,7 +43,7 @@ public class MedicationActivity extends AppCompatActivity {
     private TextView textPatientInfo;
 
     // Data
-    private PatientRepository patientRepository;
+    private AsyncPatientRepository asyncRepository;
     private long patientId;
     private String patientName;
     private boolean isEditMode = false;
@@ -58,7 +59,7 @@ public class MedicationActivity extends AppCompatActivity {
         setContentView(R.layout.activity_medication);
 
         // Initialize repository
-        patientRepository = PatientRepository.getInstance(this);
+        asyncRepository = AsyncPatientRepository.getInstance(this);
 
         // Get patient information from intent
         getPatientInfoFromIntent();
@@ -241,32 +242,35 @@ public class MedicationActivity extends AppCompatActivity {
             return;
         }
 
-        try {
-            // Create medication object
-            Medication medication = new Medication();
-            medication.setPatientId(patientId);
-            medication.setMedicationName(editMedicationName.getText().toString().trim());
-            medication.setDosage(editDosage.getText().toString().trim());
-            medication.setFrequency(spinnerFrequency.getSelectedItem().toString());
-            medication.setMedicationType(spinnerMedicationType.getSelectedItem().toString());
-            medication.setInstructions(editInstructions.getText().toString().trim());
-            medication.setPharmacy(editPharmacy.getText().toString().trim());
-            medication.setDoctorName(editDoctorName.getText().toString().trim());
-            medication.setNotes(editNotes.getText().toString().trim());
-            medication.setStartDate(DateUtils.formatDateForDatabase(startDateCalendar.getTime()));
-            medication.setEndDate(DateUtils.formatDateForDatabase(endDateCalendar.getTime()));
-            medication.setActive(true);
-
-            // Save to database
-            long result;
-            if (isEditMode && medicationId != -1) {
-                medication.setId(medicationId);
-                result = patientRepository.updateMedication(medication);
-                Log.d(TAG, "Updated medication, result: " + result);
-            } else {
-                result = patientRepository.insertMedication(medication);
-                Log.d(TAG, "Inserted medication, result: " + result);
-            }
+        // Create medication object
+        Medication medication = new Medication();
+        medication.setPatientId(patientId);
+        medication.setMedicationName(editMedicationName.getText().toString().trim());
+        medication.setDosage(editDosage.getText().toString().trim());
+        medication.setFrequency(spinnerFrequency.getSelectedItem().toString());
+        medication.setMedicationType(spinnerMedicationType.getSelectedItem().toString());
+        medication.setInstructions(editInstructions.getText().toString().trim());
+        medication.setPharmacy(editPharmacy.getText().toString().trim());
+        medication.setDoctorName(editDoctorName.getText().toString().trim());
+        medication.setNotes(editNotes.getText().toString().trim());
+        medication.setStartDate(DateUtils.formatDateForDatabase(startDateCalendar.getTime()));
+        medication.setEndDate(DateUtils.formatDateForDatabase(endDateCalendar.getTime()));
+        medication.setActive(true);
+
+        // Save to database on the writer lane
+        CompletableFuture<Long> save;
+        if (isEditMode && medicationId != -1) {
+            medication.setId(medicationId);
+            save = asyncRepository.updateMedication(medication).thenApply(Integer::longValue);
+        } else {
+            save = asyncRepository.insertMedication(medication);
+        }
+
+        buttonSave.setEnabled(false);
+        // Nothing is delivered once the activity is destroyed, the write itself still completes
+        AsyncPatientRepository.bind(this, save).thenAccept(result -> {
+            buttonSave.setEnabled(true);
+            Log.d(TAG, "Saved medication, result: " + result);
 
             if (result > 0) {
                 String message = isEditMode ? "Medication updated successfully!" : "Medication added successfully!";
@@ -282,11 +286,12 @@ public class MedicationActivity extends AppCompatActivity {
             } else {
                 ToastHelper.showError(this, "Failed to save medication");
             }
-
-        } catch (Exception e) {
+        }).exceptionally(e -> {
+            buttonSave.setEnabled(true);
             Log.e(TAG, "Error saving medication", e);
             ToastHelper.showError(this, "Error saving medication: " + e.getMessage());
-        }
+            return null;
+        });
     }
 
     private boolean validateInput() {
@@ -29,6 +29,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.david.patientrecords.R;
 import com.david.patientrecords.adapters.MedicalRecordsAdapter;
+import com.david.patientrecords.database.DbExecutor;
 import com.david.patientrecords.database.PatientRepository;
 import com.david.patientrecords.models.MedicalRecord;
 import com.david.patientrecords.models.Patient;
@@ -44,6 +45,7 @@ import com.david.patientrecords.utils.ToastHelper;
 import de.hdodenhof.circleimageview.CircleImageView;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public class PatientDetailActivity extends AppCompatActivity implements MedicalRecordsAdapter.OnMedicalRecordClickListener {
@@ -219,6 +221,12 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
     }
 
     private void setupMedicationsTab() {
+        // Reloads keep the adapter so only changed rows are rebound
+        if (medicationsAdapter != null) {
+            loadPatientMedications();
+            return;
+        }
+
         // Initialize medications list and adapter
         medicationsList = new ArrayList<>();
         medicationsAdapter = new MedicationsAdapter(this, medicationsList, new MedicationsAdapter.OnMedicationClickListener() {
@@ -287,18 +295,18 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
                 .create();
         loadingDialog.show();
 
-        // Generate PDF in background thread
-        new Thread(() -> {
-            try {
-                // Get all patient data
-                List<MedicalRecord> records = patientRepository.getMedicalRecordsByPatientId(patientId);
-                List<Medication> medications = patientRepository.getMedicationsByPatientId(patientId);
-
-                // Export to PDF
-                PdfExportUtils.ExportResult result = PdfExportUtils.exportPatientToPdf(
-                        this, currentPatient, records, medications);
-
-                runOnUiThread(() -> {
+        // Generate PDF on the database reader pool
+        DbExecutor.getInstance().read(this,
+                () -> {
+                    // Records are paged in while the report is laid out, long histories never load at once
+                    Iterator<MedicalRecord> records = patientRepository.iterateMedicalRecords(patientId,
+                            Constants.REPORT_RECORDS_PAGE_SIZE);
+                    List<Medication> medications = patientRepository.getMedicationsByPatientId(patientId);
+
+                    // Export to PDF
+                    return PdfExportUtils.exportPatientToPdf(this, currentPatient, records, medications);
+                },
+                result -> {
                     loadingDialog.dismiss();
 
                     if (result.success) {
@@ -318,15 +326,11 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
                                 .setPositiveButton("OK", null)
                                 .show();
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> {
+                },
+                e -> {
                     loadingDialog.dismiss();
                     ToastHelper.showError(this, "Error generating PDF: " + e.getMessage());
                 });
-            }
-        }).start();
     }
 
     // Add this method to share the generated PDF
@@ -407,12 +411,13 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
     }
 
     private void loadPatientData() {
-        new Thread(() -> {
-            try {
-                currentPatient = patientRepository.getPatientById(patientId);
-                medicalRecords = patientRepository.getMedicalRecordsByPatientId(patientId);
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().read(this,
+                () -> new PatientData(patientRepository.getPatientById(patientId),
+                        patientRepository.getMedicalRecordsByPatientId(patientId)),
+                data -> {
+                    // Fields are only assigned here, on the main thread that reads them
+                    currentPatient = data.patient;
+                    medicalRecords = data.medicalRecords;
                     if (currentPatient != null) {
                         populatePatientData();
                         setupMedicalRecordsRecyclerView();
@@ -421,15 +426,24 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
                         showError("Patient not found");
                         finish();
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> {
+                },
+                e -> {
                     showError("Error loading patient data: " + e.getMessage());
                     finish();
                 });
-            }
-        }).start();
+    }
+
+    /**
+     * What loadPatientData reads on a reader lane, handed to the main thread as one result
+     */
+    private static final class PatientData {
+        final Patient patient;
+        final List<MedicalRecord> medicalRecords;
+
+        PatientData(Patient patient, List<MedicalRecord> medicalRecords) {
+            this.patient = patient;
+            this.medicalRecords = medicalRecords;
+        }
     }
 
     private void populatePatientData() {
@@ -486,9 +500,14 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
     }
 
     private void setupMedicalRecordsRecyclerView() {
-        recyclerMedicalRecords.setLayoutManager(new LinearLayoutManager(this));
-        medicalRecordsAdapter = new MedicalRecordsAdapter(this, medicalRecords, false, this);
-        recyclerMedicalRecords.setAdapter(medicalRecordsAdapter);
+        // Reloads keep the adapter so only changed rows are rebound
+        if (medicalRecordsAdapter == null) {
+            recyclerMedicalRecords.setLayoutManager(new LinearLayoutManager(this));
+            medicalRecordsAdapter = new MedicalRecordsAdapter(this, medicalRecords, false, this);
+            recyclerMedicalRecords.setAdapter(medicalRecordsAdapter);
+        } else {
+            medicalRecordsAdapter.updateRecords(medicalRecords);
+        }
 
         // Show/hide empty state
         if (medicalRecords.isEmpty()) {
@@ -522,11 +541,9 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
     }
 
     private void loadPatientMedications() {
-        new Thread(() -> {
-            try {
-                List<Medication> medications = patientRepository.getMedicationsByPatientId(patientId);
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().read(this,
+                () -> patientRepository.getMedicationsByPatientId(patientId),
+                medications -> {
                     medicationsList.clear();
                     medicationsList.addAll(medications);
 
@@ -552,15 +569,8 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
                     }
 
                     Log.d(TAG, "Loaded " + medications.size() + " medications for patient " + patientId);
-                });
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading medications", e);
-                runOnUiThread(() -> {
-                    ToastHelper.showError(this, "Error loading medications");
-                });
-            }
-        }).start();
+                },
+                e -> ToastHelper.showError(this, "Error loading medications"));
     }
 
     private void showMedicationDetails(Medication medication) {
@@ -596,26 +606,17 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
     }
 
     private void deleteMedication(Medication medication) {
-        new Thread(() -> {
-            try {
-                int result = patientRepository.deactivateMedication(medication.getId());
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().write(this,
+                () -> patientRepository.deactivateMedication(medication.getId()),
+                result -> {
                     if (result > 0) {
                         ToastHelper.showSuccess(this, "Medication deleted successfully");
                         loadPatientMedications(); // Refresh the list
                     } else {
                         ToastHelper.showError(this, "Failed to delete medication");
                     }
-                });
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error deleting medication", e);
-                runOnUiThread(() -> {
-                    ToastHelper.showError(this, "Error deleting medication");
-                });
-            }
-        }).start();
+                },
+                e -> ToastHelper.showError(this, "Error deleting medication"));
     }
 
     private void editPatient() {
@@ -675,11 +676,9 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
     }
 
     private void deleteMedicalRecord(MedicalRecord record) {
-        new Thread(() -> {
-            try {
-                int result = patientRepository.deleteMedicalRecord(record.getId());
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().write(this,
+                () -> patientRepository.deleteMedicalRecord(record.getId()),
+                result -> {
                     if (result > 0) {
                         Toast.makeText(this, "Medical record deleted", Toast.LENGTH_SHORT).show();
                         // Refresh medical records
@@ -687,12 +686,8 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
                     } else {
                         showError("Failed to delete medical record");
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> showError("Error deleting medical record"));
-            }
-        }).start();
+                },
+                e -> showError("Error deleting medical record"));
     }
 
     @Override
@@ -732,11 +727,9 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
     }
 
     private void deletePatient() {
-        new Thread(() -> {
-            try {
-                int result = patientRepository.deletePatient(patientId);
-
-                runOnUiThread(() -> {
+        DbExecutor.getInstance().write(this,
+                () -> patientRepository.deletePatient(patientId),
+                result -> {
                     if (result > 0) {
                         Toast.makeText(this, Constants.SUCCESS_PATIENT_DELETED, Toast.LENGTH_SHORT).show();
                         setResult(RESULT_OK);
@@ -744,12 +737,8 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
                     } else {
                         showError("Failed to delete patient");
                     }
-                });
-
-            } catch (Exception e) {
-                runOnUiThread(() -> showError("Error deleting patient"));
-            }
-        }).start();
+                },
+                e -> showError("Error deleting patient"));
     }
 
     @Override
@@ -775,12 +764,4 @@ public class PatientDetailActivity extends AppCompatActivity implements MedicalR
             }
         }
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (patientRepository != null) {
-            patientRepository.close();
-        }
-    }
 }
\ No newline at end of file
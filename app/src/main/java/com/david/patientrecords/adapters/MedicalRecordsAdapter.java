@@ -7,10 +7,12 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.david.patientrecords.R;
 import com.david.patientrecords.models.MedicalRecord;
+import com.david.patientrecords.utils.ItemDiffs;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,7 +22,7 @@ public class MedicalRecordsAdapter extends RecyclerView.Adapter<MedicalRecordsAd
     private static final String TAG = "MedicalRecordsAdapter";
 
     private Context context;
-    private List<MedicalRecord> medicalRecords;
+    private final AsyncListDiffer<MedicalRecord> differ; // Diffs updates on a background thread
     private boolean isCompactMode;
     private OnMedicalRecordClickListener listener;
 
@@ -33,17 +35,17 @@ public class MedicalRecordsAdapter extends RecyclerView.Adapter<MedicalRecordsAd
 
     // Constructor
     public MedicalRecordsAdapter(Context context, List<MedicalRecord> records, boolean compact) {
-        this.context = context;
-        this.medicalRecords = records != null ? records : new ArrayList<>();
-        this.isCompactMode = compact;
+        this(context, records, compact, null);
     }
 
     // Constructor with listener
     public MedicalRecordsAdapter(Context context, List<MedicalRecord> records, boolean compact, OnMedicalRecordClickListener listener) {
         this.context = context;
-        this.medicalRecords = records != null ? records : new ArrayList<>();
+        this.differ = new AsyncListDiffer<>(this, ItemDiffs.MEDICAL_RECORD);
         this.isCompactMode = compact;
         this.listener = listener;
+        setHasStableIds(true);
+        updateRecords(records);
     }
 
     @NonNull
@@ -62,34 +64,41 @@ public class MedicalRecordsAdapter extends RecyclerView.Adapter<MedicalRecordsAd
 
     @Override
     public void onBindViewHolder(@NonNull MedicalRecordViewHolder holder, int position) {
-        MedicalRecord record = medicalRecords.get(position);
+        MedicalRecord record = differ.getCurrentList().get(position);
         holder.bind(record);
     }
 
     @Override
     public int getItemCount() {
-        return medicalRecords.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getId();
     }
 
     // Update the records list
     public void updateRecords(List<MedicalRecord> newRecords) {
-        this.medicalRecords = newRecords != null ? newRecords : new ArrayList<>();
-        notifyDataSetChanged();
+        // Copy so later changes to the caller's list cannot race the background diff
+        differ.submitList(newRecords != null ? new ArrayList<>(newRecords) : new ArrayList<>());
     }
 
     // Add a new record
     public void addRecord(MedicalRecord record) {
         if (record != null) {
-            medicalRecords.add(0, record); // Add to top
-            notifyItemInserted(0);
+            List<MedicalRecord> records = new ArrayList<>(differ.getCurrentList());
+            records.add(0, record); // Add to top
+            differ.submitList(records);
         }
     }
 
     // Remove a record
     public void removeRecord(int position) {
-        if (position >= 0 && position < medicalRecords.size()) {
-            medicalRecords.remove(position);
-            notifyItemRemoved(position);
+        if (position >= 0 && position < getItemCount()) {
+            List<MedicalRecord> records = new ArrayList<>(differ.getCurrentList());
+            records.remove(position);
+            differ.submitList(records);
         }
     }
 
@@ -126,15 +135,17 @@ public class MedicalRecordsAdapter extends RecyclerView.Adapter<MedicalRecordsAd
             layoutDetails = itemView.findViewById(R.id.layout_details);
 
             // Set click listeners
+            // Rows are looked up when clicked, a diff may have moved or replaced them since binding
             itemView.setOnClickListener(v -> {
-                if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onMedicalRecordClick(medicalRecords.get(getAdapterPosition()));
+                MedicalRecord record = getRecord(getBindingAdapterPosition());
+                if (listener != null && record != null) {
+                    listener.onMedicalRecordClick(record);
                 }
             });
 
             itemView.setOnLongClickListener(v -> {
-                if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    showContextMenu(v, getAdapterPosition());
+                if (listener != null && getBindingAdapterPosition() != RecyclerView.NO_POSITION) {
+                    showContextMenu(v);
                 }
                 return true;
             });
@@ -256,7 +267,7 @@ public class MedicalRecordsAdapter extends RecyclerView.Adapter<MedicalRecordsAd
             }
         }
 
-        private void showContextMenu(View view, int position) {
+        private void showContextMenu(View view) {
             // Create a simple context menu
             android.widget.PopupMenu popup = new android.widget.PopupMenu(context, view);
 
@@ -265,7 +276,10 @@ public class MedicalRecordsAdapter extends RecyclerView.Adapter<MedicalRecordsAd
             popup.getMenu().add(0, 2, 0, "Delete");
 
             popup.setOnMenuItemClickListener(item -> {
-                MedicalRecord record = medicalRecords.get(position);
+                MedicalRecord record = getRecord(getBindingAdapterPosition());
+                if (record == null) {
+                    return false;
+                }
                 switch (item.getItemId()) {
                     case 1: // Edit
                         if (listener != null) {
@@ -287,19 +301,19 @@ public class MedicalRecordsAdapter extends RecyclerView.Adapter<MedicalRecordsAd
 
     // Helper method to check if records list is empty
     public boolean isEmpty() {
-        return medicalRecords.isEmpty();
+        return differ.getCurrentList().isEmpty();
     }
 
     // Helper method to get record at position
     public MedicalRecord getRecord(int position) {
-        if (position >= 0 && position < medicalRecords.size()) {
-            return medicalRecords.get(position);
+        if (position >= 0 && position < getItemCount()) {
+            return differ.getCurrentList().get(position);
         }
         return null;
     }
 
     // Helper method to get all records
     public List<MedicalRecord> getAllRecords() {
-        return new ArrayList<>(medicalRecords);
+        return new ArrayList<>(differ.getCurrentList());
     }
 }
\ No newline at end of file
@@ -8,18 +8,22 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.david.patientrecords.R;
 import com.david.patientrecords.models.Medication;
+import com.david.patientrecords.utils.DateCodec;
 import com.david.patientrecords.utils.DateUtils;
+import com.david.patientrecords.utils.ItemDiffs;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class MedicationsAdapter extends RecyclerView.Adapter<MedicationsAdapter.MedicationViewHolder> {
 
     private Context context;
-    private List<Medication> medications;
+    private final AsyncListDiffer<Medication> differ; // Diffs updates on a background thread
     private OnMedicationClickListener listener;
 
     public interface OnMedicationClickListener {
@@ -30,8 +34,10 @@ public class MedicationsAdapter extends RecyclerView.Adapter<MedicationsAdapter.
 
     public MedicationsAdapter(Context context, List<Medication> medications, OnMedicationClickListener listener) {
         this.context = context;
-        this.medications = medications;
+        this.differ = new AsyncListDiffer<>(this, ItemDiffs.MEDICATION);
         this.listener = listener;
+        setHasStableIds(true);
+        updateMedications(medications);
     }
 
     @NonNull
@@ -43,18 +49,23 @@ public class MedicationsAdapter extends RecyclerView.Adapter<MedicationsAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull MedicationViewHolder holder, int position) {
-        Medication medication = medications.get(position);
+        Medication medication = differ.getCurrentList().get(position);
         holder.bind(medication);
     }
 
     @Override
     public int getItemCount() {
-        return medications.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getId();
     }
 
     public void updateMedications(List<Medication> newMedications) {
-        this.medications = newMedications;
-        notifyDataSetChanged();
+        // Copy so later changes to the caller's list cannot race the background diff
+        differ.submitList(newMedications != null ? new ArrayList<>(newMedications) : new ArrayList<>());
     }
 
     class MedicationViewHolder extends RecyclerView.ViewHolder {
@@ -85,6 +96,29 @@ public class MedicationsAdapter extends RecyclerView.Adapter<MedicationsAdapter.
             layoutInstructions = itemView.findViewById(R.id.layout_instructions);
             layoutPharmacyInfo = itemView.findViewById(R.id.layout_pharmacy_info);
             buttonMoreOptions = itemView.findViewById(R.id.button_more_options);
+
+            // Rows are looked up when clicked, a diff may have moved or replaced them since binding
+            itemView.setOnClickListener(v -> {
+                Medication medication = getCurrentMedication();
+                if (listener != null && medication != null) {
+                    listener.onMedicationClick(medication);
+                }
+            });
+
+            if (buttonMoreOptions != null) {
+                buttonMoreOptions.setOnClickListener(v -> {
+                    Medication medication = getCurrentMedication();
+                    if (listener != null && medication != null) {
+                        listener.onMedicationEdit(medication);
+                    }
+                });
+            }
+        }
+
+        private Medication getCurrentMedication() {
+            int position = getBindingAdapterPosition();
+            List<Medication> medications = differ.getCurrentList();
+            return position >= 0 && position < medications.size() ? medications.get(position) : null;
         }
 
         public void bind(Medication medication) {
@@ -124,8 +158,8 @@ public class MedicationsAdapter extends RecyclerView.Adapter<MedicationsAdapter.
             }
 
             // Start date
-            if (medication.getStartDate() != null) {
-                textStartDate.setText(DateUtils.formatDateForDisplay(medication.getStartDate()));
+            if (medication.getStartDay() != DateCodec.INVALID) {
+                textStartDate.setText(DateUtils.formatDateForDisplay(medication.getStartDay()));
             } else {
                 textStartDate.setText("No date");
             }
@@ -147,8 +181,8 @@ public class MedicationsAdapter extends RecyclerView.Adapter<MedicationsAdapter.
             }
 
             // End date
-            if (medication.getEndDate() != null && !medication.getEndDate().isEmpty()) {
-                textEndDate.setText("Ends: " + DateUtils.formatDateForDisplay(medication.getEndDate()));
+            if (medication.getEndDay() != DateCodec.INVALID) {
+                textEndDate.setText("Ends: " + DateUtils.formatDateForDisplay(medication.getEndDay()));
                 textEndDate.setVisibility(View.VISIBLE);
             } else {
                 textEndDate.setVisibility(View.GONE);
@@ -161,21 +195,6 @@ public class MedicationsAdapter extends RecyclerView.Adapter<MedicationsAdapter.
             } else {
                 layoutPharmacyInfo.setVisibility(View.GONE);
             }
-
-            // Click listeners
-            itemView.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onMedicationClick(medication);
-                }
-            });
-
-            if (buttonMoreOptions != null) {
-                buttonMoreOptions.setOnClickListener(v -> {
-                    if (listener != null) {
-                        listener.onMedicationEdit(medication);
-                    }
-                });
-            }
         }
     }
 }
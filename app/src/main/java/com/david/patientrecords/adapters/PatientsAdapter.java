@@ -1,6 +1,5 @@
 package com.david.patientrecords.adapters;
 
-import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.Intent;
@@ -19,14 +18,21 @@ import android.widget.Toast;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.david.patientrecords.R;
 import com.david.patientrecords.activities.AddEditPatientActivity;
 import com.david.patientrecords.activities.PatientDetailActivity;
 import com.david.patientrecords.activities.MedicalRecordActivity;
+import com.david.patientrecords.database.DbExecutor;
+import com.david.patientrecords.database.PatientPagingSource;
 import com.david.patientrecords.database.PatientRepository;
 import com.david.patientrecords.models.Patient;
+import com.david.patientrecords.models.PatientSummary;
+import com.david.patientrecords.utils.AvatarCache;
 import com.david.patientrecords.utils.Constants;
 import com.david.patientrecords.utils.DateUtils;
 import com.david.patientrecords.utils.ImageUtils;
@@ -42,11 +48,11 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
     private static final String TAG = "PatientsAdapter";
 
     private Context context;
-    private List<Patient> patients;
-    private List<Patient> patientsFiltered; // For search functionality
+    private final PatientPagingSource pagingSource; // Keyset-paged rows, null until loaded
     private PatientRepository patientRepository;
     private OnPatientClickListener onPatientClickListener;
     private int lastPosition = -1; // For animation
+    private int avatarSize = Constants.DEFAULT_AVATAR_SIZE; // Size the last row drew its avatar at, pages are pre-warmed at it
 
     // Interface for handling clicks
     public interface OnPatientClickListener {
@@ -57,12 +63,15 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
         void onAddMedicalRecord(Patient patient);
     }
 
-    public PatientsAdapter(Context context, List<Patient> patients, OnPatientClickListener listener) {
+    public PatientsAdapter(Context context, PatientPagingSource pagingSource, OnPatientClickListener listener) {
         this.context = context;
-        this.patients = patients != null ? patients : new ArrayList<>();
-        this.patientsFiltered = new ArrayList<>(this.patients);
+        this.pagingSource = pagingSource;
         this.onPatientClickListener = listener;
         this.patientRepository = PatientRepository.getInstance(context);
+
+        // Page loads and refresh diffs notify only the rows they touch
+        setHasStableIds(true);
+        pagingSource.setUpdateCallback(new PrewarmingUpdateCallback(new AdapterListUpdateCallback(this)));
     }
 
     @NonNull
@@ -74,9 +83,17 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
 
     @Override
     public void onBindViewHolder(@NonNull PatientViewHolder holder, int position) {
-        Patient patient = patientsFiltered.get(position);
+        Patient patient = pagingSource.getItem(position);
+        pagingSource.onItemBound(position);
+
+        // Row not loaded yet, show a placeholder until its page arrives
+        if (patient == null) {
+            holder.bindPlaceholder();
+            return;
+        }
 
         // Load patient image with fallback to initials
+        avatarSize = ImageUtils.getInitialsAvatarSize(holder.imagePatientProfile);
         ImageUtils.loadPatientImageWithFallback(
                 holder.itemView.getContext(),
                 patient.getImagePath(),
@@ -107,21 +124,88 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
             holder.chipAllergies.setVisibility(View.GONE);
         }
 
-        // Set click listeners
+        // Set click listeners, looking the row up when clicked rather than keeping the bound patient
         holder.buttonCallPatient.setOnClickListener(v -> {
+            Patient current = getPatientAt(holder.getBindingAdapterPosition());
+            if (current == null) {
+                return;
+            }
             // Call patient
             Intent callIntent = new Intent(Intent.ACTION_DIAL);
-            callIntent.setData(Uri.parse("tel:" + patient.getPhone()));
+            callIntent.setData(Uri.parse("tel:" + current.getPhone()));
             holder.itemView.getContext().startActivity(callIntent);
         });
 
         holder.buttonMoreOptions.setOnClickListener(v -> {
-            showMoreOptionsMenu(v, patient, position);
+            int current = holder.getBindingAdapterPosition();
+            Patient currentPatient = getPatientAt(current);
+            if (currentPatient != null) {
+                showMoreOptionsMenu(v, currentPatient, current);
+            }
         });
         // Add animation
         setAnimation(holder.itemView, position);
     }
 
+    @Override
+    public void onViewRecycled(@NonNull PatientViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.cancelExpandableLoad();
+        ImageUtils.cancelPatientImageLoad(context, holder.imagePatientProfile);
+    }
+
+    // Forwards row changes to the adapter, first pre-warming the avatars of rows that were just loaded
+    private class PrewarmingUpdateCallback implements ListUpdateCallback {
+        private final ListUpdateCallback delegate;
+
+        PrewarmingUpdateCallback(ListUpdateCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            prewarmAvatars(position, count);
+            delegate.onInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            delegate.onRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            delegate.onMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            prewarmAvatars(position, count);
+            delegate.onChanged(position, count, payload);
+        }
+    }
+
+    // Placeholder rows in the range are skipped, their page has not arrived yet
+    private void prewarmAvatars(int position, int count) {
+        int end = Math.min(position + count, pagingSource.getLoadedCount());
+        if (end <= position) {
+            return;
+        }
+        List<String> names = new ArrayList<>(end - position);
+        for (int i = position; i < end; i++) {
+            Patient patient = pagingSource.getItem(i);
+            if (patient != null) {
+                names.add(patient.getName());
+            }
+        }
+        AvatarCache.getInstance().prewarm(names, avatarSize);
+    }
+
+    // Database callbacks are dropped once the hosting activity is destroyed
+    private LifecycleOwner getLifecycleOwner() {
+        return context instanceof LifecycleOwner ? (LifecycleOwner) context : null;
+    }
+
     private void showMoreOptionsMenu(View view, Patient patient, int position) {
         PopupMenu popup = new PopupMenu(view.getContext(), view);
 
@@ -161,36 +245,28 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
                 .setMessage("Are you sure you want to delete " + patient.getName() + "?\n\nThis action cannot be undone.")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     // Delete patient from database
-                    new Thread(() -> {
-                        try {
-                            // Delete associated image file if exists
-                            if (patient.getImagePath() != null && !patient.getImagePath().isEmpty()) {
-                                File imageFile = new File(patient.getImagePath());
-                                if (imageFile.exists()) {
-                                    imageFile.delete();
+                    DbExecutor.getInstance().write(getLifecycleOwner(),
+                            () -> {
+                                // Delete associated image file if exists
+                                if (patient.getImagePath() != null && !patient.getImagePath().isEmpty()) {
+                                    File imageFile = new File(patient.getImagePath());
+                                    if (imageFile.exists()) {
+                                        imageFile.delete();
+                                    }
                                 }
-                            }
 
-                            // Delete from database
-                            patientRepository.deletePatient(patient.getId());
-
-                            // Update UI on main thread
-                            ((Activity) context).runOnUiThread(() -> {
-                                patientsFiltered.remove(position);
-                                patients.remove(patient);
-                                notifyItemRemoved(position);
-                                notifyItemRangeChanged(position, patientsFiltered.size());
+                                // Delete from database
+                                return patientRepository.deletePatient(patient.getId());
+                            },
+                            result -> {
+                                // The list may have changed while the delete was queued
+                                pagingSource.remove(patient);
 
                                 Toast.makeText(context, patient.getName() + " deleted successfully",
                                         Toast.LENGTH_SHORT).show();
-                            });
-                        } catch (Exception e) {
-                            ((Activity) context).runOnUiThread(() -> {
-                                Toast.makeText(context, "Error deleting patient: " + e.getMessage(),
-                                        Toast.LENGTH_LONG).show();
-                            });
-                        }
-                    }).start();
+                            },
+                            e -> Toast.makeText(context, "Error deleting patient: " + e.getMessage(),
+                                    Toast.LENGTH_LONG).show());
                 })
                 .setNegativeButton("Cancel", null)
                 .setIcon(R.drawable.ic_warning)
@@ -199,7 +275,20 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
 
     @Override
     public int getItemCount() {
-        return patientsFiltered.size();
+        return pagingSource.getItemCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Patient patient = pagingSource.getItem(position);
+        if (patient != null) {
+            return patient.getId();
+        }
+        // Placeholders are keyed by their slot among the rows not loaded yet, counted from the
+        // loaded end. Removing a loaded row shifts their positions but not their ids, and a page
+        // load re-keys them only together with the change it dispatches for them. Negative ids
+        // never collide with a patient _ID.
+        return -(position - pagingSource.getLoadedCount() + 1);
     }
 
     // Animation for smooth card appearance
@@ -211,34 +300,6 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
         }
     }
 
-    // Update patient list
-    public void updatePatients(List<Patient> newPatients) {
-        this.patients = newPatients != null ? newPatients : new ArrayList<>();
-        this.patientsFiltered = new ArrayList<>(this.patients);
-        notifyDataSetChanged();
-    }
-
-    // Filter patients based on search query
-    public void filter(String searchText) {
-        patientsFiltered.clear();
-
-        if (searchText.isEmpty()) {
-            patientsFiltered.addAll(patients);
-        } else {
-            String filterPattern = searchText.toLowerCase().trim();
-
-            for (Patient patient : patients) {
-                if (patient.getPatientName().toLowerCase().contains(filterPattern) ||
-                        (patient.getPhone() != null && patient.getPhone().contains(filterPattern)) ||
-                        (patient.getBloodType() != null && patient.getBloodType().toLowerCase().contains(filterPattern))) {
-                    patientsFiltered.add(patient);
-                }
-            }
-        }
-
-        notifyDataSetChanged();
-    }
-
     // Item decoration for card spacing
     public static class PatientCardItemDecoration extends RecyclerView.ItemDecoration {
         private final int spacing;
@@ -287,6 +348,7 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
         private com.google.android.material.button.MaterialButton buttonAddRecord;
 
         private boolean isExpanded = false;
+        private DbExecutor.Job expandableJob;
 
         public PatientViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -346,8 +408,10 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
 
             // Call button click
             buttonCallPatient.setOnClickListener(v -> {
-                Patient patient = patientsFiltered.get(getAdapterPosition());
-                makePhoneCall(patient.getPhone());
+                Patient patient = getPatientAt(getBindingAdapterPosition());
+                if (patient != null) {
+                    makePhoneCall(patient.getPhone());
+                }
             });
 
             // More options button click
@@ -358,7 +422,10 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
             // View details button click (in expandable section) - This opens profile
             if (buttonViewDetails != null) {
                 buttonViewDetails.setOnClickListener(v -> {
-                    Patient patient = patientsFiltered.get(getAdapterPosition());
+                    Patient patient = getPatientAt(getBindingAdapterPosition());
+                    if (patient == null) {
+                        return;
+                    }
                     Intent intent = new Intent(context, PatientDetailActivity.class);
                     intent.putExtra("patient_id", patient.getId());
                     intent.putExtra("patient_name", patient.getName());
@@ -369,13 +436,34 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
             // Add record button click (in expandable section)
             if (buttonAddRecord != null) {
                 buttonAddRecord.setOnClickListener(v -> {
-                    Patient patient = patientsFiltered.get(getAdapterPosition());
+                    Patient patient = getPatientAt(getBindingAdapterPosition());
+                    if (patient == null) {
+                        return;
+                    }
                     Toast.makeText(context, "Add medical record for " + patient.getName(), Toast.LENGTH_SHORT).show();
                 });
             }
         }
 
 
+        void bindPlaceholder() {
+            cancelExpandableLoad();
+            ImageUtils.cancelPatientImageLoad(context, imagePatientProfile);
+            itemView.clearAnimation();
+
+            textPatientName.setText("Loading…");
+            textPatientAge.setText("");
+            textPatientGender.setText("");
+            textBloodType.setText("");
+            textPatientPhone.setText("");
+            textRegistrationDate.setText("");
+            imagePatientProfile.setImageDrawable(null);
+            chipMedicalConditions.setVisibility(View.GONE);
+            chipAllergies.setVisibility(View.GONE);
+            buttonCallPatient.setOnClickListener(null);
+            buttonMoreOptions.setOnClickListener(null);
+        }
+
         public void bind(Patient patient) {
             // Basic patient information
             textPatientName.setText(patient.getPatientName());
@@ -386,7 +474,7 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
             textPatientId.setText("#" + String.format("%03d", patient.getId()));
 
             // Registration date
-            String registrationDate = DateUtils.formatDateForDisplay(patient.getRegistrationDate());
+            String registrationDate = DateUtils.formatDateForDisplay(patient.getRegistrationDay());
             textRegistrationDate.setText("Registered: " + registrationDate);
 
             // Set patient profile image with fallback
@@ -430,59 +518,41 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
         }
 
         private void loadExpandableData(Patient patient) {
-            // Load data in background thread
-            new Thread(() -> {
-                try {
-                    // Get medical records count
-                    int recordsCount = 0;
-                    try {
-                        recordsCount = patientRepository.getMedicalRecordsByPatientId(patient.getId()).size();
-                    } catch (Exception e) {
-                        // Method might not exist yet
-                    }
-
-                    // Get medications count
-                    int medicationsCount = 0;
-                    try {
-                        medicationsCount = patientRepository.getMedicationsByPatientId(patient.getId()).size();
-                    } catch (Exception e) {
-                        // Method might not exist yet
-                    }
+            // Drop any load still queued for the patient this holder showed before
+            cancelExpandableLoad();
 
-                    // Get last visit info
-                    String lastVisit = "No visits";
-                    try {
-                        var latestRecord = patientRepository.getLatestMedicalRecord(patient.getId());
-                        if (latestRecord != null) {
-                            lastVisit = DateUtils.getRelativeTimeString(latestRecord.getVisitDate());
-                        }
-                    } catch (Exception e) {
-                        // Method might not exist yet
-                    }
+            // Summaries are loaded with each page, so this is normally a cache hit
+            PatientSummary cached = patientRepository.getCachedPatientSummary(patient.getId());
+            if (cached != null) {
+                showSummary(cached);
+                return;
+            }
 
-                    // Update UI on main thread
-                    final int finalRecordsCount = recordsCount;
-                    final int finalMedicationsCount = medicationsCount;
-                    final String finalLastVisit = lastVisit;
+            expandableJob = DbExecutor.getInstance().read(getLifecycleOwner(),
+                    () -> patientRepository.getPatientSummary(patient.getId()),
+                    this::showSummary,
+                    null);
+        }
 
-                    if (context instanceof android.app.Activity) {
-                        ((android.app.Activity) context).runOnUiThread(() -> {
-                            if (textRecordsCount != null) {
-                                textRecordsCount.setText(String.valueOf(finalRecordsCount));
-                            }
-                            if (textMedicationsCount != null) {
-                                textMedicationsCount.setText(String.valueOf(finalMedicationsCount));
-                            }
-                            if (textLastVisit != null) {
-                                textLastVisit.setText(finalLastVisit);
-                            }
-                        });
-                    }
+        private void showSummary(PatientSummary summary) {
+            if (textRecordsCount != null) {
+                textRecordsCount.setText(String.valueOf(summary.getRecordCount()));
+            }
+            if (textMedicationsCount != null) {
+                textMedicationsCount.setText(String.valueOf(summary.getActiveMedicationCount()));
+            }
+            if (textLastVisit != null) {
+                textLastVisit.setText(summary.hasVisits()
+                        ? DateUtils.getRelativeTimeString(summary.getLastVisitDay())
+                        : "No visits");
+            }
+        }
 
-                } catch (Exception e) {
-                    // Handle error silently
-                }
-            }).start();
+        void cancelExpandableLoad() {
+            if (expandableJob != null) {
+                expandableJob.cancel();
+                expandableJob = null;
+            }
         }
 
         private void toggleExpansion() {
@@ -506,8 +576,10 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
                         .start();
 
                 // Load expandable data
-                Patient patient = patientsFiltered.get(getAdapterPosition());
-                loadExpandableData(patient);
+                Patient patient = getPatientAt(getBindingAdapterPosition());
+                if (patient != null) {
+                    loadExpandableData(patient);
+                }
 
             } else {
                 Log.d("PatientsAdapter", "📉 HIDING expandable section");
@@ -540,7 +612,10 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
             popupMenu.getMenu().add(0, R.id.menu_delete_patient, 0, "Delete Patient");
 
             popupMenu.setOnMenuItemClickListener(item -> {
-                Patient patient = patientsFiltered.get(getAdapterPosition());
+                Patient patient = getPatientAt(getBindingAdapterPosition());
+                if (patient == null) {
+                    return false;
+                }
                 int itemId = item.getItemId();
 
                 if (itemId == R.id.menu_edit_patient) {
@@ -665,42 +740,28 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
         }
 
         private void deletePatient(Patient patient) {
-            new Thread(() -> {
-                try {
-                    // Delete associated image file if exists
-                    if (patient.getImagePath() != null && !patient.getImagePath().isEmpty()) {
-                        File imageFile = new File(patient.getImagePath());
-                        if (imageFile.exists()) {
-                            imageFile.delete();
+            DbExecutor.getInstance().write(getLifecycleOwner(),
+                    () -> {
+                        // Delete associated image file if exists
+                        if (patient.getImagePath() != null && !patient.getImagePath().isEmpty()) {
+                            File imageFile = new File(patient.getImagePath());
+                            if (imageFile.exists()) {
+                                imageFile.delete();
+                            }
                         }
-                    }
 
-                    int result = patientRepository.deletePatient(patient.getId());
-
-                    if (context instanceof android.app.Activity) {
-                        ((android.app.Activity) context).runOnUiThread(() -> {
-                            if (result > 0) {
-                                Toast.makeText(context, Constants.SUCCESS_PATIENT_DELETED, Toast.LENGTH_SHORT).show();
-                                // Remove from list
-                                int position = patientsFiltered.indexOf(patient);
-                                if (position != -1) {
-                                    patientsFiltered.remove(position);
-                                    patients.remove(patient);
-                                    notifyItemRemoved(position);
-                                }
-                            } else {
-                                Toast.makeText(context, Constants.ERROR_DATABASE_ERROR, Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                    }
-                } catch (Exception e) {
-                    if (context instanceof android.app.Activity) {
-                        ((android.app.Activity) context).runOnUiThread(() -> {
+                        return patientRepository.deletePatient(patient.getId());
+                    },
+                    result -> {
+                        if (result > 0) {
+                            Toast.makeText(context, Constants.SUCCESS_PATIENT_DELETED, Toast.LENGTH_SHORT).show();
+                            // Remove from list
+                            pagingSource.remove(patient);
+                        } else {
                             Toast.makeText(context, Constants.ERROR_DATABASE_ERROR, Toast.LENGTH_SHORT).show();
-                        });
-                    }
-                }
-            }).start();
+                        }
+                    },
+                    e -> Toast.makeText(context, Constants.ERROR_DATABASE_ERROR, Toast.LENGTH_SHORT).show());
         }
     }
 
@@ -716,23 +777,15 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
     }
 
     public Patient getPatientAt(int position) {
-        if (position >= 0 && position < patientsFiltered.size()) {
-            return patientsFiltered.get(position);
-        }
-        return null;
+        return pagingSource.getItem(position);
     }
 
     public List<Patient> getFilteredPatients() {
-        return new ArrayList<>(patientsFiltered);
+        return pagingSource.getLoadedPatients();
     }
 
     public int getPatientPosition(long patientId) {
-        for (int i = 0; i < patientsFiltered.size(); i++) {
-            if (patientsFiltered.get(i).getId() == patientId) {
-                return i;
-            }
-        }
-        return -1;
+        return pagingSource.indexOf(patientId);
     }
 
     // Method to refresh a specific patient's data
@@ -743,30 +796,9 @@ public class PatientsAdapter extends RecyclerView.Adapter<PatientsAdapter.Patien
         }
     }
 
-    // Method to add a new patient
-    public void addPatient(Patient patient) {
-        patients.add(0, patient); // Add to beginning
-        patientsFiltered.add(0, patient);
-        notifyItemInserted(0);
-    }
-
     // Method to update a patient
     public void updatePatient(Patient updatedPatient) {
-        // Update in both lists
-        for (int i = 0; i < patients.size(); i++) {
-            if (patients.get(i).getId() == updatedPatient.getId()) {
-                patients.set(i, updatedPatient);
-                break;
-            }
-        }
-
-        for (int i = 0; i < patientsFiltered.size(); i++) {
-            if (patientsFiltered.get(i).getId() == updatedPatient.getId()) {
-                patientsFiltered.set(i, updatedPatient);
-                notifyItemChanged(i);
-                break;
-            }
-        }
+        pagingSource.replace(updatedPatient);
     }
 
     @Override
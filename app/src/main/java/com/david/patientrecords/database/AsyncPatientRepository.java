@@ -0,0 +1,406 @@
+package com.david.patientrecords.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.david.patientrecords.models.DashboardSnapshot;
+import com.david.patientrecords.models.MedicalRecord;
+import com.david.patientrecords.models.Medication;
+import com.david.patientrecords.models.Patient;
+import com.david.patientrecords.models.PatientSummary;
+import com.david.patientrecords.models.ReportSnapshot;
+import com.david.patientrecords.models.VitalObservation;
+import com.david.patientrecords.models.VitalSeries;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Future-based counterpart of PatientRepository.
+ *
+ * Every call runs on the DbExecutor lanes and the returned future completes on the
+ * main thread, so stages chained with thenAccept/exceptionally can touch views directly.
+ * Identical reads that are already in flight share a single query, and reads fail with
+ * a TimeoutException once their deadline passes. Callers that touch views wrap the
+ * future with bind(owner, ...) so nothing is delivered after the owner is destroyed.
+ */
+public class AsyncPatientRepository {
+
+    private static final String TAG = "AsyncPatientRepository";
+    public static final long DEFAULT_READ_DEADLINE_MS = 10000;
+
+    private static AsyncPatientRepository instance;
+
+    private final PatientRepository repository;
+    private final DbExecutor executor;
+    private final ConcurrentHashMap<String, InFlightRead<?>> inFlightReads = new ConcurrentHashMap<>();
+    private final AtomicInteger coalescedReads = new AtomicInteger();
+    private final AtomicInteger timedOutReads = new AtomicInteger();
+
+    // Singleton pattern
+    public static synchronized AsyncPatientRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new AsyncPatientRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AsyncPatientRepository(Context context) {
+        repository = PatientRepository.getInstance(context);
+        executor = DbExecutor.getInstance();
+    }
+
+    // ==================== PATIENT OPERATIONS ====================
+
+    public CompletableFuture<List<Patient>> getAllPatients() {
+        return read("patients:all", repository::getAllPatients);
+    }
+
+    public CompletableFuture<Patient> getPatientById(long patientId) {
+        return read("patients:" + patientId, () -> repository.getPatientById(patientId));
+    }
+
+    public CompletableFuture<List<Patient>> searchPatients(String query) {
+        return read("patients:search:" + query, () -> repository.searchPatients(query));
+    }
+
+    public CompletableFuture<Long> insertPatient(Patient patient) {
+        return write(() -> repository.insertPatient(patient));
+    }
+
+    public CompletableFuture<Integer> updatePatient(Patient patient) {
+        return write(() -> repository.updatePatient(patient));
+    }
+
+    public CompletableFuture<Integer> deletePatient(long patientId) {
+        return write(() -> repository.deletePatient(patientId));
+    }
+
+    // ==================== MEDICAL RECORD OPERATIONS ====================
+
+    public CompletableFuture<List<MedicalRecord>> getMedicalRecordsByPatientId(long patientId) {
+        return read("records:patient:" + patientId, () -> repository.getMedicalRecordsByPatientId(patientId));
+    }
+
+    public CompletableFuture<MedicalRecord> getMedicalRecordById(long recordId) {
+        return read("records:" + recordId, () -> repository.getMedicalRecordById(recordId));
+    }
+
+    public CompletableFuture<Long> insertMedicalRecord(MedicalRecord record) {
+        return write(() -> repository.insertMedicalRecord(record));
+    }
+
+    public CompletableFuture<Integer> updateMedicalRecord(MedicalRecord record) {
+        return write(() -> repository.updateMedicalRecord(record));
+    }
+
+    public CompletableFuture<Integer> deleteMedicalRecord(long recordId) {
+        return write(() -> repository.deleteMedicalRecord(recordId));
+    }
+
+    // ==================== VITAL SIGNS ====================
+
+    public CompletableFuture<List<VitalObservation>> getVitalObservations(long patientId, String metric,
+                                                                          long fromMillis, long toMillis) {
+        return read("vitals:" + patientId + ":" + metric + ":" + fromMillis + ":" + toMillis,
+                () -> repository.getVitalObservations(patientId, metric, fromMillis, toMillis));
+    }
+
+    public CompletableFuture<VitalSeries> getVitalSeries(long patientId, String metric, long fromMillis,
+                                                         long toMillis, long bucketMillis) {
+        return read("vitals:series:" + patientId + ":" + metric + ":" + fromMillis + ":" + toMillis + ":" + bucketMillis,
+                () -> repository.getVitalSeries(patientId, metric, fromMillis, toMillis, bucketMillis));
+    }
+
+    public CompletableFuture<List<String>> getVitalMetrics(long patientId) {
+        return read("vitals:metrics:" + patientId, () -> repository.getVitalMetrics(patientId));
+    }
+
+    // ==================== MEDICATION OPERATIONS ====================
+
+    public CompletableFuture<List<Medication>> getMedicationsByPatientId(long patientId) {
+        return read("medications:patient:" + patientId, () -> repository.getMedicationsByPatientId(patientId));
+    }
+
+    public CompletableFuture<Medication> getMedicationById(long medicationId) {
+        return read("medications:" + medicationId, () -> repository.getMedicationById(medicationId));
+    }
+
+    public CompletableFuture<Long> insertMedication(Medication medication) {
+        return write(() -> repository.insertMedication(medication));
+    }
+
+    public CompletableFuture<Integer> updateMedication(Medication medication) {
+        return write(() -> repository.updateMedication(medication));
+    }
+
+    public CompletableFuture<Integer> deactivateMedication(long medicationId) {
+        return write(() -> repository.deactivateMedication(medicationId));
+    }
+
+    // ==================== STATISTICS ====================
+
+    public CompletableFuture<Integer> getTotalPatientsCount() {
+        return read("stats:patients", repository::getTotalPatientsCount);
+    }
+
+    public CompletableFuture<Integer> getTotalMedicalRecordsCount() {
+        return read("stats:records", repository::getTotalMedicalRecordsCount);
+    }
+
+    public CompletableFuture<Integer> getTotalMedicationsCount() {
+        return read("stats:medications", repository::getTotalMedicationsCount);
+    }
+
+    public CompletableFuture<Integer> getUpcomingFollowUpsCount() {
+        return read("stats:follow_ups", repository::getUpcomingFollowUpsCount);
+    }
+
+    public CompletableFuture<int[]> getDashboardStats() {
+        return read("stats:dashboard", repository::getDashboardStats);
+    }
+
+    public CompletableFuture<DashboardSnapshot> getDashboardSnapshot() {
+        return read("stats:snapshot", repository::getDashboardSnapshot);
+    }
+
+    /**
+     * Last computed dashboard snapshot, or null; answers immediately on the calling thread
+     */
+    @Nullable
+    public DashboardSnapshot getCachedDashboardSnapshot() {
+        return repository.getCachedDashboardSnapshot();
+    }
+
+    public CompletableFuture<ReportSnapshot> getReportSnapshot(int months) {
+        return read("reports:" + months, () -> repository.getReportSnapshot(months));
+    }
+
+    /**
+     * Recount the report rollups from the source tables
+     */
+    public CompletableFuture<Void> rebuildReportRollups() {
+        return write(() -> {
+            repository.rebuildReportRollups();
+            return null;
+        });
+    }
+
+    public CompletableFuture<Map<String, String>> getActiveStorageSettings() {
+        return read("storage:settings", repository::getActiveStorageSettings);
+    }
+
+    public CompletableFuture<PatientSummary> getPatientSummary(long patientId) {
+        return read("summary:" + patientId, () -> repository.getPatientSummary(patientId));
+    }
+
+    // ==================== CORE ====================
+
+    /**
+     * Run a read with the default deadline. Reads sharing a non-null key while one
+     * is still in flight are served by the same query.
+     */
+    public <T> CompletableFuture<T> read(@Nullable String key, @NonNull DbExecutor.DbTask<T> task) {
+        return read(key, DEFAULT_READ_DEADLINE_MS, task);
+    }
+
+    /**
+     * Run a read that fails with a TimeoutException after deadlineMs (0 for no deadline).
+     * Each caller's deadline only fails its own future; the query is dropped from the
+     * reader queue once every caller sharing it has timed out or cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> read(@Nullable String key, long deadlineMs,
+                                         @NonNull DbExecutor.DbTask<T> task) {
+        while (true) {
+            InFlightRead<T> flight = new InFlightRead<>(key);
+            if (key != null) {
+                InFlightRead<T> existing = (InFlightRead<T>) inFlightReads.putIfAbsent(key, flight);
+                if (existing != null) {
+                    if (existing.join()) {
+                        coalescedReads.incrementAndGet();
+                        return view(existing, deadlineMs);
+                    }
+                    // Every caller of that query gave up, so it is about to be dropped
+                    inFlightReads.remove(key, existing);
+                    continue;
+                }
+            }
+
+            flight.join();
+            CompletableFuture<T> view = view(flight, deadlineMs);
+            flight.work = executor.submitRead(() -> {
+                if (!flight.shared.isDone()) {
+                    deliver(flight.shared, task);
+                }
+            });
+            return view;
+        }
+    }
+
+    /**
+     * Run a write on the serialized writer lane. Writes have no deadline since a
+     * half-applied write cannot be abandoned safely.
+     */
+    public <T> CompletableFuture<T> write(@NonNull DbExecutor.DbTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.submitWrite(() -> {
+            // Reads started before or during this write must not be shared with callers that come after it
+            inFlightReads.clear();
+            try {
+                deliver(future, task);
+            } finally {
+                inFlightReads.clear();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Tie a future from this repository to a lifecycle, like DbExecutor.read(owner, ...).
+     * The returned future never completes once the owner is destroyed, so stages chained
+     * on it are skipped, and the source is cancelled: a read drops its query if no one
+     * else shares it, a write still completes. Must be called from the main thread.
+     */
+    public static <T> CompletableFuture<T> bind(@NonNull LifecycleOwner owner,
+                                                @NonNull CompletableFuture<T> future) {
+        CompletableFuture<T> bound = new CompletableFuture<>();
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            future.cancel(false);
+            return bound;
+        }
+
+        LifecycleEventObserver observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                future.cancel(false);
+            }
+        };
+        lifecycle.addObserver(observer);
+        // Futures from this repository complete on the main thread, as lifecycle events arrive
+        future.whenComplete((result, error) -> {
+            lifecycle.removeObserver(observer);
+            if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+                return;
+            }
+            if (error != null) {
+                bound.completeExceptionally(error);
+            } else {
+                bound.complete(result);
+            }
+        });
+        return bound;
+    }
+
+    // Each caller gets its own view so a deadline or cancel never affects the others
+    private <T> CompletableFuture<T> view(InFlightRead<T> flight, long deadlineMs) {
+        CompletableFuture<T> view = flight.shared.thenApply(result -> result);
+        view.whenComplete((result, error) -> {
+            if (error != null && !flight.shared.isDone()) {
+                flight.leave();
+            }
+        });
+        return withDeadline(view, deadlineMs);
+    }
+
+    private <T> void deliver(CompletableFuture<T> future, DbExecutor.DbTask<T> task) {
+        try {
+            T result = task.run();
+            executor.postToMain(() -> future.complete(result));
+        } catch (Exception e) {
+            Log.e(TAG, "Database task failed", e);
+            executor.postToMain(() -> future.completeExceptionally(e));
+        }
+    }
+
+    private <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, long deadlineMs) {
+        if (deadlineMs <= 0 || future.isDone()) {
+            return future;
+        }
+
+        Runnable timeout = () -> {
+            if (future.completeExceptionally(
+                    new TimeoutException("Database read exceeded " + deadlineMs + "ms deadline"))) {
+                timedOutReads.incrementAndGet();
+                Log.w(TAG, "Read timed out after " + deadlineMs + "ms");
+            }
+        };
+        executor.postToMainDelayed(timeout, deadlineMs);
+        future.whenComplete((result, error) -> executor.removeFromMain(timeout));
+        return future;
+    }
+
+    /**
+     * One query and the callers waiting on it
+     */
+    private final class InFlightRead<T> {
+        final String key;
+        final CompletableFuture<T> shared = new CompletableFuture<>();
+        volatile Future<?> work;
+        private int waiting;
+
+        InFlightRead(@Nullable String key) {
+            this.key = key;
+            if (key != null) {
+                shared.whenComplete((result, error) -> inFlightReads.remove(key, this));
+            }
+        }
+
+        /**
+         * Add a caller, unless everyone already gave up on this query
+         */
+        synchronized boolean join() {
+            if (waiting == 0 && (work != null || shared.isDone())) {
+                return false;
+            }
+            waiting++;
+            return true;
+        }
+
+        /**
+         * Remove a caller that timed out or cancelled; the last one drops the query
+         */
+        void leave() {
+            synchronized (this) {
+                if (--waiting > 0) {
+                    return;
+                }
+            }
+            if (key != null) {
+                inFlightReads.remove(key, this);
+            }
+            Future<?> pending = work;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            shared.cancel(false);
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    /**
+     * Get number of reads served by an already in-flight query
+     */
+    public int getCoalescedReadCount() {
+        return coalescedReads.get();
+    }
+
+    /**
+     * Get number of reads that missed their deadline
+     */
+    public int getTimedOutReadCount() {
+        return timedOutReads.get();
+    }
+}
@@ -0,0 +1,664 @@
+package com.david.patientrecords.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.david.patientrecords.utils.DateCodec;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming export of patients with their medical records and medications.
+ *
+ * Patients are read in keyset pages by _id, and each page's records and medications
+ * are read with one query each, so memory stays at one page whatever the size of the
+ * database. Pages run as separate reader tasks on the DbExecutor pool.
+ *
+ * CSV writes one file per table with the database column names, the layout
+ * BulkImporter reads back. NDJSON writes one line per patient with its records and
+ * medications nested. Text is encoded straight into a direct buffer that is flushed
+ * to a FileChannel, optionally through gzip.
+ */
+public class BulkExporter {
+
+    private static final String TAG = "BulkExporter";
+    private static final int PAGE_SIZE = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format { CSV, NDJSON }
+
+    // Delivered on the main thread
+    public interface Listener {
+        void onProgress(Progress progress);
+        void onFinished(ExportReport report);
+        void onFailed(Exception e);
+    }
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final PatientRepository repository;
+    private final DbExecutor executor;
+
+    public BulkExporter(Context context) {
+        this(context, DatabaseHelper.getInstance(context), PatientRepository.getInstance(context));
+    }
+
+    // For tests, which export from their own helper
+    BulkExporter(Context context, DatabaseHelper dbHelper, PatientRepository repository) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = dbHelper;
+        this.repository = repository;
+        this.executor = DbExecutor.getInstance();
+    }
+
+    /**
+     * Export active patients matching a patient list search and filter; pass a null or
+     * empty query and filter "all" to export every active patient. Files are written to
+     * the app's Downloads folder, like PDF reports.
+     */
+    public Job start(@NonNull Format format, boolean gzip, @Nullable String searchQuery,
+                     @Nullable String filter, @NonNull Listener listener) {
+        File directory = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        if (directory == null) {
+            directory = new File(context.getFilesDir(), "exports");
+        }
+        return start(directory, format, gzip, searchQuery, filter, listener);
+    }
+
+    public Job start(@NonNull File directory, @NonNull Format format, boolean gzip,
+                     @Nullable String searchQuery, @Nullable String filter, @NonNull Listener listener) {
+        Job job = new Job(directory, format, gzip, searchQuery, filter != null ? filter : "all", listener);
+        executor.submitRead(job::runPage);
+        return job;
+    }
+
+    // ==================== JOB ====================
+
+    /**
+     * A running export; pages run one at a time, so its state needs no locking
+     */
+    public class Job {
+        private final File directory;
+        private final Format format;
+        private final boolean gzip;
+        private final String searchQuery;
+        private final String filter;
+        private final Listener listener;
+        private final List<ChannelWriter> writers = new ArrayList<>();
+
+        private volatile boolean cancelled;
+        private ChannelWriter patientWriter;
+        private ChannelWriter recordWriter;
+        private ChannelWriter medicationWriter;
+        private long startedAt;
+        private long lastPatientId;
+        private long patients;
+        private long medicalRecords;
+        private long medications;
+
+        Job(File directory, Format format, boolean gzip, String searchQuery, String filter, Listener listener) {
+            this.directory = directory;
+            this.format = format;
+            this.gzip = gzip;
+            this.searchQuery = searchQuery;
+            this.filter = filter;
+            this.listener = listener;
+        }
+
+        /**
+         * Stop after the page in progress and delete the partial files
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void runPage() {
+            try {
+                if (patientWriter == null) {
+                    open();
+                }
+                if (cancelled) {
+                    abort();
+                    executor.postToMain(() -> listener.onFinished(report(true)));
+                    return;
+                }
+
+                int count = exportPage();
+                final Progress progress = new Progress(patients, medicalRecords, medications, bytesWritten(),
+                        SystemClock.uptimeMillis() - startedAt);
+                executor.postToMain(() -> listener.onProgress(progress));
+
+                if (count < PAGE_SIZE) {
+                    finish();
+                } else {
+                    executor.submitRead(this::runPage);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Export failed after " + patients + " patients: " + e.getMessage());
+                abort();
+                executor.postToMain(() -> listener.onFailed(e));
+            }
+        }
+
+        private void open() throws IOException {
+            startedAt = SystemClock.uptimeMillis();
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+
+            String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+            if (format == Format.CSV) {
+                patientWriter = openWriter(DatabaseContract.PatientEntry.TABLE_NAME + "_" + stamp + ".csv");
+                recordWriter = openWriter(DatabaseContract.MedicalRecordEntry.TABLE_NAME + "_" + stamp + ".csv");
+                medicationWriter = openWriter(DatabaseContract.MedicationEntry.TABLE_NAME + "_" + stamp + ".csv");
+            } else {
+                patientWriter = openWriter(DatabaseContract.PatientEntry.TABLE_NAME + "_" + stamp + ".ndjson");
+            }
+        }
+
+        private ChannelWriter openWriter(String fileName) throws IOException {
+            ChannelWriter writer = new ChannelWriter(new File(directory, gzip ? fileName + ".gz" : fileName), gzip);
+            writers.add(writer);
+            return writer;
+        }
+
+        // Returns the number of patients in the page
+        private int exportPage() throws IOException {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+            // NOT INDEXED keeps the seek on the rowid; through the (is_active, patient_name)
+            // index every page would sort all active patients again
+            List<String> args = new ArrayList<>();
+            String query = "SELECT * FROM " + DatabaseContract.PatientEntry.TABLE_NAME + " NOT INDEXED" +
+                    " WHERE " + repository.buildPatientListSelection(searchQuery, null, filter, args) +
+                    " AND " + DatabaseContract.PatientEntry._ID + " > ?" +
+                    " ORDER BY " + DatabaseContract.PatientEntry._ID + " ASC LIMIT " + PAGE_SIZE;
+            args.add(String.valueOf(lastPatientId));
+
+            try (Cursor patientCursor = db.rawQuery(query, args.toArray(new String[0]))) {
+                int count = patientCursor.getCount();
+                if (count == 0) {
+                    return 0;
+                }
+
+                // Ids are numbers, inline them rather than running into the bind argument limit
+                int idIndex = patientCursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry._ID);
+                StringBuilder ids = new StringBuilder();
+                while (patientCursor.moveToNext()) {
+                    ids.append(ids.length() == 0 ? "" : ",").append(patientCursor.getLong(idIndex));
+                }
+
+                // Both child queries walk their patient_id index, rows come back grouped by patient
+                try (Cursor recordCursor = db.query(DatabaseContract.MedicalRecordEntry.TABLE_NAME, null,
+                        DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " IN (" + ids + ")",
+                        null, null, null,
+                        DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + ", " +
+                                DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE);
+                     Cursor medicationCursor = db.query(DatabaseContract.MedicationEntry.TABLE_NAME, null,
+                             DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID + " IN (" + ids + ")",
+                             null, null, null,
+                             DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID)) {
+                    if (format == Format.CSV) {
+                        writeCsv(patientCursor, recordCursor, medicationCursor);
+                    } else {
+                        writeNdjson(patientCursor, recordCursor, medicationCursor);
+                    }
+                }
+
+                patientCursor.moveToLast();
+                lastPatientId = patientCursor.getLong(idIndex);
+                return count;
+            }
+        }
+
+        private void writeCsv(Cursor patientCursor, Cursor recordCursor, Cursor medicationCursor) throws IOException {
+            patients += writeCsvRows(patientWriter, patientCursor);
+            medicalRecords += writeCsvRows(recordWriter, recordCursor);
+            medications += writeCsvRows(medicationWriter, medicationCursor);
+        }
+
+        private int writeCsvRows(ChannelWriter writer, Cursor cursor) throws IOException {
+            int columnCount = cursor.getColumnCount();
+            int[] kinds = columnKinds(cursor);
+            if (writer.getBytesWritten() == 0) {
+                for (int i = 0; i < columnCount; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.writeCsvField(cursor.getColumnName(i));
+                }
+                writer.write("\r\n");
+            }
+
+            int rows = 0;
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < columnCount; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    // Nulls stay empty, which BulkImporter reads back as null
+                    if (cursor.getType(i) != Cursor.FIELD_TYPE_NULL) {
+                        writer.writeCsvField(kinds[i] != PLAIN ? formatEpochValue(cursor, i, kinds[i]) : cursor.getString(i));
+                    }
+                }
+                writer.write("\r\n");
+                rows++;
+            }
+            return rows;
+        }
+
+        // Merge the child cursors into each patient's line, all three are ordered by patient id
+        private void writeNdjson(Cursor patientCursor, Cursor recordCursor, Cursor medicationCursor) throws IOException {
+            int idIndex = patientCursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry._ID);
+            int recordPatientIndex = recordCursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID);
+            int medicationPatientIndex = medicationCursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID);
+            int[] patientKinds = columnKinds(patientCursor);
+            int[] recordKinds = columnKinds(recordCursor);
+            int[] medicationKinds = columnKinds(medicationCursor);
+            boolean moreRecords = recordCursor.moveToFirst();
+            boolean moreMedications = medicationCursor.moveToFirst();
+
+            patientCursor.moveToPosition(-1);
+            while (patientCursor.moveToNext()) {
+                long patientId = patientCursor.getLong(idIndex);
+                patientWriter.write('{');
+                writeJsonMembers(patientWriter, patientCursor, patientKinds);
+
+                patientWriter.write(",\"" + DatabaseContract.MedicalRecordEntry.TABLE_NAME + "\":[");
+                boolean first = true;
+                while (moreRecords && recordCursor.getLong(recordPatientIndex) == patientId) {
+                    patientWriter.write(first ? "{" : ",{");
+                    writeJsonMembers(patientWriter, recordCursor, recordKinds);
+                    patientWriter.write('}');
+                    first = false;
+                    medicalRecords++;
+                    moreRecords = recordCursor.moveToNext();
+                }
+
+                patientWriter.write("],\"" + DatabaseContract.MedicationEntry.TABLE_NAME + "\":[");
+                first = true;
+                while (moreMedications && medicationCursor.getLong(medicationPatientIndex) == patientId) {
+                    patientWriter.write(first ? "{" : ",{");
+                    writeJsonMembers(patientWriter, medicationCursor, medicationKinds);
+                    patientWriter.write('}');
+                    first = false;
+                    medications++;
+                    moreMedications = medicationCursor.moveToNext();
+                }
+
+                patientWriter.write("]}\n");
+                patients++;
+            }
+        }
+
+        private void writeJsonMembers(ChannelWriter writer, Cursor cursor, int[] kinds) throws IOException {
+            for (int i = 0; i < cursor.getColumnCount(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.writeJsonString(cursor.getColumnName(i));
+                writer.write(':');
+                if (kinds[i] != PLAIN && cursor.getType(i) != Cursor.FIELD_TYPE_NULL) {
+                    writer.writeJsonString(formatEpochValue(cursor, i, kinds[i]));
+                    continue;
+                }
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        writer.write("null");
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        writer.write(Long.toString(cursor.getLong(i)));
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        writer.write(Double.toString(cursor.getDouble(i)));
+                        break;
+                    default:
+                        writer.writeJsonString(cursor.getString(i));
+                        break;
+                }
+            }
+        }
+
+        private long bytesWritten() {
+            long bytes = 0;
+            for (ChannelWriter writer : writers) {
+                bytes += writer.getBytesWritten();
+            }
+            return bytes;
+        }
+
+        private void finish() throws IOException {
+            List<String> files = new ArrayList<>();
+            long fileBytes = 0;
+            for (ChannelWriter writer : writers) {
+                writer.commit();
+                files.add(writer.getFile().getAbsolutePath());
+                fileBytes += writer.getFile().length();
+            }
+
+            final ExportReport report = report(false, files, fileBytes);
+            Log.d(TAG, report.getSummary());
+            executor.postToMain(() -> listener.onFinished(report));
+        }
+
+        private ExportReport report(boolean wasCancelled) {
+            return report(wasCancelled, Collections.<String>emptyList(), 0);
+        }
+
+        private ExportReport report(boolean wasCancelled, List<String> files, long fileBytes) {
+            return new ExportReport(format, gzip, patients, medicalRecords, medications, bytesWritten(),
+                    fileBytes, SystemClock.uptimeMillis() - startedAt, wasCancelled, files);
+        }
+
+        // Partial files are never left behind under their final names
+        private void abort() {
+            for (ChannelWriter writer : writers) {
+                writer.discard();
+            }
+        }
+    }
+
+    // ==================== EPOCH COLUMNS ====================
+
+    // Stored epoch values are exported as the text the app shows and BulkImporter reads back
+    private static final int PLAIN = 0;
+    private static final int EPOCH_DAY = 1;
+    private static final int EPOCH_MILLIS = 2;
+
+    private static int[] columnKinds(Cursor cursor) {
+        int[] kinds = new int[cursor.getColumnCount()];
+        for (int i = 0; i < kinds.length; i++) {
+            String name = cursor.getColumnName(i);
+            kinds[i] = DatabaseContract.isEpochDayColumn(name) ? EPOCH_DAY
+                    : DatabaseContract.isEpochMillisColumn(name) ? EPOCH_MILLIS
+                    : PLAIN;
+        }
+        return kinds;
+    }
+
+    // yyyy-MM-dd for a day, local yyyy-MM-dd HH:mm:ss for a timestamp
+    private static String formatEpochValue(Cursor cursor, int index, int kind) {
+        long value = cursor.getLong(index);
+        return kind == EPOCH_DAY ? DateCodec.formatEpochDay(value)
+                : DateCodec.formatDateTime(DateCodec.toWallSeconds(value));
+    }
+
+    // ==================== WRITER ====================
+
+    /**
+     * UTF-8 text encoded into a byte array, copied in bulk to a direct buffer for the
+     * temporary file's channel, or handed to gzip. commit() renames the file into place,
+     * discard() deletes it.
+     */
+    static final class ChannelWriter {
+        private final File file;
+        private final File partFile;
+        private final FileOutputStream output;
+        private final FileChannel fileChannel;
+        private final GZIPOutputStream gzipStream;
+        // Per-byte puts into a direct buffer are slow, encode into an array instead
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private int position;
+        private long bytesWritten; // Uncompressed
+
+        ChannelWriter(File file, boolean gzip) throws IOException {
+            this.file = file;
+            this.partFile = new File(file.getPath() + ".part");
+            this.output = new FileOutputStream(partFile);
+            this.fileChannel = output.getChannel();
+            // Compressed output reaches the channel through the deflater's own buffer
+            this.gzipStream = gzip ? new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE) : null;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getBytesWritten() {
+            return bytesWritten + position;
+        }
+
+        void write(char ch) throws IOException {
+            if (ch < 0x80) {
+                if (position == BUFFER_SIZE) {
+                    flush();
+                }
+                bytes[position++] = (byte) ch;
+            } else {
+                write(String.valueOf(ch));
+            }
+        }
+
+        void write(String text) throws IOException {
+            int length = text.length();
+            // No char takes more than 3 bytes (a surrogate pair takes 4 for 2), so a text
+            // that fits needs no per-char capacity check
+            boolean fits = length <= (BUFFER_SIZE - position) / 3;
+            for (int i = 0; i < length; i++) {
+                if (!fits && position > BUFFER_SIZE - 4) {
+                    flush();
+                }
+                char ch = text.charAt(i);
+                if (ch < 0x80) {
+                    bytes[position++] = (byte) ch;
+                } else if (ch < 0x800) {
+                    bytes[position++] = (byte) (0xC0 | (ch >> 6));
+                    bytes[position++] = (byte) (0x80 | (ch & 0x3F));
+                } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(ch, text.charAt(++i));
+                    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(ch)) {
+                    // Unpaired surrogate, same replacement String.getBytes uses
+                    bytes[position++] = (byte) '?';
+                } else {
+                    bytes[position++] = (byte) (0xE0 | (ch >> 12));
+                    bytes[position++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (ch & 0x3F));
+                }
+            }
+        }
+
+        // Quote only when the value needs it, doubling embedded quotes
+        void writeCsvField(String value) throws IOException {
+            boolean quote = value.isEmpty();
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char ch = value.charAt(i);
+                quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+            }
+            if (!quote) {
+                write(value);
+                return;
+            }
+            write('"');
+            write(value.indexOf('"') == -1 ? value : value.replace("\"", "\"\""));
+            write('"');
+        }
+
+        void writeJsonString(String value) throws IOException {
+            write('"');
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                String escape = null;
+                if (ch == '"' || ch == '\\') {
+                    escape = "\\" + ch;
+                } else if (ch == '\n') {
+                    escape = "\\n";
+                } else if (ch == '\r') {
+                    escape = "\\r";
+                } else if (ch == '\t') {
+                    escape = "\\t";
+                } else if (ch < 0x20) {
+                    escape = String.format(Locale.ROOT, "\\u%04x", (int) ch);
+                }
+                if (escape != null) {
+                    write(value.substring(start, i));
+                    write(escape);
+                    start = i + 1;
+                }
+            }
+            write(start == 0 ? value : value.substring(start));
+            write('"');
+        }
+
+        private void flush() throws IOException {
+            if (gzipStream != null) {
+                gzipStream.write(bytes, 0, position);
+            } else {
+                buffer.clear();
+                buffer.put(bytes, 0, position);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    fileChannel.write(buffer);
+                }
+            }
+            bytesWritten += position;
+            position = 0;
+        }
+
+        void commit() throws IOException {
+            flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+            fileChannel.force(false);
+            output.close();
+            if (!partFile.renameTo(file)) {
+                throw new IOException("Cannot rename " + partFile + " to " + file.getName());
+            }
+        }
+
+        void discard() {
+            try {
+                output.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing " + partFile + ": " + e.getMessage());
+            }
+            if (!partFile.delete()) {
+                Log.e(TAG, "Could not delete " + partFile);
+            }
+        }
+    }
+
+    // ==================== RESULTS ====================
+
+    /**
+     * Counts after an exported page; bytes are before compression
+     */
+    public static class Progress {
+        private final long patients;
+        private final long medicalRecords;
+        private final long medications;
+        private final long bytesWritten;
+        private final long elapsedMs;
+
+        Progress(long patients, long medicalRecords, long medications, long bytesWritten, long elapsedMs) {
+            this.patients = patients;
+            this.medicalRecords = medicalRecords;
+            this.medications = medications;
+            this.bytesWritten = bytesWritten;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public long getPatients() { return patients; }
+        public long getMedicalRecords() { return medicalRecords; }
+        public long getMedications() { return medications; }
+        public long getBytesWritten() { return bytesWritten; }
+        public long getElapsedMs() { return elapsedMs; }
+    }
+
+    public static class ExportReport {
+        private final Format format;
+        private final boolean gzip;
+        private final long patients;
+        private final long medicalRecords;
+        private final long medications;
+        private final long bytesWritten;
+        private final long fileBytes;
+        private final long elapsedMs;
+        private final boolean cancelled;
+        private final List<String> files;
+
+        ExportReport(Format format, boolean gzip, long patients, long medicalRecords, long medications,
+                     long bytesWritten, long fileBytes, long elapsedMs, boolean cancelled, List<String> files) {
+            this.format = format;
+            this.gzip = gzip;
+            this.patients = patients;
+            this.medicalRecords = medicalRecords;
+            this.medications = medications;
+            this.bytesWritten = bytesWritten;
+            this.fileBytes = fileBytes;
+            this.elapsedMs = elapsedMs;
+            this.cancelled = cancelled;
+            this.files = Collections.unmodifiableList(files);
+        }
+
+        public Format getFormat() { return format; }
+        public boolean isGzip() { return gzip; }
+        public long getPatients() { return patients; }
+        public long getMedicalRecords() { return medicalRecords; }
+        public long getMedications() { return medications; }
+        public long getElapsedMs() { return elapsedMs; }
+        public boolean isCancelled() { return cancelled; }
+
+        /**
+         * Absolute paths of the files written; empty if the export was cancelled
+         */
+        public List<String> getFiles() { return files; }
+
+        /**
+         * Size of the text before compression
+         */
+        public long getBytesWritten() { return bytesWritten; }
+
+        /**
+         * Size on disk, smaller than getBytesWritten when gzipped
+         */
+        public long getFileBytes() { return fileBytes; }
+
+        public long getRowsPerSecond() {
+            long rows = patients + medicalRecords + medications;
+            return elapsedMs == 0 ? rows : rows * 1000 / elapsedMs;
+        }
+
+        public long getBytesPerSecond() {
+            return elapsedMs == 0 ? bytesWritten : bytesWritten * 1000 / elapsedMs;
+        }
+
+        /**
+         * Get a one-line summary for logging
+         */
+        public String getSummary() {
+            return "export " + format + (gzip ? "+gzip" : "") + ": " + patients + " patients, " +
+                    medicalRecords + " records, " + medications + " medications, " +
+                    bytesWritten / 1024 + " KB" + (gzip ? " (" + fileBytes / 1024 + " KB on disk)" : "") +
+                    " in " + elapsedMs + "ms, " + getRowsPerSecond() + " rows/s, " +
+                    getBytesPerSecond() / 1024 + " KB/s" + (cancelled ? ", cancelled" : "");
+        }
+    }
+}
@@ -0,0 +1,712 @@
+package com.david.patientrecords.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.david.patientrecords.utils.Constants;
+import com.david.patientrecords.utils.DateCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming bulk import of patients, medical records or medications from CSV or JSON.
+ *
+ * Rows are read one batch at a time and inserted through a precompiled statement, one
+ * transaction per batch, on the DbExecutor writer lane. Each batch is a separate writer
+ * task, so saves from the UI still run between batches. The number of rows consumed is
+ * stored in import_checkpoints inside the batch transaction, so an import started again
+ * with the same job id skips exactly the rows that were committed.
+ *
+ * Column names match the database columns. An _id column keeps the given ids, which lets
+ * records and medications reference patients imported earlier. Rows that fail validation
+ * or a constraint are skipped and listed in the report. The vital signs of imported
+ * medical records are parsed into vital_observations in the same batch.
+ *
+ * Search documents are rebuilt once per patient when the import finishes instead of on
+ * every row: while any import runs, the search triggers are swapped for ones that only
+ * queue the patients a write touches. The swap is the only schema change, made once per
+ * import, so the compiled insert stays valid across batches. Saves made during an import
+ * are queued the same way and show up in search when it ends.
+ */
+public class BulkImporter {
+
+    private static final String TAG = "BulkImporter";
+    // Errors kept for the report, later failures are only counted
+    private static final int MAX_REPORTED_ERRORS = 500;
+
+    public enum Format { CSV, JSON }
+
+    public enum Target { PATIENTS, MEDICAL_RECORDS, MEDICATIONS }
+
+    // Delivered on the main thread
+    public interface Listener {
+        void onProgress(Progress progress);
+        void onFinished(ImportReport report);
+        void onFailed(Exception e);
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final PatientRepository repository;
+    private final DbExecutor executor;
+    private int batchSize = Constants.IMPORT_BATCH_SIZE;
+
+    // Imports holding search indexing suspended; only touched on the writer thread
+    private static int suspendedImports;
+
+    public BulkImporter(Context context) {
+        this(DatabaseHelper.getInstance(context), PatientRepository.getInstance(context));
+    }
+
+    // For tests, which import into their own helper
+    BulkImporter(DatabaseHelper dbHelper, PatientRepository repository) {
+        this.dbHelper = dbHelper;
+        this.repository = repository;
+        this.executor = DbExecutor.getInstance();
+    }
+
+    /**
+     * Rows per transaction; larger batches are faster but hold the write lock longer
+     */
+    public BulkImporter setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * Start importing, or resume the import with the same job id. The stream is read
+     * from the beginning, gzip-compressed or not, and closed when the import ends.
+     */
+    public Job start(@NonNull String jobId, @NonNull Target target, @NonNull Format format,
+                     @NonNull InputStream input, @NonNull Listener listener) {
+        Job job = new Job(jobId, target, format, input, listener, batchSize);
+        executor.submitWrite(job::runBatch);
+        return job;
+    }
+
+    static ImportReaders.RowReader openRows(Format format, InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(decompressIfGzip(input), StandardCharsets.UTF_8));
+        return format == Format.CSV
+                ? new ImportReaders.CsvRowReader(reader)
+                : new ImportReaders.JsonRowReader(reader);
+    }
+
+    // Compressed exports are read as they are, recognised by the gzip magic number
+    private static InputStream decompressIfGzip(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+
+    /**
+     * Get the number of rows already committed for a job, or 0 if it has no checkpoint
+     */
+    public long getCheckpoint(@NonNull String jobId) {
+        String query = "SELECT " + DatabaseContract.ImportCheckpointEntry.COLUMN_ROWS_READ +
+                " FROM " + DatabaseContract.ImportCheckpointEntry.TABLE_NAME +
+                " WHERE " + DatabaseContract.ImportCheckpointEntry.COLUMN_JOB_ID + " = ?";
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(query, new String[]{jobId})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // ==================== COLUMNS ====================
+
+    private static final int TEXT = 0;
+    private static final int INTEGER = 1;
+    private static final int DAY = 2; // yyyy-MM-dd or an epoch day, stored as the epoch day
+    private static final int MILLIS = 3; // yyyy-MM-dd HH:mm:ss local time or epoch milliseconds
+
+    // Value filled in when a row leaves an optional column out
+    private static final String DEFAULT_NOW = "now";
+    private static final String DEFAULT_TODAY = "today";
+
+    private static final class Column {
+        final String name;
+        final int type;
+        final boolean required;
+        final String defaultValue;
+
+        Column(String name, int type, boolean required, String defaultValue) {
+            this.name = name;
+            this.type = type;
+            this.required = required;
+            this.defaultValue = defaultValue;
+        }
+    }
+
+    private static boolean isWholeNumber(String text) {
+        int start = text.startsWith("-") ? 1 : 0;
+        if (text.length() == start) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Column[] columnsFor(Target target) {
+        switch (target) {
+            case PATIENTS:
+                return new Column[]{
+                        new Column(DatabaseContract.PatientEntry._ID, INTEGER, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME, TEXT, true, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_AGE, INTEGER, true, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_GENDER, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_PHONE, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_ADDRESS, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_BLOOD_TYPE, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_EMERGENCY_CONTACT, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_EMERGENCY_PHONE, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_MEDICAL_CONDITIONS, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_ALLERGIES, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_PROFILE_IMAGE, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_IMAGE_PATH, TEXT, false, null),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE, DAY, false, DEFAULT_TODAY),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE, INTEGER, false, "1"),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_CREATED_AT, MILLIS, false, DEFAULT_NOW),
+                        new Column(DatabaseContract.PatientEntry.COLUMN_UPDATED_AT, MILLIS, false, DEFAULT_NOW)
+                };
+            case MEDICAL_RECORDS:
+                return new Column[]{
+                        new Column(DatabaseContract.MedicalRecordEntry._ID, INTEGER, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID, INTEGER, true, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, DAY, true, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_TYPE, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_SYMPTOMS, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_DIAGNOSIS, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_TREATMENT, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_NAME, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_VITAL_SIGNS, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_NOTES, TEXT, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE, DAY, false, null),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_CREATED_AT, MILLIS, false, DEFAULT_NOW),
+                        new Column(DatabaseContract.MedicalRecordEntry.COLUMN_UPDATED_AT, MILLIS, false, DEFAULT_NOW)
+                };
+            default:
+                return new Column[]{
+                        new Column(DatabaseContract.MedicationEntry._ID, INTEGER, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID, INTEGER, true, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_MEDICATION_NAME, TEXT, true, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_GENERIC_NAME, TEXT, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_DOSAGE, TEXT, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_FREQUENCY, TEXT, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_START_DATE, DAY, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_END_DATE, DAY, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_PRESCRIBED_BY, TEXT, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_INSTRUCTIONS, TEXT, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_SIDE_EFFECTS, TEXT, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_REFILLS_REMAINING, INTEGER, false, "0"),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_PHARMACY_NAME, TEXT, false, null),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE, INTEGER, false, "1"),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_CREATED_AT, MILLIS, false, DEFAULT_NOW),
+                        new Column(DatabaseContract.MedicationEntry.COLUMN_UPDATED_AT, MILLIS, false, DEFAULT_NOW)
+                };
+        }
+    }
+
+    private static int indexOf(Column[] columns, String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Every column of the target in columnsFor order, bound by position
+    static String insertSqlFor(Target target) {
+        Column[] columns = columnsFor(target);
+        StringBuilder names = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            names.append(i == 0 ? "" : ", ").append(columns[i].name);
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return "INSERT INTO " + tableFor(target) + " (" + names + ") VALUES (" + placeholders + ")";
+    }
+
+    private static String tableFor(Target target) {
+        switch (target) {
+            case PATIENTS:
+                return DatabaseContract.PatientEntry.TABLE_NAME;
+            case MEDICAL_RECORDS:
+                return DatabaseContract.MedicalRecordEntry.TABLE_NAME;
+            default:
+                return DatabaseContract.MedicationEntry.TABLE_NAME;
+        }
+    }
+
+    // ==================== JOB ====================
+
+    /**
+     * A running import; all state is touched only on the writer thread
+     */
+    public class Job {
+        private final String jobId;
+        private final Target target;
+        private final Format format;
+        private final InputStream input;
+        private final Listener listener;
+        private final int batchSize;
+        private final Column[] columns;
+        private final int visitDateIndex; // Medical records only, otherwise -1
+        private final int vitalSignsIndex;
+        private final Map<String, String> row = new HashMap<>();
+        private final Set<String> ignoredColumns = new LinkedHashSet<>();
+        private final List<RowError> errors = new ArrayList<>();
+
+        private volatile boolean cancelled;
+        private boolean resumed;
+        private boolean indexingSuspended;
+        private ImportReaders.RowReader rows;
+        private SQLiteStatement insert;
+        private VitalObservationWriter vitals;
+        private long resumedFrom;
+        private long rowsRead;
+        private long rowsImported;
+        private long rowsFailed;
+        private long startedAt;
+        private String now;
+        private String today;
+
+        Job(String jobId, Target target, Format format, InputStream input, Listener listener, int batchSize) {
+            this.jobId = jobId;
+            this.target = target;
+            this.format = format;
+            this.input = input;
+            this.listener = listener;
+            this.batchSize = batchSize;
+            this.columns = columnsFor(target);
+            this.visitDateIndex = indexOf(columns, DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE);
+            this.vitalSignsIndex = indexOf(columns, DatabaseContract.MedicalRecordEntry.COLUMN_VITAL_SIGNS);
+        }
+
+        /**
+         * Stop after the batch in progress; the checkpoint lets the import resume later
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        private void runBatch() {
+            try {
+                if (!resumed) {
+                    resume();
+                }
+                if (cancelled) {
+                    finish(true);
+                    return;
+                }
+
+                List<String[]> batch = readBatch();
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                    final Progress progress = new Progress(jobId, rowsRead, rowsImported, rowsFailed,
+                            SystemClock.uptimeMillis() - startedAt);
+                    executor.postToMain(() -> listener.onProgress(progress));
+                }
+
+                if (batch.size() < batchSize) {
+                    finish(false);
+                } else {
+                    // Requeue so writes submitted meanwhile run before the next batch
+                    executor.submitWrite(this::runBatch);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Import " + jobId + " failed after " + rowsRead + " rows: " + e.getMessage());
+                close();
+                resumeSearchIndexing();
+                executor.postToMain(() -> listener.onFailed(e));
+            }
+        }
+
+        // Skip the rows an earlier run already committed, then prepare the writes for every batch
+        private void resume() throws IOException {
+            resumed = true;
+            startedAt = SystemClock.uptimeMillis();
+            now = String.valueOf(System.currentTimeMillis());
+            today = String.valueOf(DateCodec.todayEpochDay());
+
+            String query = "SELECT " + DatabaseContract.ImportCheckpointEntry.COLUMN_ROWS_READ + ", " +
+                    DatabaseContract.ImportCheckpointEntry.COLUMN_ROWS_IMPORTED + ", " +
+                    DatabaseContract.ImportCheckpointEntry.COLUMN_ROWS_FAILED +
+                    " FROM " + DatabaseContract.ImportCheckpointEntry.TABLE_NAME +
+                    " WHERE " + DatabaseContract.ImportCheckpointEntry.COLUMN_JOB_ID + " = ?";
+            long skip = 0;
+            try (Cursor cursor = dbHelper.getWritableDatabase().rawQuery(query, new String[]{jobId})) {
+                if (cursor.moveToFirst()) {
+                    skip = cursor.getLong(0);
+                    rowsImported = cursor.getLong(1);
+                    rowsFailed = cursor.getLong(2);
+                }
+            }
+
+            rows = openRows(format, input);
+            while (rowsRead < skip && rows.next(row)) {
+                rowsRead++;
+            }
+            resumedFrom = rowsRead;
+            if (resumedFrom > 0) {
+                Log.d(TAG, "Resuming import " + jobId + " after row " + resumedFrom);
+            }
+
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            if (suspendedImports == 0) {
+                dbHelper.suspendSearchIndexing(db);
+            }
+            suspendedImports++;
+            indexingSuspended = true;
+            // Compiled after the trigger swap, which would otherwise invalidate them
+            insert = db.compileStatement(insertSqlFor(target));
+            vitals = new VitalObservationWriter(db);
+        }
+
+        // Parsing happens before the transaction so the write lock is only held for inserts
+        private List<String[]> readBatch() throws IOException {
+            List<String[]> batch = new ArrayList<>(batchSize);
+            while (batch.size() < batchSize && rows.next(row)) {
+                String[] values = new String[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    values[i] = row.remove(columns[i].name);
+                }
+                if (!row.isEmpty()) {
+                    ignoredColumns.addAll(row.keySet());
+                }
+                batch.add(values);
+            }
+            return batch;
+        }
+
+        private void writeBatch(List<String[]> batch) {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (String[] values : batch) {
+                    rowsRead++;
+                    insertRow(values);
+                }
+                saveCheckpoint(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        // Failed rows are counted and reported, not thrown
+        private void insertRow(String[] values) {
+            insert.clearBindings();
+            long rowId = -1;
+            try {
+                for (int i = 0; i < columns.length; i++) {
+                    bind(insert, i + 1, columns[i], values[i]);
+                }
+                rowId = insert.executeInsert();
+                if (rowId == -1) {
+                    throw new IllegalStateException("Insert failed");
+                }
+                // Column 1 is patient_id for records and medications
+                long patientId = target == Target.PATIENTS ? rowId : Long.parseLong(values[1].trim());
+                if (vitalSignsIndex != -1 && values[vitalSignsIndex] != null) {
+                    vitals.write(rowId, patientId, parseEpochDay(columns[visitDateIndex], values[visitDateIndex]),
+                            values[vitalSignsIndex]);
+                }
+                rowsImported++;
+            } catch (Exception e) {
+                if (rowId != -1) {
+                    undoInsert(rowId);
+                }
+                rowsFailed++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new RowError(rowsRead, e.getMessage()));
+                }
+            }
+        }
+
+        // A row whose readings could not all be written is taken out again with any that were,
+        // so a failed row leaves nothing behind. The batch transaction has no savepoints, and
+        // the delete triggers undo the counters the insert moved.
+        private void undoInsert(long rowId) {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            String[] args = {String.valueOf(rowId)};
+            db.delete(DatabaseContract.VitalObservationEntry.TABLE_NAME,
+                    DatabaseContract.VitalObservationEntry.COLUMN_RECORD_ID + " = ?", args);
+            db.delete(tableFor(target), BaseColumns._ID + " = ?", args);
+        }
+
+        private void bind(SQLiteStatement insert, int index, Column column, String value) {
+            if (value != null && value.trim().isEmpty()) {
+                value = null;
+            }
+            if (value == null) {
+                if (column.required) {
+                    throw new IllegalArgumentException("Missing " + column.name);
+                }
+                value = DEFAULT_NOW.equals(column.defaultValue) ? now
+                        : DEFAULT_TODAY.equals(column.defaultValue) ? today
+                        : column.defaultValue;
+            }
+
+            if (value == null) {
+                insert.bindNull(index);
+            } else if (column.type == INTEGER) {
+                insert.bindLong(index, parseWholeNumber(column, value));
+            } else if (column.type == DAY) {
+                insert.bindLong(index, parseEpochDay(column, value));
+            } else if (column.type == MILLIS) {
+                insert.bindLong(index, parseEpochMillis(column, value));
+            } else {
+                insert.bindString(index, value);
+            }
+        }
+
+        private long parseWholeNumber(Column column, String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column.name + " is not a whole number: '" + value + "'");
+            }
+        }
+
+        // A date as exported and shown, or the epoch day itself
+        private long parseEpochDay(Column column, String value) {
+            String text = value.trim();
+            if (isWholeNumber(text)) {
+                return parseWholeNumber(column, text);
+            }
+            long epochDay = DateCodec.parseEpochDayLenient(text);
+            if (epochDay == DateCodec.INVALID) {
+                throw new IllegalArgumentException(column.name + " is not a date: '" + value + "'");
+            }
+            return epochDay;
+        }
+
+        // A local timestamp as exported, a date taken as its midnight, or epoch milliseconds
+        private long parseEpochMillis(Column column, String value) {
+            String text = value.trim();
+            if (isWholeNumber(text)) {
+                return parseWholeNumber(column, text);
+            }
+            long wallSeconds = DateCodec.parseDateTimeLenient(text);
+            if (wallSeconds == DateCodec.INVALID) {
+                long epochDay = DateCodec.parseEpochDayLenient(text);
+                if (epochDay == DateCodec.INVALID) {
+                    throw new IllegalArgumentException(column.name + " is not a timestamp: '" + value + "'");
+                }
+                wallSeconds = epochDay * 24 * 60 * 60;
+            }
+            return DateCodec.toEpochMillis(wallSeconds);
+        }
+
+        private void saveCheckpoint(SQLiteDatabase db) {
+            db.execSQL("INSERT OR REPLACE INTO " + DatabaseContract.ImportCheckpointEntry.TABLE_NAME + " (" +
+                            DatabaseContract.ImportCheckpointEntry.COLUMN_JOB_ID + ", " +
+                            DatabaseContract.ImportCheckpointEntry.COLUMN_ROWS_READ + ", " +
+                            DatabaseContract.ImportCheckpointEntry.COLUMN_ROWS_IMPORTED + ", " +
+                            DatabaseContract.ImportCheckpointEntry.COLUMN_ROWS_FAILED + ", " +
+                            DatabaseContract.ImportCheckpointEntry.COLUMN_UPDATED_AT + ") VALUES (?, ?, ?, ?, ?)",
+                    new Object[]{jobId, rowsRead, rowsImported, rowsFailed, System.currentTimeMillis()});
+        }
+
+        private void finish(boolean wasCancelled) {
+            close();
+            resumeSearchIndexing();
+            if (!wasCancelled) {
+                // A finished job starts from the top if it is run again
+                dbHelper.getWritableDatabase().delete(DatabaseContract.ImportCheckpointEntry.TABLE_NAME,
+                        DatabaseContract.ImportCheckpointEntry.COLUMN_JOB_ID + " = ?", new String[]{jobId});
+            }
+
+            final ImportReport report = new ImportReport(jobId, target, resumedFrom, rowsRead, rowsImported,
+                    rowsFailed, SystemClock.uptimeMillis() - startedAt, wasCancelled,
+                    new ArrayList<>(ignoredColumns), new ArrayList<>(errors));
+            Log.d(TAG, report.getSummary());
+            executor.postToMain(() -> listener.onFinished(report));
+        }
+
+        // The last import to end puts the search triggers back and reindexes everything queued
+        private void resumeSearchIndexing() {
+            if (indexingSuspended) {
+                indexingSuspended = false;
+                try {
+                    if (--suspendedImports == 0) {
+                        dbHelper.resumeSearchIndexing(dbHelper.getWritableDatabase());
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error reindexing imported patients: " + e.getMessage());
+                }
+            }
+            repository.invalidateCaches();
+        }
+
+        private void close() {
+            if (insert != null) {
+                insert.close();
+                insert = null;
+            }
+            if (vitals != null) {
+                vitals.close();
+                vitals = null;
+            }
+            try {
+                if (rows != null) {
+                    rows.close();
+                } else {
+                    input.close();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing import input: " + e.getMessage());
+            }
+        }
+    }
+
+    // ==================== RESULTS ====================
+
+    /**
+     * Counts after a committed batch; rows include those an earlier run committed
+     */
+    public static class Progress {
+        private final String jobId;
+        private final long rowsRead;
+        private final long rowsImported;
+        private final long rowsFailed;
+        private final long elapsedMs;
+
+        Progress(String jobId, long rowsRead, long rowsImported, long rowsFailed, long elapsedMs) {
+            this.jobId = jobId;
+            this.rowsRead = rowsRead;
+            this.rowsImported = rowsImported;
+            this.rowsFailed = rowsFailed;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public String getJobId() { return jobId; }
+        public long getRowsRead() { return rowsRead; }
+        public long getRowsImported() { return rowsImported; }
+        public long getRowsFailed() { return rowsFailed; }
+        public long getElapsedMs() { return elapsedMs; }
+    }
+
+    /**
+     * A row that was skipped; rowNumber counts data rows from 1, not counting a CSV header
+     */
+    public static class RowError {
+        private final long rowNumber;
+        private final String message;
+
+        RowError(long rowNumber, String message) {
+            this.rowNumber = rowNumber;
+            this.message = message;
+        }
+
+        public long getRowNumber() { return rowNumber; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "row " + rowNumber + ": " + message;
+        }
+    }
+
+    public static class ImportReport {
+        private final String jobId;
+        private final Target target;
+        private final long resumedFrom;
+        private final long rowsRead;
+        private final long rowsImported;
+        private final long rowsFailed;
+        private final long elapsedMs;
+        private final boolean cancelled;
+        private final List<String> ignoredColumns;
+        private final List<RowError> errors;
+
+        ImportReport(String jobId, Target target, long resumedFrom, long rowsRead, long rowsImported,
+                     long rowsFailed, long elapsedMs, boolean cancelled, List<String> ignoredColumns,
+                     List<RowError> errors) {
+            this.jobId = jobId;
+            this.target = target;
+            this.resumedFrom = resumedFrom;
+            this.rowsRead = rowsRead;
+            this.rowsImported = rowsImported;
+            this.rowsFailed = rowsFailed;
+            this.elapsedMs = elapsedMs;
+            this.cancelled = cancelled;
+            this.ignoredColumns = Collections.unmodifiableList(ignoredColumns);
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public String getJobId() { return jobId; }
+        public Target getTarget() { return target; }
+
+        /**
+         * Rows skipped because an earlier run of the job committed them
+         */
+        public long getResumedFrom() { return resumedFrom; }
+
+        public long getRowsRead() { return rowsRead; }
+        public long getRowsImported() { return rowsImported; }
+        public long getRowsFailed() { return rowsFailed; }
+        public long getElapsedMs() { return elapsedMs; }
+        public boolean isCancelled() { return cancelled; }
+
+        /**
+         * Input columns that match no database column and were not imported
+         */
+        public List<String> getIgnoredColumns() { return ignoredColumns; }
+
+        /**
+         * Failed rows of this run, at most MAX_REPORTED_ERRORS; see getRowsFailed for the total
+         */
+        public List<RowError> getErrors() { return errors; }
+
+        /**
+         * Rows processed per second in this run, excluding rows skipped on resume
+         */
+        public long getRowsPerSecond() {
+            long processed = rowsRead - resumedFrom;
+            return elapsedMs == 0 ? processed : processed * 1000 / elapsedMs;
+        }
+
+        /**
+         * Get a one-line summary for logging
+         */
+        public String getSummary() {
+            return "import " + jobId + " (" + target + "): " + rowsImported + " imported, " + rowsFailed +
+                    " failed of " + rowsRead + " rows" + (resumedFrom > 0 ? " (resumed after " + resumedFrom + ")" : "") +
+                    " in " + elapsedMs + "ms, " + getRowsPerSecond() + " rows/s" + (cancelled ? ", cancelled" : "");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.david.patientrecords.database;
+
+import android.database.Cursor;
+
+import com.david.patientrecords.models.MedicalRecord;
+import com.david.patientrecords.models.Medication;
+import com.david.patientrecords.models.Patient;
+import com.david.patientrecords.utils.DateCodec;
+
+/**
+ * Row mappers that resolve column indexes once per cursor.
+ *
+ * Create one mapper after the query returns and call map() for each row, instead
+ * of looking every column up by name on every row.
+ */
+final class CursorMappers {
+
+    // Prevent instantiation
+    private CursorMappers() {}
+
+    private static String getOptionalString(Cursor cursor, int index) {
+        return index == -1 ? null : cursor.getString(index);
+    }
+
+    // Date columns hold epoch days; NULL reads as DateCodec.INVALID rather than day 0
+    static long getEpochDay(Cursor cursor, int index) {
+        return cursor.isNull(index) ? DateCodec.INVALID : cursor.getLong(index);
+    }
+
+    // ==================== PATIENT ====================
+
+    static final class PatientMapper {
+        private final int id;
+        private final int patientName;
+        private final int age;
+        private final int gender;
+        private final int phone;
+        private final int address;
+        private final int bloodType;
+        private final int emergencyContact;
+        private final int emergencyPhone;
+        private final int medicalConditions;
+        private final int allergies;
+        private final int profileImage;
+        private final int imagePath;
+        private final int registrationDate;
+        private final int isActive;
+        private final int createdAt;
+        private final int updatedAt;
+
+        PatientMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry._ID);
+            patientName = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
+            age = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_AGE);
+            gender = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_GENDER);
+            phone = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_PHONE);
+            address = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_ADDRESS);
+            bloodType = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_BLOOD_TYPE);
+            emergencyContact = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_EMERGENCY_CONTACT);
+            emergencyPhone = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_EMERGENCY_PHONE);
+            medicalConditions = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_MEDICAL_CONDITIONS);
+            allergies = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_ALLERGIES);
+            profileImage = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_PROFILE_IMAGE);
+            // image_path was added in version 2, keep it optional
+            imagePath = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_IMAGE_PATH);
+            registrationDate = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE);
+            isActive = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE);
+            createdAt = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_CREATED_AT);
+            updatedAt = cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_UPDATED_AT);
+        }
+
+        Patient map(Cursor cursor) {
+            Patient patient = new Patient();
+
+            patient.setId(cursor.getLong(id));
+            patient.setPatientName(cursor.getString(patientName));
+            patient.setAge(cursor.getInt(age));
+            patient.setGender(cursor.getString(gender));
+            patient.setPhone(cursor.getString(phone));
+            patient.setAddress(cursor.getString(address));
+            patient.setBloodType(cursor.getString(bloodType));
+            patient.setEmergencyContact(cursor.getString(emergencyContact));
+            patient.setEmergencyPhone(cursor.getString(emergencyPhone));
+            patient.setMedicalConditions(cursor.getString(medicalConditions));
+            patient.setAllergies(cursor.getString(allergies));
+            patient.setProfileImage(cursor.getString(profileImage));
+            patient.setImagePath(getOptionalString(cursor, imagePath));
+            patient.setRegistrationDay(getEpochDay(cursor, registrationDate));
+            patient.setActive(cursor.getInt(isActive) == 1);
+            patient.setCreatedAt(cursor.getLong(createdAt));
+            patient.setUpdatedAt(cursor.getLong(updatedAt));
+
+            return patient;
+        }
+    }
+
+    // ==================== MEDICAL RECORD ====================
+
+    static final class MedicalRecordMapper {
+        private final int id;
+        private final int patientId;
+        private final int visitDate;
+        private final int symptoms;
+        private final int diagnosis;
+        private final int treatment;
+        private final int doctorName;
+        private final int doctorSpecialty;
+        private final int vitalSigns;
+        private final int notes;
+        private final int followUpDate;
+        private final int visitType;
+        private final int createdAt;
+        private final int updatedAt;
+        private final int patientName;
+
+        MedicalRecordMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry._ID);
+            patientId = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID);
+            visitDate = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE);
+            symptoms = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_SYMPTOMS);
+            diagnosis = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_DIAGNOSIS);
+            treatment = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_TREATMENT);
+            doctorName = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_NAME);
+            doctorSpecialty = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY);
+            vitalSigns = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_VITAL_SIGNS);
+            notes = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_NOTES);
+            followUpDate = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE);
+            visitType = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_TYPE);
+            createdAt = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_CREATED_AT);
+            updatedAt = cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_UPDATED_AT);
+            // Only present when joined with the patients table
+            patientName = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
+        }
+
+        MedicalRecord map(Cursor cursor) {
+            MedicalRecord record = new MedicalRecord();
+
+            record.setId(cursor.getLong(id));
+            record.setPatientId(cursor.getLong(patientId));
+            record.setVisitDay(getEpochDay(cursor, visitDate));
+            record.setSymptoms(cursor.getString(symptoms));
+            record.setDiagnosis(cursor.getString(diagnosis));
+            record.setTreatment(cursor.getString(treatment));
+            record.setDoctorName(cursor.getString(doctorName));
+            record.setDoctorSpecialty(cursor.getString(doctorSpecialty));
+            record.setVitalSigns(cursor.getString(vitalSigns));
+            record.setNotes(cursor.getString(notes));
+            record.setFollowUpDay(getEpochDay(cursor, followUpDate));
+            record.setVisitType(cursor.getString(visitType));
+            record.setCreatedAt(cursor.getLong(createdAt));
+            record.setUpdatedAt(cursor.getLong(updatedAt));
+            if (patientName != -1) {
+                record.setPatientName(cursor.getString(patientName));
+            }
+
+            return record;
+        }
+    }
+
+    // ==================== MEDICATION ====================
+
+    static final class MedicationMapper {
+        private final int id;
+        private final int patientId;
+        private final int medicationName;
+        private final int genericName;
+        private final int dosage;
+        private final int frequency;
+        private final int startDate;
+        private final int endDate;
+        private final int prescribedBy;
+        private final int instructions;
+        private final int sideEffects;
+        private final int isActive;
+        private final int refillsRemaining;
+        private final int pharmacyName;
+        private final int createdAt;
+        private final int updatedAt;
+        private final int patientName;
+
+        MedicationMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry._ID);
+            patientId = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID);
+            medicationName = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_MEDICATION_NAME);
+            genericName = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_GENERIC_NAME);
+            dosage = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_DOSAGE);
+            frequency = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_FREQUENCY);
+            startDate = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_START_DATE);
+            endDate = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_END_DATE);
+            prescribedBy = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_PRESCRIBED_BY);
+            instructions = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_INSTRUCTIONS);
+            sideEffects = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_SIDE_EFFECTS);
+            isActive = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE);
+            refillsRemaining = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_REFILLS_REMAINING);
+            pharmacyName = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_PHARMACY_NAME);
+            createdAt = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_CREATED_AT);
+            updatedAt = cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_UPDATED_AT);
+            // Only present when joined with the patients table
+            patientName = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
+        }
+
+        Medication map(Cursor cursor) {
+            Medication medication = new Medication();
+
+            medication.setId(cursor.getLong(id));
+            medication.setPatientId(cursor.getLong(patientId));
+            medication.setMedicationName(cursor.getString(medicationName));
+            medication.setGenericName(cursor.getString(genericName));
+            medication.setDosage(cursor.getString(dosage));
+            medication.setFrequency(cursor.getString(frequency));
+            medication.setStartDay(getEpochDay(cursor, startDate));
+            medication.setEndDay(getEpochDay(cursor, endDate));
+            medication.setPrescribedBy(cursor.getString(prescribedBy));
+            medication.setInstructions(cursor.getString(instructions));
+            medication.setSideEffects(cursor.getString(sideEffects));
+            medication.setActive(cursor.getInt(isActive) == 1);
+            medication.setRefillsRemaining(cursor.getInt(refillsRemaining));
+            medication.setPharmacyName(cursor.getString(pharmacyName));
+            medication.setCreatedAt(cursor.getLong(createdAt));
+            medication.setUpdatedAt(cursor.getLong(updatedAt));
+            if (patientName != -1) {
+                medication.setPatientName(cursor.getString(patientName));
+            }
+
+            return medication;
+        }
+    }
+}
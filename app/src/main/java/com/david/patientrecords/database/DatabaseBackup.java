@@ -0,0 +1,677 @@
+package com.david.patientrecords.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.david.patientrecords.utils.Constants;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Online backups of the database into Constants.BACKUP_FOLDER.
+ *
+ * A backup first takes a consistent snapshot of the database into a scratch file
+ * without holding a lock that would stop saves. With write-ahead logging and SQLite
+ * 3.27 or later (Android 11 and up) the snapshot is one VACUUM INTO on a separate
+ * read-only connection, and a WAL reader never blocks the writer. Otherwise the live
+ * database is attached to the scratch file and its tables are copied a chunk of rows
+ * per step, so a lock is only held for one chunk at a time. PRAGMA data_version shows
+ * whether another connection committed while the copy ran, in which case the copy
+ * starts over, as SQLite's page-level backup API does. If saves keep landing through
+ * MAX_STEPPED_COPY_ATTEMPTS attempts, the last one copies everything in a single
+ * transaction that holds saves off until it ends.
+ *
+ * The snapshot is then gzipped into the backup folder and the oldest backups beyond
+ * Constants.BACKUP_GENERATIONS are deleted. Every step is a separate task on the
+ * DbExecutor reader pool, so a backup mostly holds a reader thread for one chunk at a
+ * time. The exceptions are the VACUUM INTO, which holds one of the three reader threads
+ * for the whole snapshot, seconds on a large database, while screens share the other
+ * two; and the blocking copy, which runs on the writer lane instead.
+ */
+public class DatabaseBackup {
+
+    private static final String TAG = "DatabaseBackup";
+    private static final String FILE_PREFIX = "patient_records_";
+    private static final String FILE_SUFFIX = ".db.gz";
+    private static final String PARTIAL_SUFFIX = ".tmp";
+    private static final String SNAPSHOT_NAME = "snapshot" + PARTIAL_SUFFIX;
+    private static final int COPY_STEP_ROWS = 1000;
+    private static final int COMPRESS_STEP_BYTES = 8 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_STEPPED_COPY_ATTEMPTS = 4;
+    // The start of the statement SQLite keeps for a table, up to its name
+    private static final Pattern CREATE_TABLE = Pattern.compile("^\\s*CREATE\\s+TABLE\\s+", Pattern.CASE_INSENSITIVE);
+
+    public enum Method { VACUUM_INTO, STEPPED_COPY }
+
+    public enum Phase { SNAPSHOT, COMPRESS }
+
+    // Delivered on the main thread
+    public interface Listener {
+        void onProgress(Progress progress);
+        void onFinished(BackupReport report);
+        void onFailed(Exception e);
+    }
+
+    private static DatabaseBackup instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final DbExecutor executor;
+    private final File directory;
+    private Job running; // Guarded by this
+
+    // Singleton pattern
+    public static synchronized DatabaseBackup getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseBackup(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DatabaseBackup(Context context) {
+        this(context, DatabaseHelper.getInstance(context), new File(context.getFilesDir(), Constants.BACKUP_FOLDER));
+    }
+
+    // Backs up the given helper's database into directory, for tests
+    DatabaseBackup(Context context, DatabaseHelper dbHelper, File directory) {
+        this.context = context;
+        this.dbHelper = dbHelper;
+        this.executor = DbExecutor.getInstance();
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized boolean isRunning() {
+        return running != null;
+    }
+
+    /**
+     * Finished backups, newest first
+     */
+    public List<File> getBackups() {
+        List<File> backups = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return backups;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                backups.add(file);
+            }
+        }
+        // Names end in a timestamp, so they sort by age
+        Collections.sort(backups, (a, b) -> b.getName().compareTo(a.getName()));
+        return backups;
+    }
+
+    /**
+     * Start a backup in the background if the last one finished more than
+     * Constants.BACKUP_INTERVAL_MS ago
+     */
+    public void backupIfDue() {
+        SharedPreferences prefs = context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE);
+        if (System.currentTimeMillis() - prefs.getLong(Constants.PREF_LAST_BACKUP, 0) < Constants.BACKUP_INTERVAL_MS) {
+            return;
+        }
+        start(new Listener() {
+            @Override
+            public void onProgress(Progress progress) {
+            }
+
+            @Override
+            public void onFinished(BackupReport report) {
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                Log.e(TAG, "Scheduled backup failed", e);
+            }
+        });
+    }
+
+    /**
+     * Start a backup, or return null if one is already running
+     */
+    @Nullable
+    public synchronized Job start(@NonNull Listener listener) {
+        if (running != null) {
+            return null;
+        }
+        running = new Job(listener);
+        executor.submitRead(running::runStep);
+        return running;
+    }
+
+    private synchronized void finished(Job job) {
+        if (running == job) {
+            running = null;
+        }
+    }
+
+    // ==================== JOB ====================
+
+    /**
+     * A running backup; steps run one at a time, so its state needs no locking
+     */
+    public class Job {
+        private final Listener listener;
+        private final BackupReport report = new BackupReport();
+        private volatile boolean cancelled;
+
+        private Phase phase;
+        private String livePath;
+        private File snapshotFile;
+        private long startedAt;
+        private long phaseStartedAt;
+
+        // Stepped copy
+        private SQLiteDatabase copyDb;
+        private long dataVersion;
+        private List<String[]> schema; // type, name, tbl_name, sql of the live database
+        private List<String> copyTables;
+        private List<Boolean> withoutRowid;
+        private int tableIndex;
+        private long lastRowid;
+
+        // Compression
+        private InputStream in;
+        private FileOutputStream fileOut;
+        private GZIPOutputStream out;
+        private File partialFile;
+        private File backupFile;
+        private byte[] buffer;
+
+        Job(Listener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Stop after the step in progress and delete the partial files
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void runStep() {
+            try {
+                if (cancelled) {
+                    throw new CancellationException("Backup cancelled");
+                }
+                if (phase == null) {
+                    begin();
+                }
+
+                Progress progress;
+                if (phase == Phase.SNAPSHOT) {
+                    boolean done = report.method == Method.VACUUM_INTO ? vacuumInto() : copyStep();
+                    progress = new Progress(Phase.SNAPSHOT, report.rowsCopied, 0, SystemClock.elapsedRealtime() - startedAt);
+                    if (done) {
+                        report.snapshotMs = SystemClock.elapsedRealtime() - phaseStartedAt;
+                        openCompression();
+                    }
+                } else {
+                    if (compressStep()) {
+                        finish();
+                        executor.postToMain(() -> listener.onFinished(report));
+                        return;
+                    }
+                    progress = new Progress(Phase.COMPRESS, report.databaseBytes - in.available(), report.databaseBytes,
+                            SystemClock.elapsedRealtime() - startedAt);
+                }
+
+                executor.postToMain(() -> listener.onProgress(progress));
+                if (blockingCopyNext()) {
+                    // Saves queue on the writer lane, so there they wait their turn instead of timing out on the lock
+                    executor.submitWrite(this::runStep);
+                } else {
+                    executor.submitRead(this::runStep);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Backup failed in " + phase + " phase: " + e.getMessage());
+                abort();
+                executor.postToMain(() -> listener.onFailed(e));
+            }
+        }
+
+        private void begin() throws IOException {
+            startedAt = SystemClock.elapsedRealtime();
+            phaseStartedAt = startedAt;
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            deletePartialFiles();
+
+            SQLiteDatabase live = dbHelper.getReadableDatabase();
+            livePath = live.getPath();
+            // Room for the snapshot and its compressed copy
+            long liveBytes = new File(livePath).length();
+            if (directory.getUsableSpace() < liveBytes * 2) {
+                throw new IOException("Not enough free space to back up " + liveBytes / 1024 + " KB");
+            }
+
+            // Without WAL a reader blocks commits, so only a copy in short steps keeps saves going
+            report.method = live.isWriteAheadLoggingEnabled() && supportsVacuumInto(live)
+                    ? Method.VACUUM_INTO : Method.STEPPED_COPY;
+            snapshotFile = new File(directory, SNAPSHOT_NAME);
+            phase = Phase.SNAPSHOT;
+            Log.d(TAG, "Backing up " + liveBytes / 1024 + " KB with " + report.method);
+        }
+
+        // ==================== SNAPSHOT ====================
+
+        // One statement on a reader thread, which it holds until the whole snapshot is written
+        private boolean vacuumInto() {
+            report.attempts = 1;
+            SQLiteDatabase source = SQLiteDatabase.openDatabase(livePath, null,
+                    SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            try {
+                source.execSQL("VACUUM INTO ?", new Object[]{snapshotFile.getPath()});
+            } finally {
+                source.close();
+            }
+            return true;
+        }
+
+        // Returns true once the snapshot is complete and consistent
+        private boolean copyStep() {
+            if (copyDb == null) {
+                boolean blocking = blockingCopyNext();
+                openCopy();
+                if (blocking) {
+                    blockingCopy();
+                    return true;
+                }
+                dataVersion = liveDataVersion();
+                createTables();
+            } else if (tableIndex < copyTables.size()) {
+                copyChunk();
+            } else if (finishCopy()) {
+                return true;
+            } else {
+                restartCopy();
+                return false;
+            }
+
+            if (liveDataVersion() != dataVersion) {
+                restartCopy();
+            }
+            return false;
+        }
+
+        private void openCopy() {
+            report.attempts++;
+            copyDb = SQLiteDatabase.openDatabase(snapshotFile.getPath(), null,
+                    SQLiteDatabase.CREATE_IF_NECESSARY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            // A scratch file is copied again from the start if anything goes wrong, so skip the journal and syncs
+            pragma(copyDb, "journal_mode = OFF");
+            pragma(copyDb, "synchronous = OFF");
+            copyDb.execSQL("ATTACH DATABASE ? AS live", new Object[]{livePath});
+        }
+
+        // Read the live schema and create its tables in the copy
+        private void createTables() {
+            schema = new ArrayList<>();
+            try (Cursor cursor = copyDb.rawQuery("SELECT type, name, tbl_name, sql FROM live.sqlite_master" +
+                    " WHERE sql IS NOT NULL ORDER BY rowid", null)) {
+                while (cursor.moveToNext()) {
+                    schema.add(new String[]{cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                            cursor.getString(3)});
+                }
+            }
+
+            // Tables now, indexes and triggers once the rows are in so no trigger fires on the copy
+            copyTables = new ArrayList<>();
+            withoutRowid = new ArrayList<>();
+            for (String[] entry : schema) {
+                if (!entry[0].equals("table") || entry[1].startsWith("sqlite_")) {
+                    continue;
+                }
+                String sql = entry[3];
+                if (sql.regionMatches(true, 0, "CREATE VIRTUAL TABLE", 0, 20)) {
+                    // Creates its shadow tables, whose rows are copied like any other table's
+                    copyDb.execSQL(sql);
+                    continue;
+                }
+                // Shadow tables already exist
+                Matcher create = CREATE_TABLE.matcher(sql);
+                if (!create.lookingAt()) {
+                    throw new IllegalStateException("Unexpected statement for table " + entry[1] + ": " + sql);
+                }
+                copyDb.execSQL("CREATE TABLE IF NOT EXISTS " + sql.substring(create.end()));
+                copyTables.add(entry[1]);
+                withoutRowid.add(sql.toUpperCase(Locale.US).contains("WITHOUT ROWID"));
+            }
+            tableIndex = 0;
+            lastRowid = Long.MIN_VALUE;
+        }
+
+        // Copy the next rows of the current table in rowid order
+        private void copyChunk() {
+            String table = quote(copyTables.get(tableIndex));
+            if (withoutRowid.get(tableIndex)) {
+                // Only small lookup tables are declared without rowid, copy them whole
+                copyDb.execSQL("INSERT INTO main." + table + " SELECT * FROM live." + table);
+                report.rowsCopied += DatabaseUtils.longForQuery(copyDb, "SELECT changes()", null);
+                nextTable();
+                return;
+            }
+
+            long count = 0;
+            long maxRowid = lastRowid;
+            try (Cursor cursor = copyDb.rawQuery("SELECT count(*), max(rowid) FROM (SELECT rowid FROM live." + table +
+                    " WHERE rowid > " + lastRowid + " ORDER BY rowid LIMIT " + COPY_STEP_ROWS + ")", null)) {
+                if (cursor.moveToFirst()) {
+                    count = cursor.getLong(0);
+                    maxRowid = cursor.getLong(1);
+                }
+            }
+            if (count == 0) {
+                nextTable();
+                return;
+            }
+
+            copyDb.execSQL("INSERT INTO main." + table + " SELECT * FROM live." + table +
+                    " WHERE rowid > " + lastRowid + " AND rowid <= " + maxRowid);
+            report.rowsCopied += count;
+            lastRowid = maxRowid;
+        }
+
+        private void nextTable() {
+            tableIndex++;
+            lastRowid = Long.MIN_VALUE;
+        }
+
+        /**
+         * Copy everything in one transaction, once saves landed during every stepped attempt.
+         * The transaction takes the live database's write lock, so nothing commits until the
+         * copy ends and it cannot be interrupted.
+         */
+        private void blockingCopy() {
+            Log.d(TAG, "Copying in one transaction after " + MAX_STEPPED_COPY_ATTEMPTS + " interrupted attempts");
+            copyDb.beginTransactionNonExclusive();
+            try {
+                createTables();
+                while (tableIndex < copyTables.size()) {
+                    copyChunk();
+                }
+                copyRest();
+                copyDb.setTransactionSuccessful();
+            } finally {
+                copyDb.endTransaction();
+            }
+            closeCopy();
+        }
+
+        // The last stepped attempt failed, so the next one copies everything at once
+        private boolean blockingCopyNext() {
+            return report.method == Method.STEPPED_COPY && phase == Phase.SNAPSHOT && copyDb == null
+                    && report.attempts >= MAX_STEPPED_COPY_ATTEMPTS;
+        }
+
+        // Copy what the rows do not carry, then report whether the live database stayed unchanged
+        private boolean finishCopy() {
+            copyRest();
+            boolean consistent = liveDataVersion() == dataVersion;
+            closeCopy();
+            return consistent;
+        }
+
+        private void copyRest() {
+            if (DatabaseUtils.longForQuery(copyDb,
+                    "SELECT count(*) FROM main.sqlite_master WHERE name = 'sqlite_sequence'", null) > 0) {
+                // AUTOINCREMENT counters can be ahead of the largest id left after deletes
+                copyDb.execSQL("DELETE FROM main.sqlite_sequence");
+                copyDb.execSQL("INSERT INTO main.sqlite_sequence SELECT * FROM live.sqlite_sequence");
+            }
+            for (String[] entry : schema) {
+                if (!entry[0].equals("table") && !entry[2].startsWith("sqlite_")) {
+                    copyDb.execSQL(entry[3]);
+                }
+            }
+            // SQLiteOpenHelper reads the schema version from here to decide on migrations
+            copyDb.execSQL("PRAGMA main.user_version = " +
+                    DatabaseUtils.longForQuery(copyDb, "PRAGMA live.user_version", null));
+        }
+
+        private void restartCopy() {
+            Log.d(TAG, "Database changed during copy attempt " + report.attempts + ", starting over");
+            closeCopy();
+            deleteFile(snapshotFile);
+            report.rowsCopied = 0;
+        }
+
+        private long liveDataVersion() {
+            return DatabaseUtils.longForQuery(copyDb, "PRAGMA live.data_version", null);
+        }
+
+        private void closeCopy() {
+            if (copyDb != null) {
+                copyDb.close();
+                copyDb = null;
+            }
+        }
+
+        // ==================== COMPRESSION ====================
+
+        private void openCompression() throws IOException {
+            phase = Phase.COMPRESS;
+            phaseStartedAt = SystemClock.elapsedRealtime();
+            report.databaseBytes = snapshotFile.length();
+
+            String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+            backupFile = new File(directory, FILE_PREFIX + stamp + FILE_SUFFIX);
+            partialFile = new File(directory, backupFile.getName() + PARTIAL_SUFFIX);
+            buffer = new byte[BUFFER_SIZE];
+            in = new FileInputStream(snapshotFile);
+            fileOut = new FileOutputStream(partialFile);
+            out = new GZIPOutputStream(fileOut, BUFFER_SIZE);
+        }
+
+        // Returns true once the whole snapshot is compressed
+        private boolean compressStep() throws IOException {
+            int total = 0;
+            while (total < COMPRESS_STEP_BYTES) {
+                int read = in.read(buffer);
+                if (read == -1) {
+                    return true;
+                }
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return false;
+        }
+
+        private void finish() throws IOException {
+            out.finish();
+            out.flush();
+            // On disk before the rename, so a crash never leaves a truncated file under a backup name
+            fileOut.getFD().sync();
+            closeStreams();
+            if (!partialFile.renameTo(backupFile)) {
+                throw new IOException("Could not move " + partialFile + " to " + backupFile);
+            }
+            deleteFile(snapshotFile);
+
+            report.compressMs = SystemClock.elapsedRealtime() - phaseStartedAt;
+            report.compressedBytes = backupFile.length();
+            report.fileName = backupFile.getName();
+            report.deletedBackups = deleteOldBackups();
+            report.durationMs = SystemClock.elapsedRealtime() - startedAt;
+
+            context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE).edit()
+                    .putLong(Constants.PREF_LAST_BACKUP, System.currentTimeMillis())
+                    .putString(Constants.PREF_LAST_BACKUP_SUMMARY, report.getSummary())
+                    .apply();
+            Log.d(TAG, report.getSummary());
+            finished(this);
+        }
+
+        private void abort() {
+            closeCopy();
+            try {
+                closeStreams();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing backup files: " + e.getMessage());
+            }
+            deleteFile(snapshotFile);
+            deleteFile(partialFile);
+            finished(this);
+        }
+
+        private void closeStreams() throws IOException {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } finally {
+                out = null;
+                fileOut = null;
+                if (in != null) {
+                    in.close();
+                    in = null;
+                }
+            }
+        }
+    }
+
+    // ==================== FILES ====================
+
+    // Leftovers of a backup interrupted by the process dying
+    private void deletePartialFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(PARTIAL_SUFFIX)) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    private int deleteOldBackups() {
+        List<File> backups = getBackups();
+        int deleted = 0;
+        for (int i = Constants.BACKUP_GENERATIONS; i < backups.size(); i++) {
+            if (backups.get(i).delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static void deleteFile(@Nullable File file) {
+        if (file != null && file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+    }
+
+    // VACUUM INTO arrived in SQLite 3.27
+    private static boolean supportsVacuumInto(SQLiteDatabase db) {
+        String[] version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null).split("\\.");
+        int major = Integer.parseInt(version[0]);
+        int minor = version.length > 1 ? Integer.parseInt(version[1]) : 0;
+        return major > 3 || (major == 3 && minor >= 27);
+    }
+
+    // Some pragmas return the new value, so run them as queries rather than execSQL
+    private static void pragma(SQLiteDatabase db, String assignment) {
+        try (Cursor cursor = db.rawQuery("PRAGMA " + assignment, null)) {
+            cursor.moveToFirst();
+        }
+    }
+
+    private static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    // ==================== REPORTS ====================
+
+    public static class Progress {
+        private final Phase phase;
+        private final long done;
+        private final long total;
+        private final long elapsedMs;
+
+        Progress(Phase phase, long done, long total, long elapsedMs) {
+            this.phase = phase;
+            this.done = done;
+            this.total = total;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public Phase getPhase() { return phase; }
+        /** Rows copied while taking the snapshot, bytes read while compressing */
+        public long getDone() { return done; }
+        /** Snapshot bytes while compressing, 0 while taking the snapshot */
+        public long getTotal() { return total; }
+        public long getElapsedMs() { return elapsedMs; }
+    }
+
+    public static class BackupReport {
+        private String fileName;
+        private Method method;
+        private int attempts;
+        private long rowsCopied;
+        private long databaseBytes;
+        private long compressedBytes;
+        private long snapshotMs;
+        private long compressMs;
+        private long durationMs;
+        private int deletedBackups;
+
+        public String getFileName() { return fileName; }
+        public Method getMethod() { return method; }
+        /** Copies started, more than one when saves landed while copying */
+        public int getAttempts() { return attempts; }
+        /** Rows copied by a stepped copy, 0 for VACUUM INTO */
+        public long getRowsCopied() { return rowsCopied; }
+        public long getDatabaseBytes() { return databaseBytes; }
+        public long getCompressedBytes() { return compressedBytes; }
+        public long getSnapshotMs() { return snapshotMs; }
+        public long getCompressMs() { return compressMs; }
+        public long getDurationMs() { return durationMs; }
+        /** Old generations removed by rotation */
+        public int getDeletedBackups() { return deletedBackups; }
+
+        /** Snapshot size over the whole backup time, in MB per second */
+        public double getThroughputMbPerSecond() {
+            return durationMs == 0 ? 0 : databaseBytes / 1048576.0 / (durationMs / 1000.0);
+        }
+
+        public String getSummary() {
+            return String.format(Locale.US,
+                    "Backup %s: %.1f MB to %.1f MB by %s (%d attempt%s) in %dms, snapshot %dms, compression %dms, %.1f MB/s, %d old backups deleted",
+                    fileName, databaseBytes / 1048576.0, compressedBytes / 1048576.0, method, attempts,
+                    attempts == 1 ? "" : "s", durationMs, snapshotMs, compressMs, getThroughputMbPerSecond(),
+                    deletedBackups);
+        }
+    }
+}
@@ -5,7 +5,17 @@ import android.provider.BaseColumns;
 public final class DatabaseContract {
 
     public static final String DATABASE_NAME = "patient_records.db";
-    public static final int DATABASE_VERSION = 2; // Incremented for image_path addition
+    // Version history (each step has a migration in DatabaseHelper.migrateTo):
+    // 2 - image_path column on patients
+    // 3 - secondary indexes for patient, follow-up and expiry lookups
+    // 4 - patient_search full-text index and its sync triggers
+    // 5 - stats_counters table and the triggers that maintain it
+    // 6 - import_checkpoints and patient_search_pending tables for bulk import
+    // 7 - date columns as INTEGER epoch days, created_at/updated_at as epoch milliseconds
+    // 8 - vital_observations table, backfilled from the vital_signs text of every record
+    // 9 - report_rollups table and the triggers that maintain it
+    // 10 - import_checkpoints.updated_at as epoch milliseconds, leaner stats_counters patient triggers
+    public static final int DATABASE_VERSION = 10;
 
     // Prevent instantiation
     private DatabaseContract() {}
@@ -69,6 +79,101 @@ public final class DatabaseContract {
         public static final String COLUMN_UPDATED_AT = "updated_at";
     }
 
+    // Numeric vital-sign readings parsed from each record's vital_signs text, one row per metric
+    public static class VitalObservationEntry implements BaseColumns {
+        public static final String TABLE_NAME = "vital_observations";
+        public static final String COLUMN_PATIENT_ID = "patient_id";
+        public static final String COLUMN_RECORD_ID = "record_id"; // Medical record the reading was entered on
+        public static final String COLUMN_OBSERVED_AT = "observed_at"; // Epoch milliseconds
+        public static final String COLUMN_METRIC = "metric"; // A VitalSignsParser metric code, e.g. "heart_rate"
+        public static final String COLUMN_VALUE = "value"; // In the metric's canonical unit
+    }
+
+    // Full-text search index, one document per patient (docid = patient _ID)
+    public static class PatientSearchEntry {
+        public static final String TABLE_NAME = "patient_search";
+        public static final String COLUMN_NAME = "name";
+        public static final String COLUMN_PHONE = "phone";
+        public static final String COLUMN_CONDITIONS = "conditions";
+        public static final String COLUMN_ALLERGIES = "allergies";
+        public static final String COLUMN_RECORDS = "records"; // Symptoms, diagnoses and notes of all visits
+        public static final String COLUMN_MEDICATIONS = "medications"; // Brand and generic names
+    }
+
+    // Running totals for the dashboard, one row per counter, kept current by triggers
+    public static class StatsCounterEntry {
+        public static final String TABLE_NAME = "stats_counters";
+        public static final String COLUMN_NAME = "name";
+        public static final String COLUMN_VALUE = "value";
+
+        // Fixed counters, all scoped to active patients
+        public static final String COUNTER_ACTIVE_PATIENTS = "active_patients";
+        public static final String COUNTER_AGE_SUM = "active_patients_age_sum";
+        public static final String COUNTER_MEDICAL_RECORDS = "medical_records";
+        public static final String COUNTER_ACTIVE_MEDICATIONS = "active_medications";
+
+        // Prefixes of the per-value counters, e.g. "gender:Female" or "registered:2024-05"
+        public static final String PREFIX_GENDER = "gender:";
+        public static final String PREFIX_BLOOD_TYPE = "blood_type:";
+        public static final String PREFIX_REGISTERED_MONTH = "registered:";
+    }
+
+    // Progress of resumable bulk imports, written in the same transaction as each batch
+    public static class ImportCheckpointEntry {
+        public static final String TABLE_NAME = "import_checkpoints";
+        public static final String COLUMN_JOB_ID = "job_id";
+        public static final String COLUMN_ROWS_READ = "rows_read";
+        public static final String COLUMN_ROWS_IMPORTED = "rows_imported";
+        public static final String COLUMN_ROWS_FAILED = "rows_failed";
+        public static final String COLUMN_UPDATED_AT = "updated_at"; // Epoch milliseconds
+    }
+
+    // Patients whose search document is stale because a bulk import bypassed the search triggers
+    public static class SearchPendingEntry {
+        public static final String TABLE_NAME = "patient_search_pending";
+        public static final String COLUMN_PATIENT_ID = "patient_id";
+    }
+
+    // Pre-aggregated counts behind the reports screen, one row per report and bucket, kept
+    // current by triggers so a report reads a few rows however much history there is
+    public static class ReportRollupEntry {
+        public static final String TABLE_NAME = "report_rollups";
+        public static final String COLUMN_REPORT = "report";
+        public static final String COLUMN_BUCKET = "bucket";
+        public static final String COLUMN_VALUE = "value";
+
+        // History: every medical record and every patient ever registered
+        public static final String REPORT_VISITS_BY_MONTH = "visits_by_month"; // Bucket yyyy-MM
+        public static final String REPORT_VISITS_BY_TYPE = "visits_by_type";
+        public static final String REPORT_VISITS_BY_DOCTOR = "visits_by_doctor";
+        public static final String REPORT_VISITS_BY_SPECIALTY = "visits_by_specialty";
+        public static final String REPORT_REGISTRATIONS_BY_MONTH = "registrations_by_month"; // Bucket yyyy-MM
+
+        // Current state, scoped to active patients like the stats counters
+        public static final String REPORT_ACTIVE_MEDICATIONS_BY_DRUG = "active_medications_by_drug";
+        // Bucket is the age bucket, gender and blood type joined by BUCKET_SEPARATOR
+        public static final String REPORT_PATIENTS_CROSS_TAB = "patients_cross_tab";
+
+        public static final String BUCKET_SEPARATOR = "\u001F"; // ASCII unit separator, char(31) in SQL
+        public static final String[] AGE_BUCKETS = {"0-17", "18-29", "30-44", "45-64", "65+"};
+    }
+
+    // Dates are stored as epoch days (days since 1970-01-01, the local calendar date) and
+    // created_at/updated_at as epoch milliseconds, so range predicates compare integers
+    private static final String EPOCH_MILLIS_NOW = "(CAST(strftime('%s', 'now') AS INTEGER) * 1000)";
+
+    public static boolean isEpochDayColumn(String column) {
+        return PatientEntry.COLUMN_REGISTRATION_DATE.equals(column) ||
+                MedicalRecordEntry.COLUMN_VISIT_DATE.equals(column) ||
+                MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE.equals(column) ||
+                MedicationEntry.COLUMN_START_DATE.equals(column) ||
+                MedicationEntry.COLUMN_END_DATE.equals(column);
+    }
+
+    public static boolean isEpochMillisColumn(String column) {
+        return PatientEntry.COLUMN_CREATED_AT.equals(column) || PatientEntry.COLUMN_UPDATED_AT.equals(column);
+    }
+
     // SQL statements for creating tables
     public static final String SQL_CREATE_PATIENTS_TABLE =
             "CREATE TABLE " + PatientEntry.TABLE_NAME + " (" +
@@ -85,16 +190,16 @@ public final class DatabaseContract {
                     PatientEntry.COLUMN_ALLERGIES + " TEXT," +
                     PatientEntry.COLUMN_PROFILE_IMAGE + " TEXT," +
                     PatientEntry.COLUMN_IMAGE_PATH + " TEXT," + // New image path field
-                    PatientEntry.COLUMN_REGISTRATION_DATE + " TEXT," +
+                    PatientEntry.COLUMN_REGISTRATION_DATE + " INTEGER," +
                     PatientEntry.COLUMN_IS_ACTIVE + " INTEGER DEFAULT 1," +
-                    PatientEntry.COLUMN_CREATED_AT + " TEXT DEFAULT CURRENT_TIMESTAMP," +
-                    PatientEntry.COLUMN_UPDATED_AT + " TEXT DEFAULT CURRENT_TIMESTAMP)";
+                    PatientEntry.COLUMN_CREATED_AT + " INTEGER DEFAULT " + EPOCH_MILLIS_NOW + "," +
+                    PatientEntry.COLUMN_UPDATED_AT + " INTEGER DEFAULT " + EPOCH_MILLIS_NOW + ")";
 
     public static final String SQL_CREATE_MEDICAL_RECORDS_TABLE =
             "CREATE TABLE " + MedicalRecordEntry.TABLE_NAME + " (" +
                     MedicalRecordEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
                     MedicalRecordEntry.COLUMN_PATIENT_ID + " INTEGER NOT NULL," +
-                    MedicalRecordEntry.COLUMN_VISIT_DATE + " TEXT NOT NULL," +
+                    MedicalRecordEntry.COLUMN_VISIT_DATE + " INTEGER NOT NULL," +
                     MedicalRecordEntry.COLUMN_VISIT_TYPE + " TEXT," +
                     MedicalRecordEntry.COLUMN_SYMPTOMS + " TEXT," +
                     MedicalRecordEntry.COLUMN_DIAGNOSIS + " TEXT," +
@@ -103,9 +208,9 @@ public final class DatabaseContract {
                     MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY + " TEXT," +
                     MedicalRecordEntry.COLUMN_VITAL_SIGNS + " TEXT," +
                     MedicalRecordEntry.COLUMN_NOTES + " TEXT," +
-                    MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " TEXT," +
-                    MedicalRecordEntry.COLUMN_CREATED_AT + " TEXT DEFAULT CURRENT_TIMESTAMP," +
-                    MedicalRecordEntry.COLUMN_UPDATED_AT + " TEXT DEFAULT CURRENT_TIMESTAMP," +
+                    MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " INTEGER," +
+                    MedicalRecordEntry.COLUMN_CREATED_AT + " INTEGER DEFAULT " + EPOCH_MILLIS_NOW + "," +
+                    MedicalRecordEntry.COLUMN_UPDATED_AT + " INTEGER DEFAULT " + EPOCH_MILLIS_NOW + "," +
                     "FOREIGN KEY(" + MedicalRecordEntry.COLUMN_PATIENT_ID + ") REFERENCES " +
                     PatientEntry.TABLE_NAME + "(" + PatientEntry._ID + "))";
 
@@ -117,19 +222,31 @@ public final class DatabaseContract {
                     MedicationEntry.COLUMN_GENERIC_NAME + " TEXT," +
                     MedicationEntry.COLUMN_DOSAGE + " TEXT," +
                     MedicationEntry.COLUMN_FREQUENCY + " TEXT," +
-                    MedicationEntry.COLUMN_START_DATE + " TEXT," +
-                    MedicationEntry.COLUMN_END_DATE + " TEXT," +
+                    MedicationEntry.COLUMN_START_DATE + " INTEGER," +
+                    MedicationEntry.COLUMN_END_DATE + " INTEGER," +
                     MedicationEntry.COLUMN_PRESCRIBED_BY + " TEXT," +
                     MedicationEntry.COLUMN_INSTRUCTIONS + " TEXT," +
                     MedicationEntry.COLUMN_SIDE_EFFECTS + " TEXT," +
                     MedicationEntry.COLUMN_REFILLS_REMAINING + " INTEGER DEFAULT 0," +
                     MedicationEntry.COLUMN_PHARMACY_NAME + " TEXT," +
                     MedicationEntry.COLUMN_IS_ACTIVE + " INTEGER DEFAULT 1," +
-                    MedicationEntry.COLUMN_CREATED_AT + " TEXT DEFAULT CURRENT_TIMESTAMP," +
-                    MedicationEntry.COLUMN_UPDATED_AT + " TEXT DEFAULT CURRENT_TIMESTAMP," +
+                    MedicationEntry.COLUMN_CREATED_AT + " INTEGER DEFAULT " + EPOCH_MILLIS_NOW + "," +
+                    MedicationEntry.COLUMN_UPDATED_AT + " INTEGER DEFAULT " + EPOCH_MILLIS_NOW + "," +
                     "FOREIGN KEY(" + MedicationEntry.COLUMN_PATIENT_ID + ") REFERENCES " +
                     PatientEntry.TABLE_NAME + "(" + PatientEntry._ID + "))";
 
+    // Readings go with their record; patient_id is copied from it so trend queries need no join
+    public static final String SQL_CREATE_VITAL_OBSERVATIONS_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + VitalObservationEntry.TABLE_NAME + " (" +
+                    VitalObservationEntry._ID + " INTEGER PRIMARY KEY," +
+                    VitalObservationEntry.COLUMN_PATIENT_ID + " INTEGER NOT NULL," +
+                    VitalObservationEntry.COLUMN_RECORD_ID + " INTEGER NOT NULL," +
+                    VitalObservationEntry.COLUMN_OBSERVED_AT + " INTEGER NOT NULL," +
+                    VitalObservationEntry.COLUMN_METRIC + " TEXT NOT NULL," +
+                    VitalObservationEntry.COLUMN_VALUE + " REAL NOT NULL," +
+                    "FOREIGN KEY(" + VitalObservationEntry.COLUMN_RECORD_ID + ") REFERENCES " +
+                    MedicalRecordEntry.TABLE_NAME + "(" + MedicalRecordEntry._ID + ") ON DELETE CASCADE)";
+
     // SQL statements for dropping tables
     public static final String SQL_DELETE_PATIENTS_TABLE =
             "DROP TABLE IF EXISTS " + PatientEntry.TABLE_NAME;
@@ -139,4 +256,560 @@ public final class DatabaseContract {
 
     public static final String SQL_DELETE_MEDICATIONS_TABLE =
             "DROP TABLE IF EXISTS " + MedicationEntry.TABLE_NAME;
-}
\ No newline at end of file
+
+    // Secondary indexes
+    public static final String INDEX_PATIENTS_ACTIVE_NAME = "idx_patients_active_name";
+    public static final String INDEX_MEDICAL_RECORDS_PATIENT_VISIT = "idx_medical_records_patient_visit";
+    public static final String INDEX_MEDICAL_RECORDS_FOLLOW_UP = "idx_medical_records_follow_up";
+    public static final String INDEX_MEDICATIONS_PATIENT_ACTIVE = "idx_medications_patient_active";
+    public static final String INDEX_MEDICATIONS_END_DATE = "idx_medications_end_date";
+    public static final String INDEX_VITAL_OBSERVATIONS_SERIES = "idx_vital_observations_series";
+    public static final String INDEX_VITAL_OBSERVATIONS_RECORD = "idx_vital_observations_record";
+
+    // SQL statements for creating indexes
+    public static final String SQL_CREATE_INDEX_PATIENTS_ACTIVE_NAME =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PATIENTS_ACTIVE_NAME + " ON " +
+                    PatientEntry.TABLE_NAME + "(" + PatientEntry.COLUMN_IS_ACTIVE + ", " +
+                    PatientEntry.COLUMN_PATIENT_NAME + ")";
+
+    public static final String SQL_CREATE_INDEX_MEDICAL_RECORDS_PATIENT_VISIT =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_MEDICAL_RECORDS_PATIENT_VISIT + " ON " +
+                    MedicalRecordEntry.TABLE_NAME + "(" + MedicalRecordEntry.COLUMN_PATIENT_ID + ", " +
+                    MedicalRecordEntry.COLUMN_VISIT_DATE + ")";
+
+    public static final String SQL_CREATE_INDEX_MEDICAL_RECORDS_FOLLOW_UP =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_MEDICAL_RECORDS_FOLLOW_UP + " ON " +
+                    MedicalRecordEntry.TABLE_NAME + "(" + MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + ")";
+
+    public static final String SQL_CREATE_INDEX_MEDICATIONS_PATIENT_ACTIVE =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_MEDICATIONS_PATIENT_ACTIVE + " ON " +
+                    MedicationEntry.TABLE_NAME + "(" + MedicationEntry.COLUMN_PATIENT_ID + ", " +
+                    MedicationEntry.COLUMN_IS_ACTIVE + ")";
+
+    public static final String SQL_CREATE_INDEX_MEDICATIONS_END_DATE =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_MEDICATIONS_END_DATE + " ON " +
+                    MedicationEntry.TABLE_NAME + "(" + MedicationEntry.COLUMN_END_DATE + ")";
+
+    // Covers trend and bucket queries, which read only these columns, without touching the table
+    public static final String SQL_CREATE_INDEX_VITAL_OBSERVATIONS_SERIES =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_VITAL_OBSERVATIONS_SERIES + " ON " +
+                    VitalObservationEntry.TABLE_NAME + "(" + VitalObservationEntry.COLUMN_PATIENT_ID + ", " +
+                    VitalObservationEntry.COLUMN_METRIC + ", " + VitalObservationEntry.COLUMN_OBSERVED_AT + ", " +
+                    VitalObservationEntry.COLUMN_VALUE + ")";
+
+    // Replacing a record's readings, and the cascade when the record is deleted
+    public static final String SQL_CREATE_INDEX_VITAL_OBSERVATIONS_RECORD =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_VITAL_OBSERVATIONS_RECORD + " ON " +
+                    VitalObservationEntry.TABLE_NAME + "(" + VitalObservationEntry.COLUMN_RECORD_ID + ")";
+
+    public static final String[] SQL_CREATE_INDEXES = {
+            SQL_CREATE_INDEX_PATIENTS_ACTIVE_NAME,
+            SQL_CREATE_INDEX_MEDICAL_RECORDS_PATIENT_VISIT,
+            SQL_CREATE_INDEX_MEDICAL_RECORDS_FOLLOW_UP,
+            SQL_CREATE_INDEX_MEDICATIONS_PATIENT_ACTIVE,
+            SQL_CREATE_INDEX_MEDICATIONS_END_DATE
+    };
+
+    // Kept apart from SQL_CREATE_INDEXES, which earlier migrations run before this table exists
+    public static final String[] SQL_CREATE_VITAL_OBSERVATIONS_INDEXES = {
+            SQL_CREATE_INDEX_VITAL_OBSERVATIONS_SERIES,
+            SQL_CREATE_INDEX_VITAL_OBSERVATIONS_RECORD
+    };
+
+    // Full-text search (FTS4, which every supported Android release ships; FTS5 is not guaranteed)
+    public static final String SQL_CREATE_PATIENT_SEARCH_TABLE =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + PatientSearchEntry.TABLE_NAME + " USING fts4(" +
+                    PatientSearchEntry.COLUMN_NAME + ", " +
+                    PatientSearchEntry.COLUMN_PHONE + ", " +
+                    PatientSearchEntry.COLUMN_CONDITIONS + ", " +
+                    PatientSearchEntry.COLUMN_ALLERGIES + ", " +
+                    PatientSearchEntry.COLUMN_RECORDS + ", " +
+                    PatientSearchEntry.COLUMN_MEDICATIONS + ")";
+
+    public static final String SQL_DELETE_PATIENT_SEARCH_TABLE =
+            "DROP TABLE IF EXISTS " + PatientSearchEntry.TABLE_NAME;
+
+    // Builds the search document for every patient matched by the WHERE clause on p
+    private static final String SQL_SELECT_PATIENT_SEARCH_DOCUMENT =
+            "SELECT p." + PatientEntry._ID + ", p." + PatientEntry.COLUMN_PATIENT_NAME +
+                    ", p." + PatientEntry.COLUMN_PHONE +
+                    ", p." + PatientEntry.COLUMN_MEDICAL_CONDITIONS +
+                    ", p." + PatientEntry.COLUMN_ALLERGIES +
+                    ", (SELECT group_concat(ifnull(r." + MedicalRecordEntry.COLUMN_SYMPTOMS + ", '') || ' ' || " +
+                    "ifnull(r." + MedicalRecordEntry.COLUMN_DIAGNOSIS + ", '') || ' ' || " +
+                    "ifnull(r." + MedicalRecordEntry.COLUMN_NOTES + ", ''), ' ') FROM " +
+                    MedicalRecordEntry.TABLE_NAME + " r WHERE r." + MedicalRecordEntry.COLUMN_PATIENT_ID +
+                    " = p." + PatientEntry._ID + ")" +
+                    ", (SELECT group_concat(ifnull(m." + MedicationEntry.COLUMN_MEDICATION_NAME + ", '') || ' ' || " +
+                    "ifnull(m." + MedicationEntry.COLUMN_GENERIC_NAME + ", ''), ' ') FROM " +
+                    MedicationEntry.TABLE_NAME + " m WHERE m." + MedicationEntry.COLUMN_PATIENT_ID +
+                    " = p." + PatientEntry._ID + ")" +
+                    " FROM " + PatientEntry.TABLE_NAME + " p";
+
+    private static final String SQL_INSERT_PATIENT_SEARCH_DOCUMENT =
+            "INSERT INTO " + PatientSearchEntry.TABLE_NAME + "(docid, " +
+                    PatientSearchEntry.COLUMN_NAME + ", " +
+                    PatientSearchEntry.COLUMN_PHONE + ", " +
+                    PatientSearchEntry.COLUMN_CONDITIONS + ", " +
+                    PatientSearchEntry.COLUMN_ALLERGIES + ", " +
+                    PatientSearchEntry.COLUMN_RECORDS + ", " +
+                    PatientSearchEntry.COLUMN_MEDICATIONS + ") " + SQL_SELECT_PATIENT_SEARCH_DOCUMENT;
+
+    // Re-index every patient, used after creating the table on an existing database
+    public static final String[] SQL_REBUILD_PATIENT_SEARCH = {
+            "DELETE FROM " + PatientSearchEntry.TABLE_NAME,
+            SQL_INSERT_PATIENT_SEARCH_DOCUMENT
+    };
+
+    // Trigger body statements that rebuild one patient's document
+    private static String reindexPatient(String patientId) {
+        return "DELETE FROM " + PatientSearchEntry.TABLE_NAME + " WHERE docid = " + patientId + "; " +
+                SQL_INSERT_PATIENT_SEARCH_DOCUMENT + " WHERE p." + PatientEntry._ID + " = " + patientId + "; ";
+    }
+
+    private static String reindexTrigger(String name, String event, String table, String body) {
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " AFTER " + event + " ON " + table +
+                " BEGIN " + body + "END";
+    }
+
+    // Columns whose updates change a patient's search document
+    private static final String PATIENT_SEARCH_COLUMNS = PatientEntry.COLUMN_PATIENT_NAME + ", " +
+            PatientEntry.COLUMN_PHONE + ", " + PatientEntry.COLUMN_MEDICAL_CONDITIONS + ", " + PatientEntry.COLUMN_ALLERGIES;
+    private static final String RECORD_SEARCH_COLUMNS = MedicalRecordEntry.COLUMN_PATIENT_ID + ", " +
+            MedicalRecordEntry.COLUMN_SYMPTOMS + ", " + MedicalRecordEntry.COLUMN_DIAGNOSIS + ", " + MedicalRecordEntry.COLUMN_NOTES;
+    private static final String MEDICATION_SEARCH_COLUMNS = MedicationEntry.COLUMN_PATIENT_ID + ", " +
+            MedicationEntry.COLUMN_MEDICATION_NAME + ", " + MedicationEntry.COLUMN_GENERIC_NAME;
+
+    // Triggers that keep patient_search in sync with the source tables
+    public static final String[] SQL_CREATE_PATIENT_SEARCH_TRIGGERS = {
+            reindexTrigger("trg_patient_search_patient_insert", "INSERT", PatientEntry.TABLE_NAME,
+                    reindexPatient("new." + PatientEntry._ID)),
+            reindexTrigger("trg_patient_search_patient_update", "UPDATE OF " + PATIENT_SEARCH_COLUMNS,
+                    PatientEntry.TABLE_NAME,
+                    reindexPatient("new." + PatientEntry._ID)),
+            reindexTrigger("trg_patient_search_patient_delete", "DELETE", PatientEntry.TABLE_NAME,
+                    "DELETE FROM " + PatientSearchEntry.TABLE_NAME + " WHERE docid = old." + PatientEntry._ID + "; "),
+            reindexTrigger("trg_patient_search_record_insert", "INSERT", MedicalRecordEntry.TABLE_NAME,
+                    reindexPatient("new." + MedicalRecordEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_record_update", "UPDATE OF " + RECORD_SEARCH_COLUMNS,
+                    MedicalRecordEntry.TABLE_NAME,
+                    reindexPatient("old." + MedicalRecordEntry.COLUMN_PATIENT_ID) +
+                            reindexPatient("new." + MedicalRecordEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_record_delete", "DELETE", MedicalRecordEntry.TABLE_NAME,
+                    reindexPatient("old." + MedicalRecordEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_medication_insert", "INSERT", MedicationEntry.TABLE_NAME,
+                    reindexPatient("new." + MedicationEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_medication_update", "UPDATE OF " + MEDICATION_SEARCH_COLUMNS,
+                    MedicationEntry.TABLE_NAME,
+                    reindexPatient("old." + MedicationEntry.COLUMN_PATIENT_ID) +
+                            reindexPatient("new." + MedicationEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_medication_delete", "DELETE", MedicationEntry.TABLE_NAME,
+                    reindexPatient("old." + MedicationEntry.COLUMN_PATIENT_ID))
+    };
+
+    // Trigger body statement that queues one patient's document for SQL_REINDEX_PENDING_PATIENT_SEARCH
+    private static String queuePatient(String patientId) {
+        return "INSERT OR IGNORE INTO " + SearchPendingEntry.TABLE_NAME + "(" +
+                SearchPendingEntry.COLUMN_PATIENT_ID + ") VALUES (" + patientId + "); ";
+    }
+
+    // Installed in place of the search triggers while a bulk import runs: the same writes
+    // only queue the patients they touch, which are reindexed once when the import ends
+    public static final String[] SQL_CREATE_PATIENT_SEARCH_QUEUE_TRIGGERS = {
+            reindexTrigger("trg_patient_search_queue_patient_insert", "INSERT", PatientEntry.TABLE_NAME,
+                    queuePatient("new." + PatientEntry._ID)),
+            reindexTrigger("trg_patient_search_queue_patient_update", "UPDATE OF " + PATIENT_SEARCH_COLUMNS,
+                    PatientEntry.TABLE_NAME,
+                    queuePatient("new." + PatientEntry._ID)),
+            reindexTrigger("trg_patient_search_queue_patient_delete", "DELETE", PatientEntry.TABLE_NAME,
+                    queuePatient("old." + PatientEntry._ID)),
+            reindexTrigger("trg_patient_search_queue_record_insert", "INSERT", MedicalRecordEntry.TABLE_NAME,
+                    queuePatient("new." + MedicalRecordEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_queue_record_update", "UPDATE OF " + RECORD_SEARCH_COLUMNS,
+                    MedicalRecordEntry.TABLE_NAME,
+                    queuePatient("old." + MedicalRecordEntry.COLUMN_PATIENT_ID) +
+                            queuePatient("new." + MedicalRecordEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_queue_record_delete", "DELETE", MedicalRecordEntry.TABLE_NAME,
+                    queuePatient("old." + MedicalRecordEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_queue_medication_insert", "INSERT", MedicationEntry.TABLE_NAME,
+                    queuePatient("new." + MedicationEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_queue_medication_update", "UPDATE OF " + MEDICATION_SEARCH_COLUMNS,
+                    MedicationEntry.TABLE_NAME,
+                    queuePatient("old." + MedicationEntry.COLUMN_PATIENT_ID) +
+                            queuePatient("new." + MedicationEntry.COLUMN_PATIENT_ID)),
+            reindexTrigger("trg_patient_search_queue_medication_delete", "DELETE", MedicationEntry.TABLE_NAME,
+                    queuePatient("old." + MedicationEntry.COLUMN_PATIENT_ID))
+    };
+
+    // Dashboard counters
+    public static final String SQL_CREATE_STATS_COUNTERS_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + StatsCounterEntry.TABLE_NAME + " (" +
+                    StatsCounterEntry.COLUMN_NAME + " TEXT PRIMARY KEY," +
+                    StatsCounterEntry.COLUMN_VALUE + " INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID";
+
+    public static final String SQL_DELETE_STATS_COUNTERS_TABLE =
+            "DROP TABLE IF EXISTS " + StatsCounterEntry.TABLE_NAME;
+
+    // Per-value counter names of a patient row, prefix is "old" or "new"
+    private static String genderCounter(String row) {
+        return "'" + StatsCounterEntry.PREFIX_GENDER + "' || ifnull(" + row + "." + PatientEntry.COLUMN_GENDER + ", '')";
+    }
+
+    private static String bloodTypeCounter(String row) {
+        return "'" + StatsCounterEntry.PREFIX_BLOOD_TYPE + "' || ifnull(" + row + "." + PatientEntry.COLUMN_BLOOD_TYPE + ", '')";
+    }
+
+    private static String registeredMonthCounter(String row) {
+        return "'" + StatsCounterEntry.PREFIX_REGISTERED_MONTH + "' || ifnull(strftime('%Y-%m', " + row + "." +
+                PatientEntry.COLUMN_REGISTRATION_DATE + " * 86400, 'unixepoch'), '')";
+    }
+
+    // Expected value of every counter, computed from the source tables
+    public static final String SQL_SELECT_EXPECTED_STATS_COUNTERS =
+            "SELECT '" + StatsCounterEntry.COUNTER_ACTIVE_PATIENTS + "', COUNT(*) FROM " + PatientEntry.TABLE_NAME + " p" +
+                    " WHERE p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
+                    " UNION ALL SELECT '" + StatsCounterEntry.COUNTER_AGE_SUM + "', ifnull(SUM(p." + PatientEntry.COLUMN_AGE + "), 0)" +
+                    " FROM " + PatientEntry.TABLE_NAME + " p WHERE p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
+                    " UNION ALL SELECT '" + StatsCounterEntry.COUNTER_MEDICAL_RECORDS + "', COUNT(*) FROM " +
+                    MedicalRecordEntry.TABLE_NAME + " r INNER JOIN " + PatientEntry.TABLE_NAME + " p" +
+                    " ON r." + MedicalRecordEntry.COLUMN_PATIENT_ID + " = p." + PatientEntry._ID +
+                    " WHERE p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
+                    " UNION ALL SELECT '" + StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS + "', COUNT(*) FROM " +
+                    MedicationEntry.TABLE_NAME + " m INNER JOIN " + PatientEntry.TABLE_NAME + " p" +
+                    " ON m." + MedicationEntry.COLUMN_PATIENT_ID + " = p." + PatientEntry._ID +
+                    " WHERE m." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
+                    " UNION ALL SELECT " + genderCounter("p") + ", COUNT(*) FROM " + PatientEntry.TABLE_NAME + " p" +
+                    " WHERE p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1 GROUP BY 1" +
+                    " UNION ALL SELECT " + bloodTypeCounter("p") + ", COUNT(*) FROM " + PatientEntry.TABLE_NAME + " p" +
+                    " WHERE p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1 GROUP BY 1" +
+                    " UNION ALL SELECT " + registeredMonthCounter("p") + ", COUNT(*) FROM " + PatientEntry.TABLE_NAME + " p" +
+                    " WHERE p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1 GROUP BY 1";
+
+    // Recount every counter from the source tables
+    public static final String[] SQL_REBUILD_STATS_COUNTERS = {
+            "DELETE FROM " + StatsCounterEntry.TABLE_NAME,
+            "INSERT INTO " + StatsCounterEntry.TABLE_NAME + "(" + StatsCounterEntry.COLUMN_NAME + ", " +
+                    StatsCounterEntry.COLUMN_VALUE + ") " + SQL_SELECT_EXPECTED_STATS_COUNTERS
+    };
+
+    // Trigger body statements that add (sign 1) or remove (sign -1) one active patient.
+    // A patient being inserted has no records or medications yet, the foreign keys see to that.
+    private static String countPatient(String row, String sign, boolean withChildren) {
+        String counters = StatsCounterEntry.TABLE_NAME;
+        String name = StatsCounterEntry.COLUMN_NAME;
+        String value = StatsCounterEntry.COLUMN_VALUE;
+        String patientId = row + "." + PatientEntry._ID;
+        String body = "INSERT OR IGNORE INTO " + counters + "(" + name + ", " + value + ") VALUES (" +
+                genderCounter(row) + ", 0), (" + bloodTypeCounter(row) + ", 0), (" + registeredMonthCounter(row) + ", 0); " +
+                // One pass over the patient's counters, the age sum moves by the age instead of one
+                "UPDATE " + counters + " SET " + value + " = " + value + " + (" + sign + ") * CASE " + name +
+                " WHEN '" + StatsCounterEntry.COUNTER_AGE_SUM + "' THEN " + row + "." + PatientEntry.COLUMN_AGE +
+                " ELSE 1 END WHERE " + name + " IN ('" + StatsCounterEntry.COUNTER_ACTIVE_PATIENTS + "', '" +
+                StatsCounterEntry.COUNTER_AGE_SUM + "', " + genderCounter(row) + ", " +
+                bloodTypeCounter(row) + ", " + registeredMonthCounter(row) + "); ";
+        if (!withChildren) {
+            return body;
+        }
+        // Records and medications only count while their patient is active
+        return body +
+                "UPDATE " + counters + " SET " + value + " = " + value + " + (" + sign + ") * (SELECT COUNT(*) FROM " +
+                MedicalRecordEntry.TABLE_NAME + " WHERE " + MedicalRecordEntry.COLUMN_PATIENT_ID + " = " + patientId + ")" +
+                " WHERE " + name + " = '" + StatsCounterEntry.COUNTER_MEDICAL_RECORDS + "'; " +
+                "UPDATE " + counters + " SET " + value + " = " + value + " + (" + sign + ") * (SELECT COUNT(*) FROM " +
+                MedicationEntry.TABLE_NAME + " WHERE " + MedicationEntry.COLUMN_PATIENT_ID + " = " + patientId +
+                " AND " + MedicationEntry.COLUMN_IS_ACTIVE + " = 1)" +
+                " WHERE " + name + " = '" + StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS + "'; ";
+    }
+
+    private static String addToCounter(String counter, String sign) {
+        return "UPDATE " + StatsCounterEntry.TABLE_NAME + " SET " + StatsCounterEntry.COLUMN_VALUE + " = " +
+                StatsCounterEntry.COLUMN_VALUE + " + (" + sign + ") WHERE " + StatsCounterEntry.COLUMN_NAME +
+                " = '" + counter + "'; ";
+    }
+
+    private static String isActivePatient(String patientId) {
+        return "(SELECT " + PatientEntry.COLUMN_IS_ACTIVE + " FROM " + PatientEntry.TABLE_NAME +
+                " WHERE " + PatientEntry._ID + " = " + patientId + ") = 1";
+    }
+
+    private static String counterTrigger(String name, String event, String table, String when, String body) {
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " AFTER " + event + " ON " + table +
+                " WHEN " + when + " BEGIN " + body + "END";
+    }
+
+    // Triggers that keep stats_counters in step with inserts, updates, soft deletes and deletes.
+    // An update is counted as removing the old row and adding the new one.
+    private static final String PATIENT_COUNTED_COLUMNS = PatientEntry.COLUMN_IS_ACTIVE + ", " +
+            PatientEntry.COLUMN_GENDER + ", " + PatientEntry.COLUMN_BLOOD_TYPE + ", " +
+            PatientEntry.COLUMN_AGE + ", " + PatientEntry.COLUMN_REGISTRATION_DATE;
+
+    public static final String[] SQL_CREATE_STATS_COUNTER_TRIGGERS = {
+            counterTrigger("trg_stats_patient_insert", "INSERT", PatientEntry.TABLE_NAME,
+                    "new." + PatientEntry.COLUMN_IS_ACTIVE + " = 1", countPatient("new", "1", false)),
+            counterTrigger("trg_stats_patient_update_old", "UPDATE OF " + PATIENT_COUNTED_COLUMNS, PatientEntry.TABLE_NAME,
+                    "old." + PatientEntry.COLUMN_IS_ACTIVE + " = 1", countPatient("old", "-1", true)),
+            counterTrigger("trg_stats_patient_update_new", "UPDATE OF " + PATIENT_COUNTED_COLUMNS, PatientEntry.TABLE_NAME,
+                    "new." + PatientEntry.COLUMN_IS_ACTIVE + " = 1", countPatient("new", "1", true)),
+            counterTrigger("trg_stats_patient_delete", "DELETE", PatientEntry.TABLE_NAME,
+                    "old." + PatientEntry.COLUMN_IS_ACTIVE + " = 1", countPatient("old", "-1", true)),
+            counterTrigger("trg_stats_record_insert", "INSERT", MedicalRecordEntry.TABLE_NAME,
+                    isActivePatient("new." + MedicalRecordEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_MEDICAL_RECORDS, "1")),
+            counterTrigger("trg_stats_record_update_old", "UPDATE OF " + MedicalRecordEntry.COLUMN_PATIENT_ID,
+                    MedicalRecordEntry.TABLE_NAME, isActivePatient("old." + MedicalRecordEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_MEDICAL_RECORDS, "-1")),
+            counterTrigger("trg_stats_record_update_new", "UPDATE OF " + MedicalRecordEntry.COLUMN_PATIENT_ID,
+                    MedicalRecordEntry.TABLE_NAME, isActivePatient("new." + MedicalRecordEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_MEDICAL_RECORDS, "1")),
+            counterTrigger("trg_stats_record_delete", "DELETE", MedicalRecordEntry.TABLE_NAME,
+                    isActivePatient("old." + MedicalRecordEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_MEDICAL_RECORDS, "-1")),
+            counterTrigger("trg_stats_medication_insert", "INSERT", MedicationEntry.TABLE_NAME,
+                    "new." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("new." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS, "1")),
+            counterTrigger("trg_stats_medication_update_old",
+                    "UPDATE OF " + MedicationEntry.COLUMN_IS_ACTIVE + ", " + MedicationEntry.COLUMN_PATIENT_ID,
+                    MedicationEntry.TABLE_NAME,
+                    "old." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("old." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS, "-1")),
+            counterTrigger("trg_stats_medication_update_new",
+                    "UPDATE OF " + MedicationEntry.COLUMN_IS_ACTIVE + ", " + MedicationEntry.COLUMN_PATIENT_ID,
+                    MedicationEntry.TABLE_NAME,
+                    "new." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("new." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS, "1")),
+            counterTrigger("trg_stats_medication_delete", "DELETE", MedicationEntry.TABLE_NAME,
+                    "old." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("old." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToCounter(StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS, "-1"))
+    };
+
+    // Drop statements for a set of CREATE TRIGGER IF NOT EXISTS statements
+    private static String[] dropTriggers(String[] createStatements) {
+        String[] drops = new String[createStatements.length];
+        String prefix = "CREATE TRIGGER IF NOT EXISTS ";
+        for (int i = 0; i < createStatements.length; i++) {
+            String create = createStatements[i];
+            String name = create.substring(prefix.length(), create.indexOf(' ', prefix.length()));
+            drops[i] = "DROP TRIGGER IF EXISTS " + name;
+        }
+        return drops;
+    }
+
+    public static final String[] SQL_DROP_PATIENT_SEARCH_TRIGGERS = dropTriggers(SQL_CREATE_PATIENT_SEARCH_TRIGGERS);
+    public static final String[] SQL_DROP_PATIENT_SEARCH_QUEUE_TRIGGERS = dropTriggers(SQL_CREATE_PATIENT_SEARCH_QUEUE_TRIGGERS);
+    public static final String[] SQL_DROP_STATS_COUNTER_TRIGGERS = dropTriggers(SQL_CREATE_STATS_COUNTER_TRIGGERS);
+
+    // Report rollups; a blank or missing value is counted under the empty bucket
+    public static final String SQL_CREATE_REPORT_ROLLUPS_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + ReportRollupEntry.TABLE_NAME + " (" +
+                    ReportRollupEntry.COLUMN_REPORT + " TEXT NOT NULL," +
+                    ReportRollupEntry.COLUMN_BUCKET + " TEXT NOT NULL," +
+                    ReportRollupEntry.COLUMN_VALUE + " INTEGER NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY (" + ReportRollupEntry.COLUMN_REPORT + ", " + ReportRollupEntry.COLUMN_BUCKET + ")) WITHOUT ROWID";
+
+    public static final String SQL_DELETE_REPORT_ROLLUPS_TABLE =
+            "DROP TABLE IF EXISTS " + ReportRollupEntry.TABLE_NAME;
+
+    // Bucket expressions of a row, prefix is "old", "new" or a table alias
+    private static String monthBucket(String epochDay) {
+        return "ifnull(strftime('%Y-%m', " + epochDay + " * 86400, 'unixepoch'), '')";
+    }
+
+    private static String textBucket(String column) {
+        return "ifnull(trim(" + column + "), '')";
+    }
+
+    private static String ageBucket(String age) {
+        String[] buckets = ReportRollupEntry.AGE_BUCKETS;
+        return "CASE WHEN " + age + " < 18 THEN '" + buckets[0] + "' WHEN " + age + " < 30 THEN '" + buckets[1] +
+                "' WHEN " + age + " < 45 THEN '" + buckets[2] + "' WHEN " + age + " < 65 THEN '" + buckets[3] +
+                "' ELSE '" + buckets[4] + "' END";
+    }
+
+    private static String crossTabBucket(String row) {
+        return ageBucket(row + "." + PatientEntry.COLUMN_AGE) + " || char(31) || " +
+                textBucket(row + "." + PatientEntry.COLUMN_GENDER) + " || char(31) || " +
+                textBucket(row + "." + PatientEntry.COLUMN_BLOOD_TYPE);
+    }
+
+    // Report and bucket of each visit rollup for a medical record row
+    private static String[][] visitBuckets(String row) {
+        return new String[][]{
+                {ReportRollupEntry.REPORT_VISITS_BY_MONTH, monthBucket(row + "." + MedicalRecordEntry.COLUMN_VISIT_DATE)},
+                {ReportRollupEntry.REPORT_VISITS_BY_TYPE, textBucket(row + "." + MedicalRecordEntry.COLUMN_VISIT_TYPE)},
+                {ReportRollupEntry.REPORT_VISITS_BY_DOCTOR, textBucket(row + "." + MedicalRecordEntry.COLUMN_DOCTOR_NAME)},
+                {ReportRollupEntry.REPORT_VISITS_BY_SPECIALTY, textBucket(row + "." + MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY)}
+        };
+    }
+
+    // Expected value of every rollup, computed from the source tables
+    public static final String SQL_SELECT_EXPECTED_REPORT_ROLLUPS = expectedReportRollups();
+
+    private static String expectedReportRollups() {
+        StringBuilder sql = new StringBuilder();
+        for (String[] visit : visitBuckets("r")) {
+            sql.append("SELECT '").append(visit[0]).append("', ").append(visit[1]).append(", COUNT(*) FROM ")
+                    .append(MedicalRecordEntry.TABLE_NAME).append(" r GROUP BY 2 UNION ALL ");
+        }
+        return sql + "SELECT '" + ReportRollupEntry.REPORT_REGISTRATIONS_BY_MONTH + "', " +
+                monthBucket("p." + PatientEntry.COLUMN_REGISTRATION_DATE) + ", COUNT(*) FROM " +
+                PatientEntry.TABLE_NAME + " p GROUP BY 2" +
+                " UNION ALL SELECT '" + ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG + "', " +
+                textBucket("m." + MedicationEntry.COLUMN_MEDICATION_NAME) + ", COUNT(*) FROM " +
+                MedicationEntry.TABLE_NAME + " m INNER JOIN " + PatientEntry.TABLE_NAME + " p" +
+                " ON m." + MedicationEntry.COLUMN_PATIENT_ID + " = p." + PatientEntry._ID +
+                " WHERE m." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1 GROUP BY 2" +
+                " UNION ALL SELECT '" + ReportRollupEntry.REPORT_PATIENTS_CROSS_TAB + "', " + crossTabBucket("p") +
+                ", COUNT(*) FROM " + PatientEntry.TABLE_NAME + " p WHERE p." + PatientEntry.COLUMN_IS_ACTIVE + " = 1 GROUP BY 2";
+    }
+
+    // Recount every rollup from the source tables
+    public static final String[] SQL_REBUILD_REPORT_ROLLUPS = {
+            "DELETE FROM " + ReportRollupEntry.TABLE_NAME,
+            "INSERT INTO " + ReportRollupEntry.TABLE_NAME + "(" + ReportRollupEntry.COLUMN_REPORT + ", " +
+                    ReportRollupEntry.COLUMN_BUCKET + ", " + ReportRollupEntry.COLUMN_VALUE + ") " +
+                    SQL_SELECT_EXPECTED_REPORT_ROLLUPS
+    };
+
+    // Trigger body statements that add delta to one bucket; buckets that drop to zero are removed
+    private static String addToRollup(String report, String bucket, int delta) {
+        String rollups = ReportRollupEntry.TABLE_NAME;
+        String value = ReportRollupEntry.COLUMN_VALUE;
+        String match = " WHERE " + ReportRollupEntry.COLUMN_REPORT + " = '" + report + "' AND " +
+                ReportRollupEntry.COLUMN_BUCKET + " = " + bucket + "; ";
+        String body = "UPDATE " + rollups + " SET " + value + " = " + value + " + (" + delta + ")" + match;
+        if (delta > 0) {
+            return "INSERT OR IGNORE INTO " + rollups + "(" + ReportRollupEntry.COLUMN_REPORT + ", " +
+                    ReportRollupEntry.COLUMN_BUCKET + ", " + value + ") VALUES ('" + report + "', " + bucket + ", 0); " + body;
+        }
+        return body + "DELETE FROM " + rollups + match.replace("; ", " AND " + value + " = 0; ");
+    }
+
+    private static String addVisit(String row, int delta) {
+        StringBuilder body = new StringBuilder();
+        for (String[] visit : visitBuckets(row)) {
+            body.append(addToRollup(visit[0], visit[1], delta));
+        }
+        return body.toString();
+    }
+
+    // Add (delta 1) or remove (delta -1) the active medications of a patient that became active or inactive
+    private static String addPatientMedications(String patientId, int delta) {
+        String rollups = ReportRollupEntry.TABLE_NAME;
+        String report = "'" + ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG + "'";
+        String drug = textBucket("m." + MedicationEntry.COLUMN_MEDICATION_NAME);
+        String medications = " FROM " + MedicationEntry.TABLE_NAME + " m WHERE m." + MedicationEntry.COLUMN_PATIENT_ID +
+                " = " + patientId + " AND m." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1";
+        String body = "UPDATE " + rollups + " SET " + ReportRollupEntry.COLUMN_VALUE + " = " +
+                ReportRollupEntry.COLUMN_VALUE + " + (" + delta + ") * (SELECT COUNT(*)" + medications + " AND " + drug +
+                " = " + rollups + "." + ReportRollupEntry.COLUMN_BUCKET + ") WHERE " + ReportRollupEntry.COLUMN_REPORT +
+                " = " + report + " AND " + ReportRollupEntry.COLUMN_BUCKET + " IN (SELECT " + drug + medications + "); ";
+        if (delta > 0) {
+            return "INSERT OR IGNORE INTO " + rollups + "(" + ReportRollupEntry.COLUMN_REPORT + ", " +
+                    ReportRollupEntry.COLUMN_BUCKET + ", " + ReportRollupEntry.COLUMN_VALUE + ") SELECT DISTINCT " +
+                    report + ", " + drug + ", 0" + medications + "; " + body;
+        }
+        return body + "DELETE FROM " + rollups + " WHERE " + ReportRollupEntry.COLUMN_REPORT + " = " + report +
+                " AND " + ReportRollupEntry.COLUMN_VALUE + " = 0; ";
+    }
+
+    private static String rollupTrigger(String name, String event, String table, String when, String body) {
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " AFTER " + event + " ON " + table +
+                (when != null ? " WHEN " + when : "") + " BEGIN " + body + "END";
+    }
+
+    // Triggers that keep report_rollups in step with every write. As with the stats counters,
+    // an update removes the old row's buckets and adds the new row's.
+    private static final String VISIT_COLUMNS = MedicalRecordEntry.COLUMN_VISIT_DATE + ", " +
+            MedicalRecordEntry.COLUMN_VISIT_TYPE + ", " + MedicalRecordEntry.COLUMN_DOCTOR_NAME + ", " +
+            MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY;
+    private static final String PATIENT_CROSS_TAB_COLUMNS = PatientEntry.COLUMN_IS_ACTIVE + ", " +
+            PatientEntry.COLUMN_AGE + ", " + PatientEntry.COLUMN_GENDER + ", " + PatientEntry.COLUMN_BLOOD_TYPE;
+    private static final String MEDICATION_DRUG_COLUMNS = MedicationEntry.COLUMN_IS_ACTIVE + ", " +
+            MedicationEntry.COLUMN_MEDICATION_NAME + ", " + MedicationEntry.COLUMN_PATIENT_ID;
+
+    public static final String[] SQL_CREATE_REPORT_ROLLUP_TRIGGERS = {
+            rollupTrigger("trg_report_record_insert", "INSERT", MedicalRecordEntry.TABLE_NAME, null,
+                    addVisit("new", 1)),
+            rollupTrigger("trg_report_record_update", "UPDATE OF " + VISIT_COLUMNS, MedicalRecordEntry.TABLE_NAME, null,
+                    addVisit("old", -1) + addVisit("new", 1)),
+            rollupTrigger("trg_report_record_delete", "DELETE", MedicalRecordEntry.TABLE_NAME, null,
+                    addVisit("old", -1)),
+            rollupTrigger("trg_report_patient_insert", "INSERT", PatientEntry.TABLE_NAME, null,
+                    addToRollup(ReportRollupEntry.REPORT_REGISTRATIONS_BY_MONTH,
+                            monthBucket("new." + PatientEntry.COLUMN_REGISTRATION_DATE), 1)),
+            rollupTrigger("trg_report_patient_update_registration", "UPDATE OF " + PatientEntry.COLUMN_REGISTRATION_DATE,
+                    PatientEntry.TABLE_NAME, null,
+                    addToRollup(ReportRollupEntry.REPORT_REGISTRATIONS_BY_MONTH,
+                            monthBucket("old." + PatientEntry.COLUMN_REGISTRATION_DATE), -1) +
+                            addToRollup(ReportRollupEntry.REPORT_REGISTRATIONS_BY_MONTH,
+                                    monthBucket("new." + PatientEntry.COLUMN_REGISTRATION_DATE), 1)),
+            rollupTrigger("trg_report_patient_delete", "DELETE", PatientEntry.TABLE_NAME, null,
+                    addToRollup(ReportRollupEntry.REPORT_REGISTRATIONS_BY_MONTH,
+                            monthBucket("old." + PatientEntry.COLUMN_REGISTRATION_DATE), -1)),
+            // A new patient has no medications yet, the foreign key sees to that
+            rollupTrigger("trg_report_patient_insert_active", "INSERT", PatientEntry.TABLE_NAME,
+                    "new." + PatientEntry.COLUMN_IS_ACTIVE + " = 1",
+                    addToRollup(ReportRollupEntry.REPORT_PATIENTS_CROSS_TAB, crossTabBucket("new"), 1)),
+            rollupTrigger("trg_report_patient_update_old", "UPDATE OF " + PATIENT_CROSS_TAB_COLUMNS, PatientEntry.TABLE_NAME,
+                    "old." + PatientEntry.COLUMN_IS_ACTIVE + " = 1",
+                    addToRollup(ReportRollupEntry.REPORT_PATIENTS_CROSS_TAB, crossTabBucket("old"), -1) +
+                            addPatientMedications("old." + PatientEntry._ID, -1)),
+            rollupTrigger("trg_report_patient_update_new", "UPDATE OF " + PATIENT_CROSS_TAB_COLUMNS, PatientEntry.TABLE_NAME,
+                    "new." + PatientEntry.COLUMN_IS_ACTIVE + " = 1",
+                    addToRollup(ReportRollupEntry.REPORT_PATIENTS_CROSS_TAB, crossTabBucket("new"), 1) +
+                            addPatientMedications("new." + PatientEntry._ID, 1)),
+            rollupTrigger("trg_report_patient_delete_active", "DELETE", PatientEntry.TABLE_NAME,
+                    "old." + PatientEntry.COLUMN_IS_ACTIVE + " = 1",
+                    addToRollup(ReportRollupEntry.REPORT_PATIENTS_CROSS_TAB, crossTabBucket("old"), -1)),
+            rollupTrigger("trg_report_medication_insert", "INSERT", MedicationEntry.TABLE_NAME,
+                    "new." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("new." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToRollup(ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG,
+                            textBucket("new." + MedicationEntry.COLUMN_MEDICATION_NAME), 1)),
+            rollupTrigger("trg_report_medication_update_old", "UPDATE OF " + MEDICATION_DRUG_COLUMNS,
+                    MedicationEntry.TABLE_NAME,
+                    "old." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("old." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToRollup(ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG,
+                            textBucket("old." + MedicationEntry.COLUMN_MEDICATION_NAME), -1)),
+            rollupTrigger("trg_report_medication_update_new", "UPDATE OF " + MEDICATION_DRUG_COLUMNS,
+                    MedicationEntry.TABLE_NAME,
+                    "new." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("new." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToRollup(ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG,
+                            textBucket("new." + MedicationEntry.COLUMN_MEDICATION_NAME), 1)),
+            rollupTrigger("trg_report_medication_delete", "DELETE", MedicationEntry.TABLE_NAME,
+                    "old." + MedicationEntry.COLUMN_IS_ACTIVE + " = 1 AND " +
+                            isActivePatient("old." + MedicationEntry.COLUMN_PATIENT_ID),
+                    addToRollup(ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG,
+                            textBucket("old." + MedicationEntry.COLUMN_MEDICATION_NAME), -1))
+    };
+
+    public static final String[] SQL_DROP_REPORT_ROLLUP_TRIGGERS = dropTriggers(SQL_CREATE_REPORT_ROLLUP_TRIGGERS);
+
+    // Bulk import
+    public static final String SQL_CREATE_IMPORT_CHECKPOINTS_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + ImportCheckpointEntry.TABLE_NAME + " (" +
+                    ImportCheckpointEntry.COLUMN_JOB_ID + " TEXT PRIMARY KEY," +
+                    ImportCheckpointEntry.COLUMN_ROWS_READ + " INTEGER NOT NULL," +
+                    ImportCheckpointEntry.COLUMN_ROWS_IMPORTED + " INTEGER NOT NULL," +
+                    ImportCheckpointEntry.COLUMN_ROWS_FAILED + " INTEGER NOT NULL," +
+                    ImportCheckpointEntry.COLUMN_UPDATED_AT + " INTEGER DEFAULT " + EPOCH_MILLIS_NOW + ") WITHOUT ROWID";
+
+    public static final String SQL_CREATE_PATIENT_SEARCH_PENDING_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + SearchPendingEntry.TABLE_NAME + " (" +
+                    SearchPendingEntry.COLUMN_PATIENT_ID + " INTEGER PRIMARY KEY)";
+
+    // Rebuild the search documents of every pending patient, then clear the queue
+    public static final String[] SQL_REINDEX_PENDING_PATIENT_SEARCH = {
+            "DELETE FROM " + PatientSearchEntry.TABLE_NAME + " WHERE docid IN (SELECT " +
+                    SearchPendingEntry.COLUMN_PATIENT_ID + " FROM " + SearchPendingEntry.TABLE_NAME + ")",
+            SQL_INSERT_PATIENT_SEARCH_DOCUMENT + " WHERE p." + PatientEntry._ID + " IN (SELECT " +
+                    SearchPendingEntry.COLUMN_PATIENT_ID + " FROM " + SearchPendingEntry.TABLE_NAME + ")",
+            "DELETE FROM " + SearchPendingEntry.TABLE_NAME
+    };
+}
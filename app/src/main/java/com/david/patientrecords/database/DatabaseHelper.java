@@ -2,13 +2,23 @@ package com.david.patientrecords.database;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.util.Log;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import com.david.patientrecords.utils.Constants;
+import com.david.patientrecords.utils.DateCodec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
@@ -23,8 +33,62 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return instance;
     }
 
+    private final StorageProfile storageProfile;
+    private final Runnable periodicCheckpoint = this::runPeriodicCheckpoint;
+    private volatile boolean checkpointsScheduled;
+
     private DatabaseHelper(Context context) {
-        super(context, DatabaseContract.DATABASE_NAME, null, DatabaseContract.DATABASE_VERSION);
+        this(context, DatabaseContract.DATABASE_NAME, null);
+    }
+
+    /**
+     * Open a separate database, e.g. an in-memory one (null name) for tests. The cursor
+     * factory sees every query the repository runs against it.
+     */
+    DatabaseHelper(Context context, String name, SQLiteDatabase.CursorFactory cursorFactory) {
+        super(context, name, cursorFactory, DatabaseContract.DATABASE_VERSION);
+        storageProfile = StorageProfile.forName(context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(Constants.PREF_STORAGE_PROFILE, null));
+        // Also gives the reader pool its own connections, which only WAL allows to read during a write
+        setWriteAheadLoggingEnabled(storageProfile.isWriteAheadLogging());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1 && storageProfile.getIdleConnectionTimeoutMs() > 0) {
+            setIdleConnectionTimeout(storageProfile.getIdleConnectionTimeoutMs());
+        }
+    }
+
+    /**
+     * Choose the storage profile by name; it is applied the next time the app starts
+     */
+    public static void saveStorageProfile(Context context, String profileName) {
+        context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(Constants.PREF_STORAGE_PROFILE, profileName)
+                .apply();
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Set on every pooled connection, unlike a PRAGMA run in onOpen
+        db.setForeignKeyConstraintsEnabled(true);
+
+        // Only the primary connection gets here, and it runs every write; pooled reader
+        // connections keep the platform defaults, so nothing below is meant for reads
+        applyPragma(db, "synchronous", storageProfile.getSynchronous());
+        applyPragma(db, "cache_size", String.valueOf(-storageProfile.getWriterCacheSizeKb())); // Negative means KiB, not pages
+        applyPragma(db, "temp_store", storageProfile.getWriterTempStore());
+        if (storageProfile.isWriteAheadLogging() && storageProfile.getWalAutoCheckpointPages() > 0) {
+            applyPragma(db, "wal_autocheckpoint", String.valueOf(storageProfile.getWalAutoCheckpointPages()));
+        }
+        Log.d(TAG, "Configured " + storageProfile);
+    }
+
+    // Some pragmas return the new value, so run them as queries rather than execSQL
+    private void applyPragma(SQLiteDatabase db, String pragma, String value) {
+        try (Cursor cursor = db.rawQuery("PRAGMA " + pragma + " = " + value, null)) {
+            cursor.moveToFirst();
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting PRAGMA " + pragma + ": " + e.getMessage());
+        }
     }
 
     @Override
@@ -36,6 +100,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             db.execSQL(DatabaseContract.SQL_CREATE_PATIENTS_TABLE);
             db.execSQL(DatabaseContract.SQL_CREATE_MEDICAL_RECORDS_TABLE);
             db.execSQL(DatabaseContract.SQL_CREATE_MEDICATIONS_TABLE);
+            createIndexes(db);
+            createSearchIndex(db);
+            createStatsCounters(db);
+            rebuildStatsCounters(db);
+            createImportTables(db);
+            createVitalObservations(db);
+            createReportRollups(db);
+            rebuildReportRollups(db);
 
             Log.d(TAG, "Database tables created successfully");
 
@@ -51,21 +123,540 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         Log.d(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion);
 
-        // Drop all tables and recreate them
-        db.execSQL(DatabaseContract.SQL_DELETE_MEDICATIONS_TABLE);
-        db.execSQL(DatabaseContract.SQL_DELETE_MEDICAL_RECORDS_TABLE);
-        db.execSQL(DatabaseContract.SQL_DELETE_PATIENTS_TABLE);
+        // Apply each migration step in order so existing data is kept.
+        // SQLiteOpenHelper already runs onUpgrade inside a transaction.
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrateTo(db, version);
+        }
+    }
+
+    /**
+     * Apply the schema change that brings the database up to the given version. Each
+     * step runs its own frozen SQL from MigrationSql, never the current contract.
+     */
+    private void migrateTo(SQLiteDatabase db, int version) {
+        Log.d(TAG, "Migrating database to version " + version);
+
+        switch (version) {
+            case 2:
+                // image_path replaced profile_image for patient photos
+                db.execSQL(MigrationSql.V2_ADD_PATIENT_IMAGE_PATH);
+                break;
+
+            case 3:
+                execAll(db, MigrationSql.V3_CREATE_INDEXES);
+                break;
+
+            case 4:
+                execAll(db, MigrationSql.V4_CREATE_PATIENT_SEARCH);
+                execAll(db, MigrationSql.V4_REBUILD_PATIENT_SEARCH);
+                break;
+
+            case 5:
+                execAll(db, MigrationSql.V5_CREATE_STATS_COUNTERS);
+                execAll(db, MigrationSql.V5_REBUILD_STATS_COUNTERS);
+                break;
+
+            case 6:
+                execAll(db, MigrationSql.V6_CREATE_IMPORT_TABLES);
+                break;
+
+            case 7:
+                migrateToEpochDates(db);
+                break;
+
+            case 8:
+                execAll(db, MigrationSql.V8_CREATE_VITAL_OBSERVATIONS);
+                backfillVitalObservations(db);
+                break;
+
+            case 9:
+                execAll(db, MigrationSql.V9_CREATE_REPORT_ROLLUPS);
+                execAll(db, MigrationSql.V9_REBUILD_REPORT_ROLLUPS);
+                break;
+
+            case 10:
+                migrateImportCheckpointTimes(db);
+                execAll(db, MigrationSql.V10_DROP_STATS_COUNTER_TRIGGERS);
+                execAll(db, MigrationSql.V10_CREATE_STATS_COUNTER_TRIGGERS);
+                break;
+
+            default:
+                throw new IllegalStateException("No migration defined for database version " + version);
+        }
+    }
+
+    private void execAll(SQLiteDatabase db, String[] statements) {
+        for (String sql : statements) {
+            db.execSQL(sql);
+        }
+    }
+
+    private void createIndexes(SQLiteDatabase db) {
+        for (String sql : DatabaseContract.SQL_CREATE_INDEXES) {
+            db.execSQL(sql);
+        }
+        Log.d(TAG, "Database indexes created");
+    }
+
+    private void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL(DatabaseContract.SQL_CREATE_PATIENT_SEARCH_TABLE);
+        for (String sql : DatabaseContract.SQL_CREATE_PATIENT_SEARCH_TRIGGERS) {
+            db.execSQL(sql);
+        }
+        Log.d(TAG, "Search index created");
+    }
+
+    /**
+     * Re-index every patient from the source tables. The triggers keep the index
+     * current afterwards, this is only needed for existing data.
+     */
+    public void rebuildSearchIndex(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (String sql : DatabaseContract.SQL_REBUILD_PATIENT_SEARCH) {
+                db.execSQL(sql);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Search index rebuilt");
+    }
+
+    private void createStatsCounters(SQLiteDatabase db) {
+        db.execSQL(DatabaseContract.SQL_CREATE_STATS_COUNTERS_TABLE);
+        for (String sql : DatabaseContract.SQL_CREATE_STATS_COUNTER_TRIGGERS) {
+            db.execSQL(sql);
+        }
+        Log.d(TAG, "Stats counters created");
+    }
+
+    /**
+     * Recount every stats counter from the source tables. The triggers keep the
+     * counters current afterwards, this is only needed for existing data.
+     */
+    public void rebuildStatsCounters(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (String sql : DatabaseContract.SQL_REBUILD_STATS_COUNTERS) {
+                db.execSQL(sql);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Stats counters rebuilt");
+    }
+
+    /**
+     * Compare the stats counters with a full recount and rebuild them if they drifted.
+     * Returns the names of the counters that were wrong, empty when all matched.
+     */
+    public List<String> checkStatsCounters(SQLiteDatabase db) {
+        Map<String, Long> expected = readCounters(db, DatabaseContract.SQL_SELECT_EXPECTED_STATS_COUNTERS);
+        Map<String, Long> actual = readCounters(db, "SELECT " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + ", " +
+                DatabaseContract.StatsCounterEntry.COLUMN_VALUE + " FROM " + DatabaseContract.StatsCounterEntry.TABLE_NAME);
+
+        List<String> mismatched = compareCounters(expected, actual);
+        if (!mismatched.isEmpty()) {
+            Log.w(TAG, "Stats counters out of step, rebuilding: " + mismatched);
+            rebuildStatsCounters(db);
+        }
+        return mismatched;
+    }
+
+    // Counters that dropped to zero may stay in the table, a missing row means zero too
+    private List<String> compareCounters(Map<String, Long> expected, Map<String, Long> actual) {
+        Set<String> names = new HashSet<>(expected.keySet());
+        names.addAll(actual.keySet());
+        List<String> mismatched = new ArrayList<>();
+        for (String name : names) {
+            long expectedValue = expected.containsKey(name) ? expected.get(name) : 0;
+            long actualValue = actual.containsKey(name) ? actual.get(name) : 0;
+            if (expectedValue != actualValue) {
+                mismatched.add(name + " (" + actualValue + ", expected " + expectedValue + ")");
+            }
+        }
+        return mismatched;
+    }
+
+    // The last column is the value, the ones before it joined by '/' are the name
+    private Map<String, Long> readCounters(SQLiteDatabase db, String query) {
+        Map<String, Long> counters = new HashMap<>();
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            int value = cursor.getColumnCount() - 1;
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                for (int i = 1; i < value; i++) {
+                    name += "/" + cursor.getString(i);
+                }
+                counters.put(name, cursor.getLong(value));
+            }
+        }
+        return counters;
+    }
+
+    // ==================== REPORT ROLLUPS ====================
 
-        onCreate(db);
+    private void createReportRollups(SQLiteDatabase db) {
+        db.execSQL(DatabaseContract.SQL_CREATE_REPORT_ROLLUPS_TABLE);
+        for (String sql : DatabaseContract.SQL_CREATE_REPORT_ROLLUP_TRIGGERS) {
+            db.execSQL(sql);
+        }
+        Log.d(TAG, "Report rollups created");
+    }
+
+    /**
+     * Recount every report rollup from the source tables. The triggers keep the
+     * rollups current afterwards, this is only needed for existing data or after drift.
+     */
+    public void rebuildReportRollups(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (String sql : DatabaseContract.SQL_REBUILD_REPORT_ROLLUPS) {
+                db.execSQL(sql);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Report rollups rebuilt");
+    }
+
+    /**
+     * Compare the report rollups with a full recount and rebuild them if they drifted.
+     * Returns the report/bucket names that were wrong, empty when all matched.
+     */
+    public List<String> checkReportRollups(SQLiteDatabase db) {
+        Map<String, Long> expected = readCounters(db, DatabaseContract.SQL_SELECT_EXPECTED_REPORT_ROLLUPS);
+        Map<String, Long> actual = readCounters(db, "SELECT " + DatabaseContract.ReportRollupEntry.COLUMN_REPORT + ", " +
+                DatabaseContract.ReportRollupEntry.COLUMN_BUCKET + ", " + DatabaseContract.ReportRollupEntry.COLUMN_VALUE +
+                " FROM " + DatabaseContract.ReportRollupEntry.TABLE_NAME);
+
+        List<String> mismatched = compareCounters(expected, actual);
+        if (!mismatched.isEmpty()) {
+            Log.w(TAG, "Report rollups out of step, rebuilding: " + mismatched);
+            rebuildReportRollups(db);
+        }
+        return mismatched;
+    }
+
+    // ==================== EPOCH DATE MIGRATION ====================
+
+    // The date columns of version 7, and the timestamps that became epoch milliseconds
+    private static final Set<String> V7_EPOCH_DAY_COLUMNS = new HashSet<>(Arrays.asList(
+            "registration_date", "visit_date", "follow_up_date", "start_date", "end_date"));
+    private static final Set<String> V7_EPOCH_MILLIS_COLUMNS = new HashSet<>(Arrays.asList(
+            "created_at", "updated_at"));
+
+    /**
+     * Rebuild patients, medical_records and medications with INTEGER date columns.
+     * SQLite cannot change a column's type, so each table is renamed, recreated and
+     * copied across, turning yyyy-MM-dd dates into epoch days and the CURRENT_TIMESTAMP
+     * values (UTC) into epoch milliseconds.
+     */
+    private void migrateToEpochDates(SQLiteDatabase db) {
+        // Triggers name these tables, they are recreated on the new ones at the end
+        execAll(db, MigrationSql.V7_DROP_TRIGGERS);
+
+        // The children's foreign keys follow the renamed patients table, so it is only
+        // dropped once they have been rebuilt against the new one
+        String oldPatients = rebuildWithEpochDates(db, "patients", MigrationSql.V7_CREATE_PATIENTS_TABLE, null);
+
+        // Rows whose patient is gone could not satisfy the new foreign key, and no screen shows them
+        String hasPatient = "patient_id IN (SELECT _id FROM patients)";
+        db.execSQL("DROP TABLE " + rebuildWithEpochDates(db, "medical_records",
+                MigrationSql.V7_CREATE_MEDICAL_RECORDS_TABLE, hasPatient));
+        db.execSQL("DROP TABLE " + rebuildWithEpochDates(db, "medications",
+                MigrationSql.V7_CREATE_MEDICATIONS_TABLE, hasPatient));
+        db.execSQL("DROP TABLE " + oldPatients);
+
+        // The indexes and search triggers are the ones versions 3 and 4 created
+        execAll(db, MigrationSql.V3_CREATE_INDEXES);
+        execAll(db, MigrationSql.V4_CREATE_PATIENT_SEARCH);
+        execAll(db, MigrationSql.V7_CREATE_STATS_COUNTER_TRIGGERS);
+        execAll(db, MigrationSql.V7_REBUILD_STATS_COUNTERS);
+    }
+
+    // Move a table aside, recreate it and copy its rows; returns the name of the old copy
+    private String rebuildWithEpochDates(SQLiteDatabase db, String table, String createSql, String where) {
+        String oldTable = table + "_old";
+        db.execSQL("ALTER TABLE " + table + " RENAME TO " + oldTable);
+        db.execSQL(createSql);
+
+        List<String> columns = new ArrayList<>();
+        Set<String> required = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + oldTable + ")", null)) {
+            while (cursor.moveToNext()) {
+                String column = cursor.getString(cursor.getColumnIndexOrThrow("name"));
+                columns.add(column);
+                if (cursor.getInt(cursor.getColumnIndexOrThrow("notnull")) != 0) {
+                    required.add(column);
+                }
+            }
+        }
+
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (String column : columns) {
+            if (names.length() > 0) {
+                names.append(", ");
+                values.append(", ");
+            }
+            names.append(column);
+            if (V7_EPOCH_DAY_COLUMNS.contains(column)) {
+                normalizeDates(db, oldTable, column, required.contains(column));
+                values.append("CAST(julianday(date(").append(column).append(")) - 2440587.5 AS INTEGER)");
+            } else if (V7_EPOCH_MILLIS_COLUMNS.contains(column)) {
+                values.append("CAST(strftime('%s', ").append(column).append(") AS INTEGER) * 1000");
+            } else {
+                values.append(column);
+            }
+        }
+        db.execSQL("INSERT INTO " + table + " (" + names + ") SELECT " + values + " FROM " + oldTable +
+                (where != null ? " WHERE " + where : ""));
+
+        // Carry the AUTOINCREMENT high-water mark over so deleted ids are never reused
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name = ?", new Object[]{table});
+        db.execSQL("UPDATE sqlite_sequence SET name = ? WHERE name = ?", new Object[]{table, oldTable});
+
+        Log.d(TAG, "Rebuilt " + table + " with epoch dates");
+        return oldTable;
+    }
+
+    // Rewrite dates SQLite cannot read, e.g. with unpadded fields, as yyyy-MM-dd the way the
+    // app used to parse them; anything that is not a date is cleared, or for a required
+    // column replaced by the day the row was created
+    private void normalizeDates(SQLiteDatabase db, String table, String column, boolean required) {
+        Map<Long, String> fixed = new HashMap<>();
+        try (Cursor cursor = db.rawQuery("SELECT _id, " + column + ", created_at FROM " + table +
+                " WHERE " + column + " IS NOT NULL AND julianday(" + column + ") IS NULL", null)) {
+            while (cursor.moveToNext()) {
+                long epochDay = DateCodec.parseEpochDayLenient(cursor.getString(1));
+                if (epochDay == DateCodec.INVALID && required) {
+                    epochDay = DateCodec.parseEpochDay(cursor.getString(2));
+                    if (epochDay == DateCodec.INVALID) {
+                        epochDay = DateCodec.todayEpochDay();
+                    }
+                }
+                fixed.put(cursor.getLong(0), epochDay != DateCodec.INVALID ? DateCodec.formatEpochDay(epochDay) : null);
+            }
+        }
+
+        for (Map.Entry<Long, String> entry : fixed.entrySet()) {
+            ContentValues values = new ContentValues();
+            values.put(column, entry.getValue());
+            db.update(table, values, "_id = ?",
+                    new String[]{String.valueOf(entry.getKey())});
+        }
+        if (!fixed.isEmpty()) {
+            Log.w(TAG, "Normalized " + fixed.size() + " unreadable values of " + table + "." + column);
+        }
+    }
+
+    // ==================== VITAL OBSERVATIONS ====================
+
+    private void createVitalObservations(SQLiteDatabase db) {
+        db.execSQL(DatabaseContract.SQL_CREATE_VITAL_OBSERVATIONS_TABLE);
+        for (String sql : DatabaseContract.SQL_CREATE_VITAL_OBSERVATIONS_INDEXES) {
+            db.execSQL(sql);
+        }
+        Log.d(TAG, "Vital observations table created");
+    }
+
+    /**
+     * Parse the vital signs text of every existing record into vital_observations.
+     * Records are streamed from a cursor and share one compiled insert, so the pass
+     * holds a single record's text at a time. Repository writes keep the table current
+     * afterwards.
+     */
+    private void backfillVitalObservations(SQLiteDatabase db) {
+        int records = 0;
+        int readings = 0;
+        try (Cursor cursor = db.rawQuery("SELECT _id, patient_id, visit_date, vital_signs FROM medical_records" +
+                " WHERE vital_signs <> ''", null);
+             VitalObservationWriter writer = new VitalObservationWriter(db)) {
+            while (cursor.moveToNext()) {
+                records++;
+                readings += writer.write(cursor.getLong(0), cursor.getLong(1),
+                        CursorMappers.getEpochDay(cursor, 2), cursor.getString(3));
+            }
+        }
+        Log.d(TAG, "Backfilled " + readings + " vital observations from " + records + " records");
+    }
+
+    private void createImportTables(SQLiteDatabase db) {
+        db.execSQL(DatabaseContract.SQL_CREATE_IMPORT_CHECKPOINTS_TABLE);
+        db.execSQL(DatabaseContract.SQL_CREATE_PATIENT_SEARCH_PENDING_TABLE);
+        Log.d(TAG, "Import tables created");
+    }
+
+    // Checkpoint times were local yyyy-MM-dd HH:mm:ss text; the table is rebuilt to store epoch milliseconds
+    private void migrateImportCheckpointTimes(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE import_checkpoints RENAME TO import_checkpoints_old");
+        db.execSQL(MigrationSql.V10_CREATE_IMPORT_CHECKPOINTS_TABLE);
+        db.execSQL("INSERT INTO import_checkpoints (job_id, rows_read, rows_imported, rows_failed, updated_at)" +
+                " SELECT job_id, rows_read, rows_imported, rows_failed," +
+                " CAST(strftime('%s', updated_at, 'utc') AS INTEGER) * 1000 FROM import_checkpoints_old");
+        db.execSQL("DROP TABLE import_checkpoints_old");
+        Log.d(TAG, "Import checkpoint times migrated to epoch milliseconds");
+    }
+
+    /**
+     * Swap the search triggers for ones that only queue the patients each write touches,
+     * so a bulk import does not rebuild a patient's document for every row it inserts.
+     * Both sets of triggers fire on the same writes, so nothing is missed in between.
+     */
+    public void suspendSearchIndexing(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (String sql : DatabaseContract.SQL_DROP_PATIENT_SEARCH_TRIGGERS) {
+                db.execSQL(sql);
+            }
+            for (String sql : DatabaseContract.SQL_CREATE_PATIENT_SEARCH_QUEUE_TRIGGERS) {
+                db.execSQL(sql);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Search indexing suspended");
+    }
+
+    /**
+     * Put the search triggers back and reindex every patient queued while they were suspended
+     */
+    public void resumeSearchIndexing(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (String sql : DatabaseContract.SQL_DROP_PATIENT_SEARCH_QUEUE_TRIGGERS) {
+                db.execSQL(sql);
+            }
+            for (String sql : DatabaseContract.SQL_CREATE_PATIENT_SEARCH_TRIGGERS) {
+                db.execSQL(sql);
+            }
+            reindexPendingSearchDocuments(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Search indexing resumed");
+    }
+
+    private boolean isSearchIndexingSuspended(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'trigger' AND name LIKE ?",
+                new String[]{"trg_patient_search_queue_%"})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Rebuild the search documents of patients queued by a bulk import. Imports do
+     * this when they finish; an import that was interrupted leaves its queue for the
+     * next open.
+     */
+    public void reindexPendingSearchDocuments(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (String sql : DatabaseContract.SQL_REINDEX_PENDING_PATIENT_SEARCH) {
+                db.execSQL(sql);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Pending search documents reindexed");
+    }
+
+    private boolean hasPendingSearchDocuments(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM " + DatabaseContract.SearchPendingEntry.TABLE_NAME +
+                " LIMIT 1", null)) {
+            return cursor.moveToFirst();
+        }
     }
 
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
-        // Enable foreign key constraints
-        if (!db.isReadOnly()) {
-            db.execSQL("PRAGMA foreign_keys=ON;");
+        if (db.isWriteAheadLoggingEnabled()) {
+            schedulePeriodicCheckpoint();
+        }
+
+        // No import runs before the database is open, so suspended indexing or a queue was left by one that died
+        if (!db.isReadOnly() && (isSearchIndexingSuspended(db) || hasPendingSearchDocuments(db))) {
+            resumeSearchIndexing(db);
+        }
+    }
+
+    // ==================== STORAGE ====================
+
+    public StorageProfile getStorageProfile() {
+        return storageProfile;
+    }
+
+    /**
+     * Read back the settings in effect on the writer connection, e.g. to show in
+     * diagnostics or confirm that a profile was applied
+     */
+    public Map<String, String> getActiveStorageSettings() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("profile", storageProfile.getName());
+
+        SQLiteDatabase db = getWritableDatabase();
+        settings.put("wal_enabled", String.valueOf(db.isWriteAheadLoggingEnabled()));
+        for (String pragma : new String[]{"journal_mode", "synchronous", "cache_size",
+                "temp_store", "wal_autocheckpoint", "page_size", "foreign_keys"}) {
+            try (Cursor cursor = db.rawQuery("PRAGMA " + pragma, null)) {
+                settings.put(pragma, cursor.moveToFirst() ? cursor.getString(0) : null);
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading PRAGMA " + pragma + ": " + e.getMessage());
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Copy committed pages from the WAL file back into the database. A passive
+     * checkpoint never waits for readers or the writer; truncate waits for them and
+     * then empties the WAL file, e.g. before copying the database file.
+     * Returns [busy (1 if it could not finish), WAL frames, frames checkpointed].
+     */
+    public int[] checkpoint(boolean truncate) {
+        int[] result = new int[3];
+        SQLiteDatabase db = getWritableDatabase();
+        if (!db.isWriteAheadLoggingEnabled()) {
+            return result;
+        }
+
+        String mode = truncate ? "TRUNCATE" : "PASSIVE";
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(" + mode + ")", null)) {
+            if (cursor.moveToFirst()) {
+                result[0] = cursor.getInt(0);
+                result[1] = cursor.getInt(1);
+                result[2] = cursor.getInt(2);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error running " + mode + " checkpoint: " + e.getMessage());
+        }
+
+        Log.d(TAG, mode + " checkpoint: " + result[2] + "/" + result[1] + " frames" + (result[0] != 0 ? ", busy" : ""));
+        return result;
+    }
+
+    // Auto-checkpoints only run on commit, this also drains the WAL after a burst of writes goes quiet
+    private void schedulePeriodicCheckpoint() {
+        if (checkpointsScheduled || !storageProfile.isWriteAheadLogging() || storageProfile.getCheckpointIntervalMs() <= 0) {
+            return;
         }
+        checkpointsScheduled = true;
+        DbExecutor.getInstance().postToMainDelayed(periodicCheckpoint, storageProfile.getCheckpointIntervalMs());
+    }
+
+    private void runPeriodicCheckpoint() {
+        // Queued behind pending writes on the writer thread so it never competes with them
+        DbExecutor.getInstance().submitWrite(() -> checkpoint(false));
+        DbExecutor.getInstance().postToMainDelayed(periodicCheckpoint, storageProfile.getCheckpointIntervalMs());
     }
 
     /**
@@ -138,7 +729,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(DatabaseContract.PatientEntry.COLUMN_EMERGENCY_PHONE, emergencyPhone);
         values.put(DatabaseContract.PatientEntry.COLUMN_MEDICAL_CONDITIONS, medicalConditions);
         values.put(DatabaseContract.PatientEntry.COLUMN_ALLERGIES, allergies);
-        values.put(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE, getCurrentDate());
+        values.put(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE, DateCodec.todayEpochDay());
 
         long newRowId = db.insert(DatabaseContract.PatientEntry.TABLE_NAME, null, values);
         Log.d(TAG, "Inserted patient: " + name + " with ID: " + newRowId);
@@ -154,7 +745,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_TREATMENT, treatment);
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_NAME, doctorName);
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY, doctorSpecialty);
-        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, getCurrentDate());
+        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, DateCodec.todayEpochDay());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_TYPE, "Regular");
 
         long newRowId = db.insert(DatabaseContract.MedicalRecordEntry.TABLE_NAME, null, values);
@@ -172,27 +763,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(DatabaseContract.MedicationEntry.COLUMN_FREQUENCY, frequency);
         values.put(DatabaseContract.MedicationEntry.COLUMN_PRESCRIBED_BY, prescribedBy);
         values.put(DatabaseContract.MedicationEntry.COLUMN_INSTRUCTIONS, instructions);
-        values.put(DatabaseContract.MedicationEntry.COLUMN_START_DATE, getCurrentDate());
+        values.put(DatabaseContract.MedicationEntry.COLUMN_START_DATE, DateCodec.todayEpochDay());
         values.put(DatabaseContract.MedicationEntry.COLUMN_REFILLS_REMAINING, 5);
 
         long newRowId = db.insert(DatabaseContract.MedicationEntry.TABLE_NAME, null, values);
         Log.d(TAG, "Inserted medication with ID: " + newRowId);
     }
 
-    /**
-     * Get current date in YYYY-MM-DD format
-     */
-    private String getCurrentDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        return sdf.format(new Date());
-    }
-
     /**
      * Get current timestamp in YYYY-MM-DD HH:MM:SS format
      */
     public static String getCurrentTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date());
+        return DateCodec.formatDateTime(DateCodec.toWallSeconds(System.currentTimeMillis()));
     }
 
     /**
@@ -203,35 +785,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         int[] stats = new int[3]; // [patients, records, medications]
 
         try {
-            // Count active patients
-            String countPatientsQuery = "SELECT COUNT(*) FROM " +
-                    DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-            android.database.Cursor cursor = db.rawQuery(countPatientsQuery, null);
-            if (cursor.moveToFirst()) {
-                stats[0] = cursor.getInt(0);
-            }
-            cursor.close();
-
-            // Count medical records
-            String countRecordsQuery = "SELECT COUNT(*) FROM " +
-                    DatabaseContract.MedicalRecordEntry.TABLE_NAME;
-            cursor = db.rawQuery(countRecordsQuery, null);
-            if (cursor.moveToFirst()) {
-                stats[1] = cursor.getInt(0);
-            }
-            cursor.close();
-
-            // Count active medications
-            String countMedicationsQuery = "SELECT COUNT(*) FROM " +
-                    DatabaseContract.MedicationEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE + " = 1";
-            cursor = db.rawQuery(countMedicationsQuery, null);
-            if (cursor.moveToFirst()) {
-                stats[2] = cursor.getInt(0);
-            }
-            cursor.close();
-
+            // Read the trigger-maintained counters instead of counting rows
+            Map<String, Long> counters = readCounters(db, "SELECT " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + ", " +
+                    DatabaseContract.StatsCounterEntry.COLUMN_VALUE + " FROM " + DatabaseContract.StatsCounterEntry.TABLE_NAME +
+                    " WHERE " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + " IN ('" +
+                    DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_PATIENTS + "', '" +
+                    DatabaseContract.StatsCounterEntry.COUNTER_MEDICAL_RECORDS + "', '" +
+                    DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS + "')");
+            stats[0] = counterValue(counters, DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_PATIENTS);
+            stats[1] = counterValue(counters, DatabaseContract.StatsCounterEntry.COUNTER_MEDICAL_RECORDS);
+            stats[2] = counterValue(counters, DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS);
         } catch (Exception e) {
             Log.e(TAG, "Error getting database stats: " + e.getMessage());
         }
@@ -239,6 +802,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return stats;
     }
 
+    private static int counterValue(Map<String, Long> counters, String name) {
+        Long value = counters.get(name);
+        return value != null ? value.intValue() : 0;
+    }
+
     /**
      * Clear all data from database (for testing purposes)
      */
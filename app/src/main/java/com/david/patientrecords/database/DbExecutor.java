@@ -0,0 +1,377 @@
+package com.david.patientrecords.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared executor for all database work.
+ *
+ * Writes run on a single serialized lane so inserts/updates never contend with
+ * each other; reads run on a small fixed pool. Results are delivered on the main
+ * thread, and tasks bound to a LifecycleOwner are cancelled when it is destroyed.
+ */
+public class DbExecutor {
+
+    private static final String TAG = "DbExecutor";
+    private static final int READER_THREADS = 3;
+    private static final long SLOW_TASK_MS = 200;
+
+    private static DbExecutor instance;
+
+    private final ThreadPoolExecutor readExecutor;
+    private final ThreadPoolExecutor writeExecutor;
+    private final Handler mainHandler;
+    private final LaneStats readStats = new LaneStats("read");
+    private final LaneStats writeStats = new LaneStats("write");
+
+    // Work executed on a database lane
+    public interface DbTask<T> {
+        T run() throws Exception;
+    }
+
+    // Delivered on the main thread with the task result
+    public interface ResultListener<T> {
+        void onResult(T result);
+    }
+
+    // Delivered on the main thread when the task throws
+    public interface ErrorListener {
+        void onError(Exception e);
+    }
+
+    // Singleton pattern
+    public static synchronized DbExecutor getInstance() {
+        if (instance == null) {
+            instance = new DbExecutor();
+        }
+        return instance;
+    }
+
+    private DbExecutor() {
+        readExecutor = new ThreadPoolExecutor(READER_THREADS, READER_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new LaneThreadFactory("db-reader"));
+        readExecutor.allowCoreThreadTimeOut(true);
+
+        writeExecutor = new ThreadPoolExecutor(1, 1,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new LaneThreadFactory("db-writer"));
+        writeExecutor.allowCoreThreadTimeOut(true);
+
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    // ==================== SUBMISSION ====================
+
+    /**
+     * Run a read on the reader pool, cancelled when the owner is destroyed.
+     * Must be called from the main thread when an owner is supplied.
+     */
+    public <T> Job read(@Nullable LifecycleOwner owner, @NonNull DbTask<T> task,
+                        @Nullable ResultListener<T> onResult, @Nullable ErrorListener onError) {
+        return submit(readExecutor, readStats, owner, true, task, onResult, onError);
+    }
+
+    public <T> Job read(@NonNull DbTask<T> task, @Nullable ResultListener<T> onResult,
+                        @Nullable ErrorListener onError) {
+        return read(null, task, onResult, onError);
+    }
+
+    /**
+     * Run a write on the serialized writer lane. When the owner is destroyed the
+     * write still completes, only the callbacks are dropped.
+     */
+    public <T> Job write(@Nullable LifecycleOwner owner, @NonNull DbTask<T> task,
+                         @Nullable ResultListener<T> onResult, @Nullable ErrorListener onError) {
+        return submit(writeExecutor, writeStats, owner, false, task, onResult, onError);
+    }
+
+    public <T> Job write(@NonNull DbTask<T> task, @Nullable ResultListener<T> onResult,
+                         @Nullable ErrorListener onError) {
+        return write(null, task, onResult, onError);
+    }
+
+    private <T> Job submit(ThreadPoolExecutor executor, LaneStats stats, LifecycleOwner owner,
+                           boolean cancelWork, DbTask<T> task,
+                           ResultListener<T> onResult, ErrorListener onError) {
+        Job job = new Job(cancelWork);
+        job.submittedAt = System.nanoTime();
+
+        if (owner != null) {
+            job.bindTo(owner);
+            if (job.isCancelled()) {
+                return job;
+            }
+        }
+
+        job.future = executor.submit(() -> {
+            if (job.isCancelled() && job.cancelWork) {
+                return;
+            }
+
+            job.startedAt = System.nanoTime();
+            T result = null;
+            Exception error = null;
+            try {
+                result = task.run();
+            } catch (Exception e) {
+                error = e;
+            }
+            job.finishedAt = System.nanoTime();
+            recordTiming(stats, job.getQueueWaitMs(), job.getRunTimeMs());
+
+            final T finalResult = result;
+            final Exception finalError = error;
+            mainHandler.post(() -> {
+                job.unbind();
+                if (job.isCancelled()) {
+                    return;
+                }
+                if (finalError != null) {
+                    Log.e(TAG, "Database task failed", finalError);
+                    if (onError != null) {
+                        onError.onError(finalError);
+                    }
+                } else if (onResult != null) {
+                    onResult.onResult(finalResult);
+                }
+            });
+        });
+
+        return job;
+    }
+
+    // ==================== RAW LANES ====================
+
+    /**
+     * Run work on the reader pool without lifecycle binding or main-thread delivery.
+     * Used by future-based callers that complete their own results.
+     */
+    Future<?> submitRead(@NonNull Runnable work) {
+        return submitTimed(readExecutor, readStats, work);
+    }
+
+    /**
+     * Run work on the serialized writer lane without lifecycle binding or main-thread delivery
+     */
+    Future<?> submitWrite(@NonNull Runnable work) {
+        return submitTimed(writeExecutor, writeStats, work);
+    }
+
+    void postToMain(@NonNull Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+
+    void postToMainDelayed(@NonNull Runnable runnable, long delayMs) {
+        mainHandler.postDelayed(runnable, delayMs);
+    }
+
+    void removeFromMain(@NonNull Runnable runnable) {
+        mainHandler.removeCallbacks(runnable);
+    }
+
+    private Future<?> submitTimed(ThreadPoolExecutor executor, LaneStats stats, Runnable work) {
+        long submittedAt = System.nanoTime();
+        return executor.submit(() -> {
+            long startedAt = System.nanoTime();
+            try {
+                work.run();
+            } finally {
+                long finishedAt = System.nanoTime();
+                recordTiming(stats, TimeUnit.NANOSECONDS.toMillis(startedAt - submittedAt),
+                        TimeUnit.NANOSECONDS.toMillis(finishedAt - startedAt));
+            }
+        });
+    }
+
+    private void recordTiming(LaneStats stats, long waitMs, long runMs) {
+        stats.record(waitMs, runMs);
+        if (runMs > SLOW_TASK_MS) {
+            Log.w(TAG, "Slow " + stats.name + " task: waited " + waitMs + "ms, ran " + runMs + "ms");
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    /**
+     * Get read lane statistics
+     */
+    public LaneStats getReadStats() {
+        return readStats;
+    }
+
+    /**
+     * Get write lane statistics
+     */
+    public LaneStats getWriteStats() {
+        return writeStats;
+    }
+
+    /**
+     * Get a one-line summary of both lanes for logging
+     */
+    public String getStatsSummary() {
+        return readStats + " (queued " + readExecutor.getQueue().size() + "), " +
+                writeStats + " (queued " + writeExecutor.getQueue().size() + ")";
+    }
+
+    /**
+     * Aggregated queue-wait and run-time counters for one lane
+     */
+    public static class LaneStats {
+        private final String name;
+        private final AtomicInteger taskCount = new AtomicInteger();
+        private final AtomicLong totalWaitMs = new AtomicLong();
+        private final AtomicLong totalRunMs = new AtomicLong();
+        private final AtomicLong maxWaitMs = new AtomicLong();
+        private final AtomicLong maxRunMs = new AtomicLong();
+
+        LaneStats(String name) {
+            this.name = name;
+        }
+
+        void record(long waitMs, long runMs) {
+            taskCount.incrementAndGet();
+            totalWaitMs.addAndGet(waitMs);
+            totalRunMs.addAndGet(runMs);
+            updateMax(maxWaitMs, waitMs);
+            updateMax(maxRunMs, runMs);
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current;
+            while (value > (current = max.get())) {
+                if (max.compareAndSet(current, value)) {
+                    return;
+                }
+            }
+        }
+
+        public int getTaskCount() { return taskCount.get(); }
+        public long getMaxWaitMs() { return maxWaitMs.get(); }
+        public long getMaxRunMs() { return maxRunMs.get(); }
+
+        public long getAverageWaitMs() {
+            int count = taskCount.get();
+            return count == 0 ? 0 : totalWaitMs.get() / count;
+        }
+
+        public long getAverageRunMs() {
+            int count = taskCount.get();
+            return count == 0 ? 0 : totalRunMs.get() / count;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + getTaskCount() + " tasks, avg wait " + getAverageWaitMs() +
+                    "ms (max " + getMaxWaitMs() + "ms), avg run " + getAverageRunMs() +
+                    "ms (max " + getMaxRunMs() + "ms)";
+        }
+    }
+
+    // ==================== JOB HANDLE ====================
+
+    /**
+     * Handle for a submitted task. Cancelling drops the callbacks and, for reads,
+     * skips the work if it has not started yet.
+     */
+    public static class Job {
+        private final boolean cancelWork;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+        private volatile long submittedAt;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private Lifecycle lifecycle;
+        private LifecycleEventObserver observer;
+
+        Job(boolean cancelWork) {
+            this.cancelWork = cancelWork;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null && cancelWork) {
+                f.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return finishedAt != 0 || cancelled;
+        }
+
+        /**
+         * Time spent waiting in the lane queue before running
+         */
+        public long getQueueWaitMs() {
+            return startedAt == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(startedAt - submittedAt);
+        }
+
+        /**
+         * Time spent executing the task
+         */
+        public long getRunTimeMs() {
+            return finishedAt == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(finishedAt - startedAt);
+        }
+
+        private void bindTo(LifecycleOwner owner) {
+            lifecycle = owner.getLifecycle();
+            if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+                cancel();
+                return;
+            }
+            observer = (source, event) -> {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    cancel();
+                    unbind();
+                }
+            };
+            lifecycle.addObserver(observer);
+        }
+
+        private void unbind() {
+            if (lifecycle != null && observer != null) {
+                lifecycle.removeObserver(observer);
+            }
+            lifecycle = null;
+            observer = null;
+        }
+    }
+
+    private static class LaneThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        LaneThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, prefix + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.david.patientrecords.database;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Query building and ranking for the patient_search FTS4 table.
+ *
+ * FTS4 has no built-in ranking function, so results are scored in Java with BM25
+ * computed from the matchinfo(patient_search, 'pcnalx') blob of each matching row.
+ */
+final class FullTextSearch {
+
+    // matchinfo format string used by the ranked search query
+    static final String MATCHINFO_FORMAT = "pcnalx";
+
+    // Per-column weights, in PatientSearchEntry column order
+    private static final double[] COLUMN_WEIGHTS = {
+            4.0, // name
+            3.0, // phone
+            2.0, // conditions
+            2.0, // allergies
+            1.0, // records
+            1.5  // medications
+    };
+
+    // BM25 tuning constants
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Pattern BLOOD_TYPE = Pattern.compile("(A|B|AB|O)[+-]", Pattern.CASE_INSENSITIVE);
+
+    // Prevent instantiation
+    private FullTextSearch() {}
+
+    /**
+     * Split text into terms exactly as the FTS4 "simple" tokenizer does: ASCII letters
+     * and digits are kept and folded to lower case, other ASCII characters separate
+     * terms, and every non-ASCII character is part of a term with its case unchanged
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char ch = i < text.length() ? text.charAt(i) : ' ';
+            if (ch >= 0x80 || (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z')) {
+                term.append(ch);
+            } else if (ch >= 'A' && ch <= 'Z') {
+                term.append((char) (ch - 'A' + 'a'));
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Turn free text into a MATCH expression where every term is a prefix match
+     * and all terms must be present. Returns null if the text has no searchable terms.
+     */
+    static String toMatchQuery(String text) {
+        // Tokenizing first also keeps quotes, '-' and '*' out of the query syntax
+        StringBuilder match = new StringBuilder();
+        for (String term : tokenize(text)) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(term).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    /**
+     * True when every row matching newTerms must also match oldTerms, i.e. each old
+     * term is a prefix of some new term
+     */
+    static boolean narrows(List<String> oldTerms, List<String> newTerms) {
+        if (oldTerms.isEmpty()) {
+            return false;
+        }
+        for (String oldTerm : oldTerms) {
+            boolean covered = false;
+            for (String newTerm : newTerms) {
+                if (newTerm.startsWith(oldTerm)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prefix-match terms against a document's tokens, sorted as by sortedTokens()
+     */
+    static boolean matchesAll(String[] sortedTokens, List<String> terms) {
+        for (String term : terms) {
+            int index = Arrays.binarySearch(sortedTokens, term);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index >= sortedTokens.length || !sortedTokens[index].startsWith(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String[] sortedTokens(String document) {
+        return new TreeSet<>(tokenize(document)).toArray(new String[0]);
+    }
+
+    /**
+     * Blood types like "AB+" lose their sign in the tokenizer, so they are matched
+     * against the blood_type column instead of the full-text index
+     */
+    static boolean isBloodType(String text) {
+        return text != null && BLOOD_TYPE.matcher(text.trim()).matches();
+    }
+
+    /**
+     * BM25 score of one row from its 'pcnalx' matchinfo blob, higher is better
+     */
+    static double score(byte[] matchinfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+        int rowCount = buffer.getInt(8);
+        int averageLengthOffset = 3;
+        int lengthOffset = averageLengthOffset + columnCount;
+        int hitsOffset = lengthOffset + columnCount;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int hits = hitsOffset + 3 * (phrase * columnCount + column);
+                int hitsInRow = buffer.getInt(hits * 4);
+                if (hitsInRow == 0) {
+                    continue;
+                }
+
+                int rowsWithHits = buffer.getInt((hits + 2) * 4);
+                double idf = Math.log(1 + (rowCount - rowsWithHits + 0.5) / (rowsWithHits + 0.5));
+
+                double averageLength = Math.max(1, buffer.getInt((averageLengthOffset + column) * 4));
+                double length = buffer.getInt((lengthOffset + column) * 4);
+                double tf = hitsInRow * (K1 + 1) / (hitsInRow + K1 * (1 - B + B * length / averageLength));
+
+                double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                score += weight * idf * tf;
+            }
+        }
+
+        return score;
+    }
+}
@@ -0,0 +1,354 @@
+package com.david.patientrecords.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.david.patientrecords.utils.Constants;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Content-addressed store for patient photos under Constants.IMAGES_FOLDER.
+ *
+ * Each photo is named by the SHA-256 of its bytes, so storing the same photo twice
+ * keeps one file that both patients point at. Nothing tracks references directly:
+ * a mark-and-sweep pass reads every image path in the patients table and deletes the
+ * files in the folder that none of them point at. Files younger than a grace period
+ * are kept, since a photo is stored before the patient form that uses it is saved.
+ * The pass also moves photos saved under older, timestamped names into the store.
+ */
+public class ImageStore {
+
+    private static final String TAG = "ImageStore";
+    private static final String STORED_NAME_PATTERN = "[0-9a-f]{64}\\.jpg";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final long GC_GRACE_MS = 60 * 60 * 1000; // Longer than anyone keeps a form open
+    private static final long GC_INTERVAL_MS = 24 * 60 * 60 * 1000;
+
+    private static ImageStore instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final File directory;
+    // Held while a file is added or swept, so a photo stored again is never deleted under it
+    private final Object lock = new Object();
+
+    // Singleton pattern
+    public static synchronized ImageStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ImageStore(Context context) {
+        this.context = context;
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.directory = new File(context.getFilesDir(), Constants.IMAGES_FOLDER);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public static boolean isStoredName(String fileName) {
+        return fileName.matches(STORED_NAME_PATTERN);
+    }
+
+    // ==================== STORING ====================
+
+    /**
+     * Move a finished file into the store under the hash of its contents and return the
+     * stored file. If the store already has those bytes, the file is deleted and the
+     * existing copy is returned. The file should be on the same volume, e.g. a temp file
+     * in getDirectory(), so the move is a rename. Call off the main thread.
+     */
+    public File put(@NonNull File file) throws IOException {
+        File stored = new File(directory, hash(file) + ".jpg");
+        synchronized (lock) {
+            if (stored.exists() && stored.length() == file.length()) {
+                // Counts as new for the grace period, the form storing it has not been saved yet
+                stored.setLastModified(System.currentTimeMillis());
+                if (!file.equals(stored)) {
+                    file.delete();
+                }
+                Log.d(TAG, "Deduplicated " + stored.getName() + ", saved " + stored.length() + " bytes");
+                return stored;
+            }
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            if (!file.renameTo(stored)) {
+                throw new IOException("Could not move " + file + " into the image store");
+            }
+        }
+        return stored;
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        byte[] bytes = digest.digest();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    // ==================== GARBAGE COLLECTION ====================
+
+    /**
+     * Run a collection in the background if the last one was more than a day ago
+     */
+    public void collectGarbageIfDue() {
+        SharedPreferences prefs = context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE);
+        long lastRun = prefs.getLong(Constants.PREF_LAST_IMAGE_GC, 0);
+        if (System.currentTimeMillis() - lastRun < GC_INTERVAL_MS) {
+            return;
+        }
+        collectGarbage(null,
+                report -> prefs.edit().putLong(Constants.PREF_LAST_IMAGE_GC, System.currentTimeMillis()).apply(),
+                e -> Log.e(TAG, "Image garbage collection failed", e));
+    }
+
+    /**
+     * Mark every photo a patient points at and delete the rest. Runs on the writer lane,
+     * so no patient is saved between the mark and the sweep.
+     */
+    public DbExecutor.Job collectGarbage(@Nullable LifecycleOwner owner,
+                                         @Nullable DbExecutor.ResultListener<GcReport> onResult,
+                                         @Nullable DbExecutor.ErrorListener onError) {
+        return DbExecutor.getInstance().write(owner, this::collectGarbageNow, onResult, onError);
+    }
+
+    GcReport collectGarbageNow() {
+        long start = SystemClock.elapsedRealtime();
+        GcReport report = new GcReport();
+
+        Map<String, Integer> references = markReferences(dbHelper.getReadableDatabase());
+        adoptLegacyFiles(references, report);
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            long keepAfter = System.currentTimeMillis() - GC_GRACE_MS;
+            synchronized (lock) {
+                for (File file : files) {
+                    if (!file.isFile()) {
+                        continue;
+                    }
+                    report.scannedFiles++;
+                    if (references.containsKey(file.getAbsolutePath())) {
+                        continue;
+                    }
+                    if (file.lastModified() > keepAfter) {
+                        report.recentFiles++;
+                        continue;
+                    }
+                    long length = file.length();
+                    if (file.delete()) {
+                        report.deletedFiles++;
+                        report.reclaimedBytes += length;
+                    }
+                }
+            }
+        }
+
+        report.durationMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, report.getSummary());
+        return report;
+    }
+
+    // Image paths of every patient, deleted or not, with how many columns point at each
+    private Map<String, Integer> markReferences(SQLiteDatabase db) {
+        Map<String, Integer> references = new HashMap<>();
+        String[] columns = {
+                DatabaseContract.PatientEntry.COLUMN_IMAGE_PATH,
+                DatabaseContract.PatientEntry.COLUMN_PROFILE_IMAGE
+        };
+        try (Cursor cursor = db.query(DatabaseContract.PatientEntry.TABLE_NAME, columns,
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < columns.length; i++) {
+                    String path = cursor.getString(i);
+                    // A row with the same photo in both columns is one reference
+                    if (i > 0 && path != null && path.equals(cursor.getString(0))) {
+                        continue;
+                    }
+                    if (path != null && !path.isEmpty()) {
+                        Integer count = references.get(path);
+                        references.put(path, count == null ? 1 : count + 1);
+                    }
+                }
+            }
+        }
+        return references;
+    }
+
+    // Move photos saved before the store into it, repointing the patients that use them
+    private void adoptLegacyFiles(Map<String, Integer> references, GcReport report) {
+        Map<String, String> moved = new HashMap<>();
+        for (String path : references.keySet()) {
+            File file = new File(path);
+            if (!directory.equals(file.getParentFile()) || isStoredName(file.getName()) || !file.isFile()) {
+                continue;
+            }
+            try {
+                moved.put(path, put(file).getAbsolutePath());
+            } catch (IOException e) {
+                Log.e(TAG, "Could not move " + path + " into the image store", e);
+            }
+        }
+        if (moved.isEmpty()) {
+            return;
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, String> entry : moved.entrySet()) {
+                for (String column : new String[]{DatabaseContract.PatientEntry.COLUMN_IMAGE_PATH,
+                        DatabaseContract.PatientEntry.COLUMN_PROFILE_IMAGE}) {
+                    ContentValues values = new ContentValues();
+                    values.put(column, entry.getValue());
+                    db.update(DatabaseContract.PatientEntry.TABLE_NAME, values, column + " = ?",
+                            new String[]{entry.getKey()});
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        for (Map.Entry<String, String> entry : moved.entrySet()) {
+            Integer count = references.remove(entry.getKey());
+            Integer existing = references.get(entry.getValue());
+            references.put(entry.getValue(), (existing == null ? 0 : existing) + (count == null ? 0 : count));
+        }
+        report.adoptedFiles = moved.size();
+        PatientRepository.getInstance(context).invalidateCaches();
+    }
+
+    // ==================== USAGE ====================
+
+    /**
+     * Files and bytes in the store, what is shared between patients and what is waiting
+     * for the next collection
+     */
+    public DbExecutor.Job getUsageReport(@Nullable LifecycleOwner owner,
+                                         @NonNull DbExecutor.ResultListener<UsageReport> onResult,
+                                         @Nullable DbExecutor.ErrorListener onError) {
+        return DbExecutor.getInstance().read(owner, this::computeUsage, onResult, onError);
+    }
+
+    UsageReport computeUsage() {
+        Map<String, Integer> references = markReferences(dbHelper.getReadableDatabase());
+        UsageReport report = new UsageReport();
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return report;
+        }
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            long length = file.length();
+            report.fileCount++;
+            report.storedBytes += length;
+
+            Integer count = references.get(file.getAbsolutePath());
+            if (count == null) {
+                report.unreferencedFiles++;
+                report.unreferencedBytes += length;
+            } else {
+                report.referenceCount += count;
+                // Without deduplication every reference would have its own copy
+                report.savedBytes += (count - 1) * length;
+            }
+        }
+        return report;
+    }
+
+    // ==================== REPORTS ====================
+
+    public static class GcReport {
+        private int scannedFiles;
+        private int deletedFiles;
+        private int recentFiles;
+        private int adoptedFiles;
+        private long reclaimedBytes;
+        private long durationMs;
+
+        public int getScannedFiles() { return scannedFiles; }
+        public int getDeletedFiles() { return deletedFiles; }
+        /** Unreferenced but kept for the grace period */
+        public int getRecentFiles() { return recentFiles; }
+        /** Older photos moved into the store */
+        public int getAdoptedFiles() { return adoptedFiles; }
+        public long getReclaimedBytes() { return reclaimedBytes; }
+        public long getDurationMs() { return durationMs; }
+
+        public String getSummary() {
+            return String.format(Locale.US,
+                    "Image GC: %d files scanned, %d deleted (%d KB reclaimed), %d kept as recent, %d adopted in %dms",
+                    scannedFiles, deletedFiles, reclaimedBytes / 1024, recentFiles, adoptedFiles, durationMs);
+        }
+    }
+
+    public static class UsageReport {
+        private int fileCount;
+        private long storedBytes;
+        private int referenceCount;
+        private long savedBytes;
+        private int unreferencedFiles;
+        private long unreferencedBytes;
+
+        public int getFileCount() { return fileCount; }
+        public long getStoredBytes() { return storedBytes; }
+        /** Patient image fields pointing into the store */
+        public int getReferenceCount() { return referenceCount; }
+        /** Bytes deduplication saves against a copy per reference */
+        public long getSavedBytes() { return savedBytes; }
+        public int getUnreferencedFiles() { return unreferencedFiles; }
+        public long getUnreferencedBytes() { return unreferencedBytes; }
+
+        public String getSummary() {
+            return String.format(Locale.US,
+                    "%d photos, %.1f MB for %d references, %.1f MB saved by deduplication, %d unused (%.1f MB)",
+                    fileCount, storedBytes / 1048576.0, referenceCount, savedBytes / 1048576.0,
+                    unreferencedFiles, unreferencedBytes / 1048576.0);
+        }
+    }
+}
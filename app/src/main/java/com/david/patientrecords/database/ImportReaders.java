@@ -0,0 +1,274 @@
+package com.david.patientrecords.database;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming row readers for BulkImporter.
+ *
+ * Each reader hands out one row at a time as column name -> text value, so an import
+ * never holds more than the current batch in memory. Column names are lower-cased.
+ */
+final class ImportReaders {
+
+    // Prevent instantiation
+    private ImportReaders() {}
+
+    interface RowReader extends Closeable {
+        /**
+         * Clear row and fill it with the next row, or return false at the end of input
+         */
+        boolean next(Map<String, String> row) throws IOException;
+    }
+
+    // ==================== CSV ====================
+
+    /**
+     * RFC 4180 CSV with a header row: quoted fields may contain commas, quotes ("")
+     * and line breaks. Empty unquoted fields read as null.
+     */
+    static final class CsvRowReader implements RowReader {
+        private final BufferedReader reader;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private String[] header;
+
+        CsvRowReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
+
+        @Override
+        public boolean next(Map<String, String> row) throws IOException {
+            row.clear();
+            if (header == null) {
+                if (!readRecord()) {
+                    return false;
+                }
+                header = new String[fields.size()];
+                for (int i = 0; i < header.length; i++) {
+                    String name = fields.get(i) != null ? fields.get(i) : "";
+                    // Drop a UTF-8 byte order mark left by spreadsheet exports
+                    if (i == 0 && name.startsWith("\uFEFF")) {
+                        name = name.substring(1);
+                    }
+                    header[i] = name.trim().toLowerCase(Locale.ROOT);
+                }
+            }
+
+            // Skip blank lines between records
+            do {
+                if (!readRecord()) {
+                    return false;
+                }
+            } while (fields.size() == 1 && fields.get(0) == null);
+
+            if (fields.size() > header.length) {
+                throw new IOException("Row has " + fields.size() + " fields but the header has " + header.length);
+            }
+            for (int i = 0; i < fields.size(); i++) {
+                row.put(header[i], fields.get(i));
+            }
+            return true;
+        }
+
+        // Read one record into fields, returns false at end of input
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+
+            int ch = reader.read();
+            if (ch == -1) {
+                return false;
+            }
+
+            boolean inQuotes = false;
+            boolean fieldQuoted = false;
+            while (true) {
+                if (inQuotes) {
+                    if (ch == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    } else if (ch == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            inQuotes = false;
+                            if (following != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append((char) ch);
+                    }
+                } else if (ch == '"' && field.length() == 0) {
+                    inQuotes = true;
+                    fieldQuoted = true;
+                } else if (ch == ',') {
+                    endField(fieldQuoted);
+                    fieldQuoted = false;
+                } else if (ch == '\n' || ch == '\r' || ch == -1) {
+                    if (ch == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    endField(fieldQuoted);
+                    return true;
+                } else {
+                    field.append((char) ch);
+                }
+                ch = reader.read();
+            }
+        }
+
+        private void endField(boolean fieldQuoted) {
+            fields.add(field.length() == 0 && !fieldQuoted ? null : field.toString());
+            field.setLength(0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // ==================== JSON ====================
+
+    /**
+     * A JSON array of objects, or newline-delimited JSON with one object per line.
+     * Numbers keep their text, booleans become 1/0, and nested objects or arrays
+     * (e.g. vital_signs) are stored as their JSON text.
+     */
+    static final class JsonRowReader implements RowReader {
+        private final JsonReader reader;
+        private boolean started;
+        private boolean inArray;
+
+        JsonRowReader(Reader reader) {
+            this.reader = new JsonReader(reader);
+            // Lenient mode accepts several top-level values, which is what NDJSON is
+            this.reader.setLenient(true);
+        }
+
+        @Override
+        public boolean next(Map<String, String> row) throws IOException {
+            row.clear();
+            if (!started) {
+                started = true;
+                if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    inArray = true;
+                }
+            }
+
+            if (inArray ? !reader.hasNext() : reader.peek() == JsonToken.END_DOCUMENT) {
+                return false;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName().toLowerCase(Locale.ROOT);
+                row.put(name, readValue());
+            }
+            reader.endObject();
+            return true;
+        }
+
+        private String readValue() throws IOException {
+            switch (reader.peek()) {
+                case NULL:
+                    reader.nextNull();
+                    return null;
+                case BOOLEAN:
+                    return reader.nextBoolean() ? "1" : "0";
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    StringBuilder json = new StringBuilder();
+                    appendJson(json);
+                    return json.toString();
+                default:
+                    return reader.nextString();
+            }
+        }
+
+        // Re-serialize a nested value from its tokens
+        private void appendJson(StringBuilder json) throws IOException {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    json.append('{');
+                    boolean firstMember = true;
+                    while (reader.hasNext()) {
+                        if (!firstMember) {
+                            json.append(',');
+                        }
+                        firstMember = false;
+                        appendQuoted(json, reader.nextName());
+                        json.append(':');
+                        appendJson(json);
+                    }
+                    reader.endObject();
+                    json.append('}');
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    json.append('[');
+                    boolean firstElement = true;
+                    while (reader.hasNext()) {
+                        if (!firstElement) {
+                            json.append(',');
+                        }
+                        firstElement = false;
+                        appendJson(json);
+                    }
+                    reader.endArray();
+                    json.append(']');
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    json.append("null");
+                    break;
+                case BOOLEAN:
+                    json.append(reader.nextBoolean());
+                    break;
+                case NUMBER:
+                    json.append(reader.nextString());
+                    break;
+                default:
+                    appendQuoted(json, reader.nextString());
+                    break;
+            }
+        }
+
+        private static void appendQuoted(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '"' || ch == '\\') {
+                    json.append('\\').append(ch);
+                } else if (ch < 0x20) {
+                    json.append(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+                } else {
+                    json.append(ch);
+                }
+            }
+            json.append('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,794 @@
+package com.david.patientrecords.database;
+
+/**
+ * The SQL each migration step in DatabaseHelper runs, frozen as it was when that
+ * version shipped.
+ *
+ * DatabaseContract describes the current schema and is only used by onCreate. Editing
+ * one of its statements must not change what an old step does, or an upgrade would end
+ * somewhere other than a fresh install. So the steps keep their own copies here, and a
+ * schema change is always a new version with a new step, never an edit to an old one.
+ */
+final class MigrationSql {
+
+    // Prevent instantiation
+    private MigrationSql() {}
+
+    // ==================== VERSION 2 ====================
+
+    // image_path replaced profile_image for patient photos
+    static final String V2_ADD_PATIENT_IMAGE_PATH =
+            "ALTER TABLE patients ADD COLUMN image_path TEXT";
+
+    // ==================== VERSION 3 ====================
+
+    // Secondary indexes for the list, visit, follow-up and medication queries
+    static final String[] V3_CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_patients_active_name ON patients(is_active, patient_name)",
+            "CREATE INDEX IF NOT EXISTS idx_medical_records_patient_visit ON medical_records(patient_id, " +
+                    "visit_date)",
+            "CREATE INDEX IF NOT EXISTS idx_medical_records_follow_up ON medical_records(follow_up_date)",
+            "CREATE INDEX IF NOT EXISTS idx_medications_patient_active ON medications(patient_id, is_active)",
+            "CREATE INDEX IF NOT EXISTS idx_medications_end_date ON medications(end_date)"
+    };
+
+    // ==================== VERSION 4 ====================
+
+    // The patient_search FTS4 table and the triggers that keep it in sync
+    static final String[] V4_CREATE_PATIENT_SEARCH = {
+            "CREATE VIRTUAL TABLE IF NOT EXISTS patient_search USING fts4(name, phone, conditions, allergies, " +
+                    "records, medications)",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_patient_insert AFTER INSERT ON patients BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = new._id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = new._id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_patient_update AFTER UPDATE OF patient_name, " +
+                    "phone, medical_conditions, allergies ON patients BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = new._id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = new._id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_patient_delete AFTER DELETE ON patients BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = old._id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_record_insert AFTER INSERT ON medical_records " +
+                    "BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = new.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = new.patient_id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_record_update AFTER UPDATE OF patient_id, " +
+                    "symptoms, diagnosis, notes ON medical_records BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = old.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = old.patient_id; " +
+                    "DELETE FROM patient_search WHERE docid = new.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = new.patient_id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_record_delete AFTER DELETE ON medical_records " +
+                    "BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = old.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = old.patient_id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_medication_insert AFTER INSERT ON medications " +
+                    "BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = new.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = new.patient_id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_medication_update AFTER UPDATE OF patient_id, " +
+                    "medication_name, generic_name ON medications BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = old.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = old.patient_id; " +
+                    "DELETE FROM patient_search WHERE docid = new.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = new.patient_id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_patient_search_medication_delete AFTER DELETE ON medications " +
+                    "BEGIN " +
+                    "DELETE FROM patient_search WHERE docid = old.patient_id; " +
+                    "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p WHERE p._id = old.patient_id; " +
+                    "END"
+    };
+
+    // Index the patients that already exist
+    static final String[] V4_REBUILD_PATIENT_SEARCH = {
+            "DELETE FROM patient_search",
+            "INSERT INTO patient_search(docid, name, phone, conditions, allergies, records, medications) " +
+                    "SELECT p._id, p.patient_name, p.phone, p.medical_conditions, p.allergies, (SELECT " +
+                    "group_concat(ifnull(r.symptoms, '') || ' ' || ifnull(r.diagnosis, '') || ' ' || ifnull(r.notes, " +
+                    "''), ' ') FROM medical_records r WHERE r.patient_id = p._id), (SELECT " +
+                    "group_concat(ifnull(m.medication_name, '') || ' ' || ifnull(m.generic_name, ''), ' ') FROM " +
+                    "medications m WHERE m.patient_id = p._id) FROM patients p"
+    };
+
+    // ==================== VERSION 5 ====================
+
+    // The stats_counters table and its triggers, for the yyyy-MM-dd text dates of this version
+    static final String[] V5_CREATE_STATS_COUNTERS = {
+            "CREATE TABLE IF NOT EXISTS stats_counters (name TEXT PRIMARY KEY,value INTEGER NOT NULL DEFAULT " +
+                    "0) WITHOUT ROWID",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_insert AFTER INSERT ON patients WHEN new.is_active " +
+                    "= 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(new.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(new.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(substr(new.registration_date, 1, 7), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(new.gender, ''), 'blood_type:' || ifnull(new.blood_type, ''), 'registered:' || " +
+                    "ifnull(substr(new.registration_date, 1, 7), '')); " +
+                    "UPDATE stats_counters SET value = value + (1) * new.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = new._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = new._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_update_old AFTER UPDATE OF is_active, gender, " +
+                    "blood_type, age, registration_date ON patients WHEN old.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(old.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(old.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(substr(old.registration_date, 1, 7), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(old.gender, ''), 'blood_type:' || ifnull(old.blood_type, ''), 'registered:' || " +
+                    "ifnull(substr(old.registration_date, 1, 7), '')); " +
+                    "UPDATE stats_counters SET value = value + (-1) * old.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = old._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = old._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_update_new AFTER UPDATE OF is_active, gender, " +
+                    "blood_type, age, registration_date ON patients WHEN new.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(new.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(new.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(substr(new.registration_date, 1, 7), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(new.gender, ''), 'blood_type:' || ifnull(new.blood_type, ''), 'registered:' || " +
+                    "ifnull(substr(new.registration_date, 1, 7), '')); " +
+                    "UPDATE stats_counters SET value = value + (1) * new.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = new._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = new._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_delete AFTER DELETE ON patients WHEN old.is_active " +
+                    "= 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(old.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(old.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(substr(old.registration_date, 1, 7), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(old.gender, ''), 'blood_type:' || ifnull(old.blood_type, ''), 'registered:' || " +
+                    "ifnull(substr(old.registration_date, 1, 7), '')); " +
+                    "UPDATE stats_counters SET value = value + (-1) * old.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = old._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = old._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_insert AFTER INSERT ON medical_records WHEN (SELECT " +
+                    "is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_update_old AFTER UPDATE OF patient_id ON " +
+                    "medical_records WHEN (SELECT is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_update_new AFTER UPDATE OF patient_id ON " +
+                    "medical_records WHEN (SELECT is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_delete AFTER DELETE ON medical_records WHEN (SELECT " +
+                    "is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_insert AFTER INSERT ON medications WHEN " +
+                    "new.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_update_old AFTER UPDATE OF is_active, " +
+                    "patient_id ON medications WHEN old.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = " +
+                    "old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_update_new AFTER UPDATE OF is_active, " +
+                    "patient_id ON medications WHEN new.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = " +
+                    "new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_delete AFTER DELETE ON medications WHEN " +
+                    "old.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'active_medications'; " +
+                    "END"
+    };
+
+    // Count the rows that already exist
+    static final String[] V5_REBUILD_STATS_COUNTERS = {
+            "DELETE FROM stats_counters",
+            "INSERT INTO stats_counters(name, value) SELECT 'active_patients', COUNT(*) FROM patients p WHERE " +
+                    "p.is_active = 1 UNION ALL SELECT 'active_patients_age_sum', ifnull(SUM(p.age), 0) FROM patients p " +
+                    "WHERE p.is_active = 1 UNION ALL SELECT 'medical_records', COUNT(*) FROM medical_records r INNER " +
+                    "JOIN patients p ON r.patient_id = p._id WHERE p.is_active = 1 UNION ALL SELECT " +
+                    "'active_medications', COUNT(*) FROM medications m INNER JOIN patients p ON m.patient_id = p._id " +
+                    "WHERE m.is_active = 1 AND p.is_active = 1 UNION ALL SELECT 'gender:' || ifnull(p.gender, ''), " +
+                    "COUNT(*) FROM patients p WHERE p.is_active = 1 GROUP BY 1 UNION ALL SELECT 'blood_type:' || " +
+                    "ifnull(p.blood_type, ''), COUNT(*) FROM patients p WHERE p.is_active = 1 GROUP BY 1 UNION ALL " +
+                    "SELECT 'registered:' || ifnull(substr(p.registration_date, 1, 7), ''), COUNT(*) FROM patients p " +
+                    "WHERE p.is_active = 1 GROUP BY 1"
+    };
+
+    // ==================== VERSION 6 ====================
+
+    // Import checkpoints, with updated_at as local yyyy-MM-dd HH:mm:ss text, and the search reindex queue
+    static final String[] V6_CREATE_IMPORT_TABLES = {
+            "CREATE TABLE IF NOT EXISTS import_checkpoints (job_id TEXT PRIMARY KEY,rows_read INTEGER NOT " +
+                    "NULL,rows_imported INTEGER NOT NULL,rows_failed INTEGER NOT NULL,updated_at TEXT DEFAULT " +
+                    "CURRENT_TIMESTAMP) WITHOUT ROWID",
+            "CREATE TABLE IF NOT EXISTS patient_search_pending (patient_id INTEGER PRIMARY KEY)"
+    };
+
+    // ==================== VERSION 7 ====================
+
+    // Triggers naming the tables that are rebuilt
+    static final String[] V7_DROP_TRIGGERS = {
+            "DROP TRIGGER IF EXISTS trg_patient_search_patient_insert",
+            "DROP TRIGGER IF EXISTS trg_patient_search_patient_update",
+            "DROP TRIGGER IF EXISTS trg_patient_search_patient_delete",
+            "DROP TRIGGER IF EXISTS trg_patient_search_record_insert",
+            "DROP TRIGGER IF EXISTS trg_patient_search_record_update",
+            "DROP TRIGGER IF EXISTS trg_patient_search_record_delete",
+            "DROP TRIGGER IF EXISTS trg_patient_search_medication_insert",
+            "DROP TRIGGER IF EXISTS trg_patient_search_medication_update",
+            "DROP TRIGGER IF EXISTS trg_patient_search_medication_delete",
+            "DROP TRIGGER IF EXISTS trg_stats_patient_insert",
+            "DROP TRIGGER IF EXISTS trg_stats_patient_update_old",
+            "DROP TRIGGER IF EXISTS trg_stats_patient_update_new",
+            "DROP TRIGGER IF EXISTS trg_stats_patient_delete",
+            "DROP TRIGGER IF EXISTS trg_stats_record_insert",
+            "DROP TRIGGER IF EXISTS trg_stats_record_update_old",
+            "DROP TRIGGER IF EXISTS trg_stats_record_update_new",
+            "DROP TRIGGER IF EXISTS trg_stats_record_delete",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_insert",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_update_old",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_update_new",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_delete"
+    };
+
+    // patients with INTEGER date columns
+    static final String V7_CREATE_PATIENTS_TABLE =
+            "CREATE TABLE patients (_id INTEGER PRIMARY KEY AUTOINCREMENT,patient_name TEXT NOT NULL,age " +
+                    "INTEGER NOT NULL,gender TEXT,phone TEXT,address TEXT,blood_type TEXT,emergency_contact " +
+                    "TEXT,emergency_phone TEXT,medical_conditions TEXT,allergies TEXT,profile_image TEXT,image_path " +
+                    "TEXT,registration_date INTEGER,is_active INTEGER DEFAULT 1,created_at INTEGER DEFAULT " +
+                    "(CAST(strftime('%s', 'now') AS INTEGER) * 1000),updated_at INTEGER DEFAULT (CAST(strftime('%s', " +
+                    "'now') AS INTEGER) * 1000))";
+
+    // medical_records with INTEGER date columns
+    static final String V7_CREATE_MEDICAL_RECORDS_TABLE =
+            "CREATE TABLE medical_records (_id INTEGER PRIMARY KEY AUTOINCREMENT,patient_id INTEGER NOT " +
+                    "NULL,visit_date INTEGER NOT NULL,visit_type TEXT,symptoms TEXT,diagnosis TEXT,treatment " +
+                    "TEXT,doctor_name TEXT,doctor_specialty TEXT,vital_signs TEXT,notes TEXT,follow_up_date " +
+                    "INTEGER,created_at INTEGER DEFAULT (CAST(strftime('%s', 'now') AS INTEGER) * 1000),updated_at " +
+                    "INTEGER DEFAULT (CAST(strftime('%s', 'now') AS INTEGER) * 1000),FOREIGN KEY(patient_id) " +
+                    "REFERENCES patients(_id))";
+
+    // medications with INTEGER date columns
+    static final String V7_CREATE_MEDICATIONS_TABLE =
+            "CREATE TABLE medications (_id INTEGER PRIMARY KEY AUTOINCREMENT,patient_id INTEGER NOT " +
+                    "NULL,medication_name TEXT NOT NULL,generic_name TEXT,dosage TEXT,frequency TEXT,start_date " +
+                    "INTEGER,end_date INTEGER,prescribed_by TEXT,instructions TEXT,side_effects TEXT,refills_remaining " +
+                    "INTEGER DEFAULT 0,pharmacy_name TEXT,is_active INTEGER DEFAULT 1,created_at INTEGER DEFAULT " +
+                    "(CAST(strftime('%s', 'now') AS INTEGER) * 1000),updated_at INTEGER DEFAULT (CAST(strftime('%s', " +
+                    "'now') AS INTEGER) * 1000),FOREIGN KEY(patient_id) REFERENCES patients(_id))";
+
+    // Stats counter triggers for epoch-day dates
+    static final String[] V7_CREATE_STATS_COUNTER_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_insert AFTER INSERT ON patients WHEN new.is_active " +
+                    "= 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(new.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(new.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(new.gender, ''), 'blood_type:' || ifnull(new.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), '')); " +
+                    "UPDATE stats_counters SET value = value + (1) * new.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = new._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = new._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_update_old AFTER UPDATE OF is_active, gender, " +
+                    "blood_type, age, registration_date ON patients WHEN old.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(old.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(old.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(old.gender, ''), 'blood_type:' || ifnull(old.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), '')); " +
+                    "UPDATE stats_counters SET value = value + (-1) * old.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = old._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = old._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_update_new AFTER UPDATE OF is_active, gender, " +
+                    "blood_type, age, registration_date ON patients WHEN new.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(new.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(new.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(new.gender, ''), 'blood_type:' || ifnull(new.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), '')); " +
+                    "UPDATE stats_counters SET value = value + (1) * new.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = new._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = new._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_delete AFTER DELETE ON patients WHEN old.is_active " +
+                    "= 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(old.gender, ''), " +
+                    "0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('blood_type:' || ifnull(old.blood_type, " +
+                    "''), 0); " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('registered:' || " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name IN ('active_patients', 'gender:' || " +
+                    "ifnull(old.gender, ''), 'blood_type:' || ifnull(old.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), '')); " +
+                    "UPDATE stats_counters SET value = value + (-1) * old.age WHERE name = 'active_patients_age_sum'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = old._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = old._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_insert AFTER INSERT ON medical_records WHEN (SELECT " +
+                    "is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_update_old AFTER UPDATE OF patient_id ON " +
+                    "medical_records WHEN (SELECT is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_update_new AFTER UPDATE OF patient_id ON " +
+                    "medical_records WHEN (SELECT is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_delete AFTER DELETE ON medical_records WHEN (SELECT " +
+                    "is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_insert AFTER INSERT ON medications WHEN " +
+                    "new.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_update_old AFTER UPDATE OF is_active, " +
+                    "patient_id ON medications WHEN old.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = " +
+                    "old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_update_new AFTER UPDATE OF is_active, " +
+                    "patient_id ON medications WHEN new.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = " +
+                    "new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_delete AFTER DELETE ON medications WHEN " +
+                    "old.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'active_medications'; " +
+                    "END"
+    };
+
+    // Recount with epoch-day dates
+    static final String[] V7_REBUILD_STATS_COUNTERS = {
+            "DELETE FROM stats_counters",
+            "INSERT INTO stats_counters(name, value) SELECT 'active_patients', COUNT(*) FROM patients p WHERE " +
+                    "p.is_active = 1 UNION ALL SELECT 'active_patients_age_sum', ifnull(SUM(p.age), 0) FROM patients p " +
+                    "WHERE p.is_active = 1 UNION ALL SELECT 'medical_records', COUNT(*) FROM medical_records r INNER " +
+                    "JOIN patients p ON r.patient_id = p._id WHERE p.is_active = 1 UNION ALL SELECT " +
+                    "'active_medications', COUNT(*) FROM medications m INNER JOIN patients p ON m.patient_id = p._id " +
+                    "WHERE m.is_active = 1 AND p.is_active = 1 UNION ALL SELECT 'gender:' || ifnull(p.gender, ''), " +
+                    "COUNT(*) FROM patients p WHERE p.is_active = 1 GROUP BY 1 UNION ALL SELECT 'blood_type:' || " +
+                    "ifnull(p.blood_type, ''), COUNT(*) FROM patients p WHERE p.is_active = 1 GROUP BY 1 UNION ALL " +
+                    "SELECT 'registered:' || ifnull(strftime('%Y-%m', p.registration_date * 86400, 'unixepoch'), ''), " +
+                    "COUNT(*) FROM patients p WHERE p.is_active = 1 GROUP BY 1"
+    };
+
+    // ==================== VERSION 8 ====================
+
+    // The vital_observations table and its indexes
+    static final String[] V8_CREATE_VITAL_OBSERVATIONS = {
+            "CREATE TABLE IF NOT EXISTS vital_observations (_id INTEGER PRIMARY KEY,patient_id INTEGER NOT " +
+                    "NULL,record_id INTEGER NOT NULL,observed_at INTEGER NOT NULL,metric TEXT NOT NULL,value REAL NOT " +
+                    "NULL,FOREIGN KEY(record_id) REFERENCES medical_records(_id) ON DELETE CASCADE)",
+            "CREATE INDEX IF NOT EXISTS idx_vital_observations_series ON vital_observations(patient_id, " +
+                    "metric, observed_at, value)",
+            "CREATE INDEX IF NOT EXISTS idx_vital_observations_record ON vital_observations(record_id)"
+    };
+
+    // ==================== VERSION 9 ====================
+
+    // The report_rollups table and the triggers that maintain it
+    static final String[] V9_CREATE_REPORT_ROLLUPS = {
+            "CREATE TABLE IF NOT EXISTS report_rollups (report TEXT NOT NULL,bucket TEXT NOT NULL,value " +
+                    "INTEGER NOT NULL DEFAULT 0,PRIMARY KEY (report, bucket)) WITHOUT ROWID",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_record_insert AFTER INSERT ON medical_records BEGIN " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_month', " +
+                    "ifnull(strftime('%Y-%m', new.visit_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_month' AND bucket = " +
+                    "ifnull(strftime('%Y-%m', new.visit_date * 86400, 'unixepoch'), ''); " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_type', " +
+                    "ifnull(trim(new.visit_type), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_type' AND bucket = " +
+                    "ifnull(trim(new.visit_type), ''); " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_doctor', " +
+                    "ifnull(trim(new.doctor_name), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_doctor' AND bucket = " +
+                    "ifnull(trim(new.doctor_name), ''); " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_specialty', " +
+                    "ifnull(trim(new.doctor_specialty), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_specialty' AND bucket = " +
+                    "ifnull(trim(new.doctor_specialty), ''); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_record_update AFTER UPDATE OF visit_date, visit_type, " +
+                    "doctor_name, doctor_specialty ON medical_records BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_month' AND bucket = " +
+                    "ifnull(strftime('%Y-%m', old.visit_date * 86400, 'unixepoch'), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_month' AND bucket = ifnull(strftime('%Y-%m', " +
+                    "old.visit_date * 86400, 'unixepoch'), '') AND value = 0; " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_type' AND bucket = " +
+                    "ifnull(trim(old.visit_type), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_type' AND bucket = " +
+                    "ifnull(trim(old.visit_type), '') AND value = 0; " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_doctor' AND bucket = " +
+                    "ifnull(trim(old.doctor_name), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_doctor' AND bucket = " +
+                    "ifnull(trim(old.doctor_name), '') AND value = 0; " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_specialty' AND bucket = " +
+                    "ifnull(trim(old.doctor_specialty), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_specialty' AND bucket = " +
+                    "ifnull(trim(old.doctor_specialty), '') AND value = 0; " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_month', " +
+                    "ifnull(strftime('%Y-%m', new.visit_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_month' AND bucket = " +
+                    "ifnull(strftime('%Y-%m', new.visit_date * 86400, 'unixepoch'), ''); " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_type', " +
+                    "ifnull(trim(new.visit_type), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_type' AND bucket = " +
+                    "ifnull(trim(new.visit_type), ''); " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_doctor', " +
+                    "ifnull(trim(new.doctor_name), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_doctor' AND bucket = " +
+                    "ifnull(trim(new.doctor_name), ''); " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('visits_by_specialty', " +
+                    "ifnull(trim(new.doctor_specialty), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'visits_by_specialty' AND bucket = " +
+                    "ifnull(trim(new.doctor_specialty), ''); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_record_delete AFTER DELETE ON medical_records BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_month' AND bucket = " +
+                    "ifnull(strftime('%Y-%m', old.visit_date * 86400, 'unixepoch'), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_month' AND bucket = ifnull(strftime('%Y-%m', " +
+                    "old.visit_date * 86400, 'unixepoch'), '') AND value = 0; " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_type' AND bucket = " +
+                    "ifnull(trim(old.visit_type), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_type' AND bucket = " +
+                    "ifnull(trim(old.visit_type), '') AND value = 0; " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_doctor' AND bucket = " +
+                    "ifnull(trim(old.doctor_name), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_doctor' AND bucket = " +
+                    "ifnull(trim(old.doctor_name), '') AND value = 0; " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'visits_by_specialty' AND bucket = " +
+                    "ifnull(trim(old.doctor_specialty), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'visits_by_specialty' AND bucket = " +
+                    "ifnull(trim(old.doctor_specialty), '') AND value = 0; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_patient_insert AFTER INSERT ON patients BEGIN " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('registrations_by_month', " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'registrations_by_month' AND bucket " +
+                    "= ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), ''); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_patient_update_registration AFTER UPDATE OF " +
+                    "registration_date ON patients BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'registrations_by_month' AND bucket " +
+                    "= ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'registrations_by_month' AND bucket = " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), '') AND value = 0; " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('registrations_by_month', " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'registrations_by_month' AND bucket " +
+                    "= ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), ''); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_patient_delete AFTER DELETE ON patients BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'registrations_by_month' AND bucket " +
+                    "= ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'registrations_by_month' AND bucket = " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), '') AND value = 0; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_patient_insert_active AFTER INSERT ON patients WHEN " +
+                    "new.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('patients_cross_tab', CASE " +
+                    "WHEN new.age < 18 THEN '0-17' WHEN new.age < 30 THEN '18-29' WHEN new.age < 45 THEN '30-44' WHEN " +
+                    "new.age < 65 THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(new.gender), '') || char(31) " +
+                    "|| ifnull(trim(new.blood_type), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'patients_cross_tab' AND bucket = " +
+                    "CASE WHEN new.age < 18 THEN '0-17' WHEN new.age < 30 THEN '18-29' WHEN new.age < 45 THEN '30-44' " +
+                    "WHEN new.age < 65 THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(new.gender), '') || " +
+                    "char(31) || ifnull(trim(new.blood_type), ''); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_patient_update_old AFTER UPDATE OF is_active, age, " +
+                    "gender, blood_type ON patients WHEN old.is_active = 1 BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'patients_cross_tab' AND bucket = " +
+                    "CASE WHEN old.age < 18 THEN '0-17' WHEN old.age < 30 THEN '18-29' WHEN old.age < 45 THEN '30-44' " +
+                    "WHEN old.age < 65 THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(old.gender), '') || " +
+                    "char(31) || ifnull(trim(old.blood_type), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'patients_cross_tab' AND bucket = CASE WHEN old.age < " +
+                    "18 THEN '0-17' WHEN old.age < 30 THEN '18-29' WHEN old.age < 45 THEN '30-44' WHEN old.age < 65 " +
+                    "THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(old.gender), '') || char(31) || " +
+                    "ifnull(trim(old.blood_type), '') AND value = 0; " +
+                    "UPDATE report_rollups SET value = value + (-1) * (SELECT COUNT(*) FROM medications m WHERE " +
+                    "m.patient_id = old._id AND m.is_active = 1 AND ifnull(trim(m.medication_name), '') = " +
+                    "report_rollups.bucket) WHERE report = 'active_medications_by_drug' AND bucket IN (SELECT " +
+                    "ifnull(trim(m.medication_name), '') FROM medications m WHERE m.patient_id = old._id AND " +
+                    "m.is_active = 1); " +
+                    "DELETE FROM report_rollups WHERE report = 'active_medications_by_drug' AND value = 0; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_patient_update_new AFTER UPDATE OF is_active, age, " +
+                    "gender, blood_type ON patients WHEN new.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('patients_cross_tab', CASE " +
+                    "WHEN new.age < 18 THEN '0-17' WHEN new.age < 30 THEN '18-29' WHEN new.age < 45 THEN '30-44' WHEN " +
+                    "new.age < 65 THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(new.gender), '') || char(31) " +
+                    "|| ifnull(trim(new.blood_type), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'patients_cross_tab' AND bucket = " +
+                    "CASE WHEN new.age < 18 THEN '0-17' WHEN new.age < 30 THEN '18-29' WHEN new.age < 45 THEN '30-44' " +
+                    "WHEN new.age < 65 THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(new.gender), '') || " +
+                    "char(31) || ifnull(trim(new.blood_type), ''); " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) SELECT DISTINCT " +
+                    "'active_medications_by_drug', ifnull(trim(m.medication_name), ''), 0 FROM medications m WHERE " +
+                    "m.patient_id = new._id AND m.is_active = 1; " +
+                    "UPDATE report_rollups SET value = value + (1) * (SELECT COUNT(*) FROM medications m WHERE " +
+                    "m.patient_id = new._id AND m.is_active = 1 AND ifnull(trim(m.medication_name), '') = " +
+                    "report_rollups.bucket) WHERE report = 'active_medications_by_drug' AND bucket IN (SELECT " +
+                    "ifnull(trim(m.medication_name), '') FROM medications m WHERE m.patient_id = new._id AND " +
+                    "m.is_active = 1); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_patient_delete_active AFTER DELETE ON patients WHEN " +
+                    "old.is_active = 1 BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'patients_cross_tab' AND bucket = " +
+                    "CASE WHEN old.age < 18 THEN '0-17' WHEN old.age < 30 THEN '18-29' WHEN old.age < 45 THEN '30-44' " +
+                    "WHEN old.age < 65 THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(old.gender), '') || " +
+                    "char(31) || ifnull(trim(old.blood_type), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'patients_cross_tab' AND bucket = CASE WHEN old.age < " +
+                    "18 THEN '0-17' WHEN old.age < 30 THEN '18-29' WHEN old.age < 45 THEN '30-44' WHEN old.age < 65 " +
+                    "THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(old.gender), '') || char(31) || " +
+                    "ifnull(trim(old.blood_type), '') AND value = 0; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_medication_insert AFTER INSERT ON medications WHEN " +
+                    "new.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('active_medications_by_drug', " +
+                    "ifnull(trim(new.medication_name), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'active_medications_by_drug' AND " +
+                    "bucket = ifnull(trim(new.medication_name), ''); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_medication_update_old AFTER UPDATE OF is_active, " +
+                    "medication_name, patient_id ON medications WHEN old.is_active = 1 AND (SELECT is_active FROM " +
+                    "patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'active_medications_by_drug' AND " +
+                    "bucket = ifnull(trim(old.medication_name), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'active_medications_by_drug' AND bucket = " +
+                    "ifnull(trim(old.medication_name), '') AND value = 0; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_medication_update_new AFTER UPDATE OF is_active, " +
+                    "medication_name, patient_id ON medications WHEN new.is_active = 1 AND (SELECT is_active FROM " +
+                    "patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO report_rollups(report, bucket, value) VALUES ('active_medications_by_drug', " +
+                    "ifnull(trim(new.medication_name), ''), 0); " +
+                    "UPDATE report_rollups SET value = value + (1) WHERE report = 'active_medications_by_drug' AND " +
+                    "bucket = ifnull(trim(new.medication_name), ''); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_report_medication_delete AFTER DELETE ON medications WHEN " +
+                    "old.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE report_rollups SET value = value + (-1) WHERE report = 'active_medications_by_drug' AND " +
+                    "bucket = ifnull(trim(old.medication_name), ''); " +
+                    "DELETE FROM report_rollups WHERE report = 'active_medications_by_drug' AND bucket = " +
+                    "ifnull(trim(old.medication_name), '') AND value = 0; " +
+                    "END"
+    };
+
+    // Roll up the rows that already exist
+    static final String[] V9_REBUILD_REPORT_ROLLUPS = {
+            "DELETE FROM report_rollups",
+            "INSERT INTO report_rollups(report, bucket, value) SELECT 'visits_by_month', " +
+                    "ifnull(strftime('%Y-%m', r.visit_date * 86400, 'unixepoch'), ''), COUNT(*) FROM medical_records r " +
+                    "GROUP BY 2 UNION ALL SELECT 'visits_by_type', ifnull(trim(r.visit_type), ''), COUNT(*) FROM " +
+                    "medical_records r GROUP BY 2 UNION ALL SELECT 'visits_by_doctor', ifnull(trim(r.doctor_name), " +
+                    "''), COUNT(*) FROM medical_records r GROUP BY 2 UNION ALL SELECT 'visits_by_specialty', " +
+                    "ifnull(trim(r.doctor_specialty), ''), COUNT(*) FROM medical_records r GROUP BY 2 UNION ALL SELECT " +
+                    "'registrations_by_month', ifnull(strftime('%Y-%m', p.registration_date * 86400, 'unixepoch'), " +
+                    "''), COUNT(*) FROM patients p GROUP BY 2 UNION ALL SELECT 'active_medications_by_drug', " +
+                    "ifnull(trim(m.medication_name), ''), COUNT(*) FROM medications m INNER JOIN patients p ON " +
+                    "m.patient_id = p._id WHERE m.is_active = 1 AND p.is_active = 1 GROUP BY 2 UNION ALL SELECT " +
+                    "'patients_cross_tab', CASE WHEN p.age < 18 THEN '0-17' WHEN p.age < 30 THEN '18-29' WHEN p.age < " +
+                    "45 THEN '30-44' WHEN p.age < 65 THEN '45-64' ELSE '65+' END || char(31) || ifnull(trim(p.gender), " +
+                    "'') || char(31) || ifnull(trim(p.blood_type), ''), COUNT(*) FROM patients p WHERE p.is_active = 1 " +
+                    "GROUP BY 2"
+    };
+
+    // ==================== VERSION 10 ====================
+
+    // Import checkpoints with updated_at as epoch milliseconds
+    static final String V10_CREATE_IMPORT_CHECKPOINTS_TABLE =
+            "CREATE TABLE IF NOT EXISTS import_checkpoints (job_id TEXT PRIMARY KEY,rows_read INTEGER NOT " +
+                    "NULL,rows_imported INTEGER NOT NULL,rows_failed INTEGER NOT NULL,updated_at INTEGER DEFAULT " +
+                    "(CAST(strftime('%s', 'now') AS INTEGER) * 1000)) WITHOUT ROWID";
+
+    // The triggers are created IF NOT EXISTS, so changed definitions need a drop first
+    static final String[] V10_DROP_STATS_COUNTER_TRIGGERS = {
+            "DROP TRIGGER IF EXISTS trg_stats_patient_insert",
+            "DROP TRIGGER IF EXISTS trg_stats_patient_update_old",
+            "DROP TRIGGER IF EXISTS trg_stats_patient_update_new",
+            "DROP TRIGGER IF EXISTS trg_stats_patient_delete",
+            "DROP TRIGGER IF EXISTS trg_stats_record_insert",
+            "DROP TRIGGER IF EXISTS trg_stats_record_update_old",
+            "DROP TRIGGER IF EXISTS trg_stats_record_update_new",
+            "DROP TRIGGER IF EXISTS trg_stats_record_delete",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_insert",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_update_old",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_update_new",
+            "DROP TRIGGER IF EXISTS trg_stats_medication_delete"
+    };
+
+    // Stats counter triggers that skip the child counts for a new patient
+    static final String[] V10_CREATE_STATS_COUNTER_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_insert AFTER INSERT ON patients WHEN new.is_active " +
+                    "= 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(new.gender, ''), " +
+                    "0), ('blood_type:' || ifnull(new.blood_type, ''), 0), ('registered:' || ifnull(strftime('%Y-%m', " +
+                    "new.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (1) * CASE name WHEN 'active_patients_age_sum' THEN " +
+                    "new.age ELSE 1 END WHERE name IN ('active_patients', 'active_patients_age_sum', 'gender:' || " +
+                    "ifnull(new.gender, ''), 'blood_type:' || ifnull(new.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), '')); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_update_old AFTER UPDATE OF is_active, gender, " +
+                    "blood_type, age, registration_date ON patients WHEN old.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(old.gender, ''), " +
+                    "0), ('blood_type:' || ifnull(old.blood_type, ''), 0), ('registered:' || ifnull(strftime('%Y-%m', " +
+                    "old.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (-1) * CASE name WHEN 'active_patients_age_sum' THEN " +
+                    "old.age ELSE 1 END WHERE name IN ('active_patients', 'active_patients_age_sum', 'gender:' || " +
+                    "ifnull(old.gender, ''), 'blood_type:' || ifnull(old.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), '')); " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = old._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = old._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_update_new AFTER UPDATE OF is_active, gender, " +
+                    "blood_type, age, registration_date ON patients WHEN new.is_active = 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(new.gender, ''), " +
+                    "0), ('blood_type:' || ifnull(new.blood_type, ''), 0), ('registered:' || ifnull(strftime('%Y-%m', " +
+                    "new.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (1) * CASE name WHEN 'active_patients_age_sum' THEN " +
+                    "new.age ELSE 1 END WHERE name IN ('active_patients', 'active_patients_age_sum', 'gender:' || " +
+                    "ifnull(new.gender, ''), 'blood_type:' || ifnull(new.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', new.registration_date * 86400, 'unixepoch'), '')); " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = new._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = new._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_patient_delete AFTER DELETE ON patients WHEN old.is_active " +
+                    "= 1 BEGIN " +
+                    "INSERT OR IGNORE INTO stats_counters(name, value) VALUES ('gender:' || ifnull(old.gender, ''), " +
+                    "0), ('blood_type:' || ifnull(old.blood_type, ''), 0), ('registered:' || ifnull(strftime('%Y-%m', " +
+                    "old.registration_date * 86400, 'unixepoch'), ''), 0); " +
+                    "UPDATE stats_counters SET value = value + (-1) * CASE name WHEN 'active_patients_age_sum' THEN " +
+                    "old.age ELSE 1 END WHERE name IN ('active_patients', 'active_patients_age_sum', 'gender:' || " +
+                    "ifnull(old.gender, ''), 'blood_type:' || ifnull(old.blood_type, ''), 'registered:' || " +
+                    "ifnull(strftime('%Y-%m', old.registration_date * 86400, 'unixepoch'), '')); " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medical_records WHERE " +
+                    "patient_id = old._id) WHERE name = 'medical_records'; " +
+                    "UPDATE stats_counters SET value = value + (-1) * (SELECT COUNT(*) FROM medications WHERE " +
+                    "patient_id = old._id AND is_active = 1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_insert AFTER INSERT ON medical_records WHEN (SELECT " +
+                    "is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_update_old AFTER UPDATE OF patient_id ON " +
+                    "medical_records WHEN (SELECT is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_update_new AFTER UPDATE OF patient_id ON " +
+                    "medical_records WHEN (SELECT is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_record_delete AFTER DELETE ON medical_records WHEN (SELECT " +
+                    "is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'medical_records'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_insert AFTER INSERT ON medications WHEN " +
+                    "new.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_update_old AFTER UPDATE OF is_active, " +
+                    "patient_id ON medications WHEN old.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = " +
+                    "old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_update_new AFTER UPDATE OF is_active, " +
+                    "patient_id ON medications WHEN new.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = " +
+                    "new.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (1) WHERE name = 'active_medications'; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stats_medication_delete AFTER DELETE ON medications WHEN " +
+                    "old.is_active = 1 AND (SELECT is_active FROM patients WHERE _id = old.patient_id) = 1 BEGIN " +
+                    "UPDATE stats_counters SET value = value + (-1) WHERE name = 'active_medications'; " +
+                    "END"
+    };
+}
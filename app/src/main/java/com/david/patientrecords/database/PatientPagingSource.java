@@ -0,0 +1,335 @@
+package com.david.patientrecords.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.david.patientrecords.models.Patient;
+import com.david.patientrecords.models.PatientSummary;
+import com.david.patientrecords.utils.ItemDiffs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyset-paged source for the patient list.
+ *
+ * Pages are read on the DbExecutor reader pool in (patient_name, _id) order, each one
+ * seeking past the last row of the page before it. The matching row count is loaded
+ * with the first page so the list can show placeholders for rows not loaded yet, and
+ * the next page is requested once binding gets within the prefetch distance of the end.
+ * A refresh is diffed against the rows already loaded, so unchanged rows are not rebound.
+ */
+public class PatientPagingSource {
+
+    private static final String TAG = "PatientPagingSource";
+
+    // Delivered on the main thread
+    public interface Listener {
+        void onRefreshed(int totalCount, int unfilteredCount);
+        void onLoadError(Exception e);
+    }
+
+    private final PatientRepository repository;
+    private final LifecycleOwner owner;
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final Listener listener;
+    private ListUpdateCallback updateCallback;
+
+    private final List<Patient> loaded = new ArrayList<>();
+    private final Map<Long, PatientSummary> summaries = new HashMap<>(); // Of the loaded rows, as last bound
+    private int totalCount;
+    private int unfilteredCount;
+    private boolean endReached = true;
+    private String searchQuery = "";
+    private long[] searchPatientIds; // Ids already known to match searchQuery, or null
+    private String filter = "all";
+
+    private DbExecutor.Job pendingJob;
+    private int generation; // Bumped on refresh so pages from an older query are dropped
+    private int loadedVersion; // Bumped on every change to loaded, a refresh diff is only valid against its own snapshot
+
+    public PatientPagingSource(Context context, @Nullable LifecycleOwner owner, int pageSize,
+                               int prefetchDistance, @NonNull Listener listener) {
+        this(PatientRepository.getInstance(context), owner, pageSize, prefetchDistance, listener);
+    }
+
+    PatientPagingSource(PatientRepository repository, @Nullable LifecycleOwner owner, int pageSize,
+                        int prefetchDistance, @NonNull Listener listener) {
+        this.repository = repository;
+        this.owner = owner;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.listener = listener;
+    }
+
+    /**
+     * Set by the adapter so row changes are forwarded as fine-grained notifications
+     */
+    public void setUpdateCallback(@Nullable ListUpdateCallback updateCallback) {
+        this.updateCallback = updateCallback;
+    }
+
+    // ==================== LOADING ====================
+
+    /**
+     * Reload from the first page with a new search query and filter
+     */
+    public void refresh(String searchQuery, String filter) {
+        refresh(searchQuery, null, filter);
+    }
+
+    /**
+     * Reload from the first page; a non-null searchPatientIds restricts the list to
+     * those ids instead of running the search query again
+     */
+    public void refresh(String searchQuery, @Nullable long[] searchPatientIds, String filter) {
+        this.searchQuery = searchQuery != null ? searchQuery : "";
+        this.searchPatientIds = searchPatientIds;
+        this.filter = filter != null ? filter : "all";
+        refresh();
+    }
+
+    /**
+     * Reload from the first page keeping the current search query and filter
+     */
+    public void refresh() {
+        cancelPending();
+        final int requestGeneration = ++generation;
+        final String query = searchQuery;
+        final long[] ids = searchPatientIds;
+        final String currentFilter = filter;
+        // Diffed against the new first page on the reader thread
+        final List<Patient> previous = new ArrayList<>(loaded);
+        final Map<Long, PatientSummary> previousSummaries = new HashMap<>(summaries);
+        final int previousVersion = loadedVersion;
+
+        pendingJob = DbExecutor.getInstance().read(owner,
+                () -> {
+                    FirstPage page = new FirstPage();
+                    page.patients = repository.getPatientsPage(query, ids, currentFilter, null, 0, pageSize);
+                    page.summaries = loadSummaries(page.patients);
+                    page.totalCount = repository.getPatientsCount(query, ids, currentFilter);
+                    page.unfilteredCount = repository.getTotalPatientsCount();
+                    // A card whose record or medication counts changed is rebound even if the patient row is not
+                    page.diff = ItemDiffs.calculateDiff(previous, page.patients,
+                            ItemDiffs.patientWithSummaries(previousSummaries, page.summaries));
+                    return page;
+                },
+                page -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    pendingJob = null;
+
+                    int previousCount = getItemCount();
+                    int previousPlaceholders = previousCount - loaded.size();
+                    boolean diffValid = previousVersion == loadedVersion;
+
+                    loaded.clear();
+                    loaded.addAll(page.patients);
+                    summaries.clear();
+                    summaries.putAll(page.summaries);
+                    loadedVersion++;
+                    endReached = page.patients.size() < pageSize;
+                    // The count and the page are separate reads, never show fewer rows than loaded
+                    totalCount = endReached ? loaded.size() : Math.max(page.totalCount, loaded.size());
+                    unfilteredCount = page.unfilteredCount;
+
+                    if (diffValid && updateCallback != null) {
+                        // Only rows that moved or changed are rebound, then the placeholder tail is resized
+                        page.diff.dispatchUpdatesTo(updateCallback);
+                        dispatchResize(loaded.size() + previousPlaceholders, getItemCount(), getItemCount());
+                    } else {
+                        dispatchResize(previousCount, getItemCount(), 0);
+                    }
+                    listener.onRefreshed(totalCount, unfilteredCount);
+                },
+                e -> {
+                    if (requestGeneration == generation) {
+                        pendingJob = null;
+                        listener.onLoadError(e);
+                    }
+                });
+    }
+
+    /**
+     * Called as rows are bound; requests the next page when close to the loaded end
+     */
+    public void onItemBound(int position) {
+        if (position >= loaded.size() - prefetchDistance) {
+            loadNextPage();
+        }
+    }
+
+    private void loadNextPage() {
+        if (pendingJob != null || endReached || loaded.isEmpty()) {
+            return;
+        }
+
+        final int requestGeneration = generation;
+        final String query = searchQuery;
+        final long[] ids = searchPatientIds;
+        final String currentFilter = filter;
+        Patient last = loaded.get(loaded.size() - 1);
+        final String afterName = last.getPatientName();
+        final long afterId = last.getId();
+
+        pendingJob = DbExecutor.getInstance().read(owner,
+                () -> {
+                    Page page = new Page();
+                    page.patients = repository.getPatientsPage(query, ids, currentFilter, afterName, afterId, pageSize);
+                    page.summaries = loadSummaries(page.patients);
+                    return page;
+                },
+                page -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    pendingJob = null;
+
+                    List<Patient> patients = page.patients;
+                    int previousCount = getItemCount();
+                    int start = loaded.size();
+                    loaded.addAll(patients);
+                    summaries.putAll(page.summaries);
+                    loadedVersion++;
+                    endReached = patients.size() < pageSize;
+                    totalCount = endReached ? loaded.size() : Math.max(totalCount, loaded.size());
+
+                    dispatchResize(previousCount, getItemCount(), start);
+                    Log.d(TAG, "Loaded page of " + patients.size() + " patients, " +
+                            loaded.size() + "/" + totalCount + " in memory");
+                },
+                e -> {
+                    if (requestGeneration == generation) {
+                        pendingJob = null;
+                        listener.onLoadError(e);
+                    }
+                });
+    }
+
+    // Cards show per-patient counts, fetch them for the whole page in one query while still off the main thread
+    private Map<Long, PatientSummary> loadSummaries(List<Patient> patients) {
+        List<Long> patientIds = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            patientIds.add(patient.getId());
+        }
+        return repository.getPatientSummaries(patientIds);
+    }
+
+    /**
+     * Drop any page request still in flight
+     */
+    public void cancelPending() {
+        if (pendingJob != null) {
+            pendingJob.cancel();
+            pendingJob = null;
+        }
+    }
+
+    // Rows from changedFrom up to the smaller size were placeholders or stale rows, the rest grew or shrank
+    private void dispatchResize(int previousCount, int newCount, int changedFrom) {
+        if (updateCallback == null) {
+            return;
+        }
+        int common = Math.min(previousCount, newCount);
+        if (common > changedFrom) {
+            updateCallback.onChanged(changedFrom, common - changedFrom, null);
+        }
+        if (newCount > previousCount) {
+            updateCallback.onInserted(previousCount, newCount - previousCount);
+        } else if (newCount < previousCount) {
+            updateCallback.onRemoved(newCount, previousCount - newCount);
+        }
+    }
+
+    // ==================== ACCESS ====================
+
+    /**
+     * Number of rows to show, including placeholders for rows not loaded yet
+     */
+    public int getItemCount() {
+        return totalCount;
+    }
+
+    /**
+     * Get the patient at a position, or null while it is still a placeholder
+     */
+    @Nullable
+    public Patient getItem(int position) {
+        return position >= 0 && position < loaded.size() ? loaded.get(position) : null;
+    }
+
+    public int getLoadedCount() {
+        return loaded.size();
+    }
+
+    public int getUnfilteredCount() {
+        return unfilteredCount;
+    }
+
+    public List<Patient> getLoadedPatients() {
+        return new ArrayList<>(loaded);
+    }
+
+    public int indexOf(long patientId) {
+        for (int i = 0; i < loaded.size(); i++) {
+            if (loaded.get(i).getId() == patientId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replace a loaded patient in place after an edit
+     */
+    public void replace(Patient patient) {
+        int position = indexOf(patient.getId());
+        if (position != -1) {
+            loaded.set(position, patient);
+            loadedVersion++;
+            if (updateCallback != null) {
+                updateCallback.onChanged(position, 1, null);
+            }
+        }
+    }
+
+    /**
+     * Remove a patient that was deleted; returns its former position or -1
+     */
+    public int remove(Patient patient) {
+        int position = indexOf(patient.getId());
+        if (position != -1) {
+            loaded.remove(position);
+            summaries.remove(patient.getId());
+            loadedVersion++;
+            totalCount--;
+            unfilteredCount = Math.max(0, unfilteredCount - 1);
+            if (updateCallback != null) {
+                updateCallback.onRemoved(position, 1);
+            }
+        }
+        return position;
+    }
+
+    private static class Page {
+        List<Patient> patients;
+        Map<Long, PatientSummary> summaries;
+    }
+
+    private static class FirstPage extends Page {
+        int totalCount;
+        int unfilteredCount;
+        DiffUtil.DiffResult diff;
+    }
+}
@@ -5,20 +5,46 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
+import android.util.LruCache;
 
+import com.david.patientrecords.models.DashboardSnapshot;
 import com.david.patientrecords.models.Patient;
 import com.david.patientrecords.models.MedicalRecord;
 import com.david.patientrecords.models.Medication;
+import com.david.patientrecords.models.PatientSummary;
+import com.david.patientrecords.models.ReportSnapshot;
+import com.david.patientrecords.models.VitalObservation;
+import com.david.patientrecords.models.VitalSeries;
+import com.david.patientrecords.utils.Constants;
+import com.david.patientrecords.utils.DateCodec;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 public class PatientRepository {
 
     private static final String TAG = "PatientRepository";
+    private static final int SUMMARY_CACHE_SIZE = 500;
     private DatabaseHelper dbHelper;
     private static PatientRepository instance;
 
+    // Card summaries by patient id, cleared by every record or medication write
+    private final LruCache<Long, PatientSummary> summaryCache = new LruCache<>(SUMMARY_CACHE_SIZE);
+    private int summaryGeneration; // Guarded by summaryCache, stops a slow read caching data a write replaced
+
+    // Dashboard counts, cleared by every write
+    private final Object dashboardLock = new Object();
+    private DashboardSnapshot dashboardSnapshot; // Guarded by dashboardLock
+    private int dashboardGeneration; // Guarded by dashboardLock
+
     // Singleton pattern
     public static synchronized PatientRepository getInstance(Context context) {
         if (instance == null) {
@@ -28,7 +54,21 @@ public class PatientRepository {
     }
 
     private PatientRepository(Context context) {
-        dbHelper = DatabaseHelper.getInstance(context);
+        this(DatabaseHelper.getInstance(context));
+    }
+
+    // For tests, which run the repository against their own helper
+    PatientRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // Date columns hold epoch days; DateCodec.INVALID is stored as NULL
+    private static void putEpochDay(ContentValues values, String column, long epochDay) {
+        if (epochDay == DateCodec.INVALID) {
+            values.putNull(column);
+        } else {
+            values.put(column, epochDay);
+        }
     }
 
     // ==================== PATIENT OPERATIONS ====================
@@ -52,11 +92,12 @@ public class PatientRepository {
         values.put(DatabaseContract.PatientEntry.COLUMN_ALLERGIES, patient.getAllergies());
         values.put(DatabaseContract.PatientEntry.COLUMN_PROFILE_IMAGE, patient.getProfileImage());
         values.put(DatabaseContract.PatientEntry.COLUMN_IMAGE_PATH, patient.getImagePath()); // NEW: Image path support
-        values.put(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE, patient.getRegistrationDate());
+        putEpochDay(values, DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE, patient.getRegistrationDay());
         values.put(DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE, patient.isActive() ? 1 : 0);
 
         long newRowId = db.insert(DatabaseContract.PatientEntry.TABLE_NAME, null, values);
 
+        invalidateDashboardSnapshot();
         if (newRowId != -1) {
             Log.d(TAG, "Patient inserted successfully with ID: " + newRowId);
         } else {
@@ -82,13 +123,9 @@ public class PatientRepository {
         Cursor cursor = db.rawQuery(query, null);
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicalRecordMapper mapper = new CursorMappers.MedicalRecordMapper(cursor);
             do {
-                MedicalRecord record = cursorToMedicalRecord(cursor);
-                // Get patient name from joined query
-                int patientNameIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
-                if (patientNameIndex != -1) {
-                    record.setPatientName(cursor.getString(patientNameIndex));
-                }
+                MedicalRecord record = mapper.map(cursor);
                 records.add(record);
             } while (cursor.moveToNext());
             cursor.close();
@@ -116,13 +153,9 @@ public class PatientRepository {
         Cursor cursor = db.rawQuery(query, null);
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicationMapper mapper = new CursorMappers.MedicationMapper(cursor);
             do {
-                Medication medication = cursorToMedication(cursor);
-                // Get patient name from joined query
-                int patientNameIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
-                if (patientNameIndex != -1) {
-                    medication.setPatientName(cursor.getString(patientNameIndex));
-                }
+                Medication medication = mapper.map(cursor);
                 medications.add(medication);
             } while (cursor.moveToNext());
             cursor.close();
@@ -145,19 +178,15 @@ public class PatientRepository {
                 "ON mr." + DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
                 " WHERE p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
                 " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " IS NOT NULL" +
-                " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " >= date('now')" +
+                " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " >= ?" +
                 " ORDER BY mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " ASC";
 
-        Cursor cursor = db.rawQuery(query, null);
+        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(DateCodec.todayEpochDay())});
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicalRecordMapper mapper = new CursorMappers.MedicalRecordMapper(cursor);
             do {
-                MedicalRecord record = cursorToMedicalRecord(cursor);
-                // Get patient name from joined query
-                int patientNameIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
-                if (patientNameIndex != -1) {
-                    record.setPatientName(cursor.getString(patientNameIndex));
-                }
+                MedicalRecord record = mapper.map(cursor);
                 followUps.add(record);
             } while (cursor.moveToNext());
             cursor.close();
@@ -171,105 +200,28 @@ public class PatientRepository {
      * Get total patients count
      */
     public int getTotalPatientsCount() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        int count = 0;
-
-        try {
-            String query = "SELECT COUNT(*) FROM " + DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-
-            Cursor cursor = db.rawQuery(query, null);
-            if (cursor != null && cursor.moveToFirst()) {
-                count = cursor.getInt(0);
-                cursor.close();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting total patients count: " + e.getMessage());
-        }
-
-        Log.d(TAG, "Total patients count: " + count);
-        return count;
+        return (int) readStatsCounters(DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_PATIENTS)[0];
     }
 
     /**
      * Get total medical records count
      */
     public int getTotalMedicalRecordsCount() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        int count = 0;
-
-        try {
-            String query = "SELECT COUNT(*) FROM " + DatabaseContract.MedicalRecordEntry.TABLE_NAME + " mr " +
-                    "INNER JOIN " + DatabaseContract.PatientEntry.TABLE_NAME + " p " +
-                    "ON mr." + DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
-                    " WHERE p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-
-            Cursor cursor = db.rawQuery(query, null);
-            if (cursor != null && cursor.moveToFirst()) {
-                count = cursor.getInt(0);
-                cursor.close();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting total medical records count: " + e.getMessage());
-        }
-
-        Log.d(TAG, "Total medical records count: " + count);
-        return count;
+        return (int) readStatsCounters(DatabaseContract.StatsCounterEntry.COUNTER_MEDICAL_RECORDS)[0];
     }
 
     /**
      * Get total medications count
      */
     public int getTotalMedicationsCount() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        int count = 0;
-
-        try {
-            String query = "SELECT COUNT(*) FROM " + DatabaseContract.MedicationEntry.TABLE_NAME + " m " +
-                    "INNER JOIN " + DatabaseContract.PatientEntry.TABLE_NAME + " p " +
-                    "ON m." + DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
-                    " WHERE m." + DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE + " = 1" +
-                    " AND p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-
-            Cursor cursor = db.rawQuery(query, null);
-            if (cursor != null && cursor.moveToFirst()) {
-                count = cursor.getInt(0);
-                cursor.close();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting total medications count: " + e.getMessage());
-        }
-
-        Log.d(TAG, "Total medications count: " + count);
-        return count;
+        return (int) readStatsCounters(DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS)[0];
     }
 
     /**
      * Get upcoming follow-ups count
      */
     public int getUpcomingFollowUpsCount() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        int count = 0;
-
-        try {
-            String query = "SELECT COUNT(*) FROM " + DatabaseContract.MedicalRecordEntry.TABLE_NAME + " mr " +
-                    "INNER JOIN " + DatabaseContract.PatientEntry.TABLE_NAME + " p " +
-                    "ON mr." + DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
-                    " WHERE p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
-                    " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " IS NOT NULL" +
-                    " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " >= date('now')";
-
-            Cursor cursor = db.rawQuery(query, null);
-            if (cursor != null && cursor.moveToFirst()) {
-                count = cursor.getInt(0);
-                cursor.close();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting upcoming follow-ups count: " + e.getMessage());
-        }
-
-        Log.d(TAG, "Upcoming follow-ups count: " + count);
-        return count;
+        return getDashboardSnapshot().getUpcomingFollowUpCount();
     }
 
     /**
@@ -280,8 +232,8 @@ public class PatientRepository {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
 
         String selection = DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = ? AND " +
-                DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE + " >= date('now', '-30 days')";
-        String[] selectionArgs = {"1"};
+                DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE + " >= ?";
+        String[] selectionArgs = {"1", String.valueOf(DateCodec.todayEpochDay() - 30)};
         String sortOrder = DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE + " DESC";
 
         Cursor cursor = db.query(
@@ -295,8 +247,9 @@ public class PatientRepository {
         );
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.PatientMapper mapper = new CursorMappers.PatientMapper(cursor);
             do {
-                Patient patient = cursorToPatient(cursor);
+                Patient patient = mapper.map(cursor);
                 patients.add(patient);
             } while (cursor.moveToNext());
             cursor.close();
@@ -319,19 +272,16 @@ public class PatientRepository {
                 "ON m." + DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
                 " WHERE m." + DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE + " = 1" +
                 " AND p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
-                " AND m." + DatabaseContract.MedicationEntry.COLUMN_END_DATE + " BETWEEN date('now') AND date('now', '+" + days + " days')" +
+                " AND m." + DatabaseContract.MedicationEntry.COLUMN_END_DATE + " BETWEEN ? AND ?" +
                 " ORDER BY m." + DatabaseContract.MedicationEntry.COLUMN_END_DATE + " ASC";
 
-        Cursor cursor = db.rawQuery(query, null);
+        long today = DateCodec.todayEpochDay();
+        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(today), String.valueOf(today + days)});
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicationMapper mapper = new CursorMappers.MedicationMapper(cursor);
             do {
-                Medication medication = cursorToMedication(cursor);
-                // Get patient name from joined query
-                int patientNameIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
-                if (patientNameIndex != -1) {
-                    medication.setPatientName(cursor.getString(patientNameIndex));
-                }
+                Medication medication = mapper.map(cursor);
                 medications.add(medication);
             } while (cursor.moveToNext());
             cursor.close();
@@ -363,8 +313,9 @@ public class PatientRepository {
         );
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.PatientMapper mapper = new CursorMappers.PatientMapper(cursor);
             do {
-                Patient patient = cursorToPatient(cursor);
+                Patient patient = mapper.map(cursor);
                 patients.add(patient);
             } while (cursor.moveToNext());
             cursor.close();
@@ -397,7 +348,7 @@ public class PatientRepository {
 
         Patient patient = null;
         if (cursor != null && cursor.moveToFirst()) {
-            patient = cursorToPatient(cursor);
+            patient = new CursorMappers.PatientMapper(cursor).map(cursor);
             cursor.close();
         }
 
@@ -423,7 +374,7 @@ public class PatientRepository {
         values.put(DatabaseContract.PatientEntry.COLUMN_ALLERGIES, patient.getAllergies());
         values.put(DatabaseContract.PatientEntry.COLUMN_PROFILE_IMAGE, patient.getProfileImage());
         values.put(DatabaseContract.PatientEntry.COLUMN_IMAGE_PATH, patient.getImagePath()); // NEW: Image path support
-        values.put(DatabaseContract.PatientEntry.COLUMN_UPDATED_AT, DatabaseHelper.getCurrentTimestamp());
+        values.put(DatabaseContract.PatientEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
 
         String selection = DatabaseContract.PatientEntry._ID + " = ?";
         String[] selectionArgs = {String.valueOf(patient.getId())};
@@ -435,6 +386,7 @@ public class PatientRepository {
                 selectionArgs
         );
 
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Updated patient ID " + patient.getId() + ", rows affected: " + rowsAffected);
         return rowsAffected;
     }
@@ -447,7 +399,7 @@ public class PatientRepository {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE, 0);
-        values.put(DatabaseContract.PatientEntry.COLUMN_UPDATED_AT, DatabaseHelper.getCurrentTimestamp());
+        values.put(DatabaseContract.PatientEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
 
         String selection = DatabaseContract.PatientEntry._ID + " = ?";
         String[] selectionArgs = {String.valueOf(patientId)};
@@ -459,45 +411,262 @@ public class PatientRepository {
                 selectionArgs
         );
 
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Soft deleted patient ID " + patientId + ", rows affected: " + rowsAffected);
         return rowsAffected;
     }
 
     /**
-     * Search patients by name or phone
+     * Search active patients by name, phone, conditions, allergies, visit notes and
+     * medication names. Every term is a prefix match; results are ranked best first.
      */
     public List<Patient> searchPatients(String query) {
+        return searchPatients(query, Constants.MAX_SEARCH_RESULTS);
+    }
+
+    public List<Patient> searchPatients(String query, int limit) {
         List<Patient> patients = new ArrayList<>();
+        String matchQuery = FullTextSearch.toMatchQuery(query);
+        if (matchQuery == null) {
+            return patients;
+        }
+
         SQLiteDatabase db = dbHelper.getReadableDatabase();
 
-        String selection = "(" + DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME + " LIKE ? OR " +
-                DatabaseContract.PatientEntry.COLUMN_PHONE + " LIKE ?) AND " +
-                DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = ?";
-        String[] selectionArgs = {"%" + query + "%", "%" + query + "%", "1"};
-        String sortOrder = DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME + " ASC";
+        // Score every match on its matchinfo, FTS4 has no ranking of its own.
+        // CROSS JOIN keeps the full-text lookup as the outer loop.
+        String rankQuery = "SELECT " + DatabaseContract.PatientSearchEntry.TABLE_NAME + ".docid, matchinfo(" +
+                DatabaseContract.PatientSearchEntry.TABLE_NAME + ", '" + FullTextSearch.MATCHINFO_FORMAT + "')" +
+                " FROM " + DatabaseContract.PatientSearchEntry.TABLE_NAME +
+                " CROSS JOIN " + DatabaseContract.PatientEntry.TABLE_NAME +
+                " ON " + DatabaseContract.PatientEntry.TABLE_NAME + "." + DatabaseContract.PatientEntry._ID +
+                " = " + DatabaseContract.PatientSearchEntry.TABLE_NAME + ".docid" +
+                " WHERE " + DatabaseContract.PatientSearchEntry.TABLE_NAME + " MATCH ?" +
+                " AND " + DatabaseContract.PatientEntry.TABLE_NAME + "." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
+
+        List<long[]> ranked = new ArrayList<>(); // [patientId, index into scores]
+        List<Double> scores = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(rankQuery, new String[]{matchQuery})) {
+            while (cursor.moveToNext()) {
+                ranked.add(new long[]{cursor.getLong(0), scores.size()});
+                scores.add(FullTextSearch.score(cursor.getBlob(1)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error searching patients: " + e.getMessage());
+            return patients;
+        }
 
-        Cursor cursor = db.query(
+        Collections.sort(ranked, (a, b) -> Double.compare(scores.get((int) b[1]), scores.get((int) a[1])));
+        if (ranked.size() > limit) {
+            ranked = ranked.subList(0, limit);
+        }
+        if (ranked.isEmpty()) {
+            return patients;
+        }
+
+        // Load the top matches in one query, then put them back in rank order
+        StringBuilder placeholders = new StringBuilder();
+        String[] selectionArgs = new String[ranked.size()];
+        for (int i = 0; i < ranked.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+            selectionArgs[i] = String.valueOf(ranked.get(i)[0]);
+        }
+
+        Map<Long, Patient> byId = new HashMap<>();
+        try (Cursor cursor = db.query(
                 DatabaseContract.PatientEntry.TABLE_NAME,
                 null,
-                selection,
+                DatabaseContract.PatientEntry._ID + " IN (" + placeholders + ")",
                 selectionArgs,
                 null,
                 null,
-                sortOrder
-        );
+                null)) {
+            CursorMappers.PatientMapper mapper = new CursorMappers.PatientMapper(cursor);
+            while (cursor.moveToNext()) {
+                Patient patient = mapper.map(cursor);
+                byId.put(patient.getId(), patient);
+            }
+        }
 
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                Patient patient = cursorToPatient(cursor);
+        for (long[] match : ranked) {
+            Patient patient = byId.get(match[0]);
+            if (patient != null) {
                 patients.add(patient);
-            } while (cursor.moveToNext());
-            cursor.close();
+            }
         }
 
         Log.d(TAG, "Search query '" + query + "' returned " + patients.size() + " patients");
         return patients;
     }
 
+    /**
+     * Get the search text of every active patient matching an FTS MATCH expression,
+     * keyed by patient id. At most limit entries are returned.
+     */
+    public Map<Long, String> getSearchDocuments(String matchQuery, int limit) {
+        Map<Long, String> documents = new LinkedHashMap<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        String search = DatabaseContract.PatientSearchEntry.TABLE_NAME;
+        String query = "SELECT " + search + ".docid, " +
+                "ifnull(" + search + "." + DatabaseContract.PatientSearchEntry.COLUMN_NAME + ", '') || ' ' || " +
+                "ifnull(" + search + "." + DatabaseContract.PatientSearchEntry.COLUMN_PHONE + ", '') || ' ' || " +
+                "ifnull(" + search + "." + DatabaseContract.PatientSearchEntry.COLUMN_CONDITIONS + ", '') || ' ' || " +
+                "ifnull(" + search + "." + DatabaseContract.PatientSearchEntry.COLUMN_ALLERGIES + ", '') || ' ' || " +
+                "ifnull(" + search + "." + DatabaseContract.PatientSearchEntry.COLUMN_RECORDS + ", '') || ' ' || " +
+                "ifnull(" + search + "." + DatabaseContract.PatientSearchEntry.COLUMN_MEDICATIONS + ", '')" +
+                " FROM " + search +
+                " CROSS JOIN " + DatabaseContract.PatientEntry.TABLE_NAME +
+                " ON " + DatabaseContract.PatientEntry.TABLE_NAME + "." + DatabaseContract.PatientEntry._ID +
+                " = " + search + ".docid" +
+                " WHERE " + search + " MATCH ?" +
+                " AND " + DatabaseContract.PatientEntry.TABLE_NAME + "." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
+                " LIMIT " + limit;
+
+        try (Cursor cursor = db.rawQuery(query, new String[]{matchQuery})) {
+            while (cursor.moveToNext()) {
+                documents.put(cursor.getLong(0), cursor.getString(1));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading search documents: " + e.getMessage());
+        }
+
+        return documents;
+    }
+
+    /**
+     * Get one page of active patients ordered by (name, id), starting after the given key.
+     * Pass a null afterName for the first page. The seek walks the (is_active, patient_name)
+     * index, so a page costs the same however far down the list it is.
+     *
+     * @param filter one of "all", "male", "female" or "recent" (registered in the last 30 days)
+     */
+    public List<Patient> getPatientsPage(String searchQuery, String filter,
+                                         String afterName, long afterId, int limit) {
+        return getPatientsPage(searchQuery, null, filter, afterName, afterId, limit);
+    }
+
+    /**
+     * Same as above, but when patientIds is not null it replaces the search query
+     * with the ids already known to match it
+     */
+    public List<Patient> getPatientsPage(String searchQuery, long[] patientIds, String filter,
+                                         String afterName, long afterId, int limit) {
+        List<Patient> patients = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        List<String> args = new ArrayList<>();
+        StringBuilder selection = new StringBuilder(
+                buildPatientListSelection(searchQuery, patientIds, filter, args));
+
+        if (afterName != null) {
+            selection.append(" AND (")
+                    .append(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME).append(" > ? OR (")
+                    .append(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME).append(" = ? AND ")
+                    .append(DatabaseContract.PatientEntry._ID).append(" > ?))");
+            args.add(afterName);
+            args.add(afterName);
+            args.add(String.valueOf(afterId));
+        }
+
+        String sortOrder = DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME + " ASC, " +
+                DatabaseContract.PatientEntry._ID + " ASC";
+
+        try (Cursor cursor = db.query(
+                DatabaseContract.PatientEntry.TABLE_NAME,
+                null,
+                selection.toString(),
+                args.toArray(new String[0]),
+                null,
+                null,
+                sortOrder,
+                String.valueOf(limit))) {
+            CursorMappers.PatientMapper mapper = new CursorMappers.PatientMapper(cursor);
+            while (cursor.moveToNext()) {
+                patients.add(mapper.map(cursor));
+            }
+        }
+
+        return patients;
+    }
+
+    /**
+     * Count active patients matching the paged list's search and filter
+     */
+    public int getPatientsCount(String searchQuery, String filter) {
+        return getPatientsCount(searchQuery, null, filter);
+    }
+
+    public int getPatientsCount(String searchQuery, long[] patientIds, String filter) {
+        // The whole list is the active patient counter, which costs the same however many patients there are
+        if (patientIds == null && (searchQuery == null || searchQuery.trim().isEmpty()) &&
+                (filter == null || "all".equals(filter))) {
+            return getTotalPatientsCount();
+        }
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        int count = 0;
+
+        List<String> args = new ArrayList<>();
+        String query = "SELECT COUNT(*) FROM " + DatabaseContract.PatientEntry.TABLE_NAME +
+                " WHERE " + buildPatientListSelection(searchQuery, patientIds, filter, args);
+
+        try (Cursor cursor = db.rawQuery(query, args.toArray(new String[0]))) {
+            if (cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error counting patients: " + e.getMessage());
+        }
+
+        return count;
+    }
+
+    /**
+     * Build the WHERE clause of the paged list, also used by BulkExporter
+     */
+    String buildPatientListSelection(String searchQuery, long[] patientIds, String filter,
+                                     List<String> args) {
+        StringBuilder selection = new StringBuilder(DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = ?");
+        args.add("1");
+
+        if (patientIds != null) {
+            // Ids are numbers, inline them rather than running into the bind argument limit
+            selection.append(" AND ").append(DatabaseContract.PatientEntry._ID).append(" IN (");
+            for (int i = 0; i < patientIds.length; i++) {
+                if (i > 0) {
+                    selection.append(',');
+                }
+                selection.append(patientIds[i]);
+            }
+            selection.append(')');
+        } else if (FullTextSearch.isBloodType(searchQuery)) {
+            selection.append(" AND ").append(DatabaseContract.PatientEntry.COLUMN_BLOOD_TYPE)
+                    .append(" = ? COLLATE NOCASE");
+            args.add(searchQuery.trim());
+        } else if (searchQuery != null && !searchQuery.trim().isEmpty()) {
+            // Matching ids come from the full-text index, the list keeps its (name, id) order.
+            // Text with no searchable terms matches nothing.
+            String matchQuery = FullTextSearch.toMatchQuery(searchQuery);
+            selection.append(" AND ").append(DatabaseContract.PatientEntry._ID)
+                    .append(" IN (SELECT docid FROM ").append(DatabaseContract.PatientSearchEntry.TABLE_NAME)
+                    .append(" WHERE ").append(DatabaseContract.PatientSearchEntry.TABLE_NAME).append(" MATCH ?)");
+            args.add(matchQuery != null ? matchQuery : "\"\"");
+        }
+
+        if ("male".equals(filter) || "female".equals(filter)) {
+            selection.append(" AND ").append(DatabaseContract.PatientEntry.COLUMN_GENDER)
+                    .append(" = ? COLLATE NOCASE");
+            args.add(filter);
+        } else if ("recent".equals(filter)) {
+            selection.append(" AND ").append(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE)
+                    .append(" >= ?");
+            args.add(String.valueOf(DateCodec.todayEpochDay() - 30));
+        }
+
+        return selection.toString();
+    }
+
     // ==================== MEDICAL RECORD OPERATIONS ====================
 
     /**
@@ -508,7 +677,7 @@ public class PatientRepository {
         ContentValues values = new ContentValues();
 
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID, record.getPatientId());
-        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, record.getVisitDate());
+        putEpochDay(values, DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, record.getVisitDay());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_SYMPTOMS, record.getSymptoms());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_DIAGNOSIS, record.getDiagnosis());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_TREATMENT, record.getTreatment());
@@ -516,10 +685,24 @@ public class PatientRepository {
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY, record.getDoctorSpecialty());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VITAL_SIGNS, record.getVitalSigns());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_NOTES, record.getNotes());
-        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE, record.getFollowUpDate());
+        putEpochDay(values, DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE, record.getFollowUpDay());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_TYPE, record.getVisitType());
 
-        long newRowId = db.insert(DatabaseContract.MedicalRecordEntry.TABLE_NAME, null, values);
+        // The record and its vital-sign readings are written together
+        long newRowId;
+        db.beginTransaction();
+        try (VitalObservationWriter vitals = new VitalObservationWriter(db)) {
+            newRowId = db.insert(DatabaseContract.MedicalRecordEntry.TABLE_NAME, null, values);
+            if (newRowId != -1) {
+                vitals.write(newRowId, record.getPatientId(), record.getVisitDay(), record.getVitalSigns());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        invalidatePatientSummaries();
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Medical record inserted with ID: " + newRowId);
         return newRowId;
     }
@@ -546,8 +729,9 @@ public class PatientRepository {
         );
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicalRecordMapper mapper = new CursorMappers.MedicalRecordMapper(cursor);
             do {
-                MedicalRecord record = cursorToMedicalRecord(cursor);
+                MedicalRecord record = mapper.map(cursor);
                 records.add(record);
             } while (cursor.moveToNext());
             cursor.close();
@@ -556,6 +740,82 @@ public class PatientRepository {
         return records;
     }
 
+    /**
+     * Iterate a patient's medical records newest first, as getMedicalRecordsByPatientId
+     * orders them, reading pageSize rows at a time. No cursor stays open between pages;
+     * each page seeks past the last (visit_date, _id) it returned.
+     */
+    public Iterator<MedicalRecord> iterateMedicalRecords(final long patientId, final int pageSize) {
+        return new Iterator<MedicalRecord>() {
+            private List<MedicalRecord> page = getMedicalRecordsPage(patientId, DateCodec.INVALID, 0, pageSize);
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (index == page.size() && page.size() == pageSize) {
+                    MedicalRecord last = page.get(page.size() - 1);
+                    page = getMedicalRecordsPage(patientId, last.getVisitDay(), last.getId(), pageSize);
+                    index = 0;
+                }
+                return index < page.size();
+            }
+
+            @Override
+            public MedicalRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        };
+    }
+
+    /**
+     * Get one page of a patient's medical records ordered by (visit_date, _id) descending,
+     * starting after the given key. Pass DateCodec.INVALID as beforeVisitDay for the first page.
+     */
+    public List<MedicalRecord> getMedicalRecordsPage(long patientId, long beforeVisitDay, long beforeId, int limit) {
+        List<MedicalRecord> records = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        String selection = DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " = ?";
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(patientId));
+        if (beforeVisitDay != DateCodec.INVALID) {
+            // The <= bound lets the index seek straight to the page instead of filtering from the newest visit
+            selection += " AND " + DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE + " <= ? AND (" +
+                    DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE + " < ? OR " +
+                    DatabaseContract.MedicalRecordEntry._ID + " < ?)";
+            args.add(String.valueOf(beforeVisitDay));
+            args.add(String.valueOf(beforeVisitDay));
+            args.add(String.valueOf(beforeId));
+        }
+        // Served by the (patient_id, visit_date) index, which ends in the rowid
+        String sortOrder = DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE + " DESC, " +
+                DatabaseContract.MedicalRecordEntry._ID + " DESC";
+
+        Cursor cursor = db.query(
+                DatabaseContract.MedicalRecordEntry.TABLE_NAME,
+                null,
+                selection,
+                args.toArray(new String[0]),
+                null,
+                null,
+                sortOrder,
+                String.valueOf(limit)
+        );
+
+        if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicalRecordMapper mapper = new CursorMappers.MedicalRecordMapper(cursor);
+            do {
+                records.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+            cursor.close();
+        }
+
+        return records;
+    }
+
     /**
      * Get recent medical records (last 10)
      */
@@ -574,13 +834,9 @@ public class PatientRepository {
         Cursor cursor = db.rawQuery(query, null);
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicalRecordMapper mapper = new CursorMappers.MedicalRecordMapper(cursor);
             do {
-                MedicalRecord record = cursorToMedicalRecord(cursor);
-                // Get patient name from joined query
-                int patientNameIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
-                if (patientNameIndex != -1) {
-                    record.setPatientName(cursor.getString(patientNameIndex));
-                }
+                MedicalRecord record = mapper.map(cursor);
                 records.add(record);
             } while (cursor.moveToNext());
             cursor.close();
@@ -596,7 +852,7 @@ public class PatientRepository {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues values = new ContentValues();
 
-        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, record.getVisitDate());
+        putEpochDay(values, DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE, record.getVisitDay());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_SYMPTOMS, record.getSymptoms());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_DIAGNOSIS, record.getDiagnosis());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_TREATMENT, record.getTreatment());
@@ -604,20 +860,32 @@ public class PatientRepository {
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY, record.getDoctorSpecialty());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VITAL_SIGNS, record.getVitalSigns());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_NOTES, record.getNotes());
-        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE, record.getFollowUpDate());
+        putEpochDay(values, DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE, record.getFollowUpDay());
         values.put(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_TYPE, record.getVisitType());
-        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_UPDATED_AT, DatabaseHelper.getCurrentTimestamp());
+        values.put(DatabaseContract.MedicalRecordEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
 
         String selection = DatabaseContract.MedicalRecordEntry._ID + " = ?";
         String[] selectionArgs = {String.valueOf(record.getId())};
 
-        int rowsAffected = db.update(
-                DatabaseContract.MedicalRecordEntry.TABLE_NAME,
-                values,
-                selection,
-                selectionArgs
-        );
+        int rowsAffected;
+        db.beginTransaction();
+        try (VitalObservationWriter vitals = new VitalObservationWriter(db)) {
+            rowsAffected = db.update(
+                    DatabaseContract.MedicalRecordEntry.TABLE_NAME,
+                    values,
+                    selection,
+                    selectionArgs
+            );
+            if (rowsAffected > 0) {
+                vitals.replace(record.getId(), record.getPatientId(), record.getVisitDay(), record.getVitalSigns());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
+        invalidatePatientSummaries();
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Updated medical record ID " + record.getId() + ", rows affected: " + rowsAffected);
         return rowsAffected;
     }
@@ -637,10 +905,116 @@ public class PatientRepository {
                 selectionArgs
         );
 
+        invalidatePatientSummaries();
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Deleted medical record ID " + recordId + ", rows affected: " + rowsAffected);
         return rowsAffected;
     }
 
+    // ==================== VITAL SIGNS ====================
+
+    /**
+     * A patient's readings of one metric between fromMillis (inclusive) and toMillis
+     * (exclusive), oldest first. Metrics are the VitalObservation.METRIC_ codes.
+     */
+    public List<VitalObservation> getVitalObservations(long patientId, String metric, long fromMillis, long toMillis) {
+        List<VitalObservation> observations = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        String query = "SELECT " + DatabaseContract.VitalObservationEntry._ID + ", " +
+                DatabaseContract.VitalObservationEntry.COLUMN_RECORD_ID + ", " +
+                DatabaseContract.VitalObservationEntry.COLUMN_OBSERVED_AT + ", " +
+                DatabaseContract.VitalObservationEntry.COLUMN_VALUE +
+                " FROM " + DatabaseContract.VitalObservationEntry.TABLE_NAME + VITAL_SERIES_SELECTION +
+                " ORDER BY " + DatabaseContract.VitalObservationEntry.COLUMN_OBSERVED_AT + " ASC";
+
+        try (Cursor cursor = db.rawQuery(query, vitalSeriesArgs(patientId, metric, fromMillis, toMillis))) {
+            while (cursor.moveToNext()) {
+                observations.add(new VitalObservation(cursor.getLong(0), patientId, cursor.getLong(1),
+                        cursor.getLong(2), metric, cursor.getDouble(3)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting vital observations: " + e.getMessage());
+        }
+
+        return observations;
+    }
+
+    /**
+     * A patient's readings of one metric between fromMillis (inclusive) and toMillis
+     * (exclusive), reduced to the min, max and average of each bucketMillis-wide bucket
+     * counted from fromMillis. The aggregation runs in SQLite over the covering index, so
+     * years of readings come back as at most one row per bucket; pick bucketMillis from
+     * the range and the points the chart can show.
+     */
+    public VitalSeries getVitalSeries(long patientId, String metric, long fromMillis, long toMillis, long bucketMillis) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("bucketMillis must be positive");
+        }
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        // Both numbers are longs, inlined so the division stays integer
+        String bucket = "(" + DatabaseContract.VitalObservationEntry.COLUMN_OBSERVED_AT + " - " + fromMillis + ") / " +
+                bucketMillis;
+        String value = DatabaseContract.VitalObservationEntry.COLUMN_VALUE;
+        String query = "SELECT " + bucket + " AS bucket, MIN(" + value + "), MAX(" + value + "), AVG(" + value +
+                "), COUNT(*) FROM " + DatabaseContract.VitalObservationEntry.TABLE_NAME + VITAL_SERIES_SELECTION +
+                " GROUP BY bucket ORDER BY bucket";
+
+        try (Cursor cursor = db.rawQuery(query, vitalSeriesArgs(patientId, metric, fromMillis, toMillis))) {
+            int size = cursor.getCount();
+            long[] bucketStarts = new long[size];
+            double[] minimums = new double[size];
+            double[] maximums = new double[size];
+            double[] averages = new double[size];
+            int[] counts = new int[size];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                bucketStarts[i] = fromMillis + cursor.getLong(0) * bucketMillis;
+                minimums[i] = cursor.getDouble(1);
+                maximums[i] = cursor.getDouble(2);
+                averages[i] = cursor.getDouble(3);
+                counts[i] = cursor.getInt(4);
+            }
+            return new VitalSeries(metric, bucketMillis, bucketStarts, minimums, maximums, averages, counts);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting vital series: " + e.getMessage());
+            return VitalSeries.empty(metric, bucketMillis);
+        }
+    }
+
+    /**
+     * Metrics a patient has readings of, e.g. to offer only charts with data
+     */
+    public List<String> getVitalMetrics(long patientId) {
+        List<String> metrics = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        String query = "SELECT DISTINCT " + DatabaseContract.VitalObservationEntry.COLUMN_METRIC +
+                " FROM " + DatabaseContract.VitalObservationEntry.TABLE_NAME +
+                " WHERE " + DatabaseContract.VitalObservationEntry.COLUMN_PATIENT_ID + " = ?";
+
+        try (Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(patientId)})) {
+            while (cursor.moveToNext()) {
+                metrics.add(cursor.getString(0));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting vital metrics: " + e.getMessage());
+        }
+
+        return metrics;
+    }
+
+    // Matches the (patient_id, metric, observed_at) prefix of the covering index
+    private static final String VITAL_SERIES_SELECTION =
+            " WHERE " + DatabaseContract.VitalObservationEntry.COLUMN_PATIENT_ID + " = ?" +
+                    " AND " + DatabaseContract.VitalObservationEntry.COLUMN_METRIC + " = ?" +
+                    " AND " + DatabaseContract.VitalObservationEntry.COLUMN_OBSERVED_AT + " >= ?" +
+                    " AND " + DatabaseContract.VitalObservationEntry.COLUMN_OBSERVED_AT + " < ?";
+
+    private static String[] vitalSeriesArgs(long patientId, String metric, long fromMillis, long toMillis) {
+        return new String[]{String.valueOf(patientId), metric, String.valueOf(fromMillis), String.valueOf(toMillis)};
+    }
+
     // ==================== MEDICATION OPERATIONS ====================
 
     /**
@@ -655,8 +1029,8 @@ public class PatientRepository {
         values.put(DatabaseContract.MedicationEntry.COLUMN_GENERIC_NAME, medication.getGenericName());
         values.put(DatabaseContract.MedicationEntry.COLUMN_DOSAGE, medication.getDosage());
         values.put(DatabaseContract.MedicationEntry.COLUMN_FREQUENCY, medication.getFrequency());
-        values.put(DatabaseContract.MedicationEntry.COLUMN_START_DATE, medication.getStartDate());
-        values.put(DatabaseContract.MedicationEntry.COLUMN_END_DATE, medication.getEndDate());
+        putEpochDay(values, DatabaseContract.MedicationEntry.COLUMN_START_DATE, medication.getStartDay());
+        putEpochDay(values, DatabaseContract.MedicationEntry.COLUMN_END_DATE, medication.getEndDay());
         values.put(DatabaseContract.MedicationEntry.COLUMN_PRESCRIBED_BY, medication.getPrescribedBy());
         values.put(DatabaseContract.MedicationEntry.COLUMN_INSTRUCTIONS, medication.getInstructions());
         values.put(DatabaseContract.MedicationEntry.COLUMN_SIDE_EFFECTS, medication.getSideEffects());
@@ -665,6 +1039,8 @@ public class PatientRepository {
         values.put(DatabaseContract.MedicationEntry.COLUMN_PHARMACY_NAME, medication.getPharmacyName());
 
         long newRowId = db.insert(DatabaseContract.MedicationEntry.TABLE_NAME, null, values);
+        invalidatePatientSummaries();
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Medication inserted with ID: " + newRowId);
         return newRowId;
     }
@@ -692,8 +1068,9 @@ public class PatientRepository {
         );
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicationMapper mapper = new CursorMappers.MedicationMapper(cursor);
             do {
-                Medication medication = cursorToMedication(cursor);
+                Medication medication = mapper.map(cursor);
                 medications.add(medication);
             } while (cursor.moveToNext());
             cursor.close();
@@ -720,13 +1097,9 @@ public class PatientRepository {
         Cursor cursor = db.rawQuery(query, null);
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicationMapper mapper = new CursorMappers.MedicationMapper(cursor);
             do {
-                Medication medication = cursorToMedication(cursor);
-                // Get patient name from joined query
-                int patientNameIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
-                if (patientNameIndex != -1) {
-                    medication.setPatientName(cursor.getString(patientNameIndex));
-                }
+                Medication medication = mapper.map(cursor);
                 medications.add(medication);
             } while (cursor.moveToNext());
             cursor.close();
@@ -760,15 +1133,15 @@ public class PatientRepository {
         values.put(DatabaseContract.MedicationEntry.COLUMN_GENERIC_NAME, medication.getGenericName());
         values.put(DatabaseContract.MedicationEntry.COLUMN_DOSAGE, medication.getDosage());
         values.put(DatabaseContract.MedicationEntry.COLUMN_FREQUENCY, medication.getFrequency());
-        values.put(DatabaseContract.MedicationEntry.COLUMN_START_DATE, medication.getStartDate());
-        values.put(DatabaseContract.MedicationEntry.COLUMN_END_DATE, medication.getEndDate());
+        putEpochDay(values, DatabaseContract.MedicationEntry.COLUMN_START_DATE, medication.getStartDay());
+        putEpochDay(values, DatabaseContract.MedicationEntry.COLUMN_END_DATE, medication.getEndDay());
         values.put(DatabaseContract.MedicationEntry.COLUMN_PRESCRIBED_BY, medication.getPrescribedBy());
         values.put(DatabaseContract.MedicationEntry.COLUMN_INSTRUCTIONS, medication.getInstructions());
         values.put(DatabaseContract.MedicationEntry.COLUMN_SIDE_EFFECTS, medication.getSideEffects());
         values.put(DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE, medication.isActive() ? 1 : 0);
         values.put(DatabaseContract.MedicationEntry.COLUMN_REFILLS_REMAINING, medication.getRefillsRemaining());
         values.put(DatabaseContract.MedicationEntry.COLUMN_PHARMACY_NAME, medication.getPharmacyName());
-        values.put(DatabaseContract.MedicationEntry.COLUMN_UPDATED_AT, DatabaseHelper.getCurrentTimestamp());
+        values.put(DatabaseContract.MedicationEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
 
         String selection = DatabaseContract.MedicationEntry._ID + " = ?";
         String[] selectionArgs = {String.valueOf(medication.getId())};
@@ -780,6 +1153,8 @@ public class PatientRepository {
                 selectionArgs
         );
 
+        invalidatePatientSummaries();
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Updated medication ID " + medication.getId() + ", rows affected: " + rowsAffected);
         return rowsAffected;
     }
@@ -791,7 +1166,7 @@ public class PatientRepository {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE, 0);
-        values.put(DatabaseContract.MedicationEntry.COLUMN_UPDATED_AT, DatabaseHelper.getCurrentTimestamp());
+        values.put(DatabaseContract.MedicationEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
 
         String selection = DatabaseContract.MedicationEntry._ID + " = ?";
         String[] selectionArgs = {String.valueOf(medicationId)};
@@ -803,97 +1178,400 @@ public class PatientRepository {
                 selectionArgs
         );
 
+        invalidatePatientSummaries();
+        invalidateDashboardSnapshot();
         Log.d(TAG, "Deactivated medication ID " + medicationId + ", rows affected: " + rowsAffected);
         return rowsAffected;
     }
 
-    // ==================== HELPER METHODS ====================
+    // ==================== PATIENT SUMMARIES ====================
 
     /**
-     * Convert cursor to Patient object
+     * Get record count, active medication count and last visit for one patient
      */
-    private Patient cursorToPatient(Cursor cursor) {
-        Patient patient = new Patient();
-
-        patient.setId(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry._ID)));
-        patient.setPatientName(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME)));
-        patient.setAge(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_AGE)));
-        patient.setGender(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_GENDER)));
-        patient.setPhone(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_PHONE)));
-        patient.setAddress(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_ADDRESS)));
-        patient.setBloodType(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_BLOOD_TYPE)));
-        patient.setEmergencyContact(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_EMERGENCY_CONTACT)));
-        patient.setEmergencyPhone(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_EMERGENCY_PHONE)));
-        patient.setMedicalConditions(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_MEDICAL_CONDITIONS)));
-        patient.setAllergies(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_ALLERGIES)));
-        patient.setProfileImage(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_PROFILE_IMAGE)));
-
-        // NEW: Handle image path with safe column access
-        int imagePathColumnIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_IMAGE_PATH);
-        if (imagePathColumnIndex != -1) {
-            patient.setImagePath(cursor.getString(imagePathColumnIndex));
-        }
-
-        patient.setRegistrationDate(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE)));
-        patient.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE)) == 1);
-        patient.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_CREATED_AT)));
-        patient.setUpdatedAt(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.PatientEntry.COLUMN_UPDATED_AT)));
+    public PatientSummary getPatientSummary(long patientId) {
+        Map<Long, PatientSummary> summaries = getPatientSummaries(Collections.singletonList(patientId));
+        PatientSummary summary = summaries.get(patientId);
+        return summary != null ? summary : new PatientSummary(patientId, 0, 0, DateCodec.INVALID);
+    }
 
-        return patient;
+    /**
+     * Get summaries for a set of patients. Cached entries are reused and the rest are
+     * loaded in a single query, so a whole page costs one round-trip.
+     */
+    public Map<Long, PatientSummary> getPatientSummaries(Collection<Long> patientIds) {
+        Map<Long, PatientSummary> summaries = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        int generation;
+
+        synchronized (summaryCache) {
+            generation = summaryGeneration;
+            for (Long patientId : patientIds) {
+                PatientSummary cached = summaryCache.get(patientId);
+                if (cached != null) {
+                    summaries.put(patientId, cached);
+                } else {
+                    missing.add(patientId);
+                }
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return summaries;
+        }
+
+        StringBuilder ids = new StringBuilder();
+        for (Long patientId : missing) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(patientId);
+        }
+
+        // Each subquery is answered from the (patient_id, ...) indexes without touching table rows
+        String query = "SELECT p." + DatabaseContract.PatientEntry._ID + ", " +
+                "(SELECT COUNT(*) FROM " + DatabaseContract.MedicalRecordEntry.TABLE_NAME + " r" +
+                " WHERE r." + DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID + "), " +
+                "(SELECT COUNT(*) FROM " + DatabaseContract.MedicationEntry.TABLE_NAME + " m" +
+                " WHERE m." + DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
+                " AND m." + DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE + " = 1), " +
+                "(SELECT MAX(r." + DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE + ") FROM " +
+                DatabaseContract.MedicalRecordEntry.TABLE_NAME + " r" +
+                " WHERE r." + DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID + ")" +
+                " FROM " + DatabaseContract.PatientEntry.TABLE_NAME + " p" +
+                " WHERE p." + DatabaseContract.PatientEntry._ID + " IN (" + ids + ")";
+
+        List<PatientSummary> loaded = new ArrayList<>();
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(query, null)) {
+            while (cursor.moveToNext()) {
+                loaded.add(new PatientSummary(cursor.getLong(0), cursor.getInt(1), cursor.getInt(2),
+                        cursor.isNull(3) ? DateCodec.INVALID : cursor.getLong(3)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading patient summaries: " + e.getMessage());
+            return summaries;
+        }
+
+        synchronized (summaryCache) {
+            // Skip caching if a write landed while the query ran
+            boolean cacheable = generation == summaryGeneration;
+            for (PatientSummary summary : loaded) {
+                summaries.put(summary.getPatientId(), summary);
+                if (cacheable) {
+                    summaryCache.put(summary.getPatientId(), summary);
+                }
+            }
+        }
+
+        return summaries;
     }
 
+    /**
+     * Get a summary only if it is already cached; safe to call on the main thread
+     */
+    public PatientSummary getCachedPatientSummary(long patientId) {
+        synchronized (summaryCache) {
+            return summaryCache.get(patientId);
+        }
+    }
 
+    private void invalidatePatientSummaries() {
+        synchronized (summaryCache) {
+            summaryGeneration++;
+            summaryCache.evictAll();
+        }
+    }
+
+    // ==================== DASHBOARD ====================
 
     /**
-     * Convert cursor to MedicalRecord object
+     * Get dashboard statistics, from memory when nothing was written since the last
+     * query. Otherwise they are read from the stats counters plus one
+     * query for upcoming follow-ups.
      */
-    private MedicalRecord cursorToMedicalRecord(Cursor cursor) {
-        MedicalRecord record = new MedicalRecord();
-
-        record.setId(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry._ID)));
-        record.setPatientId(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID)));
-        record.setVisitDate(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_DATE)));
-        record.setSymptoms(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_SYMPTOMS)));
-        record.setDiagnosis(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_DIAGNOSIS)));
-        record.setTreatment(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_TREATMENT)));
-        record.setDoctorName(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_NAME)));
-        record.setDoctorSpecialty(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_DOCTOR_SPECIALTY)));
-        record.setVitalSigns(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_VITAL_SIGNS)));
-        record.setNotes(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_NOTES)));
-        record.setFollowUpDate(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE)));
-        record.setVisitType(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_VISIT_TYPE)));
-        record.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_CREATED_AT)));
-        record.setUpdatedAt(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicalRecordEntry.COLUMN_UPDATED_AT)));
+    public DashboardSnapshot getDashboardSnapshot() {
+        int generation;
+        synchronized (dashboardLock) {
+            DashboardSnapshot cached = dashboardSnapshot;
+            // Month and follow-up counts are relative to today, so old snapshots expire even without writes
+            if (cached != null && System.currentTimeMillis() - cached.getComputedAt() < Constants.DASHBOARD_SNAPSHOT_MAX_AGE_MS) {
+                return cached;
+            }
+            generation = dashboardGeneration;
+        }
 
-        return record;
+        DashboardSnapshot snapshot = queryDashboardSnapshot();
+        if (snapshot == null) {
+            return DashboardSnapshot.empty();
+        }
+
+        synchronized (dashboardLock) {
+            // Skip caching if a write landed while the query ran
+            if (generation == dashboardGeneration) {
+                dashboardSnapshot = snapshot;
+            }
+        }
+        return snapshot;
     }
 
     /**
-     * Convert cursor to Medication object
+     * Get the last computed snapshot without querying, or null if there is none;
+     * safe to call on the main thread
      */
-    private Medication cursorToMedication(Cursor cursor) {
-        Medication medication = new Medication();
-
-        medication.setId(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry._ID)));
-        medication.setPatientId(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID)));
-        medication.setMedicationName(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_MEDICATION_NAME)));
-        medication.setGenericName(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_GENERIC_NAME)));
-        medication.setDosage(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_DOSAGE)));
-        medication.setFrequency(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_FREQUENCY)));
-        medication.setStartDate(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_START_DATE)));
-        medication.setEndDate(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_END_DATE)));
-        medication.setPrescribedBy(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_PRESCRIBED_BY)));
-        medication.setInstructions(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_INSTRUCTIONS)));
-        medication.setSideEffects(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_SIDE_EFFECTS)));
-        medication.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE)) == 1);
-        medication.setRefillsRemaining(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_REFILLS_REMAINING)));
-        medication.setPharmacyName(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_PHARMACY_NAME)));
-        medication.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_CREATED_AT)));
-        medication.setUpdatedAt(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseContract.MedicationEntry.COLUMN_UPDATED_AT)));
+    public DashboardSnapshot getCachedDashboardSnapshot() {
+        synchronized (dashboardLock) {
+            return dashboardSnapshot;
+        }
+    }
 
-        return medication;
+    private DashboardSnapshot queryDashboardSnapshot() {
+        String thisMonth = DatabaseContract.StatsCounterEntry.PREFIX_REGISTERED_MONTH +
+                DateCodec.todayString().substring(0, 7);
+        long[] counters = readStatsCounters(
+                DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_PATIENTS,
+                DatabaseContract.StatsCounterEntry.PREFIX_GENDER + "Male",
+                DatabaseContract.StatsCounterEntry.PREFIX_GENDER + "Female",
+                DatabaseContract.StatsCounterEntry.PREFIX_GENDER + "Other",
+                thisMonth,
+                DatabaseContract.StatsCounterEntry.COUNTER_AGE_SUM,
+                DatabaseContract.StatsCounterEntry.COUNTER_MEDICAL_RECORDS,
+                DatabaseContract.StatsCounterEntry.COUNTER_ACTIVE_MEDICATIONS);
+
+        // Follow-ups depend on today's date so they cannot be kept as a counter
+        String query = "SELECT COUNT(*) FROM " + DatabaseContract.MedicalRecordEntry.TABLE_NAME + " mr " +
+                "INNER JOIN " + DatabaseContract.PatientEntry.TABLE_NAME + " p " +
+                "ON mr." + DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
+                " WHERE p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
+                " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " >= ?";
+
+        int followUps;
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(query,
+                new String[]{String.valueOf(DateCodec.todayEpochDay())})) {
+            followUps = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } catch (Exception e) {
+            Log.e(TAG, "Error computing dashboard statistics: " + e.getMessage());
+            return null;
+        }
+
+        int totalPatients = (int) counters[0];
+        int averageAge = totalPatients == 0 ? 0 : (int) (counters[5] / totalPatients);
+        DashboardSnapshot snapshot = new DashboardSnapshot(totalPatients, (int) counters[1], (int) counters[2],
+                (int) counters[3], (int) counters[4], averageAge, (int) counters[6], (int) counters[7],
+                followUps, System.currentTimeMillis());
+        Log.d(TAG, "Computed " + snapshot);
+        return snapshot;
+    }
+
+    private void invalidateDashboardSnapshot() {
+        synchronized (dashboardLock) {
+            dashboardGeneration++;
+            dashboardSnapshot = null;
+        }
+    }
+
+    /**
+     * Drop cached summaries and statistics after rows were written outside the repository
+     */
+    public void invalidateCaches() {
+        invalidatePatientSummaries();
+        invalidateDashboardSnapshot();
+    }
+
+    // ==================== STATS COUNTERS ====================
+
+    /**
+     * Read trigger-maintained counters by name, in the order given. Counters that were
+     * never incremented read as 0. Returns all zeros if the read fails.
+     */
+    private long[] readStatsCounters(String... names) {
+        long[] values = new long[names.length];
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+
+        String query = "SELECT " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + ", " +
+                DatabaseContract.StatsCounterEntry.COLUMN_VALUE + " FROM " + DatabaseContract.StatsCounterEntry.TABLE_NAME +
+                " WHERE " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + " IN (" + placeholders + ")";
+
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(query, names)) {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equals(name)) {
+                        values[i] = cursor.getLong(1);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading stats counters: " + e.getMessage());
+        }
+        return values;
+    }
+
+    /**
+     * Get active patient counts per blood type, e.g. {"A+": 3, "O-": 1}; patients
+     * without a blood type are counted under ""
+     */
+    public Map<String, Integer> getPatientCountByBloodType() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        String prefix = DatabaseContract.StatsCounterEntry.PREFIX_BLOOD_TYPE;
+
+        String query = "SELECT " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + ", " +
+                DatabaseContract.StatsCounterEntry.COLUMN_VALUE + " FROM " + DatabaseContract.StatsCounterEntry.TABLE_NAME +
+                // ';' sorts right after ':', so this is a primary key range over the prefix
+                " WHERE " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + " > ?" +
+                " AND " + DatabaseContract.StatsCounterEntry.COLUMN_NAME + " < ?" +
+                " AND " + DatabaseContract.StatsCounterEntry.COLUMN_VALUE + " > 0" +
+                " ORDER BY " + DatabaseContract.StatsCounterEntry.COLUMN_NAME;
+
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(query,
+                new String[]{prefix, prefix.substring(0, prefix.length() - 1) + ";"})) {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getString(0).substring(prefix.length()), cursor.getInt(1));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting blood type statistics: " + e.getMessage());
+        }
+        return counts;
+    }
+
+    /**
+     * Recount the stats counters and repair them if they drifted from the source
+     * tables. Returns true when they were already consistent.
+     */
+    public boolean checkStatsCounters() {
+        List<String> mismatched = dbHelper.checkStatsCounters(dbHelper.getWritableDatabase());
+        if (!mismatched.isEmpty()) {
+            invalidateDashboardSnapshot();
+        }
+        return mismatched.isEmpty();
     }
 
+    // ==================== REPORTS ====================
+
+    /**
+     * Get every report over the last months calendar months, including this one. It is
+     * one primary key read of the trigger-maintained rollups, so the cost depends on the
+     * number of doctors, drugs and other buckets rather than on how many patients and
+     * visits there are.
+     */
+    public ReportSnapshot getReportSnapshot(int months) {
+        if (months <= 0) {
+            throw new IllegalArgumentException("months must be positive");
+        }
+
+        // Month keys from oldest to this month
+        int today = DateCodec.toYearMonthDay(DateCodec.todayEpochDay());
+        int year = today / 10000;
+        int month = today / 100 % 100;
+        String[] monthKeys = new String[months];
+        for (int i = months - 1; i >= 0; i--) {
+            monthKeys[i] = DateCodec.formatDate(year, month, 1).substring(0, 7);
+            if (--month == 0) {
+                month = 12;
+                year--;
+            }
+        }
+        List<String> monthList = Arrays.asList(monthKeys);
+        Map<String, Integer> monthIndex = new HashMap<>();
+        for (int i = 0; i < months; i++) {
+            monthIndex.put(monthKeys[i], i);
+        }
+
+        int[] visitsByMonth = new int[months];
+        int[] registrationsByMonth = new int[months];
+        Map<String, Integer> visitsByType = new HashMap<>();
+        Map<String, Integer> visitsByDoctor = new HashMap<>();
+        Map<String, Integer> visitsBySpecialty = new HashMap<>();
+        Map<String, Integer> medicationsByDrug = new HashMap<>();
+        List<ReportSnapshot.CrossTabCell> crossTab = new ArrayList<>();
+
+        String query = "SELECT " + DatabaseContract.ReportRollupEntry.COLUMN_REPORT + ", " +
+                DatabaseContract.ReportRollupEntry.COLUMN_BUCKET + ", " + DatabaseContract.ReportRollupEntry.COLUMN_VALUE +
+                " FROM " + DatabaseContract.ReportRollupEntry.TABLE_NAME + REPORT_SNAPSHOT_SELECTION;
+
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(query, new String[]{monthKeys[0]})) {
+            while (cursor.moveToNext()) {
+                String report = cursor.getString(0);
+                String bucket = cursor.getString(1);
+                int value = cursor.getInt(2);
+                switch (report) {
+                    case DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_MONTH:
+                        putMonth(visitsByMonth, monthIndex.get(bucket), value);
+                        break;
+                    case DatabaseContract.ReportRollupEntry.REPORT_REGISTRATIONS_BY_MONTH:
+                        putMonth(registrationsByMonth, monthIndex.get(bucket), value);
+                        break;
+                    case DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_TYPE:
+                        visitsByType.put(bucket, value);
+                        break;
+                    case DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_DOCTOR:
+                        visitsByDoctor.put(bucket, value);
+                        break;
+                    case DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_SPECIALTY:
+                        visitsBySpecialty.put(bucket, value);
+                        break;
+                    case DatabaseContract.ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG:
+                        medicationsByDrug.put(bucket, value);
+                        break;
+                    case DatabaseContract.ReportRollupEntry.REPORT_PATIENTS_CROSS_TAB: {
+                        String[] parts = bucket.split(DatabaseContract.ReportRollupEntry.BUCKET_SEPARATOR, -1);
+                        if (parts.length == 3) {
+                            crossTab.add(new ReportSnapshot.CrossTabCell(parts[0], parts[1], parts[2], value));
+                        }
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting report snapshot: " + e.getMessage());
+            return ReportSnapshot.empty(monthList, DatabaseContract.ReportRollupEntry.AGE_BUCKETS);
+        }
+
+        ReportSnapshot snapshot = new ReportSnapshot(monthList, visitsByMonth, registrationsByMonth, visitsByType,
+                visitsByDoctor, visitsBySpecialty, medicationsByDrug, crossTab,
+                DatabaseContract.ReportRollupEntry.AGE_BUCKETS, System.currentTimeMillis());
+        Log.d(TAG, "Computed " + snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Recount all report rollups from the source tables, e.g. after rows were changed
+     * with the triggers dropped
+     */
+    public void rebuildReportRollups() {
+        dbHelper.rebuildReportRollups(dbHelper.getWritableDatabase());
+    }
+
+    /**
+     * Recount the report rollups and repair them if they drifted from the source
+     * tables. Returns true when they were already consistent.
+     */
+    public boolean checkReportRollups() {
+        return dbHelper.checkReportRollups(dbHelper.getWritableDatabase()).isEmpty();
+    }
+
+    // Months after today only come from future-dated rows and have no index
+    private static void putMonth(int[] series, Integer index, int value) {
+        if (index != null) {
+            series[index] = value;
+        }
+    }
+
+    // Whole reports plus the month reports from the first month asked for, each a primary key range
+    private static final String REPORT_SNAPSHOT_SELECTION =
+            " WHERE " + DatabaseContract.ReportRollupEntry.COLUMN_REPORT + " IN ('" +
+                    DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_TYPE + "', '" +
+                    DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_DOCTOR + "', '" +
+                    DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_SPECIALTY + "', '" +
+                    DatabaseContract.ReportRollupEntry.REPORT_ACTIVE_MEDICATIONS_BY_DRUG + "', '" +
+                    DatabaseContract.ReportRollupEntry.REPORT_PATIENTS_CROSS_TAB + "')" +
+                    " OR (" + DatabaseContract.ReportRollupEntry.COLUMN_REPORT + " IN ('" +
+                    DatabaseContract.ReportRollupEntry.REPORT_VISITS_BY_MONTH + "', '" +
+                    DatabaseContract.ReportRollupEntry.REPORT_REGISTRATIONS_BY_MONTH + "')" +
+                    " AND " + DatabaseContract.ReportRollupEntry.COLUMN_BUCKET + " >= ?)";
+
     // ==================== ADDITIONAL UTILITY METHODS ====================
 
     /**
@@ -907,14 +1585,15 @@ public class PatientRepository {
                 "INNER JOIN " + DatabaseContract.MedicalRecordEntry.TABLE_NAME + " mr " +
                 "ON p." + DatabaseContract.PatientEntry._ID + " = mr." + DatabaseContract.MedicalRecordEntry.COLUMN_PATIENT_ID +
                 " WHERE p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
-                " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " >= date('now')" +
+                " AND mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " >= ?" +
                 " ORDER BY mr." + DatabaseContract.MedicalRecordEntry.COLUMN_FOLLOW_UP_DATE + " ASC";
 
-        Cursor cursor = db.rawQuery(query, null);
+        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(DateCodec.todayEpochDay())});
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.PatientMapper mapper = new CursorMappers.PatientMapper(cursor);
             do {
-                Patient patient = cursorToPatient(cursor);
+                Patient patient = mapper.map(cursor);
                 patients.add(patient);
             } while (cursor.moveToNext());
             cursor.close();
@@ -946,8 +1625,9 @@ public class PatientRepository {
         );
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.PatientMapper mapper = new CursorMappers.PatientMapper(cursor);
             do {
-                Patient patient = cursorToPatient(cursor);
+                Patient patient = mapper.map(cursor);
                 patients.add(patient);
             } while (cursor.moveToNext());
             cursor.close();
@@ -980,8 +1660,9 @@ public class PatientRepository {
         );
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.PatientMapper mapper = new CursorMappers.PatientMapper(cursor);
             do {
-                Patient patient = cursorToPatient(cursor);
+                Patient patient = mapper.map(cursor);
                 patients.add(patient);
             } while (cursor.moveToNext());
             cursor.close();
@@ -1003,19 +1684,16 @@ public class PatientRepository {
                 "ON m." + DatabaseContract.MedicationEntry.COLUMN_PATIENT_ID + " = p." + DatabaseContract.PatientEntry._ID +
                 " WHERE m." + DatabaseContract.MedicationEntry.COLUMN_IS_ACTIVE + " = 1" +
                 " AND p." + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
-                " AND m." + DatabaseContract.MedicationEntry.COLUMN_END_DATE + " BETWEEN date('now') AND date('now', '+30 days')" +
+                " AND m." + DatabaseContract.MedicationEntry.COLUMN_END_DATE + " BETWEEN ? AND ?" +
                 " ORDER BY m." + DatabaseContract.MedicationEntry.COLUMN_END_DATE + " ASC";
 
-        Cursor cursor = db.rawQuery(query, null);
+        long today = DateCodec.todayEpochDay();
+        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(today), String.valueOf(today + 30)});
 
         if (cursor != null && cursor.moveToFirst()) {
+            CursorMappers.MedicationMapper mapper = new CursorMappers.MedicationMapper(cursor);
             do {
-                Medication medication = cursorToMedication(cursor);
-                // Get patient name from joined query
-                int patientNameIndex = cursor.getColumnIndex(DatabaseContract.PatientEntry.COLUMN_PATIENT_NAME);
-                if (patientNameIndex != -1) {
-                    medication.setPatientName(cursor.getString(patientNameIndex));
-                }
+                Medication medication = mapper.map(cursor);
                 medications.add(medication);
             } while (cursor.moveToNext());
             cursor.close();
@@ -1045,7 +1723,7 @@ public class PatientRepository {
 
         MedicalRecord record = null;
         if (cursor != null && cursor.moveToFirst()) {
-            record = cursorToMedicalRecord(cursor);
+            record = new CursorMappers.MedicalRecordMapper(cursor).map(cursor);
             cursor.close();
         }
 
@@ -1073,7 +1751,7 @@ public class PatientRepository {
 
         Medication medication = null;
         if (cursor != null && cursor.moveToFirst()) {
-            medication = cursorToMedication(cursor);
+            medication = new CursorMappers.MedicationMapper(cursor).map(cursor);
             cursor.close();
         }
 
@@ -1091,45 +1769,11 @@ public class PatientRepository {
      * Get patient count by gender
      */
     public int[] getPatientCountByGender() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        int[] genderCounts = new int[3]; // [male, female, other]
-
-        try {
-            // Count male patients
-            String maleQuery = "SELECT COUNT(*) FROM " + DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_GENDER + " = 'Male' AND " +
-                    DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-            Cursor cursor = db.rawQuery(maleQuery, null);
-            if (cursor.moveToFirst()) {
-                genderCounts[0] = cursor.getInt(0);
-            }
-            cursor.close();
-
-            // Count female patients
-            String femaleQuery = "SELECT COUNT(*) FROM " + DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_GENDER + " = 'Female' AND " +
-                    DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-            cursor = db.rawQuery(femaleQuery, null);
-            if (cursor.moveToFirst()) {
-                genderCounts[1] = cursor.getInt(0);
-            }
-            cursor.close();
-
-            // Count other gender patients
-            String otherQuery = "SELECT COUNT(*) FROM " + DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_GENDER + " = 'Other' AND " +
-                    DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-            cursor = db.rawQuery(otherQuery, null);
-            if (cursor.moveToFirst()) {
-                genderCounts[2] = cursor.getInt(0);
-            }
-            cursor.close();
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting gender statistics: " + e.getMessage());
-        }
-
-        return genderCounts;
+        long[] counters = readStatsCounters(
+                DatabaseContract.StatsCounterEntry.PREFIX_GENDER + "Male",
+                DatabaseContract.StatsCounterEntry.PREFIX_GENDER + "Female",
+                DatabaseContract.StatsCounterEntry.PREFIX_GENDER + "Other");
+        return new int[]{(int) counters[0], (int) counters[1], (int) counters[2]}; // [male, female, other]
     }
 
     /**
@@ -1212,7 +1856,7 @@ public class PatientRepository {
 
         MedicalRecord record = null;
         if (cursor != null && cursor.moveToFirst()) {
-            record = cursorToMedicalRecord(cursor);
+            record = new CursorMappers.MedicalRecordMapper(cursor).map(cursor);
             cursor.close();
         }
 
@@ -1223,48 +1867,25 @@ public class PatientRepository {
      * Get patient statistics for reporting
      */
     public List<Integer> getPatientStatistics() {
+        DashboardSnapshot snapshot = getDashboardSnapshot();
         List<Integer> stats = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        try {
-            // Total active patients
-            String totalQuery = "SELECT COUNT(*) FROM " + DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-            Cursor cursor = db.rawQuery(totalQuery, null);
-            if (cursor.moveToFirst()) {
-                stats.add(cursor.getInt(0));
-            }
-            cursor.close();
-
-            // Patients added this month
-            String monthQuery = "SELECT COUNT(*) FROM " + DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1" +
-                    " AND " + DatabaseContract.PatientEntry.COLUMN_REGISTRATION_DATE + " >= date('now', 'start of month')";
-            cursor = db.rawQuery(monthQuery, null);
-            if (cursor.moveToFirst()) {
-                stats.add(cursor.getInt(0));
-            }
-            cursor.close();
-
-            // Average age
-            String ageQuery = "SELECT AVG(" + DatabaseContract.PatientEntry.COLUMN_AGE + ") FROM " +
-                    DatabaseContract.PatientEntry.TABLE_NAME +
-                    " WHERE " + DatabaseContract.PatientEntry.COLUMN_IS_ACTIVE + " = 1";
-            cursor = db.rawQuery(ageQuery, null);
-            if (cursor.moveToFirst()) {
-                stats.add((int) cursor.getDouble(0));
-            }
-            cursor.close();
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting patient statistics: " + e.getMessage());
-        }
-
+        stats.add(snapshot.getTotalPatients());
+        stats.add(snapshot.getPatientsThisMonth());
+        stats.add(snapshot.getAverageAge());
         return stats;
     }
 
     /**
-     * Close database connections
+     * Get the journal mode and pragmas in effect, for diagnostics
+     */
+    public Map<String, String> getActiveStorageSettings() {
+        return dbHelper.getActiveStorageSettings();
+    }
+
+    /**
+     * Close database connections.
+     * The helper is shared by the whole process and lives as long as it does, so screens
+     * must not call this from their own lifecycle callbacks.
      */
     public void close() {
         if (dbHelper != null) {
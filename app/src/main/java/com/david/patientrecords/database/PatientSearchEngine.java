@@ -0,0 +1,335 @@
+package com.david.patientrecords.database;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.david.patientrecords.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Search-as-you-type over the patient_search index.
+ *
+ * Input is debounced by SEARCH_DELAY_MS and queries shorter than MIN_SEARCH_LENGTH
+ * clear the search. A new query cancels the one still queued, and results of a query
+ * that was superseded while running are dropped. When the previous result set was small
+ * enough to keep in memory and the new query only narrows it (e.g. "ann" -> "anna"),
+ * the new results are filtered from it without touching the database.
+ *
+ * All methods must be called on the main thread; results are delivered there too.
+ */
+public class PatientSearchEngine {
+
+    private static final String TAG = "PatientSearchEngine";
+    // Result sets up to this size are kept in memory for narrowing
+    private static final int NARROWING_LIMIT = 500;
+
+    // Delivered on the main thread
+    public interface Listener {
+        void onSearchResult(SearchResult result);
+    }
+
+    private final PatientRepository repository;
+    private final DbExecutor executor;
+    private final Listener listener;
+    private final Runnable debouncedSearch = this::startSearch;
+
+    private String requestedQuery = "";
+    private long requestedAt; // Uptime of the first keystroke not yet answered, 0 when idle
+    private Future<?> runningSearch;
+    private int generation; // Bumped per search so superseded results are dropped
+    private Snapshot lastSnapshot;
+
+    // Metrics
+    private int publishedCount;
+    private int narrowedCount;
+    private int droppedCount;
+    private long totalLatencyMs;
+    private long maxLatencyMs;
+
+    public PatientSearchEngine(Context context, @NonNull Listener listener) {
+        this.repository = PatientRepository.getInstance(context);
+        this.executor = DbExecutor.getInstance();
+        this.listener = listener;
+    }
+
+    // ==================== INPUT ====================
+
+    /**
+     * Called on every keystroke; the search runs once typing pauses
+     */
+    public void setQuery(@Nullable String text) {
+        String query = normalize(text);
+        if (query.equals(requestedQuery)) {
+            return;
+        }
+
+        requestedQuery = query;
+        if (requestedAt == 0) {
+            requestedAt = SystemClock.uptimeMillis();
+        }
+
+        executor.removeFromMain(debouncedSearch);
+        cancelRunning();
+
+        if (query.isEmpty()) {
+            // Clearing the search needs no query, publish it straight away
+            startSearch();
+        } else {
+            executor.postToMainDelayed(debouncedSearch, Constants.SEARCH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Run the pending query now instead of waiting for the debounce, e.g. on submit
+     */
+    public void flush() {
+        executor.removeFromMain(debouncedSearch);
+        if (requestedAt != 0 && runningSearch == null) {
+            startSearch();
+        }
+    }
+
+    /**
+     * Forget cached results after the patient data changed
+     */
+    public void invalidate() {
+        lastSnapshot = null;
+    }
+
+    /**
+     * Drop any pending or running search, e.g. when the view goes away
+     */
+    public void cancel() {
+        executor.removeFromMain(debouncedSearch);
+        cancelRunning();
+        generation++;
+        requestedAt = 0;
+    }
+
+    public String getQuery() {
+        return requestedQuery;
+    }
+
+    private static String normalize(String text) {
+        String query = text != null ? text.trim() : "";
+        return query.length() < Constants.MIN_SEARCH_LENGTH ? "" : query;
+    }
+
+    private void cancelRunning() {
+        if (runningSearch != null) {
+            // Only a search still queued is skipped, a running one is dropped when it publishes
+            runningSearch.cancel(false);
+            runningSearch = null;
+        }
+    }
+
+    // ==================== SEARCH ====================
+
+    private void startSearch() {
+        final int requestGeneration = ++generation;
+        final String query = requestedQuery;
+        final Snapshot previous = lastSnapshot;
+
+        if (query.isEmpty()) {
+            publish(requestGeneration, Snapshot.unrestricted(query), false, 0);
+            return;
+        }
+
+        runningSearch = executor.submitRead(() -> {
+            long startedAt = SystemClock.uptimeMillis();
+            List<String> terms = FullTextSearch.tokenize(query);
+
+            Snapshot snapshot;
+            boolean narrowed = false;
+            if (previous != null && previous.canNarrowTo(query, terms)) {
+                snapshot = previous.narrow(query, terms);
+                narrowed = true;
+            } else {
+                snapshot = load(query, terms);
+            }
+
+            final Snapshot result = snapshot;
+            final boolean fromCache = narrowed;
+            final long queryMs = SystemClock.uptimeMillis() - startedAt;
+            executor.postToMain(() -> publish(requestGeneration, result, fromCache, queryMs));
+        });
+    }
+
+    private Snapshot load(String query, List<String> terms) {
+        // The list matches blood types on their column, there is nothing to precompute
+        if (FullTextSearch.isBloodType(query)) {
+            return Snapshot.unrestricted(query);
+        }
+
+        String matchQuery = FullTextSearch.toMatchQuery(query);
+        if (matchQuery == null) {
+            return new Snapshot(query, terms, new long[0], null);
+        }
+
+        Map<Long, String> documents = repository.getSearchDocuments(matchQuery, NARROWING_LIMIT + 1);
+        if (documents.size() > NARROWING_LIMIT) {
+            // Too many to hold, the list runs the query itself
+            return Snapshot.unrestricted(query);
+        }
+
+        long[] ids = new long[documents.size()];
+        String[][] tokens = new String[documents.size()][];
+        int i = 0;
+        for (Map.Entry<Long, String> entry : documents.entrySet()) {
+            ids[i] = entry.getKey();
+            tokens[i] = FullTextSearch.sortedTokens(entry.getValue());
+            i++;
+        }
+        return new Snapshot(query, terms, ids, tokens);
+    }
+
+    private void publish(int requestGeneration, Snapshot snapshot, boolean narrowed, long queryMs) {
+        if (requestGeneration != generation) {
+            droppedCount++;
+            return;
+        }
+
+        runningSearch = null;
+        lastSnapshot = snapshot;
+
+        long latencyMs = requestedAt == 0 ? 0 : SystemClock.uptimeMillis() - requestedAt;
+        requestedAt = 0;
+
+        publishedCount++;
+        if (narrowed) {
+            narrowedCount++;
+        }
+        totalLatencyMs += latencyMs;
+        maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+
+        Log.d(TAG, "Search '" + snapshot.query + "' published after " + latencyMs + "ms (query " +
+                queryMs + "ms" + (narrowed ? ", narrowed" : "") + ")");
+        listener.onSearchResult(new SearchResult(snapshot.query, snapshot.ids, narrowed, queryMs, latencyMs));
+    }
+
+    // ==================== METRICS ====================
+
+    public int getPublishedCount() {
+        return publishedCount;
+    }
+
+    public int getNarrowedCount() {
+        return narrowedCount;
+    }
+
+    /**
+     * Get number of results dropped because a newer query superseded them
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    public long getAverageLatencyMs() {
+        return publishedCount == 0 ? 0 : totalLatencyMs / publishedCount;
+    }
+
+    public long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    /**
+     * Get a one-line summary for logging
+     */
+    public String getStatsSummary() {
+        return "search: " + publishedCount + " published (" + narrowedCount + " narrowed, " +
+                droppedCount + " dropped), avg latency " + getAverageLatencyMs() +
+                "ms (max " + maxLatencyMs + "ms)";
+    }
+
+    // ==================== RESULTS ====================
+
+    /**
+     * Published result of one query
+     */
+    public static class SearchResult {
+        private final String query;
+        private final long[] patientIds;
+        private final boolean narrowed;
+        private final long queryTimeMs;
+        private final long latencyMs;
+
+        SearchResult(String query, long[] patientIds, boolean narrowed, long queryTimeMs, long latencyMs) {
+            this.query = query;
+            this.patientIds = patientIds;
+            this.narrowed = narrowed;
+            this.queryTimeMs = queryTimeMs;
+            this.latencyMs = latencyMs;
+        }
+
+        /**
+         * The query text, empty when the search was cleared
+         */
+        public String getQuery() { return query; }
+
+        /**
+         * Ids of the matching active patients, or null when the list has to run the
+         * query itself (cleared search, blood type or too many matches)
+         */
+        @Nullable
+        public long[] getPatientIds() { return patientIds; }
+
+        public boolean isNarrowed() { return narrowed; }
+        public long getQueryTimeMs() { return queryTimeMs; }
+
+        /**
+         * Time from the first keystroke of this query to publishing, including the debounce
+         */
+        public long getLatencyMs() { return latencyMs; }
+    }
+
+    // Result of one query as held between keystrokes, never modified once built
+    private static class Snapshot {
+        final String query;
+        final List<String> terms;
+        final long[] ids;
+        final String[][] tokens; // Sorted document tokens per id, null when not narrowable
+
+        Snapshot(String query, List<String> terms, long[] ids, String[][] tokens) {
+            this.query = query;
+            this.terms = terms;
+            this.ids = ids;
+            this.tokens = tokens;
+        }
+
+        static Snapshot unrestricted(String query) {
+            return new Snapshot(query, new ArrayList<>(), null, null);
+        }
+
+        boolean canNarrowTo(String newQuery, List<String> newTerms) {
+            return tokens != null && !FullTextSearch.isBloodType(newQuery)
+                    && FullTextSearch.narrows(terms, newTerms);
+        }
+
+        Snapshot narrow(String newQuery, List<String> newTerms) {
+            int count = 0;
+            long[] matchedIds = new long[ids.length];
+            String[][] matchedTokens = new String[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                if (FullTextSearch.matchesAll(tokens[i], newTerms)) {
+                    matchedIds[count] = ids[i];
+                    matchedTokens[count] = tokens[i];
+                    count++;
+                }
+            }
+
+            long[] narrowedIds = new long[count];
+            String[][] narrowedTokens = new String[count][];
+            System.arraycopy(matchedIds, 0, narrowedIds, 0, count);
+            System.arraycopy(matchedTokens, 0, narrowedTokens, 0, count);
+            return new Snapshot(newQuery, newTerms, narrowedIds, narrowedTokens);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.david.patientrecords.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Journal mode and connection pragmas applied by DatabaseHelper when the database opens.
+ *
+ * With write-ahead logging the reader pool keeps reading the last committed data while
+ * the writer thread holds a transaction, instead of waiting for the rollback-journal lock.
+ * The pool's reader connections are opened by the platform without a configure hook, so
+ * the cache size and temp store here only tune the writer connection, for large
+ * transactions such as imports and rebuilds.
+ */
+public final class StorageProfile {
+
+    // Write-ahead logging tuned for a phone: NORMAL sync only risks the last commits on power loss, never corruption
+    public static final StorageProfile BALANCED = new StorageProfile("balanced", true, "NORMAL",
+            2048, "MEMORY", 1000, 5 * 60 * 1000L, 30 * 1000L);
+
+    // Write-ahead logging with every commit synced to disk
+    public static final StorageProfile DURABLE = new StorageProfile("durable", true, "FULL",
+            2048, "MEMORY", 1000, 60 * 1000L, 30 * 1000L);
+
+    // The rollback journal the app used before, readers block while a write commits
+    public static final StorageProfile LEGACY = new StorageProfile("legacy", false, "FULL",
+            2000, "DEFAULT", 0, 0, 0);
+
+    private final String name;
+    private final boolean writeAheadLogging;
+    private final String synchronous; // OFF, NORMAL or FULL
+    private final int writerCacheSizeKb;
+    private final String writerTempStore; // DEFAULT, FILE or MEMORY
+    private final int walAutoCheckpointPages; // 0 leaves SQLite's default
+    private final long checkpointIntervalMs; // 0 disables periodic checkpoints
+    private final long idleConnectionTimeoutMs; // 0 keeps idle pool connections open
+
+    public StorageProfile(@NonNull String name, boolean writeAheadLogging, @NonNull String synchronous,
+                          int writerCacheSizeKb, @NonNull String writerTempStore,
+                          int walAutoCheckpointPages, long checkpointIntervalMs, long idleConnectionTimeoutMs) {
+        this.name = name;
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronous = synchronous;
+        this.writerCacheSizeKb = writerCacheSizeKb;
+        this.writerTempStore = writerTempStore;
+        this.walAutoCheckpointPages = walAutoCheckpointPages;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+        this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+    }
+
+    /**
+     * Get a built-in profile by name, or BALANCED if the name is unknown
+     */
+    @NonNull
+    public static StorageProfile forName(String name) {
+        if (DURABLE.name.equals(name)) {
+            return DURABLE;
+        } else if (LEGACY.name.equals(name)) {
+            return LEGACY;
+        }
+        return BALANCED;
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public boolean isWriteAheadLogging() { return writeAheadLogging; }
+    public String getSynchronous() { return synchronous; }
+    public int getWriterCacheSizeKb() { return writerCacheSizeKb; }
+    public String getWriterTempStore() { return writerTempStore; }
+    public int getWalAutoCheckpointPages() { return walAutoCheckpointPages; }
+    public long getCheckpointIntervalMs() { return checkpointIntervalMs; }
+    public long getIdleConnectionTimeoutMs() { return idleConnectionTimeoutMs; }
+
+    @Override
+    public String toString() {
+        return "StorageProfile{" +
+                "name='" + name + '\'' +
+                ", wal=" + writeAheadLogging +
+                ", synchronous=" + synchronous +
+                ", writerCacheSizeKb=" + writerCacheSizeKb +
+                ", writerTempStore=" + writerTempStore +
+                ", walAutoCheckpoint=" + walAutoCheckpointPages +
+                ", checkpointIntervalMs=" + checkpointIntervalMs +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+package com.david.patientrecords.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.david.patientrecords.utils.DateCodec;
+import com.david.patientrecords.utils.VitalSignsParser;
+
+import java.io.Closeable;
+
+/**
+ * Writes the readings VitalSignsParser finds in a record's vital signs text to
+ * vital_observations. One compiled insert is reused for every record written, so a
+ * migration or import batch runs it once per reading rather than preparing it each time.
+ * Callers own the transaction.
+ */
+final class VitalObservationWriter implements VitalSignsParser.Sink, Closeable {
+
+    private final SQLiteDatabase db;
+    private SQLiteStatement insert; // Compiled on the first reading
+    private long patientId;
+    private long recordId;
+    private long observedAt;
+
+    VitalObservationWriter(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Insert the readings of one record, timed at the start of its visit day in local time.
+     * Returns how many were written.
+     */
+    int write(long recordId, long patientId, long visitDay, String vitalSigns) {
+        if (visitDay == DateCodec.INVALID || vitalSigns == null || vitalSigns.trim().isEmpty()) {
+            return 0;
+        }
+        this.recordId = recordId;
+        this.patientId = patientId;
+        this.observedAt = DateCodec.toEpochMillis(visitDay * 24 * 60 * 60);
+        return VitalSignsParser.parse(vitalSigns, this);
+    }
+
+    /**
+     * Replace a record's readings with those in its current text, e.g. after an edit
+     */
+    int replace(long recordId, long patientId, long visitDay, String vitalSigns) {
+        db.delete(DatabaseContract.VitalObservationEntry.TABLE_NAME,
+                DatabaseContract.VitalObservationEntry.COLUMN_RECORD_ID + " = ?",
+                new String[]{String.valueOf(recordId)});
+        return write(recordId, patientId, visitDay, vitalSigns);
+    }
+
+    @Override
+    public void onReading(String metric, double value) {
+        if (insert == null) {
+            insert = db.compileStatement("INSERT INTO " + DatabaseContract.VitalObservationEntry.TABLE_NAME + " (" +
+                    DatabaseContract.VitalObservationEntry.COLUMN_PATIENT_ID + ", " +
+                    DatabaseContract.VitalObservationEntry.COLUMN_RECORD_ID + ", " +
+                    DatabaseContract.VitalObservationEntry.COLUMN_OBSERVED_AT + ", " +
+                    DatabaseContract.VitalObservationEntry.COLUMN_METRIC + ", " +
+                    DatabaseContract.VitalObservationEntry.COLUMN_VALUE + ") VALUES (?, ?, ?, ?, ?)");
+        }
+        insert.bindLong(1, patientId);
+        insert.bindLong(2, recordId);
+        insert.bindLong(3, observedAt);
+        insert.bindString(4, metric);
+        insert.bindDouble(5, value);
+        insert.executeInsert();
+    }
+
+    @Override
+    public void close() {
+        if (insert != null) {
+            insert.close();
+            insert = null;
+        }
+    }
+}
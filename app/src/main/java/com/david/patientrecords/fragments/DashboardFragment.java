@@ -14,7 +14,8 @@ import androidx.cardview.widget.CardView;
 import androidx.fragment.app.Fragment;
 
 import com.david.patientrecords.R;
-import com.david.patientrecords.database.PatientRepository;
+import com.david.patientrecords.database.AsyncPatientRepository;
+import com.david.patientrecords.models.DashboardSnapshot;
 
 public class DashboardFragment extends Fragment {
 
@@ -38,7 +39,7 @@ public class DashboardFragment extends Fragment {
     private CardView cardViewPatients;
 
     // Data
-    private PatientRepository patientRepository;
+    private AsyncPatientRepository asyncRepository;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -46,17 +47,23 @@ public class DashboardFragment extends Fragment {
 
         // Initialize repository
         if (getContext() != null) {
-            patientRepository = PatientRepository.getInstance(getContext());
+            asyncRepository = AsyncPatientRepository.getInstance(getContext());
         }
 
         // Initialize views
         initViews(view);
         setupClickListeners();
-        loadDashboardData();
 
         return view;
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        // Results are bound to the view lifecycle, which is only there from now on
+        loadDashboardData();
+    }
+
     private void initViews(View view) {
         // Header
         welcomeText = view.findViewById(R.id.text_welcome);
@@ -114,49 +121,48 @@ public class DashboardFragment extends Fragment {
     }
 
     private void loadDashboardData() {
-        // Load dashboard statistics
-        if (patientRepository != null) {
-            try {
-                // Get patient count
-                int patientCount = patientRepository.getAllPatients().size();
-                if (textTotalPatients != null) {
-                    textTotalPatients.setText(String.valueOf(patientCount));
-                }
-
-                // Set placeholder values for other statistics
-                if (textMedicalRecords != null) {
-                    textMedicalRecords.setText("0");
-                }
-                if (textMedications != null) {
-                    textMedications.setText("0");
-                }
-                if (textFollowUps != null) {
-                    textFollowUps.setText("0");
-                }
-
-                // Update recent activities message
-                if (textNoRecentRecords != null) {
-                    if (patientCount == 0) {
-                        textNoRecentRecords.setText("No patients found.\nAdd your first patient to get started!");
-                    } else {
-                        textNoRecentRecords.setText("Recent activities will appear here.\nStart by adding medical records for your patients.");
+        if (asyncRepository == null || getView() == null) {
+            return;
+        }
+
+        // Show the last known numbers straight away, the query only replaces them if anything changed
+        DashboardSnapshot cached = asyncRepository.getCachedDashboardSnapshot();
+        if (cached != null) {
+            showSnapshot(cached);
+        }
+
+        // Load dashboard statistics off the UI thread
+        AsyncPatientRepository.bind(getViewLifecycleOwner(), asyncRepository.getDashboardSnapshot())
+                .thenAccept(this::showSnapshot)
+                .exceptionally(e -> {
+                    // Handle any database errors gracefully, keeping cached numbers if there are any
+                    if (cached == null) {
+                        showSnapshot(DashboardSnapshot.empty());
                     }
-                }
-
-            } catch (Exception e) {
-                // Handle any database errors gracefully
-                if (textTotalPatients != null) {
-                    textTotalPatients.setText("0");
-                }
-                if (textMedicalRecords != null) {
-                    textMedicalRecords.setText("0");
-                }
-                if (textMedications != null) {
-                    textMedications.setText("0");
-                }
-                if (textFollowUps != null) {
-                    textFollowUps.setText("0");
-                }
+                    return null;
+                });
+    }
+
+    private void showSnapshot(DashboardSnapshot snapshot) {
+        if (textTotalPatients != null) {
+            textTotalPatients.setText(String.valueOf(snapshot.getTotalPatients()));
+        }
+        if (textMedicalRecords != null) {
+            textMedicalRecords.setText(String.valueOf(snapshot.getMedicalRecordCount()));
+        }
+        if (textMedications != null) {
+            textMedications.setText(String.valueOf(snapshot.getActiveMedicationCount()));
+        }
+        if (textFollowUps != null) {
+            textFollowUps.setText(String.valueOf(snapshot.getUpcomingFollowUpCount()));
+        }
+
+        // Update recent activities message
+        if (textNoRecentRecords != null) {
+            if (snapshot.getTotalPatients() == 0) {
+                textNoRecentRecords.setText("No patients found.\nAdd your first patient to get started!");
+            } else {
+                textNoRecentRecords.setText("Recent activities will appear here.\nStart by adding medical records for your patients.");
             }
         }
     }
@@ -22,6 +22,10 @@ import com.david.patientrecords.activities.AddEditPatientActivity;
 import com.david.patientrecords.activities.PatientDetailActivity;
 import com.david.patientrecords.activities.MedicalRecordActivity;
 import com.david.patientrecords.adapters.PatientsAdapter;
+import com.david.patientrecords.database.BulkExporter;
+import com.david.patientrecords.database.DbExecutor;
+import com.david.patientrecords.database.PatientPagingSource;
+import com.david.patientrecords.database.PatientSearchEngine;
 import com.david.patientrecords.database.PatientRepository;
 import com.david.patientrecords.models.Patient;
 import com.david.patientrecords.utils.Constants;
@@ -29,9 +33,6 @@ import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class PatientsFragment extends Fragment implements PatientsAdapter.OnPatientClickListener {
 
     private static final String TAG = "PatientsFragment";
@@ -49,7 +50,10 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
 
     // Data
     private PatientRepository patientRepository;
-    private List<Patient> allPatients;
+    private PatientPagingSource pagingSource;
+    private PatientSearchEngine searchEngine;
+    private long[] currentSearchIds; // Ids matching currentSearchQuery when the search engine knows them
+    private boolean userRefresh; // Pull-to-refresh in progress, confirm with a toast
     private String currentSearchQuery = "";
     private String currentFilter = "all"; // all, male, female, recent
 
@@ -88,9 +92,23 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
     private void setupRecyclerView() {
         recyclerViewPatients.setLayoutManager(new LinearLayoutManager(getContext()));
 
-        // Initialize with empty list
-        allPatients = new ArrayList<>();
-        patientsAdapter = new PatientsAdapter(getContext(), allPatients, this);
+        // Rows are paged in from the database as the list scrolls
+        pagingSource = new PatientPagingSource(requireContext(), getViewLifecycleOwner(),
+                Constants.ITEMS_PER_PAGE, Constants.PAGE_PREFETCH_DISTANCE,
+                new PatientPagingSource.Listener() {
+                    @Override
+                    public void onRefreshed(int totalCount, int unfilteredCount) {
+                        onPatientsLoaded(totalCount, unfilteredCount);
+                    }
+
+                    @Override
+                    public void onLoadError(Exception e) {
+                        userRefresh = false;
+                        showLoading(false);
+                        showError("Error loading patients: " + e.getMessage());
+                    }
+                });
+        patientsAdapter = new PatientsAdapter(getContext(), pagingSource, this);
         recyclerViewPatients.setAdapter(patientsAdapter);
 
         // Add item decoration for spacing
@@ -99,16 +117,24 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
     }
 
     private void setupSearchView() {
+        // Debounced, the list reloads once typing pauses
+        searchEngine = new PatientSearchEngine(requireContext(), result -> {
+            currentSearchQuery = result.getQuery();
+            currentSearchIds = result.getPatientIds();
+            filterPatients();
+        });
+
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
+                searchEngine.setQuery(query);
+                searchEngine.flush();
                 return false;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                currentSearchQuery = newText;
-                filterPatients();
+                searchEngine.setQuery(newText);
                 return true;
             }
         });
@@ -172,131 +198,44 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
 
     private void loadPatients() {
         showLoading(true);
-
-        // Load patients in background thread
-        new Thread(() -> {
-            try {
-                List<Patient> patients = patientRepository.getAllPatients();
-
-                // Update UI on main thread
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        allPatients = patients;
-                        updatePatientsCount(patients.size());
-                        filterPatients();
-                        showLoading(false);
-                    });
-                }
-
-            } catch (Exception e) {
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        showLoading(false);
-                        showError("Error loading patients: " + e.getMessage());
-                    });
-                }
-            }
-        }).start();
+        filterPatients();
     }
 
     private void refreshPatients() {
         // This method is called when user pulls down to refresh
-        new Thread(() -> {
-            try {
-                // Simulate a small delay to show the refresh animation
-                Thread.sleep(500);
-
-                List<Patient> patients = patientRepository.getAllPatients();
-
-                // Update UI on main thread
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        allPatients = patients;
-                        updatePatientsCount(patients.size());
-                        filterPatients();
-                        swipeRefreshLayout.setRefreshing(false);
-
-                        // Show a toast to indicate refresh completed
-                        Toast.makeText(getContext(), "Patients list updated", Toast.LENGTH_SHORT).show();
-                    });
-                }
+        userRefresh = true;
+        reloadPatients();
+    }
 
-            } catch (Exception e) {
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        swipeRefreshLayout.setRefreshing(false);
-                        showError("Error refreshing patients: " + e.getMessage());
-                    });
-                }
-            }
-        }).start();
+    // Patient data changed, cached search matches may be out of date
+    private void reloadPatients() {
+        searchEngine.invalidate();
+        currentSearchIds = null;
+        filterPatients();
     }
 
     private void filterPatients() {
-        if (allPatients == null) return;
-
-        List<Patient> filteredList = new ArrayList<>();
-
-        for (Patient patient : allPatients) {
-            boolean matchesSearch = matchesSearchQuery(patient, currentSearchQuery);
-            boolean matchesFilter = matchesFilter(patient, currentFilter);
-
-            if (matchesSearch && matchesFilter) {
-                filteredList.add(patient);
-            }
-        }
+        // Search and filter run in SQL, only the first page is loaded here
+        pagingSource.refresh(currentSearchQuery, currentSearchIds, currentFilter);
+    }
 
-        // Update adapter
-        patientsAdapter.updatePatients(filteredList);
+    private void onPatientsLoaded(int totalCount, int unfilteredCount) {
+        showLoading(false);
 
         // Show/hide empty state
-        if (filteredList.isEmpty()) {
+        if (totalCount == 0) {
             showEmptyState();
         } else {
             hideEmptyState();
         }
 
         // Update count
-        updateFilteredCount(filteredList.size());
-    }
-
-    private boolean matchesSearchQuery(Patient patient, String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return true;
-        }
-
-        String lowerQuery = query.toLowerCase().trim();
-
-        return (patient.getPatientName() != null && patient.getPatientName().toLowerCase().contains(lowerQuery)) ||
-                (patient.getPhone() != null && patient.getPhone().contains(lowerQuery)) ||
-                (patient.getBloodType() != null && patient.getBloodType().toLowerCase().contains(lowerQuery));
-    }
-
-    private boolean matchesFilter(Patient patient, String filter) {
-        switch (filter) {
-            case "all":
-                return true;
-            case "male":
-                return "Male".equalsIgnoreCase(patient.getGender());
-            case "female":
-                return "Female".equalsIgnoreCase(patient.getGender());
-            case "recent":
-                // Patients registered in the last 30 days
-                return isRecentPatient(patient);
-            default:
-                return true;
-        }
-    }
-
-    private boolean isRecentPatient(Patient patient) {
-        if (patient.getRegistrationDate() == null) return false;
+        updateFilteredCount(totalCount, unfilteredCount);
 
-        try {
-            // Check if registered within last 30 days
-            String thirtyDaysAgo = com.david.patientrecords.utils.DateUtils.getDateMinusDays(30);
-            return patient.getRegistrationDate().compareTo(thirtyDaysAgo) >= 0;
-        } catch (Exception e) {
-            return false;
+        if (userRefresh) {
+            userRefresh = false;
+            // Show a toast to indicate refresh completed
+            Toast.makeText(getContext(), "Patients list updated", Toast.LENGTH_SHORT).show();
         }
     }
 
@@ -336,9 +275,9 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
         textPatientsCount.setText(count + " patients");
     }
 
-    private void updateFilteredCount(int filteredCount) {
-        if (allPatients != null && filteredCount != allPatients.size()) {
-            textPatientsCount.setText(filteredCount + " of " + allPatients.size() + " patients");
+    private void updateFilteredCount(int filteredCount, int totalCount) {
+        if (filteredCount != totalCount) {
+            textPatientsCount.setText(filteredCount + " of " + totalCount + " patients");
         } else {
             updatePatientsCount(filteredCount);
         }
@@ -408,38 +347,29 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
     private void deletePatient(Patient patient) {
         showLoading(true);
 
-        new Thread(() -> {
-            try {
-                int result = patientRepository.deletePatient(patient.getId());
-
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        showLoading(false);
-
-                        if (result > 0) {
-                            Toast.makeText(getContext(), Constants.SUCCESS_PATIENT_DELETED, Toast.LENGTH_SHORT).show();
-                            // Refresh the list
-                            loadPatients();
-                        } else {
-                            showError("Failed to delete patient");
-                        }
-                    });
-                }
-
-            } catch (Exception e) {
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        showLoading(false);
-                        showError("Error deleting patient: " + e.getMessage());
-                    });
-                }
-            }
-        }).start();
+        DbExecutor.getInstance().write(getViewLifecycleOwner(),
+                () -> patientRepository.deletePatient(patient.getId()),
+                result -> {
+                    showLoading(false);
+
+                    if (result > 0) {
+                        Toast.makeText(getContext(), Constants.SUCCESS_PATIENT_DELETED, Toast.LENGTH_SHORT).show();
+                        // Refresh the list
+                        reloadPatients();
+                    } else {
+                        showError("Failed to delete patient");
+                    }
+                },
+                e -> {
+                    showLoading(false);
+                    showError("Error deleting patient: " + e.getMessage());
+                });
     }
 
     // Public methods for external calls
     public void refreshData() {
-        loadPatients();
+        showLoading(true);
+        reloadPatients();
     }
 
     public void clearSearch() {
@@ -454,10 +384,10 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
     }
 
     public void addNewPatient(Patient patient) {
-        if (patientsAdapter != null) {
-            patientsAdapter.addPatient(patient);
+        if (pagingSource != null) {
+            // The new patient lands at its sorted position, reload from the first page
+            reloadPatients();
             scrollToTop();
-            updatePatientsCount(allPatients.size() + 1);
         }
     }
 
@@ -484,15 +414,20 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
     public void onResume() {
         super.onResume();
         // Refresh data when fragment becomes visible again
-        if (allPatients != null && !allPatients.isEmpty()) {
-            // Only do a light refresh if we already have data
-            filterPatients();
-        } else {
-            // Do a full refresh if we don't have data
+        // Loaded pages are kept, only do a full load if we don't have data
+        if (pagingSource != null && pagingSource.getItemCount() == 0) {
             loadPatients();
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (searchEngine != null) {
+            searchEngine.cancel();
+        }
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -516,43 +451,67 @@ public class PatientsFragment extends Fragment implements PatientsAdapter.OnPati
         }
     }
 
-    // Method to export patient list (for future implementation)
+    // Export the patients matching the current search and filter, with their records and medications
     public void exportPatientList() {
-        // TODO: Implement CSV export functionality
-        Toast.makeText(getContext(), "Export functionality coming soon!", Toast.LENGTH_SHORT).show();
+        Toast.makeText(getContext(), "Exporting " + getFilterSummary().toLowerCase() + "...", Toast.LENGTH_SHORT).show();
+
+        new BulkExporter(requireContext()).start(BulkExporter.Format.CSV, false, currentSearchQuery, currentFilter,
+                new BulkExporter.Listener() {
+                    @Override
+                    public void onProgress(BulkExporter.Progress progress) {
+                        // Exports are fast enough that the finished dialog is all the feedback needed
+                    }
+
+                    @Override
+                    public void onFinished(BulkExporter.ExportReport report) {
+                        if (!isAdded() || report.isCancelled()) {
+                            return;
+                        }
+                        new androidx.appcompat.app.AlertDialog.Builder(requireContext())
+                                .setTitle("Export Successful")
+                                .setMessage("Exported " + report.getPatients() + " patients, " +
+                                        report.getMedicalRecords() + " medical records and " +
+                                        report.getMedications() + " medications to the Downloads folder as " +
+                                        report.getFiles().size() + " CSV files.")
+                                .setPositiveButton("OK", null)
+                                .show();
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        if (isAdded()) {
+                            showError("Export failed: " + e.getMessage());
+                        }
+                    }
+                });
     }
 
     // Method to show patient statistics
     public void showPatientStatistics() {
-        if (allPatients == null || allPatients.isEmpty()) {
-            Toast.makeText(getContext(), "No patients data available", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        // Calculate statistics
-        int totalPatients = allPatients.size();
-        int maleCount = 0, femaleCount = 0, otherCount = 0;
-
-        for (Patient patient : allPatients) {
-            if ("Male".equalsIgnoreCase(patient.getGender())) {
-                maleCount++;
-            } else if ("Female".equalsIgnoreCase(patient.getGender())) {
-                femaleCount++;
-            } else {
-                otherCount++;
-            }
-        }
-
-        String stats = "📊 Patient Statistics\n\n" +
-                "Total Patients: " + totalPatients + "\n" +
-                "👨 Male: " + maleCount + "\n" +
-                "👩 Female: " + femaleCount + "\n" +
-                "⚧ Other: " + otherCount;
+        // Only one page is in memory, count on the database instead
+        DbExecutor.getInstance().read(getViewLifecycleOwner(),
+                () -> patientRepository.getPatientCountByGender(),
+                counts -> {
+                    int maleCount = counts[0], femaleCount = counts[1], otherCount = counts[2];
+                    int totalPatients = maleCount + femaleCount + otherCount;
+
+                    if (totalPatients == 0) {
+                        Toast.makeText(getContext(), "No patients data available", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
 
-        androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(requireContext());
-        builder.setTitle("Patient Statistics")
-                .setMessage(stats)
-                .setPositiveButton("OK", null)
-                .show();
-    }
-}
\ No newline at end of file
+                    String stats = "📊 Patient Statistics\n\n" +
+                            "Total Patients: " + totalPatients + "\n" +
+                            "👨 Male: " + maleCount + "\n" +
+                            "👩 Female: " + femaleCount + "\n" +
+                            "⚧ Other: " + otherCount;
+
+                    androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(requireContext());
+                    builder.setTitle("Patient Statistics")
+                            .setMessage(stats)
+                            .setPositiveButton("OK", null)
+                            .show();
+                },
+                e -> showError("Error loading statistics: " + e.getMessage()));
+    }
+}
@@ -1,20 +1,375 @@
 package com.david.patientrecords.fragments;
 
+import android.content.Context;
+import android.graphics.Typeface;
 import android.os.Bundle;
+import android.text.format.DateUtils;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TableLayout;
+import android.widget.TableRow;
 import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import com.david.patientrecords.R;
+import com.david.patientrecords.database.AsyncPatientRepository;
+import com.david.patientrecords.models.ReportSnapshot;
+import com.david.patientrecords.utils.Constants;
+import com.david.patientrecords.utils.PdfBatchExporter;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 public class ReportsFragment extends Fragment {
+
+    private static final String TAG = "ReportsFragment";
+    private static final int REPORT_MONTHS = 12;
+    private static final int MAX_ROWS = 10; // Longer breakdowns fold the rest into one row
+    private static final String[] MONTH_NAMES = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+            "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    // UI Components
+    private TextView textSummary;
+    private TextView textUpdated;
+    private LinearLayout containerVisitsByMonth;
+    private LinearLayout containerRegistrationsByMonth;
+    private LinearLayout containerVisitsByType;
+    private LinearLayout containerVisitsByDoctor;
+    private LinearLayout containerVisitsBySpecialty;
+    private LinearLayout containerMedicationsByDrug;
+    private LinearLayout containerPatientsByBloodType;
+    private TableLayout tableAgeGender;
+    private Button buttonRecount;
+    private Button buttonExportPdf;
+
+    // Data
+    private AsyncPatientRepository asyncRepository;
+    private PdfBatchExporter.Job pdfJob; // Set while a batch runs
+
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_reports, container, false);
+
+        // Initialize repository
+        if (getContext() != null) {
+            asyncRepository = AsyncPatientRepository.getInstance(getContext());
+        }
+
+        initViews(view);
+        buttonRecount.setOnClickListener(v -> recountReports());
+        buttonExportPdf.setOnClickListener(v -> onExportPdfClicked());
+        if (pdfJob != null) {
+            buttonExportPdf.setText("Cancel PDF Export");
+        }
+
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        // Results are bound to the view lifecycle, which is only there from now on
+        loadReports();
+    }
+
+    private void initViews(View view) {
+        textSummary = view.findViewById(R.id.text_report_summary);
+        textUpdated = view.findViewById(R.id.text_report_updated);
+        containerVisitsByMonth = view.findViewById(R.id.container_visits_by_month);
+        containerRegistrationsByMonth = view.findViewById(R.id.container_registrations_by_month);
+        containerVisitsByType = view.findViewById(R.id.container_visits_by_type);
+        containerVisitsByDoctor = view.findViewById(R.id.container_visits_by_doctor);
+        containerVisitsBySpecialty = view.findViewById(R.id.container_visits_by_specialty);
+        containerMedicationsByDrug = view.findViewById(R.id.container_medications_by_drug);
+        containerPatientsByBloodType = view.findViewById(R.id.container_patients_by_blood_type);
+        tableAgeGender = view.findViewById(R.id.table_age_gender);
+        buttonRecount = view.findViewById(R.id.button_recount_reports);
+        buttonExportPdf = view.findViewById(R.id.button_export_pdf_reports);
+    }
+
+    private void loadReports() {
+        if (asyncRepository == null || getView() == null) {
+            return;
+        }
+
+        // The snapshot is read from the rollup tables, so it costs the same however much data there is
+        AsyncPatientRepository.bind(getViewLifecycleOwner(), asyncRepository.getReportSnapshot(REPORT_MONTHS))
+                .thenAccept(this::showSnapshot)
+                .exceptionally(e -> {
+                    if (textSummary != null) {
+                        textSummary.setText("Unable to load reports");
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Recount the rollups from the source tables, for when the numbers look wrong
+     */
+    private void recountReports() {
+        if (asyncRepository == null) {
+            return;
+        }
+
+        buttonRecount.setEnabled(false);
+        AsyncPatientRepository.bind(getViewLifecycleOwner(), asyncRepository.rebuildReportRollups())
+                .thenAccept(ignored -> {
+                    if (buttonRecount != null) {
+                        buttonRecount.setEnabled(true);
+                        Toast.makeText(getContext(), "Reports recounted", Toast.LENGTH_SHORT).show();
+                        loadReports();
+                    }
+                })
+                .exceptionally(e -> {
+                    if (buttonRecount != null) {
+                        buttonRecount.setEnabled(true);
+                        Toast.makeText(getContext(), "Unable to recount reports", Toast.LENGTH_SHORT).show();
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Pick the patients and whether to bundle their reports; tapping again while a batch
+     * runs cancels it
+     */
+    private void onExportPdfClicked() {
+        if (pdfJob != null) {
+            pdfJob.cancel();
+            buttonExportPdf.setEnabled(false);
+            buttonExportPdf.setText("Cancelling...");
+            return;
+        }
+        if (getContext() == null) {
+            return;
+        }
+
+        String[] choices = new String[2 + Constants.BLOOD_TYPES.length];
+        choices[0] = "All patients";
+        choices[1] = "Patients with follow-ups due";
+        for (int i = 0; i < Constants.BLOOD_TYPES.length; i++) {
+            choices[2 + i] = "Blood type " + Constants.BLOOD_TYPES[i];
+        }
+        final int[] selected = {0};
+
+        androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(getContext());
+        builder.setTitle("Export PDF Reports")
+                .setSingleChoiceItems(choices, 0, (dialog, which) -> selected[0] = which)
+                .setPositiveButton("Combined Report", (dialog, which) ->
+                        startPdfExport(pdfFilter(selected[0]), PdfBatchExporter.Mode.COMBINED))
+                .setNeutralButton("One per Patient", (dialog, which) ->
+                        startPdfExport(pdfFilter(selected[0]), PdfBatchExporter.Mode.PER_PATIENT))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // Same order as the choices in onExportPdfClicked
+    private static PdfBatchExporter.PatientFilter pdfFilter(int choice) {
+        if (choice == 0) {
+            return PdfBatchExporter.PatientFilter.all();
+        } else if (choice == 1) {
+            return PdfBatchExporter.PatientFilter.followUpsDue();
+        }
+        return PdfBatchExporter.PatientFilter.bloodType(Constants.BLOOD_TYPES[choice - 2]);
+    }
+
+    private void startPdfExport(PdfBatchExporter.PatientFilter filter, PdfBatchExporter.Mode mode) {
+        if (getContext() == null) {
+            return;
+        }
+
+        // The batch can outlive this screen
+        Context appContext = getContext().getApplicationContext();
+        pdfJob = new PdfBatchExporter(appContext).start(filter, mode, new PdfBatchExporter.Listener() {
+            @Override
+            public void onProgress(PdfBatchExporter.Progress progress) {
+                if (buttonExportPdf != null && buttonExportPdf.isEnabled()) {
+                    buttonExportPdf.setText("Cancel PDF Export (" + progress.getPercent() + "%)");
+                }
+            }
+
+            @Override
+            public void onFinished(PdfBatchExporter.BatchReport report) {
+                pdfJob = null;
+                resetExportButton();
+                String message = String.format(Locale.US, "%d of %d patients exported, %d pages in %d files",
+                        report.getCompleted(), report.getTotal(), report.getPages(), report.getFiles().size());
+                Toast.makeText(appContext, (report.isCancelled() ? "PDF export cancelled: " : "") + message,
+                        Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                pdfJob = null;
+                resetExportButton();
+                Toast.makeText(appContext, "PDF export failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+        buttonExportPdf.setText("Cancel PDF Export");
+    }
+
+    private void resetExportButton() {
+        if (buttonExportPdf != null) {
+            buttonExportPdf.setEnabled(true);
+            buttonExportPdf.setText("Export PDF Reports");
+        }
+    }
+
+    private void showSnapshot(ReportSnapshot snapshot) {
+        // The view may be gone if the user navigated away while the query ran
+        if (textSummary == null) {
+            return;
+        }
+
+        textSummary.setText(snapshot.getTotalVisits() + " visits, " + snapshot.getTotalActivePatients() +
+                " active patients");
+        textUpdated.setText("Updated " + DateUtils.formatDateTime(getContext(), snapshot.getComputedAt(),
+                DateUtils.FORMAT_SHOW_TIME));
+
+        showMonths(containerVisitsByMonth, snapshot.getMonths(), snapshot.getVisitsByMonth());
+        showMonths(containerRegistrationsByMonth, snapshot.getMonths(), snapshot.getRegistrationsByMonth());
+        showCounts(containerVisitsByType, snapshot.getVisitsByType());
+        showCounts(containerVisitsByDoctor, snapshot.getVisitsByDoctor());
+        showCounts(containerVisitsBySpecialty, snapshot.getVisitsBySpecialty());
+        showCounts(containerMedicationsByDrug, snapshot.getActiveMedicationsByDrug());
+        showCounts(containerPatientsByBloodType, snapshot.getPatientsByBloodType());
+        showAgeGender(snapshot);
+    }
+
+    private void showMonths(LinearLayout container, List<String> months, int[] counts) {
+        container.removeAllViews();
+        int max = 0;
+        for (int count : counts) {
+            max = Math.max(max, count);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            // Keys are yyyy-MM
+            String month = months.get(i);
+            String label = MONTH_NAMES[Integer.parseInt(month.substring(5, 7)) - 1] + " " + month.substring(0, 4);
+            addRow(container, label, counts[i], max);
+        }
+    }
+
+    private void showCounts(LinearLayout container, Map<String, Integer> counts) {
+        container.removeAllViews();
+        if (counts.isEmpty()) {
+            addEmptyRow(container);
+            return;
+        }
+
+        // Counts come largest first, so the first one scales the bars
+        int max = counts.values().iterator().next();
+        int shown = 0;
+        int others = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (shown < MAX_ROWS) {
+                addRow(container, displayName(entry.getKey()), entry.getValue(), max);
+                shown++;
+            } else {
+                others += entry.getValue();
+            }
+        }
+        if (others > 0) {
+            addRow(container, (counts.size() - shown) + " others", others, Math.max(max, others));
+        }
+    }
+
+    private void showAgeGender(ReportSnapshot snapshot) {
+        tableAgeGender.removeAllViews();
+
+        TableRow header = new TableRow(getContext());
+        header.addView(createCell("Age", true));
+        for (String gender : Constants.GENDERS) {
+            header.addView(createCell(gender, true));
+        }
+        header.addView(createCell("Total", true));
+        tableAgeGender.addView(header);
+
+        for (Map.Entry<String, Integer> entry : snapshot.getPatientsByAgeBucket().entrySet()) {
+            TableRow row = new TableRow(getContext());
+            row.addView(createCell(entry.getKey(), true));
+            for (String gender : Constants.GENDERS) {
+                row.addView(createCell(String.valueOf(snapshot.getPatientCount(entry.getKey(), gender)), false));
+            }
+            row.addView(createCell(String.valueOf(entry.getValue()), true));
+            tableAgeGender.addView(row);
+        }
+    }
+
+    private void addRow(LinearLayout container, String label, int count, int max) {
+        View row = getLayoutInflater().inflate(R.layout.item_report_row, container, false);
+        ((TextView) row.findViewById(R.id.text_report_label)).setText(label);
+        ((TextView) row.findViewById(R.id.text_report_count)).setText(String.valueOf(count));
+        ProgressBar bar = row.findViewById(R.id.progress_report_value);
+        bar.setMax(Math.max(max, 1));
+        bar.setProgress(count);
+        container.addView(row);
+    }
+
+    private void addEmptyRow(LinearLayout container) {
+        TextView empty = new TextView(getContext());
+        empty.setText("No data yet");
+        empty.setTextColor(getResources().getColor(R.color.text_secondary));
+        container.addView(empty);
+    }
+
+    private TextView createCell(String text, boolean bold) {
+        TextView cell = new TextView(getContext());
+        cell.setText(text);
+        cell.setGravity(Gravity.CENTER);
+        cell.setPadding(8, 8, 8, 8);
+        cell.setTextColor(getResources().getColor(bold ? R.color.text_primary : R.color.text_secondary));
+        if (bold) {
+            cell.setTypeface(null, Typeface.BOLD);
+        }
+        return cell;
+    }
+
+    // Rollups keep blank fields under ""
+    private static String displayName(String bucket) {
+        return bucket.isEmpty() ? "Unspecified" : bucket;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // Refresh reports when returning to the screen
+        loadReports();
+    }
+
+    /**
+     * Public method to refresh the reports
+     * Called by MainActivity when needed
+     */
+    public void refreshData() {
+        loadReports();
+    }
+
     @Override
-    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        TextView textView = new TextView(getContext());
-        textView.setText("Reports & Analytics\n\nComing Soon!");
-        textView.setTextSize(18);
-        textView.setTextAlignment(TextView.TEXT_ALIGNMENT_CENTER);
-        textView.setPadding(50, 100, 50, 100);
-        return textView;
-    }
-}
\ No newline at end of file
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Clean up references
+        textSummary = null;
+        textUpdated = null;
+        containerVisitsByMonth = null;
+        containerRegistrationsByMonth = null;
+        containerVisitsByType = null;
+        containerVisitsByDoctor = null;
+        containerVisitsBySpecialty = null;
+        containerMedicationsByDrug = null;
+        containerPatientsByBloodType = null;
+        tableAgeGender = null;
+        buttonRecount = null;
+        buttonExportPdf = null;
+    }
+}
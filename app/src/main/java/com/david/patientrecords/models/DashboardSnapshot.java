@@ -0,0 +1,66 @@
+package com.david.patientrecords.models;
+
+/**
+ * Dashboard statistics for active patients, read together from the stats counters
+ */
+public class DashboardSnapshot {
+    private final int totalPatients;
+    private final int maleCount;
+    private final int femaleCount;
+    private final int otherCount;
+    private final int patientsThisMonth;
+    private final int averageAge;
+    private final int medicalRecordCount;
+    private final int activeMedicationCount;
+    private final int upcomingFollowUpCount;
+    private final long computedAt; // Wall-clock millis when the query ran
+
+    public DashboardSnapshot(int totalPatients, int maleCount, int femaleCount, int otherCount,
+                             int patientsThisMonth, int averageAge, int medicalRecordCount,
+                             int activeMedicationCount, int upcomingFollowUpCount, long computedAt) {
+        this.totalPatients = totalPatients;
+        this.maleCount = maleCount;
+        this.femaleCount = femaleCount;
+        this.otherCount = otherCount;
+        this.patientsThisMonth = patientsThisMonth;
+        this.averageAge = averageAge;
+        this.medicalRecordCount = medicalRecordCount;
+        this.activeMedicationCount = activeMedicationCount;
+        this.upcomingFollowUpCount = upcomingFollowUpCount;
+        this.computedAt = computedAt;
+    }
+
+    /**
+     * Snapshot with every count at zero, used when the query fails
+     */
+    public static DashboardSnapshot empty() {
+        return new DashboardSnapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, System.currentTimeMillis());
+    }
+
+    // Getters
+    public int getTotalPatients() { return totalPatients; }
+    public int getMaleCount() { return maleCount; }
+    public int getFemaleCount() { return femaleCount; }
+    public int getOtherCount() { return otherCount; }
+    public int getPatientsThisMonth() { return patientsThisMonth; }
+    public int getAverageAge() { return averageAge; }
+    public int getMedicalRecordCount() { return medicalRecordCount; }
+    public int getActiveMedicationCount() { return activeMedicationCount; }
+    public int getUpcomingFollowUpCount() { return upcomingFollowUpCount; }
+    public long getComputedAt() { return computedAt; }
+
+    @Override
+    public String toString() {
+        return "DashboardSnapshot{" +
+                "totalPatients=" + totalPatients +
+                ", male=" + maleCount +
+                ", female=" + femaleCount +
+                ", other=" + otherCount +
+                ", thisMonth=" + patientsThisMonth +
+                ", averageAge=" + averageAge +
+                ", records=" + medicalRecordCount +
+                ", medications=" + activeMedicationCount +
+                ", followUps=" + upcomingFollowUpCount +
+                '}';
+    }
+}
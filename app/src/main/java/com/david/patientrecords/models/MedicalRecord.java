@@ -1,9 +1,11 @@
 package com.david.patientrecords.models;
 
+import com.david.patientrecords.utils.DateCodec;
+
 public class MedicalRecord {
     private long id;
     private long patientId;
-    private String visitDate;
+    private long visitDay = DateCodec.INVALID; // Epoch day
     private String symptoms;
     private String diagnosis;
     private String treatment;
@@ -11,10 +13,10 @@ public class MedicalRecord {
     private String doctorSpecialty;
     private String vitalSigns; // JSON format
     private String notes;
-    private String followUpDate;
+    private long followUpDay = DateCodec.INVALID; // Epoch day, INVALID when none
     private String visitType;
-    private String createdAt;
-    private String updatedAt;
+    private long createdAt; // Epoch milliseconds
+    private long updatedAt;
 
     // Additional fields for display
     private String patientName; // When joining with Patient table
@@ -36,7 +38,7 @@ public class MedicalRecord {
                          String doctorSpecialty, String notes) {
         this.id = id;
         this.patientId = patientId;
-        this.visitDate = visitDate;
+        setVisitDate(visitDate);
         this.symptoms = symptoms;
         this.diagnosis = diagnosis;
         this.treatment = treatment;
@@ -52,8 +54,12 @@ public class MedicalRecord {
     public long getPatientId() { return patientId; }
     public void setPatientId(long patientId) { this.patientId = patientId; }
 
-    public String getVisitDate() { return visitDate; }
-    public void setVisitDate(String visitDate) { this.visitDate = visitDate; }
+    public long getVisitDay() { return visitDay; }
+    public void setVisitDay(long visitDay) { this.visitDay = visitDay; }
+
+    // yyyy-MM-dd, or null when not set
+    public String getVisitDate() { return formatDay(visitDay); }
+    public void setVisitDate(String visitDate) { this.visitDay = DateCodec.parseEpochDayLenient(visitDate); }
 
     public String getSymptoms() { return symptoms; }
     public void setSymptoms(String symptoms) { this.symptoms = symptoms; }
@@ -76,17 +82,21 @@ public class MedicalRecord {
     public String getNotes() { return notes; }
     public void setNotes(String notes) { this.notes = notes; }
 
-    public String getFollowUpDate() { return followUpDate; }
-    public void setFollowUpDate(String followUpDate) { this.followUpDate = followUpDate; }
+    public long getFollowUpDay() { return followUpDay; }
+    public void setFollowUpDay(long followUpDay) { this.followUpDay = followUpDay; }
+
+    // yyyy-MM-dd, or null when no follow-up is scheduled
+    public String getFollowUpDate() { return formatDay(followUpDay); }
+    public void setFollowUpDate(String followUpDate) { this.followUpDay = DateCodec.parseEpochDayLenient(followUpDate); }
 
     public String getVisitType() { return visitType; }
     public void setVisitType(String visitType) { this.visitType = visitType; }
 
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
 
-    public String getUpdatedAt() { return updatedAt; }
-    public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
 
     public String getPatientName() { return patientName; }
     public void setPatientName(String patientName) { this.patientName = patientName; }
@@ -99,12 +109,16 @@ public class MedicalRecord {
         return doctorName != null ? doctorName : "Unknown Doctor";
     }
 
+    private static String formatDay(long epochDay) {
+        return epochDay != DateCodec.INVALID ? DateCodec.formatEpochDay(epochDay) : null;
+    }
+
     @Override
     public String toString() {
         return "MedicalRecord{" +
                 "id=" + id +
                 ", patientId=" + patientId +
-                ", visitDate='" + visitDate + '\'' +
+                ", visitDate='" + getVisitDate() + '\'' +
                 ", diagnosis='" + diagnosis + '\'' +
                 ", doctorName='" + doctorName + '\'' +
                 '}';
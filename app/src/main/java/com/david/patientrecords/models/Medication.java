@@ -1,5 +1,7 @@
 package com.david.patientrecords.models;
 
+import com.david.patientrecords.utils.DateCodec;
+
 public class Medication {
     private long id;
     private long patientId;
@@ -7,16 +9,16 @@ public class Medication {
     private String genericName;
     private String dosage;
     private String frequency;
-    private String startDate;
-    private String endDate;
+    private long startDay = DateCodec.INVALID; // Epoch days, INVALID when not set
+    private long endDay = DateCodec.INVALID;
     private String prescribedBy;
     private String instructions;
     private String sideEffects;
     private boolean isActive;
     private int refillsRemaining;
     private String pharmacyName;
-    private String createdAt;
-    private String updatedAt;
+    private long createdAt; // Epoch milliseconds
+    private long updatedAt;
 
     // Additional fields for comprehensive medication management
     private String medicationType;
@@ -51,8 +53,8 @@ public class Medication {
         this.genericName = genericName;
         this.dosage = dosage;
         this.frequency = frequency;
-        this.startDate = startDate;
-        this.endDate = endDate;
+        setStartDate(startDate);
+        setEndDate(endDate);
         this.prescribedBy = prescribedBy;
         this.instructions = instructions;
         this.isActive = true;
@@ -107,20 +109,37 @@ public class Medication {
         this.frequency = frequency;
     }
 
+    public long getStartDay() {
+        return startDay;
+    }
+
+    public void setStartDay(long startDay) {
+        this.startDay = startDay;
+    }
+
+    public long getEndDay() {
+        return endDay;
+    }
+
+    public void setEndDay(long endDay) {
+        this.endDay = endDay;
+    }
+
+    // yyyy-MM-dd, or null when not set
     public String getStartDate() {
-        return startDate;
+        return formatDay(startDay);
     }
 
     public void setStartDate(String startDate) {
-        this.startDate = startDate;
+        this.startDay = DateCodec.parseEpochDayLenient(startDate);
     }
 
     public String getEndDate() {
-        return endDate;
+        return formatDay(endDay);
     }
 
     public void setEndDate(String endDate) {
-        this.endDate = endDate;
+        this.endDay = DateCodec.parseEpochDayLenient(endDate);
     }
 
     public String getPrescribedBy() {
@@ -171,19 +190,19 @@ public class Medication {
         this.pharmacyName = pharmacyName;
     }
 
-    public String getCreatedAt() {
+    public long getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
 
-    public String getUpdatedAt() {
+    public long getUpdatedAt() {
         return updatedAt;
     }
 
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(long updatedAt) {
         this.updatedAt = updatedAt;
     }
 
@@ -256,15 +275,17 @@ public class Medication {
     }
 
     public boolean isExpired() {
-        // This would need DateUtils to properly compare dates
-        // For now, just return false
-        return false;
+        return endDay != DateCodec.INVALID && endDay < DateCodec.todayEpochDay();
     }
 
+    // Ends within the next 7 days
     public boolean isExpiringSoon() {
-        // This would need DateUtils to check if medication expires within 7 days
-        // For now, just return false
-        return false;
+        long today = DateCodec.todayEpochDay();
+        return endDay != DateCodec.INVALID && endDay >= today && endDay <= today + 7;
+    }
+
+    private static String formatDay(long epochDay) {
+        return epochDay != DateCodec.INVALID ? DateCodec.formatEpochDay(epochDay) : null;
     }
 
     @Override
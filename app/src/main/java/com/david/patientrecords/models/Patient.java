@@ -1,5 +1,7 @@
 package com.david.patientrecords.models;
 
+import com.david.patientrecords.utils.DateCodec;
+
 public class Patient {
     private long id;
     private String patientName;
@@ -14,10 +16,10 @@ public class Patient {
     private String allergies;
     private String profileImage; // Keep for backward compatibility
     private String imagePath; // New field for image paths
-    private String registrationDate;
+    private long registrationDay = DateCodec.INVALID; // Epoch day, INVALID when not set
     private boolean isActive;
-    private String createdAt;
-    private String updatedAt;
+    private long createdAt; // Epoch milliseconds
+    private long updatedAt;
 
     // Default constructor
     public Patient() {
@@ -38,7 +40,7 @@ public class Patient {
         this.emergencyPhone = emergencyPhone;
         this.medicalConditions = medicalConditions;
         this.allergies = allergies;
-        this.registrationDate = registrationDate;
+        setRegistrationDate(registrationDate);
         this.imagePath = imagePath;
         this.isActive = true;
     }
@@ -58,7 +60,7 @@ public class Patient {
         this.emergencyPhone = emergencyPhone;
         this.medicalConditions = medicalConditions;
         this.allergies = allergies;
-        this.registrationDate = registrationDate;
+        setRegistrationDate(registrationDate);
         this.imagePath = imagePath;
         this.isActive = true;
     }
@@ -178,12 +180,21 @@ public class Patient {
         this.imagePath = imagePath;
     }
 
+    public long getRegistrationDay() {
+        return registrationDay;
+    }
+
+    public void setRegistrationDay(long registrationDay) {
+        this.registrationDay = registrationDay;
+    }
+
+    // yyyy-MM-dd, or null when not set
     public String getRegistrationDate() {
-        return registrationDate;
+        return registrationDay != DateCodec.INVALID ? DateCodec.formatEpochDay(registrationDay) : null;
     }
 
     public void setRegistrationDate(String registrationDate) {
-        this.registrationDate = registrationDate;
+        this.registrationDay = DateCodec.parseEpochDayLenient(registrationDate);
     }
 
     public boolean isActive() {
@@ -194,19 +205,19 @@ public class Patient {
         isActive = active;
     }
 
-    public String getCreatedAt() {
+    public long getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
 
-    public String getUpdatedAt() {
+    public long getUpdatedAt() {
         return updatedAt;
     }
 
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(long updatedAt) {
         this.updatedAt = updatedAt;
     }
 
@@ -219,7 +230,7 @@ public class Patient {
                 ", gender='" + gender + '\'' +
                 ", bloodType='" + bloodType + '\'' +
                 ", phone='" + phone + '\'' +
-                ", registrationDate='" + registrationDate + '\'' +
+                ", registrationDate='" + getRegistrationDate() + '\'' +
                 ", isActive=" + isActive +
                 '}';
     }
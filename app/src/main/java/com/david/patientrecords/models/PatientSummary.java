@@ -0,0 +1,40 @@
+package com.david.patientrecords.models;
+
+import com.david.patientrecords.utils.DateCodec;
+
+/**
+ * Aggregated counts shown on a patient card, loaded in one query per page of patients
+ */
+public class PatientSummary {
+    private final long patientId;
+    private final int recordCount;
+    private final int activeMedicationCount;
+    private final long lastVisitDay; // Epoch day, DateCodec.INVALID when the patient has no visits
+
+    public PatientSummary(long patientId, int recordCount, int activeMedicationCount, long lastVisitDay) {
+        this.patientId = patientId;
+        this.recordCount = recordCount;
+        this.activeMedicationCount = activeMedicationCount;
+        this.lastVisitDay = lastVisitDay;
+    }
+
+    // Getters
+    public long getPatientId() { return patientId; }
+    public int getRecordCount() { return recordCount; }
+    public int getActiveMedicationCount() { return activeMedicationCount; }
+    public long getLastVisitDay() { return lastVisitDay; }
+
+    public boolean hasVisits() {
+        return lastVisitDay != DateCodec.INVALID;
+    }
+
+    @Override
+    public String toString() {
+        return "PatientSummary{" +
+                "patientId=" + patientId +
+                ", recordCount=" + recordCount +
+                ", activeMedicationCount=" + activeMedicationCount +
+                ", lastVisitDay=" + lastVisitDay +
+                '}';
+    }
+}
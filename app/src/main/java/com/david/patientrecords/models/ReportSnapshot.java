@@ -0,0 +1,164 @@
+package com.david.patientrecords.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the reports screen shows, read together from the report rollups.
+ *
+ * Counts by name are ordered largest first; an empty name stands for records where the
+ * field was left blank. Month series cover the same months, oldest first, with zeros
+ * for months without any.
+ */
+public class ReportSnapshot {
+
+    /**
+     * Active patients of one age bucket, gender and blood type
+     */
+    public static class CrossTabCell {
+        private final String ageBucket;
+        private final String gender;
+        private final String bloodType;
+        private final int count;
+
+        public CrossTabCell(String ageBucket, String gender, String bloodType, int count) {
+            this.ageBucket = ageBucket;
+            this.gender = gender;
+            this.bloodType = bloodType;
+            this.count = count;
+        }
+
+        public String getAgeBucket() { return ageBucket; }
+        public String getGender() { return gender; }
+        public String getBloodType() { return bloodType; }
+        public int getCount() { return count; }
+    }
+
+    private final List<String> months; // yyyy-MM
+    private final int[] visitsByMonth;
+    private final int[] registrationsByMonth;
+    private final Map<String, Integer> visitsByType;
+    private final Map<String, Integer> visitsByDoctor;
+    private final Map<String, Integer> visitsBySpecialty;
+    private final Map<String, Integer> activeMedicationsByDrug;
+    private final List<CrossTabCell> crossTab;
+    private final Map<String, Integer> patientsByAgeBucket;
+    private final Map<String, Integer> patientsByGender;
+    private final Map<String, Integer> patientsByBloodType;
+    private final long computedAt; // Wall-clock millis when the query ran
+
+    /**
+     * ageBuckets gives the order of the age breakdown, cross-tab cells may come in any order
+     */
+    public ReportSnapshot(List<String> months, int[] visitsByMonth, int[] registrationsByMonth,
+                          Map<String, Integer> visitsByType, Map<String, Integer> visitsByDoctor,
+                          Map<String, Integer> visitsBySpecialty, Map<String, Integer> activeMedicationsByDrug,
+                          List<CrossTabCell> crossTab, String[] ageBuckets, long computedAt) {
+        this.months = Collections.unmodifiableList(new ArrayList<>(months));
+        this.visitsByMonth = visitsByMonth;
+        this.registrationsByMonth = registrationsByMonth;
+        this.visitsByType = largestFirst(visitsByType);
+        this.visitsByDoctor = largestFirst(visitsByDoctor);
+        this.visitsBySpecialty = largestFirst(visitsBySpecialty);
+        this.activeMedicationsByDrug = largestFirst(activeMedicationsByDrug);
+        this.crossTab = Collections.unmodifiableList(new ArrayList<>(crossTab));
+        this.computedAt = computedAt;
+
+        // The one-way breakdowns are the cross-tab's margins
+        Map<String, Integer> byAge = new LinkedHashMap<>();
+        for (String ageBucket : ageBuckets) {
+            byAge.put(ageBucket, 0);
+        }
+        Map<String, Integer> byGender = new LinkedHashMap<>();
+        Map<String, Integer> byBloodType = new LinkedHashMap<>();
+        for (CrossTabCell cell : crossTab) {
+            add(byAge, cell.ageBucket, cell.count);
+            add(byGender, cell.gender, cell.count);
+            add(byBloodType, cell.bloodType, cell.count);
+        }
+        this.patientsByAgeBucket = Collections.unmodifiableMap(byAge);
+        this.patientsByGender = largestFirst(byGender);
+        this.patientsByBloodType = largestFirst(byBloodType);
+    }
+
+    /**
+     * Snapshot with every count at zero, used when the query fails
+     */
+    public static ReportSnapshot empty(List<String> months, String[] ageBuckets) {
+        Map<String, Integer> none = Collections.emptyMap();
+        return new ReportSnapshot(months, new int[months.size()], new int[months.size()], none, none, none, none,
+                Collections.<CrossTabCell>emptyList(), ageBuckets, System.currentTimeMillis());
+    }
+
+    private static void add(Map<String, Integer> counts, String name, int count) {
+        Integer current = counts.get(name);
+        counts.put(name, current == null ? count : current + count);
+    }
+
+    private static Map<String, Integer> largestFirst(Map<String, Integer> counts) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        Collections.sort(entries, (a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    /**
+     * Active patients in one age bucket and gender, summed over blood types
+     */
+    public int getPatientCount(String ageBucket, String gender) {
+        int count = 0;
+        for (CrossTabCell cell : crossTab) {
+            if (cell.ageBucket.equals(ageBucket) && cell.gender.equals(gender)) {
+                count += cell.count;
+            }
+        }
+        return count;
+    }
+
+    public int getTotalVisits() {
+        int total = 0;
+        for (int count : visitsByType.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public int getTotalActivePatients() {
+        int total = 0;
+        for (CrossTabCell cell : crossTab) {
+            total += cell.count;
+        }
+        return total;
+    }
+
+    // Getters
+    public List<String> getMonths() { return months; }
+    public int[] getVisitsByMonth() { return visitsByMonth; }
+    public int[] getRegistrationsByMonth() { return registrationsByMonth; }
+    public Map<String, Integer> getVisitsByType() { return visitsByType; }
+    public Map<String, Integer> getVisitsByDoctor() { return visitsByDoctor; }
+    public Map<String, Integer> getVisitsBySpecialty() { return visitsBySpecialty; }
+    public Map<String, Integer> getActiveMedicationsByDrug() { return activeMedicationsByDrug; }
+    public List<CrossTabCell> getCrossTab() { return crossTab; }
+    public Map<String, Integer> getPatientsByAgeBucket() { return patientsByAgeBucket; }
+    public Map<String, Integer> getPatientsByGender() { return patientsByGender; }
+    public Map<String, Integer> getPatientsByBloodType() { return patientsByBloodType; }
+    public long getComputedAt() { return computedAt; }
+
+    @Override
+    public String toString() {
+        return "ReportSnapshot{" +
+                "months=" + months.size() +
+                ", visits=" + getTotalVisits() +
+                ", doctors=" + visitsByDoctor.size() +
+                ", drugs=" + activeMedicationsByDrug.size() +
+                ", activePatients=" + getTotalActivePatients() +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package com.david.patientrecords.models;
+
+/**
+ * One numeric vital-sign reading from a medical record, as stored in vital_observations
+ */
+public class VitalObservation {
+
+    // Metric codes, each stored in the unit noted
+    public static final String METRIC_BP_SYSTOLIC = "bp_systolic"; // mmHg
+    public static final String METRIC_BP_DIASTOLIC = "bp_diastolic"; // mmHg
+    public static final String METRIC_HEART_RATE = "heart_rate"; // beats per minute
+    public static final String METRIC_RESPIRATORY_RATE = "respiratory_rate"; // breaths per minute
+    public static final String METRIC_TEMPERATURE = "temperature"; // °C
+    public static final String METRIC_SPO2 = "spo2"; // %
+    public static final String METRIC_WEIGHT = "weight"; // kg
+    public static final String METRIC_HEIGHT = "height"; // cm
+    public static final String METRIC_BMI = "bmi"; // kg/m²
+    public static final String METRIC_GLUCOSE = "glucose"; // mg/dL
+
+    private final long id;
+    private final long patientId;
+    private final long recordId;
+    private final long observedAt; // Epoch milliseconds
+    private final String metric;
+    private final double value;
+
+    public VitalObservation(long id, long patientId, long recordId, long observedAt, String metric, double value) {
+        this.id = id;
+        this.patientId = patientId;
+        this.recordId = recordId;
+        this.observedAt = observedAt;
+        this.metric = metric;
+        this.value = value;
+    }
+
+    /**
+     * Display unit of a metric code, empty for unknown codes
+     */
+    public static String getUnit(String metric) {
+        if (metric == null) {
+            return "";
+        }
+        switch (metric) {
+            case METRIC_BP_SYSTOLIC:
+            case METRIC_BP_DIASTOLIC:
+                return "mmHg";
+            case METRIC_HEART_RATE:
+                return "bpm";
+            case METRIC_RESPIRATORY_RATE:
+                return "/min";
+            case METRIC_TEMPERATURE:
+                return "°C";
+            case METRIC_SPO2:
+                return "%";
+            case METRIC_WEIGHT:
+                return "kg";
+            case METRIC_HEIGHT:
+                return "cm";
+            case METRIC_BMI:
+                return "kg/m²";
+            case METRIC_GLUCOSE:
+                return "mg/dL";
+            default:
+                return "";
+        }
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public long getPatientId() { return patientId; }
+    public long getRecordId() { return recordId; }
+    public long getObservedAt() { return observedAt; }
+    public String getMetric() { return metric; }
+    public double getValue() { return value; }
+
+    @Override
+    public String toString() {
+        return "VitalObservation{" +
+                "patientId=" + patientId +
+                ", recordId=" + recordId +
+                ", observedAt=" + observedAt +
+                ", metric='" + metric + '\'' +
+                ", value=" + value +
+                '}';
+    }
+}
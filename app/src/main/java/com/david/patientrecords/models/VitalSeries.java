@@ -0,0 +1,72 @@
+package com.david.patientrecords.models;
+
+/**
+ * A metric's readings for one patient downsampled into fixed-width time buckets, for charting.
+ * Only buckets that hold readings are present, in time order.
+ */
+public class VitalSeries {
+    private final String metric;
+    private final long bucketMillis;
+    private final long[] bucketStarts; // Epoch milliseconds
+    private final double[] minimums;
+    private final double[] maximums;
+    private final double[] averages;
+    private final int[] counts;
+
+    public VitalSeries(String metric, long bucketMillis, long[] bucketStarts, double[] minimums,
+                       double[] maximums, double[] averages, int[] counts) {
+        this.metric = metric;
+        this.bucketMillis = bucketMillis;
+        this.bucketStarts = bucketStarts;
+        this.minimums = minimums;
+        this.maximums = maximums;
+        this.averages = averages;
+        this.counts = counts;
+    }
+
+    /**
+     * Series with no buckets, used when the query fails
+     */
+    public static VitalSeries empty(String metric, long bucketMillis) {
+        return new VitalSeries(metric, bucketMillis, new long[0], new double[0], new double[0],
+                new double[0], new int[0]);
+    }
+
+    public int size() {
+        return bucketStarts.length;
+    }
+
+    public boolean isEmpty() {
+        return bucketStarts.length == 0;
+    }
+
+    /**
+     * Number of readings across all buckets
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Getters, by bucket index
+    public String getMetric() { return metric; }
+    public long getBucketMillis() { return bucketMillis; }
+    public long getBucketStart(int index) { return bucketStarts[index]; }
+    public double getMin(int index) { return minimums[index]; }
+    public double getMax(int index) { return maximums[index]; }
+    public double getAverage(int index) { return averages[index]; }
+    public int getCount(int index) { return counts[index]; }
+
+    @Override
+    public String toString() {
+        return "VitalSeries{" +
+                "metric='" + metric + '\'' +
+                ", bucketMillis=" + bucketMillis +
+                ", buckets=" + bucketStarts.length +
+                ", readings=" + getTotalCount() +
+                '}';
+    }
+}
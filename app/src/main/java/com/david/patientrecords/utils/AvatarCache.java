@@ -0,0 +1,150 @@
+package com.david.patientrecords.utils;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared initials avatars, keyed by initials, color and size.
+ *
+ * Patients with the same initials and color share one bitmap, so rebinding a row never
+ * draws a new avatar once it is cached. The cache is bounded by bitmap bytes. Pages of
+ * names can be pre-warmed on a background thread before their rows are bound.
+ *
+ * The bitmaps are shared: callers must not draw on or recycle them.
+ */
+public class AvatarCache {
+
+    private static final String TAG = "AvatarCache";
+
+    private static AvatarCache instance;
+
+    private final LruCache<String, Bitmap> cache;
+    private final ExecutorService prewarmExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong prewarmed = new AtomicLong();
+
+    // Singleton pattern
+    public static synchronized AvatarCache getInstance() {
+        if (instance == null) {
+            instance = new AvatarCache();
+        }
+        return instance;
+    }
+
+    private AvatarCache() {
+        cache = new LruCache<String, Bitmap>(Constants.AVATAR_CACHE_SIZE) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+        prewarmExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "avatar-prewarm"));
+    }
+
+    /**
+     * The avatar for a name, drawn only if it is not cached yet
+     */
+    public Bitmap getAvatar(String patientName, int size) {
+        return getAvatar(ImageUtils.getInitials(patientName), ImageUtils.getColorForName(patientName), size);
+    }
+
+    public Bitmap getAvatar(String initials, int color, int size) {
+        String key = key(initials, color, size);
+        Bitmap avatar = cache.get(key);
+        if (avatar != null) {
+            hits.incrementAndGet();
+            return avatar;
+        }
+
+        avatar = ImageUtils.createInitialsAvatar(initials, size, color);
+        created.incrementAndGet();
+        cache.put(key, avatar);
+        return avatar;
+    }
+
+    /**
+     * Draw the avatars for a page of names on a background thread, so binding their rows
+     * finds them cached. Call with the names of rows about to be shown.
+     */
+    public void prewarm(List<String> patientNames, int size) {
+        prewarmExecutor.execute(() -> {
+            int drawn = 0;
+            for (String patientName : patientNames) {
+                String initials = ImageUtils.getInitials(patientName);
+                int color = ImageUtils.getColorForName(patientName);
+                String key = key(initials, color, size);
+                if (cache.get(key) == null) {
+                    // A bind racing this may draw the same avatar, the second put just replaces the first
+                    cache.put(key, ImageUtils.createInitialsAvatar(initials, size, color));
+                    drawn++;
+                }
+            }
+            if (drawn > 0) {
+                prewarmed.addAndGet(drawn);
+                Log.d(TAG, "Pre-warmed " + drawn + " avatars at " + size + "px");
+            }
+        });
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    private static String key(String initials, int color, int size) {
+        return initials + '|' + Integer.toHexString(color) + '|' + size;
+    }
+
+    // ==================== STATS ====================
+
+    public Stats getStats() {
+        return new Stats(hits.get(), created.get(), prewarmed.get(), cache.size(), cache.maxSize());
+    }
+
+    /**
+     * Lookup counts since the app started; created counts avatars drawn while binding
+     */
+    public static class Stats {
+        private final long hits;
+        private final long created;
+        private final long prewarmed;
+        private final int bytes;
+        private final int maxBytes;
+
+        Stats(long hits, long created, long prewarmed, int bytes, int maxBytes) {
+            this.hits = hits;
+            this.created = created;
+            this.prewarmed = prewarmed;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+        }
+
+        public long getHits() { return hits; }
+        public long getCreated() { return created; }
+        public long getPrewarmed() { return prewarmed; }
+        public int getBytes() { return bytes; }
+        public int getMaxBytes() { return maxBytes; }
+
+        public double getHitRate() {
+            long lookups = hits + created;
+            return lookups > 0 ? (double) hits / lookups : 0;
+        }
+
+        public String getSummary() {
+            return String.format(java.util.Locale.US,
+                    "Avatars: %.0f%% hits, %d drawn on bind, %d pre-warmed, %d/%d KB",
+                    getHitRate() * 100, created, prewarmed, bytes / 1024, maxBytes / 1024);
+        }
+    }
+}
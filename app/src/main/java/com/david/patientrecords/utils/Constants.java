@@ -13,6 +13,7 @@ public class Constants {
     public static final int REQUEST_IMAGE_GALLERY = 1008;
     public static final int REQUEST_PERMISSION_CAMERA = 1009;
     public static final int REQUEST_PERMISSION_STORAGE = 1010;
+    public static final int REQUEST_IMPORT_FILE = 1011;
 
     // Intent extras
     public static final String EXTRA_PATIENT_ID = "patient_id";
@@ -70,6 +71,10 @@ public class Constants {
     // Image settings
     public static final int MAX_IMAGE_SIZE = 1024; // pixels
     public static final int JPEG_QUALITY = 85; // compression quality
+    public static final int THUMBNAIL_SIZE = 256; // pixels, shorter side of cached thumbnails
+    public static final long THUMBNAIL_DISK_CACHE_SIZE = 20 * 1024 * 1024; // bytes
+    public static final int AVATAR_CACHE_SIZE = 8 * 1024 * 1024; // bytes of initials avatars kept in memory
+    public static final int DEFAULT_AVATAR_SIZE = 200; // pixels, smallest initials avatar drawn
 
     // Animation durations
     public static final int ANIMATION_DURATION_SHORT = 200;
@@ -79,9 +84,16 @@ public class Constants {
     // Search settings
     public static final int SEARCH_DELAY_MS = 300; // Delay before performing search
     public static final int MIN_SEARCH_LENGTH = 2; // Minimum characters to trigger search
+    public static final int MAX_SEARCH_RESULTS = 50; // Top-ranked matches returned by full-text search
 
     // UI Constants
     public static final int ITEMS_PER_PAGE = 20;
+    public static final int PAGE_PREFETCH_DISTANCE = 10;
+    public static final long DASHBOARD_SNAPSHOT_MAX_AGE_MS = 5 * 60 * 1000; // Recompute date-relative counts at least this often
+    public static final int IMPORT_BATCH_SIZE = 1000; // Rows per bulk import transaction
+    public static final int REPORT_RECORDS_PAGE_SIZE = 100; // Medical records read at a time while laying out a PDF report
+    public static final int BACKUP_GENERATIONS = 7; // Backups kept in BACKUP_FOLDER, the oldest are deleted first
+    public static final long BACKUP_INTERVAL_MS = 24 * 60 * 60 * 1000; // Automatic backups run at most this often
     public static final int CARD_CORNER_RADIUS = 16;
     public static final int CARD_ELEVATION = 8;
 
@@ -89,8 +101,11 @@ public class Constants {
     public static final String PREFS_NAME = "PatientRecordsPrefs";
     public static final String PREF_FIRST_RUN = "first_run";
     public static final String PREF_LAST_BACKUP = "last_backup";
+    public static final String PREF_LAST_BACKUP_SUMMARY = "last_backup_summary";
     public static final String PREF_THEME_MODE = "theme_mode";
     public static final String PREF_SORT_ORDER = "sort_order";
+    public static final String PREF_STORAGE_PROFILE = "storage_profile";
+    public static final String PREF_LAST_IMAGE_GC = "last_image_gc";
 
     // Sort options
     public static final String SORT_BY_NAME = "name";
@@ -122,4 +137,5 @@ public class Constants {
     public static final String IMAGES_FOLDER = "patient_images";
     public static final String BACKUP_FOLDER = "backups";
     public static final String TEMP_FOLDER = "temp";
+    public static final String THUMBNAILS_FOLDER = "thumbnails"; // Under the cache dir
 }
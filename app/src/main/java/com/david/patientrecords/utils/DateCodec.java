@@ -0,0 +1,343 @@
+package com.david.patientrecords.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Parsing and formatting for the dates the database stores, without SimpleDateFormat
+ * on the hot path.
+ *
+ * Dates are carried as epoch days and timestamps as wall-clock epoch seconds, i.e. the
+ * stored fields read as if they were UTC, so no time zone is involved until a date is
+ * compared with now. The fixed database formats, yyyy-MM-dd and yyyy-MM-dd HH:mm:ss,
+ * are parsed by hand without allocating and always written with ASCII digits. Anything
+ * else falls back to a lenient SimpleDateFormat, cached per thread, so odd values that
+ * used to parse still do. Display formats are cached per thread and locale.
+ *
+ * "Today" is a shared anchor recomputed when the local day changes, so relative dates
+ * in a list are all measured from the same day.
+ */
+public final class DateCodec {
+
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final long SECONDS_PER_DAY = 24L * 60 * 60;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static volatile Today today;
+
+    private static final ThreadLocal<Formatters> FORMATTERS = new ThreadLocal<Formatters>() {
+        @Override
+        protected Formatters initialValue() {
+            return new Formatters();
+        }
+    };
+
+    private DateCodec() {
+    }
+
+    // ==================== PARSING ====================
+
+    /**
+     * Epoch day of a yyyy-MM-dd date, or INVALID. A time after the date is ignored, so
+     * a timestamp parses as its day. Allocates nothing.
+     */
+    public static long parseEpochDay(CharSequence text) {
+        if (text == null || text.length() < 10) {
+            return INVALID;
+        }
+        if (text.length() > 10 && text.charAt(10) != ' ' && text.charAt(10) != 'T') {
+            return INVALID;
+        }
+        if (text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Wall-clock epoch seconds of a yyyy-MM-dd HH:mm:ss timestamp, or INVALID.
+     * Allocates nothing.
+     */
+    public static long parseDateTime(CharSequence text) {
+        long epochDay = parseEpochDay(text);
+        if (epochDay == INVALID || text.length() < 19 || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return INVALID;
+        }
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        return epochDay * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    /**
+     * Like parseEpochDay, falling back to the lenient yyyy-MM-dd parsing SimpleDateFormat
+     * does, e.g. for unpadded fields or a day past the end of the month
+     */
+    public static long parseEpochDayLenient(String text) {
+        long epochDay = parseEpochDay(text);
+        if (epochDay != INVALID || text == null || text.isEmpty()) {
+            return epochDay;
+        }
+        Date date = FORMATTERS.get().get(DateUtils.DATE_FORMAT_DATABASE)
+                .parse(text, new ParsePosition(0));
+        return date != null ? Math.floorDiv(date.getTime(), MILLIS_PER_DAY) : INVALID;
+    }
+
+    /**
+     * Like parseDateTime, falling back to lenient yyyy-MM-dd HH:mm:ss parsing
+     */
+    public static long parseDateTimeLenient(String text) {
+        long seconds = parseDateTime(text);
+        if (seconds != INVALID || text == null || text.isEmpty()) {
+            return seconds;
+        }
+        Date date = FORMATTERS.get().get(DateUtils.DATETIME_FORMAT_DATABASE)
+                .parse(text, new ParsePosition(0));
+        return date != null ? Math.floorDiv(date.getTime(), 1000L) : INVALID;
+    }
+
+    // Unsigned decimal of count digits at start, or -1
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // ==================== FORMATTING ====================
+
+    /**
+     * yyyy-MM-dd for an epoch day
+     */
+    public static String formatEpochDay(long epochDay) {
+        char[] chars = new char[10];
+        writeDate(chars, epochDay);
+        return new String(chars);
+    }
+
+    public static String formatDate(int year, int month, int day) {
+        return formatEpochDay(epochDay(year, month, day));
+    }
+
+    /**
+     * yyyy-MM-dd HH:mm:ss for wall-clock epoch seconds
+     */
+    public static String formatDateTime(long wallSeconds) {
+        long epochDay = Math.floorDiv(wallSeconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(wallSeconds, SECONDS_PER_DAY);
+        char[] chars = new char[19];
+        writeDate(chars, epochDay);
+        chars[10] = ' ';
+        writeTwoDigits(chars, 11, secondOfDay / 3600);
+        chars[13] = ':';
+        writeTwoDigits(chars, 14, secondOfDay / 60 % 60);
+        chars[16] = ':';
+        writeTwoDigits(chars, 17, secondOfDay % 60);
+        return new String(chars);
+    }
+
+    /**
+     * An epoch day in a display pattern such as "MMM dd, yyyy", in the default locale
+     */
+    public static String formatForDisplay(long epochDay, String pattern) {
+        return FORMATTERS.get().format(pattern, epochDay * MILLIS_PER_DAY);
+    }
+
+    /**
+     * Wall-clock epoch seconds in a display pattern such as "HH:mm", in the default locale
+     */
+    public static String formatDateTimeForDisplay(long wallSeconds, String pattern) {
+        return FORMATTERS.get().format(pattern, wallSeconds * 1000);
+    }
+
+    private static void writeDate(char[] chars, long epochDay) {
+        int ymd = toYearMonthDay(epochDay);
+        int year = ymd / 10000;
+        chars[0] = (char) ('0' + year / 1000 % 10);
+        chars[1] = (char) ('0' + year / 100 % 10);
+        chars[2] = (char) ('0' + year / 10 % 10);
+        chars[3] = (char) ('0' + year % 10);
+        chars[4] = '-';
+        writeTwoDigits(chars, 5, ymd / 100 % 100);
+        chars[7] = '-';
+        writeTwoDigits(chars, 8, ymd % 100);
+    }
+
+    private static void writeTwoDigits(char[] chars, int offset, int value) {
+        chars[offset] = (char) ('0' + value / 10);
+        chars[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    // ==================== CALENDAR ARITHMETIC ====================
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date
+     */
+    public static long epochDay(int year, int month, int day) {
+        // Count years from March so the leap day is the last day of the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * An epoch day as yyyyMMdd packed in an int, e.g. 20240131; the date fields without
+     * allocating
+     */
+    public static int toYearMonthDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097L);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) year * 10000 + month * 100 + day;
+    }
+
+    public static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Wall-clock epoch seconds of an instant in the default time zone
+     */
+    public static long toWallSeconds(long epochMillis) {
+        return Math.floorDiv(epochMillis + TimeZone.getDefault().getOffset(epochMillis), 1000L);
+    }
+
+    /**
+     * Instant of wall-clock epoch seconds in the default time zone, the inverse of toWallSeconds.
+     * A wall time repeated when the clocks go back maps to one of its two instants.
+     */
+    public static long toEpochMillis(long wallSeconds) {
+        TimeZone zone = TimeZone.getDefault();
+        long wallMillis = wallSeconds * 1000;
+        // The offset depends on the instant being solved for, so refine it once from a first guess
+        long guess = wallMillis - zone.getOffset(wallMillis);
+        return wallMillis - zone.getOffset(guess);
+    }
+
+    // ==================== TODAY ====================
+
+    /**
+     * Local epoch day of today; cached until the local day ends
+     */
+    public static long todayEpochDay() {
+        return today().epochDay;
+    }
+
+    /**
+     * Today as yyyy-MM-dd; the same instance until the local day ends
+     */
+    public static String todayString() {
+        return today().dateString;
+    }
+
+    /**
+     * Forget the cached day, e.g. after the time zone changed
+     */
+    public static void resetToday() {
+        today = null;
+    }
+
+    private static Today today() {
+        Today current = today;
+        long now = System.currentTimeMillis();
+        if (current == null || now < current.startMillis || now >= current.endMillis) {
+            current = new Today(now);
+            today = current;
+        }
+        return current;
+    }
+
+    // One local day, valid from its midnight to the next
+    private static final class Today {
+        final long epochDay;
+        final String dateString;
+        final long startMillis;
+        final long endMillis;
+
+        Today(long now) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            epochDay = epochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                    calendar.get(Calendar.DAY_OF_MONTH));
+            dateString = formatEpochDay(epochDay);
+
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            startMillis = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            endMillis = calendar.getTimeInMillis();
+        }
+    }
+
+    // ==================== FORMATTERS ====================
+
+    // SimpleDateFormat is not thread-safe, so each thread keeps its own, all in UTC
+    private static final class Formatters {
+        private final Map<String, SimpleDateFormat> formats = new HashMap<>();
+        private final Date date = new Date();
+        private Locale locale;
+
+        SimpleDateFormat get(String pattern) {
+            Locale current = Locale.getDefault();
+            if (!current.equals(locale)) {
+                formats.clear();
+                locale = current;
+            }
+            SimpleDateFormat format = formats.get(pattern);
+            if (format == null) {
+                format = new SimpleDateFormat(pattern, current);
+                format.setTimeZone(UTC);
+                formats.put(pattern, format);
+            }
+            return format;
+        }
+
+        String format(String pattern, long utcMillis) {
+            date.setTime(utcMillis);
+            return get(pattern).format(date);
+        }
+    }
+}
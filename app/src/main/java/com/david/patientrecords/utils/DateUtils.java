@@ -1,12 +1,12 @@
 package com.david.patientrecords.utils;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Locale;
-import android.util.Log;
 
+/**
+ * Date helpers for yyyy-MM-dd and yyyy-MM-dd HH:mm:ss strings and the epoch days the
+ * database stores. Parsing and formatting go through DateCodec, and "today" is its shared anchor.
+ */
 public class DateUtils {
 
     private static final String TAG = "DateUtils";
@@ -21,7 +21,7 @@ public class DateUtils {
      * Format date from year, month, day integers
      */
     public static String formatDate(int year, int month, int dayOfMonth) {
-        return String.format(Locale.getDefault(), "%04d-%02d-%02d", year, month, dayOfMonth);
+        return DateCodec.formatDate(year, month, dayOfMonth);
     }
 
     /**
@@ -29,24 +29,21 @@ public class DateUtils {
      */
     public static String formatDate(Date date) {
         if (date == null) return null;
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-        return sdf.format(date);
+        return DateCodec.formatEpochDay(toEpochDay(date));
     }
 
     /**
      * Get current date in database format
      */
     public static String getCurrentDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-        return sdf.format(new Date());
+        return DateCodec.todayString();
     }
 
     /**
      * Get current timestamp
      */
     public static String getCurrentTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat(DATETIME_FORMAT_DATABASE, Locale.getDefault());
-        return sdf.format(new Date());
+        return DateCodec.formatDateTime(DateCodec.toWallSeconds(System.currentTimeMillis()));
     }
 
     /**
@@ -57,15 +54,16 @@ public class DateUtils {
             return "No date";
         }
 
-        try {
-            SimpleDateFormat dbFormat = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            SimpleDateFormat displayFormat = new SimpleDateFormat(DATE_FORMAT_DISPLAY, Locale.getDefault());
-            Date date = dbFormat.parse(dateString);
-            return date != null ? displayFormat.format(date) : dateString;
-        } catch (ParseException e) {
-            // If parsing fails, return original string
-            return dateString;
-        }
+        long epochDay = DateCodec.parseEpochDayLenient(dateString);
+        // If parsing fails, return original string
+        return epochDay != DateCodec.INVALID ? formatDateForDisplay(epochDay) : dateString;
+    }
+
+    /**
+     * Format an epoch day from the database for display
+     */
+    public static String formatDateForDisplay(long epochDay) {
+        return epochDay != DateCodec.INVALID ? DateCodec.formatForDisplay(epochDay, DATE_FORMAT_DISPLAY) : "No date";
     }
 
     /**
@@ -76,18 +74,15 @@ public class DateUtils {
             return null;
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date date = sdf.parse(dateString);
-            if (date != null) {
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTime(date);
-                return calendar;
-            }
-        } catch (ParseException e) {
-            // Return null if parsing fails
+        long epochDay = DateCodec.parseEpochDayLenient(dateString);
+        if (epochDay == DateCodec.INVALID) {
+            return null;
         }
-        return null;
+        int ymd = DateCodec.toYearMonthDay(epochDay);
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(ymd / 10000, ymd / 100 % 100 - 1, ymd % 100);
+        return calendar;
     }
 
     /**
@@ -95,27 +90,17 @@ public class DateUtils {
      */
     public static String formatDateForDatabase(Date date) {
         if (date == null) return getCurrentDate();
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-        return sdf.format(date);
+        return DateCodec.formatEpochDay(toEpochDay(date));
     }
 
     /**
      * Get number of days between two dates
      */
     public static int getDaysBetween(String startDate, String endDate) {
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date start = sdf.parse(startDate);
-            Date end = sdf.parse(endDate);
-
-            if (start == null || end == null) return 0;
-
-            long diffInMillies = end.getTime() - start.getTime();
-            return (int) (diffInMillies / (1000 * 60 * 60 * 24));
-        } catch (ParseException e) {
-            Log.e("DateUtils", "Error calculating days between dates", e);
-            return 0;
-        }
+        long start = DateCodec.parseEpochDayLenient(startDate);
+        long end = DateCodec.parseEpochDayLenient(endDate);
+        if (start == DateCodec.INVALID || end == DateCodec.INVALID) return 0;
+        return (int) (end - start);
     }
 
     /**
@@ -133,32 +118,41 @@ public class DateUtils {
             return "Unknown";
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date date = sdf.parse(dateString);
-            if (date == null) return dateString;
-
-            long diffInMillis = System.currentTimeMillis() - date.getTime();
-            long diffInDays = diffInMillis / (24 * 60 * 60 * 1000);
-
-            if (diffInDays == 0) {
-                return "Today";
-            } else if (diffInDays == 1) {
-                return "Yesterday";
-            } else if (diffInDays < 7) {
-                return diffInDays + " days ago";
-            } else if (diffInDays < 30) {
-                long weeks = diffInDays / 7;
-                return weeks == 1 ? "Last week" : weeks + " weeks ago";
-            } else if (diffInDays < 365) {
-                long months = diffInDays / 30;
-                return months == 1 ? "Last month" : months + " months ago";
-            } else {
-                long years = diffInDays / 365;
-                return years == 1 ? "Last year" : years + " years ago";
-            }
-        } catch (ParseException e) {
-            return dateString;
+        long epochDay = DateCodec.parseEpochDayLenient(dateString);
+        if (epochDay == DateCodec.INVALID) return dateString;
+
+        return getRelativeTimeString(epochDay);
+    }
+
+    /**
+     * Get relative time string for an epoch day
+     */
+    public static String getRelativeTimeString(long epochDay) {
+        if (epochDay == DateCodec.INVALID) {
+            return "Unknown";
+        }
+
+        long diffInDays = DateCodec.todayEpochDay() - epochDay;
+        if (diffInDays < 0) {
+            // Counted from now rather than from midnight, so tomorrow is still day 0
+            diffInDays++;
+        }
+
+        if (diffInDays == 0) {
+            return "Today";
+        } else if (diffInDays == 1) {
+            return "Yesterday";
+        } else if (diffInDays < 7) {
+            return diffInDays + " days ago";
+        } else if (diffInDays < 30) {
+            long weeks = diffInDays / 7;
+            return weeks == 1 ? "Last week" : weeks + " weeks ago";
+        } else if (diffInDays < 365) {
+            long months = diffInDays / 30;
+            return months == 1 ? "Last month" : months + " months ago";
+        } else {
+            long years = diffInDays / 365;
+            return years == 1 ? "Last year" : years + " years ago";
         }
     }
 
@@ -182,18 +176,10 @@ public class DateUtils {
             return false;
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date date = sdf.parse(dateString);
-            if (date == null) return false;
+        long epochDay = DateCodec.parseEpochDayLenient(dateString);
+        if (epochDay == DateCodec.INVALID) return false;
 
-            long diffInMillis = System.currentTimeMillis() - date.getTime();
-            long diffInDays = diffInMillis / (24 * 60 * 60 * 1000);
-
-            return diffInDays <= days;
-        } catch (ParseException e) {
-            return false;
-        }
+        return DateCodec.todayEpochDay() - epochDay <= days;
     }
 
     /**
@@ -204,29 +190,17 @@ public class DateUtils {
             return null;
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date date = sdf.parse(dateString);
-            if (date == null) return dateString;
-
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(date);
-            calendar.add(Calendar.DAY_OF_MONTH, days);
+        long epochDay = DateCodec.parseEpochDayLenient(dateString);
+        if (epochDay == DateCodec.INVALID) return dateString;
 
-            return sdf.format(calendar.getTime());
-        } catch (ParseException e) {
-            return dateString;
-        }
+        return DateCodec.formatEpochDay(epochDay + days);
     }
 
     /**
      * Get date string for N days from now
      */
     public static String getDateAfterDays(int days) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_MONTH, days);
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-        return sdf.format(calendar.getTime());
+        return DateCodec.formatEpochDay(DateCodec.todayEpochDay() + days);
     }
 
     /**
@@ -237,14 +211,8 @@ public class DateUtils {
             return "";
         }
 
-        try {
-            SimpleDateFormat inputFormat = new SimpleDateFormat(DATETIME_FORMAT_DATABASE, Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            Date date = inputFormat.parse(timestamp);
-            return date != null ? outputFormat.format(date) : "";
-        } catch (ParseException e) {
-            return "";
-        }
+        long seconds = DateCodec.parseDateTimeLenient(timestamp);
+        return seconds != DateCodec.INVALID ? DateCodec.formatDateTimeForDisplay(seconds, "HH:mm") : "";
     }
 
     /**
@@ -255,27 +223,21 @@ public class DateUtils {
             return 0;
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date birthDate = sdf.parse(birthDateString);
-            if (birthDate == null) return 0;
+        long birthDay = DateCodec.parseEpochDayLenient(birthDateString);
+        if (birthDay == DateCodec.INVALID) return 0;
 
-            Calendar birth = Calendar.getInstance();
-            birth.setTime(birthDate);
+        long today = DateCodec.todayEpochDay();
+        int birthYear = DateCodec.toYearMonthDay(birthDay) / 10000;
+        int nowYear = DateCodec.toYearMonthDay(today) / 10000;
 
-            Calendar now = Calendar.getInstance();
+        int age = nowYear - birthYear;
 
-            int age = now.get(Calendar.YEAR) - birth.get(Calendar.YEAR);
-
-            // Check if birthday has occurred this year
-            if (now.get(Calendar.DAY_OF_YEAR) < birth.get(Calendar.DAY_OF_YEAR)) {
-                age--;
-            }
-
-            return Math.max(0, age);
-        } catch (ParseException e) {
-            return 0;
+        // Check if birthday has occurred this year
+        if (today - DateCodec.epochDay(nowYear, 1, 1) < birthDay - DateCodec.epochDay(birthYear, 1, 1)) {
+            age--;
         }
+
+        return Math.max(0, age);
     }
 
     /**
@@ -286,16 +248,8 @@ public class DateUtils {
             return "";
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date date = sdf.parse(dateString);
-            if (date == null) return "";
-
-            SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE", Locale.getDefault());
-            return dayFormat.format(date);
-        } catch (ParseException e) {
-            return "";
-        }
+        long epochDay = DateCodec.parseEpochDayLenient(dateString);
+        return epochDay != DateCodec.INVALID ? DateCodec.formatForDisplay(epochDay, "EEEE") : "";
     }
 
     /**
@@ -306,23 +260,14 @@ public class DateUtils {
             return false;
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            sdf.setLenient(false); // Strict parsing
-            Date date = sdf.parse(dateString);
-            return date != null;
-        } catch (ParseException e) {
-            return false;
-        }
+        // Strict parsing: a well-formed date with a day that exists in its month
+        return DateCodec.parseEpochDay(dateString) != DateCodec.INVALID;
     }
     /**
      * Get date string for N days ago from today
      */
     public static String getDateMinusDays(int days) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_MONTH, -days); // Subtract days
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-        return sdf.format(calendar.getTime());
+        return DateCodec.formatEpochDay(DateCodec.todayEpochDay() - days); // Subtract days
     }
 
     /**
@@ -333,16 +278,8 @@ public class DateUtils {
             return "";
         }
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date date = sdf.parse(dateString);
-            if (date == null) return "";
-
-            SimpleDateFormat monthFormat = new SimpleDateFormat("MMMM", Locale.getDefault());
-            return monthFormat.format(date);
-        } catch (ParseException e) {
-            return "";
-        }
+        long epochDay = DateCodec.parseEpochDayLenient(dateString);
+        return epochDay != DateCodec.INVALID ? DateCodec.formatForDisplay(epochDay, "MMMM") : "";
     }
 
     /**
@@ -354,18 +291,16 @@ public class DateUtils {
         if (date1 == null) return -1;
         if (date2 == null) return 1;
 
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_DATABASE, Locale.getDefault());
-            Date d1 = sdf.parse(date1);
-            Date d2 = sdf.parse(date2);
+        long d1 = DateCodec.parseEpochDayLenient(date1);
+        long d2 = DateCodec.parseEpochDayLenient(date2);
 
-            if (d1 == null && d2 == null) return 0;
-            if (d1 == null) return -1;
-            if (d2 == null) return 1;
+        if (d1 == DateCodec.INVALID || d2 == DateCodec.INVALID) return 0;
 
-            return d1.compareTo(d2);
-        } catch (ParseException e) {
-            return 0;
-        }
+        return Long.compare(d1, d2);
+    }
+
+    // Local calendar day of an instant
+    private static long toEpochDay(Date date) {
+        return Math.floorDiv(DateCodec.toWallSeconds(date.getTime()), 24L * 60 * 60);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,319 @@
+package com.david.patientrecords.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.david.patientrecords.database.ImageStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Turns a picked or captured photo into a stored profile image and its thumbnail.
+ *
+ * The source is decoded once, straight at the stored size: inSampleSize skips most of
+ * the pixels and the decoder's density scaling covers the rest, so no full-resolution
+ * bitmap is ever allocated. EXIF orientation is applied to the decoded pixels, the
+ * image is encoded to a temp file and moved into the ImageStore, and the thumbnail is handed
+ * to ThumbnailCache so lists never decode the new photo. All of it runs on a background
+ * thread of its own.
+ */
+public class ImageIngestor {
+
+    private static final String TAG = "ImageIngestor";
+
+    // Delivered on the main thread
+    public interface Listener {
+        void onIngested(IngestResult result);
+        void onFailed(Exception e);
+    }
+
+    private static ImageIngestor instance;
+
+    private final Context context;
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Singleton pattern
+    public static synchronized ImageIngestor getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageIngestor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ImageIngestor(Context context) {
+        this.context = context;
+        // One at a time keeps the peak to a single photo's bitmaps
+        this.executor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "image-ingest"));
+    }
+
+    /**
+     * Ingest a photo on the background thread; content:// and file:// sources are supported
+     */
+    public void ingest(@NonNull Uri source, @NonNull Listener listener) {
+        executor.execute(() -> {
+            try {
+                IngestResult result = ingestNow(source);
+                mainHandler.post(() -> listener.onIngested(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Error ingesting image " + source, e);
+                mainHandler.post(() -> listener.onFailed(e));
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, "Out of memory ingesting image " + source, e);
+                mainHandler.post(() -> listener.onFailed(new IOException("Image too large to process", e)));
+            }
+        });
+    }
+
+    /**
+     * Ingest a photo on the calling thread
+     */
+    public IngestResult ingestNow(@NonNull Uri source) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+
+        // Size first, nothing is allocated for the pixels
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(source)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        int sourceWidth = options.outWidth;
+        int sourceHeight = options.outHeight;
+        if (sourceWidth <= 0 || sourceHeight <= 0) {
+            throw new IOException("Not a supported image: " + source);
+        }
+        int orientation = readOrientation(source);
+
+        // Sample down by powers of two while the long side stays at or above the target,
+        // then let the decoder scale the remainder as it writes the pixels
+        int longSide = Math.max(sourceWidth, sourceHeight);
+        int targetLongSide = Math.min(longSide, Constants.MAX_IMAGE_SIZE);
+        int sampleSize = 1;
+        while (longSide / (sampleSize * 2) >= targetLongSide) {
+            sampleSize *= 2;
+        }
+        int sampledLongSide = longSide / sampleSize;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        if (sampledLongSide > targetLongSide) {
+            options.inScaled = true;
+            options.inDensity = sampledLongSide;
+            options.inTargetDensity = targetLongSide;
+        }
+
+        Bitmap image;
+        try (InputStream in = open(source)) {
+            image = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (image == null) {
+            throw new IOException("Could not decode image: " + source);
+        }
+        image.setDensity(Bitmap.DENSITY_NONE); // Otherwise it carries the scaling densities into drawables
+        // The decoder holds the sampled pixels while it scales them into the result
+        long sampledBytes = sampledLongSide > targetLongSide
+                ? (long) (sourceWidth / sampleSize) * (sourceHeight / sampleSize) * 4 : 0;
+        long peakBytes = sampledBytes + image.getAllocationByteCount();
+
+        Matrix matrix = orientationMatrix(orientation);
+        if (matrix != null) {
+            Bitmap oriented = Bitmap.createBitmap(image, 0, 0, image.getWidth(), image.getHeight(), matrix, true);
+            if (oriented != image) {
+                peakBytes = Math.max(peakBytes, (long) image.getAllocationByteCount() + oriented.getAllocationByteCount());
+                image.recycle();
+                image = oriented;
+            }
+        }
+
+        Bitmap thumbnail = scaleToThumbnail(image);
+        if (thumbnail != image) {
+            peakBytes = Math.max(peakBytes, (long) image.getAllocationByteCount() + thumbnail.getAllocationByteCount());
+        }
+
+        File imageFile;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        try {
+            imageFile = writeImage(image);
+        } finally {
+            if (thumbnail != image) {
+                image.recycle();
+            }
+        }
+        ThumbnailCache.getInstance(context).put(imageFile.getAbsolutePath(), thumbnail);
+
+        IngestResult result = new IngestResult(imageFile.getAbsolutePath(), thumbnail, sourceWidth, sourceHeight,
+                width, height, imageFile.length(), peakBytes, SystemClock.elapsedRealtime() - start);
+        Log.d(TAG, result.getSummary());
+        return result;
+    }
+
+    private InputStream open(Uri source) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(source);
+        if (in == null) {
+            throw new IOException("Could not open " + source);
+        }
+        return in;
+    }
+
+    private int readOrientation(Uri source) {
+        try (InputStream in = open(source)) {
+            return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading EXIF data", e);
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    // Transform that displays the pixels upright, or null when they already are
+    private static Matrix orientationMatrix(int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setRotate(180);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return null;
+        }
+        return matrix;
+    }
+
+    // Same shape ThumbnailCache decodes: shorter side at THUMBNAIL_SIZE, never scaled up
+    private static Bitmap scaleToThumbnail(Bitmap image) {
+        int shorterSide = Math.min(image.getWidth(), image.getHeight());
+        if (shorterSide <= Constants.THUMBNAIL_SIZE) {
+            return image;
+        }
+        float scale = (float) Constants.THUMBNAIL_SIZE / shorterSide;
+        return Bitmap.createScaledBitmap(image,
+                Math.round(image.getWidth() * scale), Math.round(image.getHeight() * scale), true);
+    }
+
+    // Encoded to a temp file that only moves into the store, under its hash, once it is complete and synced
+    private File writeImage(Bitmap image) throws IOException {
+        ImageStore store = ImageStore.getInstance(context);
+        File directory = store.getDirectory();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date());
+        File tempFile = new File(directory, "ingest_" + stamp + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            if (!image.compress(Bitmap.CompressFormat.JPEG, Constants.JPEG_QUALITY, out)) {
+                throw new IOException("Could not encode image");
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        try {
+            return store.put(tempFile);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    // ==================== RESULT ====================
+
+    public static class IngestResult {
+        private final String imagePath;
+        private final Bitmap thumbnail;
+        private final int sourceWidth;
+        private final int sourceHeight;
+        private final int width;
+        private final int height;
+        private final long fileBytes;
+        private final long peakBitmapBytes;
+        private final long durationMs;
+
+        IngestResult(String imagePath, Bitmap thumbnail, int sourceWidth, int sourceHeight, int width, int height,
+                     long fileBytes, long peakBitmapBytes, long durationMs) {
+            this.imagePath = imagePath;
+            this.thumbnail = thumbnail;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.width = width;
+            this.height = height;
+            this.fileBytes = fileBytes;
+            this.peakBitmapBytes = peakBitmapBytes;
+            this.durationMs = durationMs;
+        }
+
+        public String getImagePath() { return imagePath; }
+        /** Shared with ThumbnailCache, do not recycle */
+        public Bitmap getThumbnail() { return thumbnail; }
+        public int getSourceWidth() { return sourceWidth; }
+        public int getSourceHeight() { return sourceHeight; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public long getFileBytes() { return fileBytes; }
+        public long getDurationMs() { return durationMs; }
+
+        /**
+         * Most bitmap memory held at once while ingesting
+         */
+        public long getPeakBitmapBytes() { return peakBitmapBytes; }
+
+        /**
+         * What decoding the source at full size would have taken on its own
+         */
+        public long getFullDecodeBytes() {
+            return (long) sourceWidth * sourceHeight * 4;
+        }
+
+        public String getSummary() {
+            return String.format(Locale.US,
+                    "Ingested %dx%d as %dx%d (%d KB) in %dms, peak bitmap memory %d KB vs %d KB for a full decode",
+                    sourceWidth, sourceHeight, width, height, fileBytes / 1024, durationMs,
+                    peakBitmapBytes / 1024, getFullDecodeBytes() / 1024);
+        }
+    }
+}
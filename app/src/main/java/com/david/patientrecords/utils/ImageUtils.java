@@ -43,27 +43,49 @@ public class ImageUtils {
 
     /**
      * Load patient image with fallback to initials avatar - MAIN METHOD FOR ADAPTER
+     *
+     * Shows the cached thumbnail if it is in memory; otherwise shows the initials and
+     * swaps in the thumbnail once it has been loaded off the main thread.
      */
     public static void loadPatientImageWithFallback(Context context, String imagePath,
                                                     String patientName, CircleImageView imageView) {
-        if (imagePath != null && !imagePath.isEmpty()) {
-            try {
-                File imageFile = new File(imagePath);
-                if (imageFile.exists()) {
-                    Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-                    if (bitmap != null) {
-                        imageView.setImageBitmap(bitmap);
-                        return;
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading image from path: " + imagePath, e);
-                // Fall through to initials avatar
-            }
+        if (showCachedThumbnail(context, imagePath, imageView)) {
+            return;
         }
 
-        // Create initials avatar as fallback
+        // Initials avatar until the photo arrives, and as the fallback if it never does
         setInitialsAvatar(patientName, imageView);
+        loadThumbnail(context, imagePath, imageView);
+    }
+
+    /**
+     * Cancel a pending photo load for a view that is being recycled
+     */
+    public static void cancelPatientImageLoad(Context context, ImageView imageView) {
+        ThumbnailCache.getInstance(context).cancel(imageView);
+    }
+
+    // Show the thumbnail if it is already in memory; any earlier load into the view is cancelled
+    private static boolean showCachedThumbnail(Context context, String imagePath, ImageView imageView) {
+        ThumbnailCache cache = ThumbnailCache.getInstance(context);
+        cache.cancel(imageView);
+        if (imagePath == null || imagePath.isEmpty()) {
+            return false;
+        }
+
+        Bitmap bitmap = cache.getFromMemory(imagePath);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return true;
+        }
+        return false;
+    }
+
+    private static void loadThumbnail(Context context, String imagePath, ImageView imageView) {
+        ThumbnailCache cache = ThumbnailCache.getInstance(context);
+        if (imagePath != null && !imagePath.isEmpty() && !cache.isKnownFailure(imagePath)) {
+            cache.load(imagePath, imageView);
+        }
     }
 
     /**
@@ -89,14 +111,21 @@ public class ImageUtils {
         // Generate color based on name
         int color = generateColorFromName(patientName);
 
-        // Create bitmap with initials (use imageView size or default)
-        int size = Math.max(imageView.getWidth() > 0 ? imageView.getWidth() : 200, 200);
-        Bitmap avatar = createInitialsAvatar(initials, size, color);
+        // Shared bitmap with initials (use imageView size or default), drawn only the first time
+        Bitmap avatar = AvatarCache.getInstance().getAvatar(initials, color, getInitialsAvatarSize(imageView));
         imageView.setImageBitmap(avatar);
     }
 
     /**
-     * Create a circular avatar with initials
+     * Size setInitialsAvatar draws at for a view, for pre-warming AvatarCache
+     */
+    public static int getInitialsAvatarSize(ImageView imageView) {
+        return Math.max(imageView.getWidth() > 0 ? imageView.getWidth() : Constants.DEFAULT_AVATAR_SIZE,
+                Constants.DEFAULT_AVATAR_SIZE);
+    }
+
+    /**
+     * Create a circular avatar with initials; always draws a new bitmap, views go through AvatarCache
      */
     public static Bitmap createInitialsAvatar(String initials, int size, int backgroundColor) {
         Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
@@ -126,12 +155,11 @@ public class ImageUtils {
     }
 
     /**
-     * Create a circular avatar with initials using patient name
+     * Circular avatar with initials using patient name, shared through AvatarCache;
+     * do not draw on or recycle it
      */
     public static Bitmap createPatientAvatar(String patientName, int size) {
-        String initials = getInitials(patientName);
-        int color = getColorForName(patientName);
-        return createInitialsAvatar(initials, size, color);
+        return AvatarCache.getInstance().getAvatar(patientName, size);
     }
 
     /**
@@ -441,23 +469,13 @@ public class ImageUtils {
         }
 
         // Handle regular ImageView
-        if (imagePath != null && !imagePath.isEmpty()) {
-            try {
-                File imageFile = new File(imagePath);
-                if (imageFile.exists()) {
-                    Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-                    if (bitmap != null) {
-                        imageView.setImageBitmap(bitmap);
-                        return;
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading image from path: " + imagePath, e);
-            }
+        if (showCachedThumbnail(context, imagePath, imageView)) {
+            return;
         }
 
         // Set initials avatar for regular ImageView
         setInitialsAvatarForImageView(patientName, imageView);
+        loadThumbnail(context, imagePath, imageView);
     }
 
     /**
@@ -0,0 +1,145 @@
+package com.david.patientrecords.utils;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.david.patientrecords.models.MedicalRecord;
+import com.david.patientrecords.models.Medication;
+import com.david.patientrecords.models.Patient;
+import com.david.patientrecords.models.PatientSummary;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DiffUtil callbacks for the list models.
+ *
+ * Rows are the same item when their ids match, and unchanged when every field their
+ * row binds is equal. updated_at alone is not enough: a patient card also shows data
+ * from other tables, and joined columns like the patient name never touch it.
+ */
+public final class ItemDiffs {
+
+    // Prevent instantiation
+    private ItemDiffs() {}
+
+    public static final DiffUtil.ItemCallback<Patient> PATIENT = new DiffUtil.ItemCallback<Patient>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Patient oldItem, @NonNull Patient newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Patient oldItem, @NonNull Patient newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && oldItem.getAge() == newItem.getAge()
+                    && Objects.equals(oldItem.getGender(), newItem.getGender())
+                    && Objects.equals(oldItem.getBloodType(), newItem.getBloodType())
+                    && Objects.equals(oldItem.getPhone(), newItem.getPhone())
+                    && oldItem.getRegistrationDay() == newItem.getRegistrationDay()
+                    && Objects.equals(oldItem.getMedicalConditions(), newItem.getMedicalConditions())
+                    && Objects.equals(oldItem.getAllergies(), newItem.getAllergies())
+                    && Objects.equals(oldItem.getImagePath(), newItem.getImagePath())
+                    && oldItem.isActive() == newItem.isActive();
+        }
+    };
+
+    /**
+     * Patient rows whose cards also show a summary; a row is only unchanged when its
+     * summary is too. The maps are keyed by patient id and a missing entry counts as a value.
+     */
+    public static DiffUtil.ItemCallback<Patient> patientWithSummaries(@NonNull Map<Long, PatientSummary> oldSummaries,
+                                                                      @NonNull Map<Long, PatientSummary> newSummaries) {
+        return new DiffUtil.ItemCallback<Patient>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull Patient oldItem, @NonNull Patient newItem) {
+                return PATIENT.areItemsTheSame(oldItem, newItem);
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull Patient oldItem, @NonNull Patient newItem) {
+                return PATIENT.areContentsTheSame(oldItem, newItem)
+                        && sameSummary(oldSummaries.get(oldItem.getId()), newSummaries.get(newItem.getId()));
+            }
+        };
+    }
+
+    private static boolean sameSummary(PatientSummary a, PatientSummary b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getRecordCount() == b.getRecordCount()
+                && a.getActiveMedicationCount() == b.getActiveMedicationCount()
+                && a.getLastVisitDay() == b.getLastVisitDay();
+    }
+
+    public static final DiffUtil.ItemCallback<MedicalRecord> MEDICAL_RECORD = new DiffUtil.ItemCallback<MedicalRecord>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MedicalRecord oldItem, @NonNull MedicalRecord newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MedicalRecord oldItem, @NonNull MedicalRecord newItem) {
+            return oldItem.getVisitDay() == newItem.getVisitDay()
+                    && Objects.equals(oldItem.getVisitType(), newItem.getVisitType())
+                    && Objects.equals(oldItem.getDoctorName(), newItem.getDoctorName())
+                    && Objects.equals(oldItem.getDoctorSpecialty(), newItem.getDoctorSpecialty())
+                    && Objects.equals(oldItem.getSymptoms(), newItem.getSymptoms())
+                    && Objects.equals(oldItem.getDiagnosis(), newItem.getDiagnosis())
+                    && Objects.equals(oldItem.getTreatment(), newItem.getTreatment())
+                    && Objects.equals(oldItem.getPatientName(), newItem.getPatientName());
+        }
+    };
+
+    public static final DiffUtil.ItemCallback<Medication> MEDICATION = new DiffUtil.ItemCallback<Medication>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Medication oldItem, @NonNull Medication newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Medication oldItem, @NonNull Medication newItem) {
+            return Objects.equals(oldItem.getMedicationName(), newItem.getMedicationName())
+                    && Objects.equals(oldItem.getDosage(), newItem.getDosage())
+                    && Objects.equals(oldItem.getFrequency(), newItem.getFrequency())
+                    && oldItem.getStartDay() == newItem.getStartDay()
+                    && oldItem.getEndDay() == newItem.getEndDay()
+                    && Objects.equals(oldItem.getPrescribedBy(), newItem.getPrescribedBy())
+                    && Objects.equals(oldItem.getInstructions(), newItem.getInstructions())
+                    && Objects.equals(oldItem.getPharmacyName(), newItem.getPharmacyName())
+                    && Objects.equals(oldItem.getDoctorName(), newItem.getDoctorName())
+                    && oldItem.getRefillsRemaining() == newItem.getRefillsRemaining();
+        }
+    };
+
+    /**
+     * Diff two lists that will not change while the diff runs. Safe to call off the
+     * main thread; dispatch the result on the main thread.
+     */
+    public static <T> DiffUtil.DiffResult calculateDiff(@NonNull List<T> oldList, @NonNull List<T> newList,
+                                                       @NonNull DiffUtil.ItemCallback<T> itemCallback) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return itemCallback.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return itemCallback.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+            }
+        }, false);
+    }
+}
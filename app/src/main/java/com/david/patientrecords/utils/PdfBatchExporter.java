@@ -0,0 +1,446 @@
+package com.david.patientrecords.utils;
+
+import android.content.Context;
+import android.graphics.pdf.PdfDocument;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.david.patientrecords.database.PatientRepository;
+import com.david.patientrecords.models.MedicalRecord;
+import com.david.patientrecords.models.Medication;
+import com.david.patientrecords.models.Patient;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PDF reports for every patient matching a filter, as one file per patient or one
+ * combined report, laid out with the same drawing routines as a single export.
+ *
+ * Work runs on a small fixed pool of its own so the database reader lanes stay free
+ * for the UI. Per-patient reports are generated in parallel, each worker taking the
+ * next patient when it finishes one. A combined report has a single PdfDocument, which
+ * takes one page at a time, so the pool loads the next few patients' data while one
+ * thread lays out the pages in order.
+ */
+public class PdfBatchExporter {
+
+    private static final String TAG = "PdfBatchExporter";
+    private static final int MAX_WORKERS = 4;
+    // Patients loaded ahead of the page layout in a combined report, per worker
+    private static final int PREFETCH_PER_WORKER = 2;
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    public enum Mode { PER_PATIENT, COMBINED }
+
+    // Delivered on the main thread
+    public interface Listener {
+        void onProgress(Progress progress);
+        void onFinished(BatchReport report);
+        void onFailed(Exception e);
+    }
+
+    private final Context context;
+    private final PatientRepository repository;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int workerCount;
+
+    public PdfBatchExporter(Context context) {
+        this.context = context.getApplicationContext();
+        this.repository = PatientRepository.getInstance(context);
+        // Leave a core for the UI thread
+        this.workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Generate reports into a new folder under the app's Downloads folder
+     */
+    public Job start(@NonNull PatientFilter filter, @NonNull Mode mode, @NonNull Listener listener) {
+        File downloadsDir = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        if (downloadsDir == null) {
+            downloadsDir = context.getFilesDir();
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        return start(new File(downloadsDir, "Reports_" + filter.getFileLabel() + "_" + stamp), filter, mode, listener);
+    }
+
+    public Job start(@NonNull File directory, @NonNull PatientFilter filter, @NonNull Mode mode,
+                     @NonNull Listener listener) {
+        Job job = new Job(directory, filter, mode, listener);
+        job.thread.start();
+        return job;
+    }
+
+    // ==================== FILTER ====================
+
+    /**
+     * Which active patients a batch covers
+     */
+    public static final class PatientFilter {
+        private final String bloodType;
+        private final int minAge;
+        private final int maxAge;
+        private final boolean followUpsDue;
+
+        private PatientFilter(String bloodType, int minAge, int maxAge, boolean followUpsDue) {
+            this.bloodType = bloodType;
+            this.minAge = minAge;
+            this.maxAge = maxAge;
+            this.followUpsDue = followUpsDue;
+        }
+
+        public static PatientFilter all() {
+            return new PatientFilter(null, -1, -1, false);
+        }
+
+        public static PatientFilter bloodType(@NonNull String bloodType) {
+            return new PatientFilter(bloodType, -1, -1, false);
+        }
+
+        public static PatientFilter ageRange(int minAge, int maxAge) {
+            return new PatientFilter(null, minAge, maxAge, false);
+        }
+
+        /**
+         * Patients with a follow-up date from today on
+         */
+        public static PatientFilter followUpsDue() {
+            return new PatientFilter(null, -1, -1, true);
+        }
+
+        List<Patient> load(PatientRepository repository) {
+            if (bloodType != null) {
+                return repository.getPatientsByBloodType(bloodType);
+            } else if (minAge >= 0) {
+                return repository.getPatientsByAgeRange(minAge, maxAge);
+            } else if (followUpsDue) {
+                return repository.getPatientsWithUpcomingFollowUps();
+            }
+            return repository.getAllPatients();
+        }
+
+        String getFileLabel() {
+            if (bloodType != null) {
+                return "BloodType_" + bloodType.replace("+", "pos").replace("-", "neg");
+            } else if (minAge >= 0) {
+                return "Age_" + minAge + "-" + maxAge;
+            } else if (followUpsDue) {
+                return "FollowUps";
+            }
+            return "All";
+        }
+
+        @Override
+        public String toString() {
+            return getFileLabel();
+        }
+    }
+
+    // ==================== JOB ====================
+
+    /**
+     * A running batch
+     */
+    public class Job {
+        private final File directory;
+        private final PatientFilter filter;
+        private final Mode mode;
+        private final Listener listener;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicLong lastProgressAt = new AtomicLong();
+        private final List<String> files = Collections.synchronizedList(new ArrayList<>());
+        private final Thread thread = new Thread(this::run, "pdf-batch");
+
+        private volatile boolean cancelled;
+        private ExecutorService pool;
+        private long startedAt;
+        private int total;
+
+        Job(File directory, PatientFilter filter, Mode mode, Listener listener) {
+            this.directory = directory;
+            this.filter = filter;
+            this.mode = mode;
+            this.listener = listener;
+        }
+
+        /**
+         * Stop starting new patients; reports already written are kept, except a
+         * combined report, which is only written when complete
+         */
+        public void cancel() {
+            cancelled = true;
+            // Wakes the coordinator if it is waiting on a worker
+            thread.interrupt();
+        }
+
+        private void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            startedAt = SystemClock.uptimeMillis();
+            try {
+                List<Patient> patients = filter.load(repository);
+                total = patients.size();
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IllegalStateException("Cannot create " + directory);
+                }
+
+                pool = Executors.newFixedThreadPool(workerCount, runnable -> {
+                    Thread worker = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }, "pdf-batch-worker");
+                    worker.setDaemon(true);
+                    return worker;
+                });
+
+                try {
+                    if (mode == Mode.PER_PATIENT) {
+                        exportSeparately(patients);
+                    } else {
+                        exportCombined(patients);
+                    }
+                } catch (InterruptedException e) {
+                    Log.d(TAG, "Batch export cancelled");
+                } finally {
+                    // Workers stop after the patient in progress; wait so the report counts it
+                    pool.shutdownNow();
+                    Thread.interrupted();
+                    pool.awaitTermination(30, TimeUnit.SECONDS);
+                }
+
+                final BatchReport report = new BatchReport(filter, mode, workerCount, total, completed.get(),
+                        failed.get(), pages.get(), totalBytes(), SystemClock.uptimeMillis() - startedAt,
+                        cancelled, new ArrayList<>(files));
+                Log.d(TAG, report.getSummary());
+                mainHandler.post(() -> listener.onFinished(report));
+            } catch (Exception e) {
+                Log.e(TAG, "Batch export failed: " + e.getMessage());
+                mainHandler.post(() -> listener.onFailed(e));
+            }
+        }
+
+        // Each worker takes the next patient until none are left
+        private void exportSeparately(final List<Patient> patients) throws InterruptedException {
+            final AtomicInteger next = new AtomicInteger();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(pool.submit(() -> {
+                    int index;
+                    while (!cancelled && (index = next.getAndIncrement()) < patients.size()) {
+                        exportOne(patients.get(index));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Worker failed: " + e.getCause());
+                }
+            }
+        }
+
+        private void exportOne(Patient patient) {
+            String fileName = "Patient_" + patient.getPatientName().replaceAll("[^a-zA-Z0-9]", "_") + "_" +
+                    patient.getId() + ".pdf";
+            PdfExportUtils.ExportResult result = PdfExportUtils.exportPatientToPdf(new File(directory, fileName),
+                    patient, repository.iterateMedicalRecords(patient.getId(), Constants.REPORT_RECORDS_PAGE_SIZE),
+                    repository.getMedicationsByPatientId(patient.getId()));
+            if (result.success) {
+                files.add(result.filePath);
+                pages.addAndGet(result.pageCount);
+                completed.incrementAndGet();
+            } else {
+                Log.e(TAG, "Report for patient " + patient.getId() + " failed: " + result.errorMessage);
+                failed.incrementAndGet();
+            }
+            postProgress();
+        }
+
+        // The pool loads patients ahead in a bounded window, this thread lays them out in order
+        private void exportCombined(List<Patient> patients) throws InterruptedException {
+            File pdfFile = new File(directory, "Patients_" + filter.getFileLabel() + ".pdf");
+            PdfDocument pdfDocument = new PdfDocument();
+            try {
+                PdfReportLayout layout = PdfExportUtils.newLayout(pdfDocument);
+                ArrayDeque<Future<PatientData>> window = new ArrayDeque<>();
+                int windowSize = workerCount * PREFETCH_PER_WORKER;
+                int submitted = 0;
+
+                while (!cancelled && (submitted < patients.size() || !window.isEmpty())) {
+                    while (submitted < patients.size() && window.size() < windowSize) {
+                        final Patient patient = patients.get(submitted++);
+                        window.add(pool.submit(() -> new PatientData(patient,
+                                repository.getMedicalRecordsByPatientId(patient.getId()),
+                                repository.getMedicationsByPatientId(patient.getId()))));
+                    }
+
+                    Future<PatientData> head = window.poll();
+                    try {
+                        PatientData data = head.get();
+                        PdfExportUtils.drawPatientReport(layout, data.patient, data.records.iterator(), data.medications);
+                        completed.incrementAndGet();
+                    } catch (ExecutionException e) {
+                        Log.e(TAG, "Loading a patient failed: " + e.getCause());
+                        failed.incrementAndGet();
+                    }
+                    postProgress();
+                }
+
+                layout.finish();
+                if (!cancelled && layout.getPageCount() > 0) {
+                    PdfExportUtils.ExportResult result = PdfExportUtils.writeDocument(pdfDocument, pdfFile);
+                    if (!result.success) {
+                        throw new IllegalStateException(result.errorMessage);
+                    }
+                    files.add(result.filePath);
+                    pages.set(layout.getPageCount());
+                }
+            } finally {
+                pdfDocument.close();
+            }
+        }
+
+        // Throttled so a large batch does not flood the main thread
+        private void postProgress() {
+            long now = SystemClock.uptimeMillis();
+            long last = lastProgressAt.get();
+            int done = completed.get() + failed.get();
+            if (done < total && (now - last < PROGRESS_INTERVAL_MS || !lastProgressAt.compareAndSet(last, now))) {
+                return;
+            }
+            final Progress progress = new Progress(completed.get(), failed.get(), total,
+                    SystemClock.uptimeMillis() - startedAt);
+            mainHandler.post(() -> listener.onProgress(progress));
+        }
+
+        private long totalBytes() {
+            long bytes = 0;
+            synchronized (files) {
+                for (String path : files) {
+                    bytes += new File(path).length();
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private static final class PatientData {
+        final Patient patient;
+        final List<MedicalRecord> records;
+        final List<Medication> medications;
+
+        PatientData(Patient patient, List<MedicalRecord> records, List<Medication> medications) {
+            this.patient = patient;
+            this.records = records;
+            this.medications = medications;
+        }
+    }
+
+    // ==================== RESULTS ====================
+
+    public static class Progress {
+        private final int completed;
+        private final int failed;
+        private final int total;
+        private final long elapsedMs;
+
+        Progress(int completed, int failed, int total, long elapsedMs) {
+            this.completed = completed;
+            this.failed = failed;
+            this.total = total;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public int getCompleted() { return completed; }
+        public int getFailed() { return failed; }
+        public int getTotal() { return total; }
+        public long getElapsedMs() { return elapsedMs; }
+
+        public int getPercent() {
+            return total == 0 ? 100 : (completed + failed) * 100 / total;
+        }
+    }
+
+    public static class BatchReport {
+        private final PatientFilter filter;
+        private final Mode mode;
+        private final int workers;
+        private final int total;
+        private final int completed;
+        private final int failed;
+        private final int pages;
+        private final long bytes;
+        private final long elapsedMs;
+        private final boolean cancelled;
+        private final List<String> files;
+
+        BatchReport(PatientFilter filter, Mode mode, int workers, int total, int completed, int failed,
+                    int pages, long bytes, long elapsedMs, boolean cancelled, List<String> files) {
+            this.filter = filter;
+            this.mode = mode;
+            this.workers = workers;
+            this.total = total;
+            this.completed = completed;
+            this.failed = failed;
+            this.pages = pages;
+            this.bytes = bytes;
+            this.elapsedMs = elapsedMs;
+            this.cancelled = cancelled;
+            this.files = Collections.unmodifiableList(files);
+        }
+
+        public Mode getMode() { return mode; }
+        public int getWorkers() { return workers; }
+        public int getTotal() { return total; }
+        public int getCompleted() { return completed; }
+        public int getFailed() { return failed; }
+        public int getPages() { return pages; }
+        public long getBytes() { return bytes; }
+        public long getElapsedMs() { return elapsedMs; }
+        public boolean isCancelled() { return cancelled; }
+
+        /**
+         * Absolute paths of the reports written
+         */
+        public List<String> getFiles() { return files; }
+
+        public double getPatientsPerSecond() {
+            return elapsedMs == 0 ? completed : completed * 1000.0 / elapsedMs;
+        }
+
+        public double getPagesPerSecond() {
+            return elapsedMs == 0 ? pages : pages * 1000.0 / elapsedMs;
+        }
+
+        /**
+         * Get a one-line summary for logging
+         */
+        public String getSummary() {
+            return String.format(Locale.US, "batch %s %s on %d workers: %d/%d patients, %d failed, %d pages, " +
+                            "%d KB in %dms (%.1f patients/s, %.1f pages/s)%s",
+                    mode, filter, workers, completed, total, failed, pages, bytes / 1024, elapsedMs,
+                    getPatientsPerSecond(), getPagesPerSecond(), cancelled ? ", cancelled" : "");
+        }
+    }
+}
@@ -1,9 +1,6 @@
 package com.david.patientrecords.utils;
 
 import android.content.Context;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.pdf.PdfDocument;
 import android.os.Environment;
 import android.util.Log;
@@ -12,26 +9,39 @@ import com.david.patientrecords.models.MedicalRecord;
 import com.david.patientrecords.models.Medication;
 import com.david.patientrecords.models.Patient;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
 public class PdfExportUtils {
 
     private static final String TAG = "PdfExportUtils";
-    private static final int PAGE_WIDTH = 595; // A4 width in points
-    private static final int PAGE_HEIGHT = 842; // A4 height in points
-    private static final int MARGIN = 50;
-    private static final int LINE_HEIGHT = 20;
+    private static final int MARGIN = PdfReportLayout.MARGIN;
+    private static final int LINE_HEIGHT = PdfReportLayout.LINE_HEIGHT;
+    private static final int PATIENT_VALUE_X = MARGIN + 150;
+    private static final int ITEM_VALUE_X = MARGIN + 120;
+
+    // Paints are reused across reports, one set per thread since Paint is not thread-safe
+    private static final ThreadLocal<PdfReportLayout.Styles> STYLES = new ThreadLocal<PdfReportLayout.Styles>() {
+        @Override
+        protected PdfReportLayout.Styles initialValue() {
+            return new PdfReportLayout.Styles();
+        }
+    };
 
     public static class ExportResult {
         public boolean success;
         public String filePath;
         public String errorMessage;
+        public int pageCount;
 
         public ExportResult(boolean success, String filePath, String errorMessage) {
             this.success = success;
@@ -43,274 +53,160 @@ public class PdfExportUtils {
     public static ExportResult exportPatientToPdf(Context context, Patient patient,
                                                   List<MedicalRecord> medicalRecords,
                                                   List<Medication> medications) {
-        try {
-            // Create PDF document
-            PdfDocument pdfDocument = new PdfDocument();
-
-            // Create page
-            PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, 1).create();
-            PdfDocument.Page page = pdfDocument.startPage(pageInfo);
-            Canvas canvas = page.getCanvas();
-
-            // Setup paint for text
-            Paint titlePaint = new Paint();
-            titlePaint.setTextSize(24);
-            titlePaint.setColor(Color.BLACK);
-            titlePaint.setAntiAlias(true);
-            titlePaint.setFakeBoldText(true);
-
-            Paint headerPaint = new Paint();
-            headerPaint.setTextSize(18);
-            headerPaint.setColor(Color.BLACK);
-            headerPaint.setAntiAlias(true);
-            headerPaint.setFakeBoldText(true);
-
-            Paint normalPaint = new Paint();
-            normalPaint.setTextSize(14);
-            normalPaint.setColor(Color.BLACK);
-            normalPaint.setAntiAlias(true);
-
-            Paint labelPaint = new Paint();
-            labelPaint.setTextSize(12);
-            labelPaint.setColor(Color.GRAY);
-            labelPaint.setAntiAlias(true);
-
-            int currentY = MARGIN + 30;
-
-            // Title
-            canvas.drawText("Patient Medical Report", MARGIN, currentY, titlePaint);
-            currentY += 40;
-
-            // Patient Information Header
-            canvas.drawText("PATIENT INFORMATION", MARGIN, currentY, headerPaint);
-            currentY += 30;
-
-            // Patient details
-            currentY = drawPatientInfo(canvas, patient, normalPaint, labelPaint, currentY);
-            currentY += 30;
-
-            // Medical Records Header
-            canvas.drawText("MEDICAL RECORDS", MARGIN, currentY, headerPaint);
-            currentY += 30;
-
-            // Medical records
-            if (medicalRecords != null && !medicalRecords.isEmpty()) {
-                for (MedicalRecord record : medicalRecords) {
-                    currentY = drawMedicalRecord(canvas, record, normalPaint, labelPaint, currentY);
-                    currentY += 20;
-
-                    // Check if we need a new page
-                    if (currentY > PAGE_HEIGHT - 100) {
-                        pdfDocument.finishPage(page);
-                        pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, 2).create();
-                        page = pdfDocument.startPage(pageInfo);
-                        canvas = page.getCanvas();
-                        currentY = MARGIN + 30;
-                    }
-                }
-            } else {
-                canvas.drawText("No medical records found.", MARGIN, currentY, normalPaint);
-                currentY += 30;
-            }
-
-            // Medications Header
-            canvas.drawText("CURRENT MEDICATIONS", MARGIN, currentY, headerPaint);
-            currentY += 30;
-
-            // Medications
-            if (medications != null && !medications.isEmpty()) {
-                for (Medication medication : medications) {
-                    currentY = drawMedication(canvas, medication, normalPaint, labelPaint, currentY);
-                    currentY += 20;
-
-                    // Check if we need a new page
-                    if (currentY > PAGE_HEIGHT - 100) {
-                        pdfDocument.finishPage(page);
-                        pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, 3).create();
-                        page = pdfDocument.startPage(pageInfo);
-                        canvas = page.getCanvas();
-                        currentY = MARGIN + 30;
-                    }
-                }
-            } else {
-                canvas.drawText("No medications found.", MARGIN, currentY, normalPaint);
-                currentY += 30;
-            }
-
-            // Footer with export date
-            currentY = PAGE_HEIGHT - 50;
-            canvas.drawText("Report generated on: " + getCurrentDateTime(), MARGIN, currentY, labelPaint);
-
-            // Finish the page
-            pdfDocument.finishPage(page);
-
-            // Save to file
-            String fileName = "Patient_" + patient.getPatientName().replaceAll("[^a-zA-Z0-9]", "_") + "_" +
-                    new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".pdf";
-
-            // Save PDF in the app-specific Downloads directory
-            File downloadsDir = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
-
-            // Make sure the directory exists
-            if (downloadsDir != null && !downloadsDir.exists()) {
-                downloadsDir.mkdirs();
-            }
+        return exportPatientToPdf(context, patient,
+                medicalRecords != null ? medicalRecords.iterator() : Collections.<MedicalRecord>emptyIterator(),
+                medications);
+    }
 
-            File pdfFile = new File(downloadsDir, fileName);
+    /**
+     * Export a patient report with medical records read as the pages are laid out, e.g.
+     * from PatientRepository.iterateMedicalRecords, so a long history is never in memory
+     * as a whole. The report runs over as many pages as it needs.
+     */
+    public static ExportResult exportPatientToPdf(Context context, Patient patient,
+                                                  Iterator<MedicalRecord> medicalRecords,
+                                                  List<Medication> medications) {
+        // Save to file
+        String fileName = "Patient_" + patient.getPatientName().replaceAll("[^a-zA-Z0-9]", "_") + "_" +
+                new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".pdf";
 
-            try (FileOutputStream fos = new FileOutputStream(pdfFile)) {
-                pdfDocument.writeTo(fos);
-                pdfDocument.close();
+        // Save PDF in the app-specific Downloads directory
+        File downloadsDir = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
 
-                Log.d(TAG, "PDF saved to: " + pdfFile.getAbsolutePath());
-                return new ExportResult(true, pdfFile.getAbsolutePath(), null);
-            } catch (IOException e) {
-                Log.e(TAG, "Error saving PDF", e);
-                return new ExportResult(false, null, "Error saving PDF: " + e.getMessage());
-            }
+        // Make sure the directory exists
+        if (downloadsDir != null && !downloadsDir.exists()) {
+            downloadsDir.mkdirs();
+        }
 
+        return exportPatientToPdf(new File(downloadsDir, fileName), patient, medicalRecords, medications);
+    }
 
+    /**
+     * Export a patient report to the given file
+     */
+    public static ExportResult exportPatientToPdf(File pdfFile, Patient patient,
+                                                  Iterator<MedicalRecord> medicalRecords,
+                                                  List<Medication> medications) {
+        PdfDocument pdfDocument = new PdfDocument();
+        try {
+            PdfReportLayout layout = newLayout(pdfDocument);
+            drawPatientReport(layout, patient, medicalRecords, medications);
+            layout.finish();
 
+            ExportResult result = writeDocument(pdfDocument, pdfFile);
+            result.pageCount = layout.getPageCount();
+            return result;
         } catch (Exception e) {
             Log.e(TAG, "Unexpected error creating PDF", e);
             return new ExportResult(false, null, "Unexpected error: " + e.getMessage());
+        } finally {
+            pdfDocument.close();
         }
     }
 
-    private static int drawPatientInfo(Canvas canvas, Patient patient, Paint normalPaint, Paint labelPaint, int startY) {
-        int currentY = startY;
-        int labelX = MARGIN;
-        int valueX = MARGIN + 150;
-
-        // Name
-        canvas.drawText("Name:", labelX, currentY, labelPaint);
-        canvas.drawText(patient.getPatientName(), valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
-
-        // Age and Gender
-        canvas.drawText("Age:", labelX, currentY, labelPaint);
-        canvas.drawText(patient.getAge() + " years", valueX, currentY, normalPaint);
-        canvas.drawText("Gender:", labelX + 250, currentY, labelPaint);
-        canvas.drawText(patient.getGender() != null ? patient.getGender() : "Unknown", labelX + 350, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
-
-        // Blood Type
-        canvas.drawText("Blood Type:", labelX, currentY, labelPaint);
-        canvas.drawText(patient.getBloodType() != null ? patient.getBloodType() : "Unknown", valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
-
-        // Phone
-        canvas.drawText("Phone:", labelX, currentY, labelPaint);
-        canvas.drawText(patient.getPhone() != null ? patient.getPhone() : "No phone", valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
+    static PdfReportLayout newLayout(PdfDocument pdfDocument) {
+        return new PdfReportLayout(pdfDocument, STYLES.get(), "Report generated on: " + getCurrentDateTime());
+    }
 
-        // Address
-        canvas.drawText("Address:", labelX, currentY, labelPaint);
-        String address = patient.getAddress() != null ? patient.getAddress() : "No address";
-        if (address.length() > 50) {
-            address = address.substring(0, 47) + "...";
+    static ExportResult writeDocument(PdfDocument pdfDocument, File pdfFile) {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(pdfFile), 64 * 1024)) {
+            pdfDocument.writeTo(out);
+            Log.d(TAG, "PDF saved to: " + pdfFile.getAbsolutePath());
+            return new ExportResult(true, pdfFile.getAbsolutePath(), null);
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving PDF", e);
+            return new ExportResult(false, null, "Error saving PDF: " + e.getMessage());
         }
-        canvas.drawText(address, valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
+    }
 
-        // Medical Conditions
-        if (patient.getMedicalConditions() != null && !patient.getMedicalConditions().isEmpty()) {
-            canvas.drawText("Conditions:", labelX, currentY, labelPaint);
-            String conditions = patient.getMedicalConditions();
-            if (conditions.length() > 50) {
-                conditions = conditions.substring(0, 47) + "...";
+    /**
+     * Lay out one patient's report starting on a new page
+     */
+    static void drawPatientReport(PdfReportLayout layout, Patient patient,
+                                  Iterator<MedicalRecord> medicalRecords, List<Medication> medications) {
+        PdfReportLayout.Styles styles = layout.getStyles();
+        layout.newPage();
+
+        // Title
+        layout.drawHeading("Patient Medical Report", styles.title, 40);
+
+        // Patient Information Header
+        layout.drawHeading("PATIENT INFORMATION", styles.header, 30);
+        drawPatientInfo(layout, patient);
+        layout.addSpace(30);
+
+        // Medical Records
+        layout.drawHeading("MEDICAL RECORDS", styles.header, 30);
+        if (medicalRecords.hasNext()) {
+            while (medicalRecords.hasNext()) {
+                drawMedicalRecord(layout, medicalRecords.next());
+                layout.addSpace(20);
             }
-            canvas.drawText(conditions, valueX, currentY, normalPaint);
-            currentY += LINE_HEIGHT;
+        } else {
+            layout.drawParagraph("No medical records found.", styles.normal);
+            layout.addSpace(10);
         }
 
-        // Allergies
-        if (patient.getAllergies() != null && !patient.getAllergies().isEmpty()) {
-            canvas.drawText("Allergies:", labelX, currentY, labelPaint);
-            String allergies = patient.getAllergies();
-            if (allergies.length() > 50) {
-                allergies = allergies.substring(0, 47) + "...";
+        // Medications
+        layout.drawHeading("CURRENT MEDICATIONS", styles.header, 30);
+        if (medications != null && !medications.isEmpty()) {
+            for (Medication medication : medications) {
+                drawMedication(layout, medication);
+                layout.addSpace(20);
             }
-            canvas.drawText(allergies, valueX, currentY, normalPaint);
-            currentY += LINE_HEIGHT;
+        } else {
+            layout.drawParagraph("No medications found.", styles.normal);
         }
-
-        return currentY;
     }
 
-    private static int drawMedicalRecord(Canvas canvas, MedicalRecord record, Paint normalPaint, Paint labelPaint, int startY) {
-        int currentY = startY;
-        int labelX = MARGIN;
-        int valueX = MARGIN + 120;
+    static void drawPatientInfo(PdfReportLayout layout, Patient patient) {
+        layout.drawField("Name:", patient.getPatientName(), PATIENT_VALUE_X);
+        layout.drawFieldPair("Age:", patient.getAge() + " years", PATIENT_VALUE_X,
+                "Gender:", patient.getGender() != null ? patient.getGender() : "Unknown", MARGIN + 250, MARGIN + 350);
+        layout.drawField("Blood Type:", patient.getBloodType() != null ? patient.getBloodType() : "Unknown", PATIENT_VALUE_X);
+        layout.drawField("Phone:", patient.getPhone() != null ? patient.getPhone() : "No phone", PATIENT_VALUE_X);
+        layout.drawField("Address:", patient.getAddress() != null ? patient.getAddress() : "No address", PATIENT_VALUE_X);
 
-        // Visit Date
-        canvas.drawText("Visit Date:", labelX, currentY, labelPaint);
-        canvas.drawText(DateUtils.formatDateForDisplay(record.getVisitDate()), valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
-
-        // Doctor
-        canvas.drawText("Doctor:", labelX, currentY, labelPaint);
-        canvas.drawText(record.getDoctorName() != null ? record.getDoctorName() : "Unknown", valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
-
-        // Symptoms
-        canvas.drawText("Symptoms:", labelX, currentY, labelPaint);
-        String symptoms = record.getSymptoms() != null ? record.getSymptoms() : "None recorded";
-        if (symptoms.length() > 60) {
-            symptoms = symptoms.substring(0, 57) + "...";
+        if (patient.getMedicalConditions() != null && !patient.getMedicalConditions().isEmpty()) {
+            layout.drawField("Conditions:", patient.getMedicalConditions(), PATIENT_VALUE_X);
         }
-        canvas.drawText(symptoms, valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
-
-        // Diagnosis
-        canvas.drawText("Diagnosis:", labelX, currentY, labelPaint);
-        String diagnosis = record.getDiagnosis() != null ? record.getDiagnosis() : "None recorded";
-        if (diagnosis.length() > 60) {
-            diagnosis = diagnosis.substring(0, 57) + "...";
+        if (patient.getAllergies() != null && !patient.getAllergies().isEmpty()) {
+            layout.drawField("Allergies:", patient.getAllergies(), PATIENT_VALUE_X);
         }
-        canvas.drawText(diagnosis, valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
+    }
 
-        // Treatment
-        canvas.drawText("Treatment:", labelX, currentY, labelPaint);
+    static void drawMedicalRecord(PdfReportLayout layout, MedicalRecord record) {
+        String visitDate = DateUtils.formatDateForDisplay(record.getVisitDate());
+        String doctor = record.getDoctorName() != null ? record.getDoctorName() : "Unknown";
+        String symptoms = record.getSymptoms() != null ? record.getSymptoms() : "None recorded";
+        String diagnosis = record.getDiagnosis() != null ? record.getDiagnosis() : "None recorded";
         String treatment = record.getTreatment() != null ? record.getTreatment() : "None recorded";
-        if (treatment.length() > 60) {
-            treatment = treatment.substring(0, 57) + "...";
-        }
-        canvas.drawText(treatment, valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
-
-        return currentY;
-    }
 
-    private static int drawMedication(Canvas canvas, Medication medication, Paint normalPaint, Paint labelPaint, int startY) {
-        int currentY = startY;
-        int labelX = MARGIN;
-        int valueX = MARGIN + 120;
+        // A visit is not split across pages unless it is longer than a page
+        layout.keepTogether(2 * LINE_HEIGHT + layout.measureField(symptoms, ITEM_VALUE_X) +
+                layout.measureField(diagnosis, ITEM_VALUE_X) + layout.measureField(treatment, ITEM_VALUE_X));
 
-        // Medication Name
-        canvas.drawText("Medication:", labelX, currentY, labelPaint);
-        canvas.drawText(medication.getMedicationName(), valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
+        layout.drawField("Visit Date:", visitDate, ITEM_VALUE_X);
+        layout.drawField("Doctor:", doctor, ITEM_VALUE_X);
+        layout.drawField("Symptoms:", symptoms, ITEM_VALUE_X);
+        layout.drawField("Diagnosis:", diagnosis, ITEM_VALUE_X);
+        layout.drawField("Treatment:", treatment, ITEM_VALUE_X);
+    }
 
-        // Dosage and Frequency
-        canvas.drawText("Dosage:", labelX, currentY, labelPaint);
+    static void drawMedication(PdfReportLayout layout, Medication medication) {
         String dosageInfo = medication.getDosage() + " - " + medication.getFrequency();
-        canvas.drawText(dosageInfo, valueX, currentY, normalPaint);
-        currentY += LINE_HEIGHT;
+        String instructions = medication.getInstructions();
+        boolean hasInstructions = instructions != null && !instructions.isEmpty();
 
-        // Instructions
-        if (medication.getInstructions() != null && !medication.getInstructions().isEmpty()) {
-            canvas.drawText("Instructions:", labelX, currentY, labelPaint);
-            String instructions = medication.getInstructions();
-            if (instructions.length() > 60) {
-                instructions = instructions.substring(0, 57) + "...";
-            }
-            canvas.drawText(instructions, valueX, currentY, normalPaint);
-            currentY += LINE_HEIGHT;
-        }
+        layout.keepTogether(layout.measureField(medication.getMedicationName(), ITEM_VALUE_X) +
+                layout.measureField(dosageInfo, ITEM_VALUE_X) +
+                (hasInstructions ? layout.measureField(instructions, ITEM_VALUE_X) : 0));
 
-        return currentY;
+        layout.drawField("Medication:", medication.getMedicationName(), ITEM_VALUE_X);
+        layout.drawField("Dosage:", dosageInfo, ITEM_VALUE_X);
+        if (hasInstructions) {
+            layout.drawField("Instructions:", instructions, ITEM_VALUE_X);
+        }
     }
 
     private static String getCurrentDateTime() {
@@ -0,0 +1,238 @@
+package com.david.patientrecords.utils;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.pdf.PdfDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flowing text layout over a PdfDocument for PdfExportUtils.
+ *
+ * Keeps a cursor on the current page, wraps text to the column it is drawn in and starts
+ * a new page whenever the next line would run into the footer. Each page is finished as
+ * soon as it is full, so only the page being drawn is open at a time. Pages are numbered
+ * in the order they are started and carry a footer.
+ */
+public class PdfReportLayout {
+
+    static final int PAGE_WIDTH = 595; // A4 width in points
+    static final int PAGE_HEIGHT = 842; // A4 height in points
+    static final int MARGIN = 50;
+    static final int LINE_HEIGHT = 20;
+    private static final int FOOTER_HEIGHT = 40;
+    private static final int CONTENT_TOP = MARGIN + 30;
+    private static final int CONTENT_BOTTOM = PAGE_HEIGHT - MARGIN - FOOTER_HEIGHT;
+
+    /**
+     * The paints a report draws with. Paint is not thread-safe, so share one instance
+     * per thread rather than creating paints for every document.
+     */
+    public static final class Styles {
+        final Paint title = createPaint(24, Color.BLACK, true);
+        final Paint header = createPaint(18, Color.BLACK, true);
+        final Paint normal = createPaint(14, Color.BLACK, false);
+        final Paint label = createPaint(12, Color.GRAY, false);
+        final Paint footer = createPaint(10, Color.GRAY, false);
+
+        private static Paint createPaint(float textSize, int color, boolean bold) {
+            Paint paint = new Paint();
+            paint.setTextSize(textSize);
+            paint.setColor(color);
+            paint.setAntiAlias(true);
+            paint.setFakeBoldText(bold);
+            return paint;
+        }
+    }
+
+    private final PdfDocument document;
+    private final Styles styles;
+    private final String footerText;
+    private final List<String> lines = new ArrayList<>(); // Reused by every wrap
+
+    private PdfDocument.Page page;
+    private Canvas canvas;
+    private int pageCount;
+    private int y;
+
+    public PdfReportLayout(PdfDocument document, Styles styles, String footerText) {
+        this.document = document;
+        this.styles = styles;
+        this.footerText = footerText;
+    }
+
+    public Styles getStyles() {
+        return styles;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    // ==================== PAGES ====================
+
+    /**
+     * Finish the current page, if any, and start the next one
+     */
+    public void newPage() {
+        finishPage();
+        pageCount++;
+        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, pageCount).create();
+        page = document.startPage(pageInfo);
+        canvas = page.getCanvas();
+        y = CONTENT_TOP;
+    }
+
+    /**
+     * Finish the last page; call once after everything is drawn
+     */
+    public void finish() {
+        finishPage();
+    }
+
+    private void finishPage() {
+        if (page == null) {
+            return;
+        }
+        int footerY = PAGE_HEIGHT - MARGIN;
+        if (footerText != null) {
+            canvas.drawText(footerText, MARGIN, footerY, styles.footer);
+        }
+        String pageLabel = "Page " + pageCount;
+        canvas.drawText(pageLabel, PAGE_WIDTH - MARGIN - styles.footer.measureText(pageLabel), footerY, styles.footer);
+        document.finishPage(page);
+        page = null;
+        canvas = null;
+    }
+
+    /**
+     * Start a new page unless height more points fit on this one
+     */
+    public void ensureSpace(int height) {
+        if (page == null || y + height > CONTENT_BOTTOM) {
+            newPage();
+        }
+    }
+
+    /**
+     * Keep a block of the given height on one page: move it to the next page if it
+     * does not fit here but would fit on an empty page. Taller blocks flow across pages.
+     */
+    public void keepTogether(int height) {
+        if (page == null || (y + height > CONTENT_BOTTOM && height <= CONTENT_BOTTOM - CONTENT_TOP)) {
+            newPage();
+        }
+    }
+
+    public void addSpace(int height) {
+        y += height;
+    }
+
+    // ==================== TEXT ====================
+
+    /**
+     * Draw a heading, moving it to the next page with its first line if needed
+     */
+    public void drawHeading(String text, Paint paint, int spaceAfter) {
+        ensureSpace(spaceAfter + LINE_HEIGHT);
+        canvas.drawText(text, MARGIN, y, paint);
+        y += spaceAfter;
+    }
+
+    /**
+     * Draw text wrapped to the page margins
+     */
+    public void drawParagraph(String text, Paint paint) {
+        wrap(text, paint, PAGE_WIDTH - 2 * MARGIN);
+        for (int i = 0; i < lines.size(); i++) {
+            ensureSpace(LINE_HEIGHT);
+            canvas.drawText(lines.get(i), MARGIN, y, paint);
+            y += LINE_HEIGHT;
+        }
+    }
+
+    /**
+     * Draw a label and its value, wrapping the value in the column from valueX to the
+     * right margin. Long values continue on the next page; the label stays with the
+     * first line.
+     */
+    public void drawField(String label, String value, int valueX) {
+        wrap(value, styles.normal, PAGE_WIDTH - MARGIN - valueX);
+        for (int i = 0; i < lines.size(); i++) {
+            ensureSpace(LINE_HEIGHT);
+            if (i == 0) {
+                canvas.drawText(label, MARGIN, y, styles.label);
+            }
+            canvas.drawText(lines.get(i), valueX, y, styles.normal);
+            y += LINE_HEIGHT;
+        }
+    }
+
+    /**
+     * Draw two label/value pairs on one line, each value truncated to its column
+     */
+    public void drawFieldPair(String label, String value, int valueX,
+                              String secondLabel, String secondValue, int secondLabelX, int secondValueX) {
+        ensureSpace(LINE_HEIGHT);
+        canvas.drawText(label, MARGIN, y, styles.label);
+        canvas.drawText(ellipsize(value, styles.normal, secondLabelX - valueX - 10), valueX, y, styles.normal);
+        canvas.drawText(secondLabel, secondLabelX, y, styles.label);
+        canvas.drawText(ellipsize(secondValue, styles.normal, PAGE_WIDTH - MARGIN - secondValueX), secondValueX, y, styles.normal);
+        y += LINE_HEIGHT;
+    }
+
+    /**
+     * Height drawField would take for a value, for keepTogether
+     */
+    public int measureField(String value, int valueX) {
+        wrap(value, styles.normal, PAGE_WIDTH - MARGIN - valueX);
+        return lines.size() * LINE_HEIGHT;
+    }
+
+    // Break text into lines no wider than maxWidth, preferring spaces; explicit line breaks are kept
+    private void wrap(String text, Paint paint, float maxWidth) {
+        lines.clear();
+        int length = text.length();
+        int paragraphStart = 0;
+        while (paragraphStart <= length) {
+            int paragraphEnd = text.indexOf('\n', paragraphStart);
+            if (paragraphEnd == -1) {
+                paragraphEnd = length;
+            }
+
+            int start = paragraphStart;
+            if (start == paragraphEnd) {
+                lines.add("");
+            }
+            while (start < paragraphEnd) {
+                int count = paint.breakText(text, start, paragraphEnd, true, maxWidth, null);
+                int end = start + Math.max(count, 1);
+                if (end < paragraphEnd) {
+                    // Back up to the last space so words are not split, unless the word is longer than the line
+                    int space = text.lastIndexOf(' ', end);
+                    if (space > start) {
+                        end = space;
+                    }
+                }
+                lines.add(text.substring(start, end).trim());
+                start = end;
+                while (start < paragraphEnd && text.charAt(start) == ' ') {
+                    start++;
+                }
+            }
+
+            paragraphStart = paragraphEnd + 1;
+        }
+    }
+
+    // Shorten text with an ellipsis until it fits maxWidth
+    private static String ellipsize(String text, Paint paint, float maxWidth) {
+        if (paint.measureText(text) <= maxWidth) {
+            return text;
+        }
+        int count = paint.breakText(text, 0, text.length(), true, maxWidth - paint.measureText("..."), null);
+        return text.substring(0, Math.max(count, 0)) + "...";
+    }
+}
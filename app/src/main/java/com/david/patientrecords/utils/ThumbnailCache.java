@@ -0,0 +1,406 @@
+package com.david.patientrecords.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache of patient photo thumbnails.
+ *
+ * Thumbnails live in a memory LRU sized by bitmap bytes and, downsampled and re-encoded,
+ * in a bounded disk cache under the cache dir, so a photo is decoded at full size at most
+ * once. Misses are decoded on background threads; each ImageView has at most one pending
+ * request, which is cancelled when the view is rebound or recycled.
+ */
+public class ThumbnailCache {
+
+    private static final String TAG = "ThumbnailCache";
+    private static final int DECODE_THREADS = 2;
+
+    private static ThumbnailCache instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final File diskDir;
+    private final ExecutorService decodeExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Pending request per view; only touched on the main thread
+    private final Map<ImageView, Request> pending = new WeakHashMap<>();
+    // Photos that could not be decoded, so rebinding them does not hit the disk again
+    private final Set<String> failedPaths = Collections.synchronizedSet(new HashSet<>());
+
+    private final Object diskLock = new Object();
+    private long diskBytes = -1; // Summed on the first write
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong sourceDecodes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+
+    // Singleton pattern
+    public static synchronized ThumbnailCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ThumbnailCache(Context context) {
+        // An eighth of the heap, the usual share for a bitmap cache
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+
+        diskDir = new File(context.getCacheDir(), Constants.THUMBNAILS_FOLDER);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "thumbnail-" + threadCount.incrementAndGet()));
+    }
+
+    // ==================== LOADING ====================
+
+    /**
+     * The thumbnail for a photo if it is in memory, counting the lookup in the stats
+     */
+    public Bitmap getFromMemory(String imagePath) {
+        Bitmap bitmap = memoryCache.get(imagePath);
+        if (bitmap != null) {
+            memoryHits.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Whether a photo has already failed to decode; callers can go straight to their fallback
+     */
+    public boolean isKnownFailure(String imagePath) {
+        return failedPaths.contains(imagePath);
+    }
+
+    /**
+     * Load the thumbnail for a photo into a view off the main thread. Any earlier request
+     * for the view is cancelled. The view keeps what it shows if the photo cannot be
+     * decoded, so set the fallback before calling this. Call on the main thread.
+     */
+    public void load(String imagePath, ImageView imageView) {
+        cancel(imageView);
+        Request request = new Request(imagePath, imageView);
+        pending.put(imageView, request);
+        request.future = decodeExecutor.submit(request);
+    }
+
+    /**
+     * Cancel the pending request for a view, if any. Call on the main thread, e.g. from
+     * onViewRecycled or before binding something else into the view.
+     */
+    public void cancel(ImageView imageView) {
+        Request request = pending.remove(imageView);
+        if (request != null) {
+            request.cancelled = true;
+            if (request.future.cancel(false)) {
+                cancellations.incrementAndGet(); // Only those dropped before they were decoded
+            }
+        }
+    }
+
+    /**
+     * Store a thumbnail made elsewhere, e.g. while ingesting the photo, in both tiers.
+     * Call off the main thread once the photo itself is in place.
+     */
+    public void put(String imagePath, Bitmap thumbnail) {
+        failedPaths.remove(imagePath);
+        memoryCache.put(imagePath, thumbnail);
+        writeToDisk(new File(diskDir, diskKey(new File(imagePath))), thumbnail);
+    }
+
+    // Runs on a decode thread
+    private Bitmap loadThumbnail(String imagePath) {
+        File source = new File(imagePath);
+        if (!source.isFile()) {
+            return null;
+        }
+
+        File diskFile = new File(diskDir, diskKey(source));
+        if (diskFile.isFile()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(diskFile.getPath());
+            if (bitmap != null) {
+                diskHits.incrementAndGet();
+                diskFile.setLastModified(System.currentTimeMillis()); // Keeps it out of the next trim
+                return bitmap;
+            }
+        }
+
+        Bitmap bitmap = decodeThumbnail(imagePath);
+        if (bitmap != null) {
+            sourceDecodes.incrementAndGet();
+            writeToDisk(diskFile, bitmap);
+        }
+        return bitmap;
+    }
+
+    // Decode at the smallest power-of-two sample that still covers the thumbnail, then scale the rest
+    private static Bitmap decodeThumbnail(String imagePath) {
+        Bitmap bitmap = ImageUtils.loadBitmapFromPath(imagePath, Constants.THUMBNAIL_SIZE, Constants.THUMBNAIL_SIZE);
+        if (bitmap == null) {
+            return null;
+        }
+
+        int shorterSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (shorterSide > Constants.THUMBNAIL_SIZE) {
+            float scale = (float) Constants.THUMBNAIL_SIZE / shorterSide;
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                    Math.round(bitmap.getWidth() * scale), Math.round(bitmap.getHeight() * scale), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = scaled;
+        }
+
+        Bitmap rotated = ImageUtils.rotateBitmapFromExif(bitmap, imagePath);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+
+    // The source's size and modification time are part of the name, so a replaced photo misses
+    private static String diskKey(File source) {
+        return Integer.toHexString(source.getPath().hashCode())
+                + "_" + Long.toHexString(source.lastModified())
+                + "_" + Long.toHexString(source.length()) + ".jpg";
+    }
+
+    // ==================== DISK CACHE ====================
+
+    private void writeToDisk(File diskFile, Bitmap bitmap) {
+        synchronized (diskLock) {
+            if (!diskDir.exists() && !diskDir.mkdirs()) {
+                Log.e(TAG, "Could not create thumbnail directory " + diskDir);
+                return;
+            }
+            if (diskBytes < 0) {
+                diskBytes = directorySize();
+            }
+        }
+
+        // Encode outside the lock; the rename makes the file visible only once it is complete
+        File tempFile = new File(diskDir, diskFile.getName() + ".tmp" + Thread.currentThread().getId());
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, Constants.JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing thumbnail " + diskFile.getName(), e);
+            tempFile.delete();
+            return;
+        }
+
+        synchronized (diskLock) {
+            if (!tempFile.renameTo(diskFile)) {
+                tempFile.delete();
+                return;
+            }
+            diskBytes += diskFile.length();
+            if (diskBytes > Constants.THUMBNAIL_DISK_CACHE_SIZE) {
+                trimDisk();
+            }
+        }
+    }
+
+    // Delete least recently used thumbnails down to three quarters of the limit; holds diskLock
+    private void trimDisk() {
+        File[] files = diskDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long[] lastUsed = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastUsed[i] = files[i].lastModified(); // Read once, the sort must see stable values
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(lastUsed[a], lastUsed[b]));
+
+        long target = Constants.THUMBNAIL_DISK_CACHE_SIZE * 3 / 4;
+        int deleted = 0;
+        for (int i = 0; i < order.length && diskBytes > target; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+                deleted++;
+            }
+        }
+        Log.d(TAG, "Trimmed " + deleted + " thumbnails, " + diskBytes + " bytes left on disk");
+    }
+
+    private long directorySize() {
+        File[] files = diskDir.listFiles();
+        long total = 0;
+        if (files != null) {
+            for (File file : files) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Drop every thumbnail from memory, e.g. from onTrimMemory; the disk cache is kept
+     */
+    public void clearMemory() {
+        memoryCache.evictAll();
+        failedPaths.clear();
+    }
+
+    // ==================== STATS ====================
+
+    public Stats getStats() {
+        return new Stats(memoryHits.get(), diskHits.get(), sourceDecodes.get(), failures.get(),
+                cancellations.get(), memoryCache.size(), memoryCache.maxSize());
+    }
+
+    /**
+     * Lookup counts since the app started. Every bind is one lookup: a memory hit, or a
+     * request that ends as a disk hit, a decode of the original photo, a failure or a
+     * cancellation.
+     */
+    public static class Stats {
+        private final long memoryHits;
+        private final long diskHits;
+        private final long sourceDecodes;
+        private final long failures;
+        private final long cancellations;
+        private final int memoryBytes;
+        private final int memoryMaxBytes;
+
+        Stats(long memoryHits, long diskHits, long sourceDecodes, long failures,
+              long cancellations, int memoryBytes, int memoryMaxBytes) {
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.sourceDecodes = sourceDecodes;
+            this.failures = failures;
+            this.cancellations = cancellations;
+            this.memoryBytes = memoryBytes;
+            this.memoryMaxBytes = memoryMaxBytes;
+        }
+
+        public long getMemoryHits() { return memoryHits; }
+        public long getDiskHits() { return diskHits; }
+        public long getSourceDecodes() { return sourceDecodes; }
+        public long getFailures() { return failures; }
+        public long getCancellations() { return cancellations; }
+        public int getMemoryBytes() { return memoryBytes; }
+        public int getMemoryMaxBytes() { return memoryMaxBytes; }
+
+        // Cancelled requests never finished, so they are left out of the rates
+        private long completedLookups() {
+            return memoryHits + diskHits + sourceDecodes + failures;
+        }
+
+        public double getMemoryHitRate() {
+            long lookups = completedLookups();
+            return lookups > 0 ? (double) memoryHits / lookups : 0;
+        }
+
+        /**
+         * Share of lookups served without decoding an original photo
+         */
+        public double getHitRate() {
+            long lookups = completedLookups();
+            return lookups > 0 ? (double) (memoryHits + diskHits) / lookups : 0;
+        }
+
+        public String getSummary() {
+            return String.format(java.util.Locale.US,
+                    "Thumbnails: %.0f%% hits (%.0f%% memory), %d memory, %d disk, %d decoded, %d failed, "
+                            + "%d cancelled, %d/%d KB in memory",
+                    getHitRate() * 100, getMemoryHitRate() * 100, memoryHits, diskHits, sourceDecodes,
+                    failures, cancellations, memoryBytes / 1024, memoryMaxBytes / 1024);
+        }
+    }
+
+    // ==================== REQUEST ====================
+
+    private class Request implements Runnable {
+        final String imagePath;
+        final WeakReference<ImageView> viewRef; // The pending map holds views weakly
+        volatile boolean cancelled;
+        Future<?> future;
+
+        Request(String imagePath, ImageView imageView) {
+            this.imagePath = imagePath;
+            this.viewRef = new WeakReference<>(imageView);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            Bitmap bitmap;
+            try {
+                bitmap = loadThumbnail(imagePath);
+            } catch (Exception | OutOfMemoryError e) {
+                Log.e(TAG, "Error loading thumbnail for " + imagePath, e);
+                bitmap = null;
+            }
+
+            if (bitmap == null) {
+                failures.incrementAndGet();
+                failedPaths.add(imagePath);
+            } else {
+                // Cached even if the view moved on, it is likely to be scrolled back to
+                memoryCache.put(imagePath, bitmap);
+            }
+
+            if (cancelled) {
+                return;
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> deliver(result));
+        }
+
+        // Main thread
+        private void deliver(Bitmap bitmap) {
+            ImageView imageView = viewRef.get();
+            if (imageView == null || pending.get(imageView) != this) {
+                return; // Rebound or recycled since
+            }
+            pending.remove(imageView);
+            if (bitmap != null) {
+                imageView.setImageBitmap(bitmap);
+            }
+        }
+    }
+}
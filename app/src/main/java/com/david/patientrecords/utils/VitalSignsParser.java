@@ -0,0 +1,419 @@
+package com.david.patientrecords.utils;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.david.patientrecords.models.VitalObservation;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pulls numeric readings out of a medical record's vital signs text.
+ *
+ * Two shapes are accepted: a JSON object such as {"bp": "120/80", "heart_rate": 72},
+ * read token by token with JsonReader, and the free text the form suggests, such as
+ * "BP: 120/80, Temp: 98.6°F, SpO2 97%", read in a single pass. Labels are matched
+ * loosely ("HR", "Pulse", "heart_rate"), values are converted to the unit of their
+ * VitalObservation metric, and readings outside a plausible range are dropped as typos.
+ * Anything unrecognised is skipped.
+ */
+public final class VitalSignsParser {
+
+    /**
+     * Receives each reading as it is found
+     */
+    public interface Sink {
+        void onReading(String metric, double value);
+    }
+
+    // A blood pressure pair, reported as its systolic and diastolic readings
+    private static final String BLOOD_PRESSURE = "blood_pressure";
+
+    // Normalized label -> metric
+    private static final Map<String, String> LABELS = new HashMap<>();
+    // Normalized unit -> the unit conversions check for; "" for units that need no conversion
+    private static final Map<String, String> UNITS = new HashMap<>();
+
+    static {
+        labels(BLOOD_PRESSURE, "bp", "bloodpressure", "nibp");
+        labels(VitalObservation.METRIC_BP_SYSTOLIC, "systolic", "sys", "sbp", "bpsystolic", "systolicbp");
+        labels(VitalObservation.METRIC_BP_DIASTOLIC, "diastolic", "dia", "dbp", "bpdiastolic", "diastolicbp");
+        labels(VitalObservation.METRIC_HEART_RATE, "hr", "heartrate", "pulse", "pulserate", "pr");
+        labels(VitalObservation.METRIC_RESPIRATORY_RATE, "rr", "resp", "respiration", "respirations",
+                "resprate", "respiratoryrate", "respirationrate");
+        labels(VitalObservation.METRIC_TEMPERATURE, "t", "temp", "temperature", "bodytemp", "bodytemperature");
+        labels(VitalObservation.METRIC_SPO2, "spo2", "sao2", "o2", "o2sat", "o2sats", "sat", "sats",
+                "oxygen", "oxygensaturation", "pulseox");
+        labels(VitalObservation.METRIC_WEIGHT, "wt", "weight", "bodyweight");
+        labels(VitalObservation.METRIC_HEIGHT, "ht", "height");
+        labels(VitalObservation.METRIC_BMI, "bmi");
+        labels(VitalObservation.METRIC_GLUCOSE, "glucose", "bloodglucose", "bloodsugar", "sugar", "bg", "bgl",
+                "fbs", "rbs");
+
+        units("f", "f", "degf", "fahrenheit");
+        units("c", "c", "degc", "celsius");
+        units("lb", "lb", "lbs", "pounds");
+        units("m", "m");
+        units("in", "in", "inch", "inches");
+        units("mmol", "mmol", "mmoll");
+        units("", "kg", "kgs", "cm", "mmhg", "bpm", "min", "breathsmin", "%", "mgdl", "kgm2");
+    }
+
+    private static void labels(String metric, String... labels) {
+        for (String label : labels) {
+            LABELS.put(label, metric);
+        }
+    }
+
+    private static void units(String unit, String... spellings) {
+        for (String spelling : spellings) {
+            UNITS.put(spelling, unit);
+        }
+    }
+
+    private final Sink sink;
+    private final StringBuilder scratch = new StringBuilder();
+    private String unitHint = ""; // Unit given in parentheses after the last label, e.g. "Weight (lbs)"
+    private int position; // End of the last number read
+    private int count;
+
+    private VitalSignsParser(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Find the readings in vital signs text and pass each to sink; returns how many were found
+     */
+    public static int parse(String vitalSigns, Sink sink) {
+        if (vitalSigns == null) {
+            return 0;
+        }
+        VitalSignsParser parser = new VitalSignsParser(sink);
+        String text = vitalSigns.trim();
+        if (text.startsWith("{") || text.startsWith("[")) {
+            parser.parseJson(text);
+        } else {
+            parser.parseText(text);
+        }
+        return parser.count;
+    }
+
+    // ==================== JSON ====================
+
+    private void parseJson(String text) {
+        try (JsonReader reader = new JsonReader(new StringReader(text))) {
+            reader.setLenient(true);
+            readJsonValue(reader, null);
+        } catch (IOException | IllegalStateException e) {
+            // Malformed JSON; the readings before the error are kept
+        }
+    }
+
+    // name is the member the value belongs to, null at the top level
+    private void readJsonValue(JsonReader reader, String name) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                readJsonObject(reader, name);
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readJsonValue(reader, name);
+                }
+                reader.endArray();
+                break;
+            case NUMBER:
+            case STRING:
+                readLabelled(name, reader.nextString());
+                break;
+            default:
+                reader.skipValue();
+                break;
+        }
+    }
+
+    /**
+     * Members are read as readings of their own, e.g. {"systolic": 120, "diastolic": 80},
+     * except for a value with its unit or metric, e.g. {"metric": "hr", "value": 72}
+     */
+    private void readJsonObject(JsonReader reader, String name) throws IOException {
+        String label = name;
+        String value = null;
+        String unit = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            boolean scalar = reader.peek() == JsonToken.NUMBER || reader.peek() == JsonToken.STRING;
+            switch (scalar ? normalize(member, 0, member.length()) : "") {
+                case "value":
+                case "reading":
+                    value = reader.nextString();
+                    break;
+                case "unit":
+                case "units":
+                    unit = reader.nextString();
+                    break;
+                case "metric":
+                case "name":
+                case "type":
+                case "code":
+                    label = reader.nextString();
+                    break;
+                default:
+                    readJsonValue(reader, member);
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (value != null) {
+            readLabelled(label, unit != null ? value + " " + unit : value);
+        }
+    }
+
+    // A value whose label was given separately; unlabelled text is read as free text
+    private void readLabelled(String label, String value) {
+        String metric = label != null ? metricFor(label, 0, label.length()) : null;
+        if (metric == null) {
+            parseText(value);
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (isDigit(value.charAt(i))) {
+                readValue(metric, value, i);
+                return;
+            }
+        }
+    }
+
+    // ==================== FREE TEXT ====================
+
+    /**
+     * Label and value pairs such as "BP: 120/80, Temp: 98.6°F" or "HR 72 SpO2 98%"
+     */
+    private void parseText(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            // A label runs up to ':' or '=', a separator, or a number that starts a word,
+            // so the digit in "SpO2" stays part of it
+            int labelStart = i;
+            while (i < length && !isSeparator(text.charAt(i)) && text.charAt(i) != ':' && text.charAt(i) != '='
+                    && !(isDigit(text.charAt(i)) && (i == labelStart || !Character.isLetter(text.charAt(i - 1))))) {
+                i++;
+            }
+            String metric = metricFor(text, labelStart, i);
+
+            while (i < length && (text.charAt(i) == ':' || text.charAt(i) == '=' || text.charAt(i) == ' ')) {
+                i++;
+            }
+            if (i < length && isDigit(text.charAt(i))) {
+                i = readValue(metric, text, i);
+            } else {
+                // No number for this label, skip to the next part
+                while (i < length && !isSeparator(text.charAt(i))) {
+                    i++;
+                }
+            }
+
+            while (i < length && isSeparator(text.charAt(i))) {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Read the number at start, a second one after '/' and a unit, and report them as a
+     * reading of metric unless it is null. Returns the position after what was read.
+     */
+    private int readValue(String metric, String text, int start) {
+        int length = text.length();
+        double first = readNumber(text, start);
+        double second = Double.NaN;
+        int end = position;
+
+        int slash = skipSpaces(text, end);
+        if (slash < length && text.charAt(slash) == '/') {
+            int next = skipSpaces(text, slash + 1);
+            if (next < length && isDigit(text.charAt(next))) {
+                second = readNumber(text, next);
+                end = position;
+            }
+        }
+
+        // A unit is the letters or '%' straight after the number, e.g. "°F", "kg" or "mg/dL";
+        // anything else is left for the next label
+        int unitStart = skipSpaces(text, end);
+        while (unitStart < length && (text.charAt(unitStart) == '°' || text.charAt(unitStart) == 'º')) {
+            unitStart++;
+        }
+        int unitEnd = unitStart;
+        scratch.setLength(0);
+        while (unitEnd < length && (Character.isLetter(text.charAt(unitEnd)) || text.charAt(unitEnd) == '%'
+                || text.charAt(unitEnd) == '/' || text.charAt(unitEnd) == '²' || isDigit(text.charAt(unitEnd)))) {
+            char c = text.charAt(unitEnd++);
+            if (c == '²') {
+                scratch.append('2');
+            } else if (c != '/') {
+                scratch.append(Character.toLowerCase(c));
+            }
+        }
+        String unit = UNITS.get(scratch.toString());
+        if (unit != null) {
+            end = unitEnd;
+        } else {
+            unit = unitHint;
+        }
+
+        if (metric != null) {
+            report(metric, first, second, unit);
+        }
+        return end;
+    }
+
+    // Unsigned decimal number starting at a digit; sets position to its end
+    private double readNumber(String text, int start) {
+        int i = start;
+        double value = 0;
+        while (i < text.length() && isDigit(text.charAt(i))) {
+            value = value * 10 + (text.charAt(i++) - '0');
+        }
+        if (i + 1 < text.length() && text.charAt(i) == '.' && isDigit(text.charAt(i + 1))) {
+            double scale = 1;
+            i++;
+            while (i < text.length() && isDigit(text.charAt(i))) {
+                scale /= 10;
+                value += (text.charAt(i++) - '0') * scale;
+            }
+        }
+        position = i;
+        return value;
+    }
+
+    // ==================== METRICS ====================
+
+    /**
+     * Metric of a label, or null. A unit in parentheses, as in "Weight (lbs)", becomes the
+     * hint used when the value carries no unit of its own.
+     */
+    private String metricFor(String text, int start, int end) {
+        unitHint = "";
+        int open = text.indexOf('(', start);
+        if (open >= 0 && open < end) {
+            int close = text.indexOf(')', open);
+            String hint = UNITS.get(normalize(text, open + 1, close >= 0 && close < end ? close : end));
+            if (hint != null) {
+                unitHint = hint;
+            }
+            end = open;
+        }
+        return LABELS.get(normalize(text, start, end));
+    }
+
+    // Lower-case letters, digits and '%' of a label or unit, e.g. "Heart Rate" -> "heartrate"
+    private String normalize(String text, int start, int end) {
+        scratch.setLength(0);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '%') {
+                scratch.append(Character.toLowerCase(c));
+            }
+        }
+        return scratch.toString();
+    }
+
+    private void report(String metric, double first, double second, String unit) {
+        if (BLOOD_PRESSURE.equals(metric)) {
+            // Only a full pair counts, and systolic is always the higher
+            if (Double.isNaN(second) || first <= second) {
+                return;
+            }
+            emit(VitalObservation.METRIC_BP_SYSTOLIC, first, unit);
+            emit(VitalObservation.METRIC_BP_DIASTOLIC, second, unit);
+        } else {
+            emit(metric, first, unit);
+        }
+    }
+
+    private void emit(String metric, double value, String unit) {
+        double converted = toMetricUnit(metric, value, unit);
+        if (converted >= minimum(metric) && converted <= maximum(metric)) {
+            sink.onReading(metric, converted);
+            count++;
+        }
+    }
+
+    private static double toMetricUnit(String metric, double value, String unit) {
+        switch (metric) {
+            case VitalObservation.METRIC_TEMPERATURE:
+                // Without a unit, anything above a plausible Celsius reading is Fahrenheit
+                return "f".equals(unit) || (unit.isEmpty() && value > 45) ? (value - 32) * 5 / 9 : value;
+            case VitalObservation.METRIC_WEIGHT:
+                return "lb".equals(unit) ? value * 0.45359237 : value;
+            case VitalObservation.METRIC_HEIGHT:
+                if ("in".equals(unit)) {
+                    return value * 2.54;
+                }
+                // Without a unit, a height under 3 is in metres
+                return "m".equals(unit) || (unit.isEmpty() && value < 3) ? value * 100 : value;
+            case VitalObservation.METRIC_GLUCOSE:
+                return "mmol".equals(unit) ? value * 18.0 : value;
+            default:
+                return value;
+        }
+    }
+
+    // Plausible range of each metric in its unit, wide enough for any real patient
+    private static double minimum(String metric) {
+        switch (metric) {
+            case VitalObservation.METRIC_BP_SYSTOLIC: return 40;
+            case VitalObservation.METRIC_BP_DIASTOLIC: return 20;
+            case VitalObservation.METRIC_HEART_RATE: return 20;
+            case VitalObservation.METRIC_RESPIRATORY_RATE: return 2;
+            case VitalObservation.METRIC_TEMPERATURE: return 25;
+            case VitalObservation.METRIC_SPO2: return 40;
+            case VitalObservation.METRIC_WEIGHT: return 0.2;
+            case VitalObservation.METRIC_HEIGHT: return 20;
+            case VitalObservation.METRIC_BMI: return 5;
+            case VitalObservation.METRIC_GLUCOSE: return 10;
+            default: return Double.MAX_VALUE;
+        }
+    }
+
+    private static double maximum(String metric) {
+        switch (metric) {
+            case VitalObservation.METRIC_BP_SYSTOLIC: return 300;
+            case VitalObservation.METRIC_BP_DIASTOLIC: return 200;
+            case VitalObservation.METRIC_HEART_RATE: return 300;
+            case VitalObservation.METRIC_RESPIRATORY_RATE: return 80;
+            case VitalObservation.METRIC_TEMPERATURE: return 45;
+            case VitalObservation.METRIC_SPO2: return 100;
+            case VitalObservation.METRIC_WEIGHT: return 500;
+            case VitalObservation.METRIC_HEIGHT: return 280;
+            case VitalObservation.METRIC_BMI: return 100;
+            case VitalObservation.METRIC_GLUCOSE: return 1500;
+            default: return -Double.MAX_VALUE;
+        }
+    }
+
+    // ==================== CHARACTERS ====================
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || c == ';' || c == '|' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static int skipSpaces(String text, int i) {
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,97 @@
+package com.david.patientrecords
+
+import com.david.patientrecords.utils.DateCodec
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.text.SimpleDateFormat
+import java.util.Calendar
+import java.util.Locale
+import java.util.TimeZone
+
+/**
+ * Compares DateCodec with the SimpleDateFormat-per-call parsing DateUtils used to do.
+ *
+ * Runs on the host JVM. Each side is timed over the same dates after a warm-up round,
+ * keeping the fastest of ROUNDS rounds so a stall on a busy machine does not decide the
+ * result, and the codec's allocations are read from the thread's allocation counter.
+ * The codec must be at least MIN_SPEEDUP times faster and allocate under
+ * MAX_BYTES_PER_PARSE bytes per parse.
+ */
+class DateCodecBenchmarkTest {
+
+    private val dates = Array(DATES) { DateCodec.formatEpochDay(10_000L + it * 7) }
+
+    @Test
+    fun parsesTheSameDaysAsSimpleDateFormat() {
+        val format = SimpleDateFormat("yyyy-MM-dd", Locale.US).apply { timeZone = TimeZone.getTimeZone("UTC") }
+        val calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC")).apply { clear(); set(1900, 0, 1) }
+        repeat(80_000) {
+            val text = format.format(calendar.time)
+            val epochDay = Math.floorDiv(calendar.timeInMillis, 24L * 60 * 60 * 1000)
+            assertEquals(text, epochDay, DateCodec.parseEpochDay(text))
+            assertEquals(text, DateCodec.formatEpochDay(epochDay))
+            calendar.add(Calendar.DAY_OF_MONTH, 1)
+        }
+        assertEquals(DateCodec.INVALID, DateCodec.parseEpochDay("2023-02-29"))
+    }
+
+    @Test
+    fun parsesFasterWithoutAllocating() {
+        repeat(2) { runSimpleDateFormat(); runCodec() }
+
+        var simpleDateFormatNanos = Long.MAX_VALUE
+        var codecNanos = Long.MAX_VALUE
+        var codecBytes = Long.MAX_VALUE
+        repeat(ROUNDS) {
+            simpleDateFormatNanos = minOf(simpleDateFormatNanos, timed { runSimpleDateFormat() })
+            val allocated = allocatedBytes()
+            codecNanos = minOf(codecNanos, timed { runCodec() })
+            codecBytes = minOf(codecBytes, allocatedBytes() - allocated)
+        }
+
+        val speedup = simpleDateFormatNanos.toDouble() / codecNanos
+        val bytesPerParse = codecBytes.toDouble() / PARSES
+        println(String.format(Locale.US, "SimpleDateFormat %.0f ns/parse, DateCodec %.1f ns/parse, %.1fx, %.2f bytes/parse",
+                simpleDateFormatNanos.toDouble() / PARSES, codecNanos.toDouble() / PARSES, speedup, bytesPerParse))
+        assertTrue(String.format(Locale.US, "Only %.1fx faster", speedup), speedup >= MIN_SPEEDUP)
+        assertTrue("Allocated $bytesPerParse bytes per parse", bytesPerParse < MAX_BYTES_PER_PARSE)
+    }
+
+    private fun runSimpleDateFormat(): Long {
+        var sink = 0L
+        for (i in 0 until PARSES) {
+            sink += SimpleDateFormat("yyyy-MM-dd", Locale.US).parse(dates[i % DATES])!!.time
+        }
+        return sink
+    }
+
+    private fun runCodec(): Long {
+        var sink = 0L
+        for (i in 0 until PARSES) {
+            sink += DateCodec.parseEpochDay(dates[i % DATES])
+        }
+        return sink
+    }
+
+    private inline fun timed(block: () -> Long): Long {
+        val start = System.nanoTime()
+        check(block() != 0L)
+        return System.nanoTime() - start
+    }
+
+    private fun allocatedBytes(): Long {
+        val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        return threads.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    companion object {
+        private const val DATES = 1024
+        private const val PARSES = 200_000
+        private const val ROUNDS = 3
+        // Measured at 55 to 100x; the floor only has to catch a return to per-call formatters
+        private const val MIN_SPEEDUP = 5.0
+        private const val MAX_BYTES_PER_PARSE = 1.0
+    }
+}
@@ -0,0 +1,211 @@
+package com.david.patientrecords.database
+
+import com.david.patientrecords.database.BulkImporter.Target
+import com.david.patientrecords.utils.Constants
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+import java.sql.Connection
+import java.sql.DriverManager
+import java.util.Locale
+
+/**
+ * Replays the SQL of a bulk import against a file-backed SQLite database on the host JVM.
+ *
+ * Android's SQLite classes are only stubs here, so the statements BulkImporter runs go
+ * through sqlite-jdbc instead: the app schema with its triggers, the search trigger swap,
+ * the compiled insert in batches of IMPORT_BATCH_SIZE with the checkpoint saved in each
+ * batch transaction, and the reindex when the import ends. Rows are bound already typed,
+ * so CSV parsing is not measured.
+ *
+ * Each target is imported in turn into write-ahead logging with synchronous=NORMAL, as
+ * the balanced storage profile does, after a warm-up import of the same size into a
+ * separate database. The import is then repeated RUNS times, each into a new database,
+ * and the fastest batched inserts of every target must keep MIN_INSERT_ROWS_PER_SECOND.
+ * The end-to-end rate, which adds the one-off reindex, is only printed. After every run
+ * the search index must match a full rebuild and the stats counters a recount.
+ *
+ * CSV parsing and the importer's own binding are covered on a device by
+ * BulkImporterCsvThroughputTest.
+ */
+class BulkImportThroughputTest {
+
+    @Test
+    fun importsKeepTheInsertRateAndIndexEveryPatient() {
+        // Smaller warm-ups leave part of the insert path interpreted when the timed runs start
+        withDatabase { importAll(it, PATIENTS) }
+
+        val fastest = LinkedHashMap<Target, Rate>()
+        repeat(RUNS) {
+            withDatabase { db ->
+                for (rate in importAll(db, PATIENTS)) {
+                    val previous = fastest[rate.target]
+                    if (previous == null || rate.insertNanos < previous.insertNanos) {
+                        fastest[rate.target] = rate
+                    }
+                }
+                checkIndexes(db)
+            }
+        }
+
+        for (rate in fastest.values) {
+            println(String.format(Locale.US, "%s: %d rows, inserts %.0f rows/s, reindex %d ms, overall %.0f rows/s",
+                    rate.target, rate.rows, rate.insertRowsPerSecond(), rate.reindexNanos / 1_000_000,
+                    rate.overallRowsPerSecond()))
+            assertTrue("${rate.target} inserted ${rate.insertRowsPerSecond().toInt()} rows/s",
+                    rate.insertRowsPerSecond() >= MIN_INSERT_ROWS_PER_SECOND)
+        }
+    }
+
+    private fun checkIndexes(db: Connection) {
+        assertEquals("Queued patients left", 0L, query(db, "SELECT COUNT(*) FROM patient_search_pending")[0][0])
+        assertTrue("Queue triggers left", query(db, "SELECT name FROM sqlite_master WHERE type = 'trigger'" +
+                " AND name LIKE 'trg_patient_search_queue_%'").isEmpty())
+        val indexed = query(db, SEARCH_DOCUMENTS)
+        assertEquals(PATIENTS, indexed.size)
+        transaction(db, commit = false) {
+            execute(db, DatabaseContract.SQL_REBUILD_PATIENT_SEARCH)
+            assertEquals("Search index differs from a rebuild", query(db, SEARCH_DOCUMENTS), indexed)
+        }
+        assertEquals(counters(db, DatabaseContract.SQL_SELECT_EXPECTED_STATS_COUNTERS),
+                counters(db, "SELECT name, value FROM stats_counters"))
+    }
+
+    // Patients first so records and medications can reference them, two visits per patient
+    private fun importAll(db: Connection, patients: Int): List<Rate> = listOf(
+            import(db, Target.PATIENTS, patients) { i ->
+                arrayOf(i.toLong(), "Patient $i", 20 + i % 70, GENDERS[i % GENDERS.size], "+1-555-$i", "$i Main St",
+                        BLOOD_TYPES[i % BLOOD_TYPES.size], "Contact $i", "+1-555-0000",
+                        if (i % 3 == 0) "Asthma" else null, "Penicillin", null, null, FIRST_DAY + i % SPAN_DAYS,
+                        if (i % 10 == 0) 0 else 1, CREATED_AT, CREATED_AT)
+            },
+            import(db, Target.MEDICAL_RECORDS, patients * 2) { i ->
+                arrayOf(i.toLong(), 1L + i % patients, FIRST_DAY + i % SPAN_DAYS, "Regular", "Cough", "Bronchitis",
+                        "Rest", "Dr. Smith", "General Practice", null, "Follow up if needed",
+                        if (i % 4 == 0) FIRST_DAY + SPAN_DAYS + i % 30 else null, CREATED_AT, CREATED_AT)
+            },
+            import(db, Target.MEDICATIONS, patients) { i ->
+                arrayOf(i.toLong(), 1L + i % patients, MEDICATIONS[i % MEDICATIONS.size], null, "500mg", "Twice daily",
+                        FIRST_DAY + i % SPAN_DAYS, null, "Dr. Smith", "With food", null, 2, "City Pharmacy",
+                        if (i % 5 == 0) 0 else 1, CREATED_AT, CREATED_AT)
+            })
+
+    private fun import(db: Connection, target: Target, rows: Int, row: (Int) -> Array<Any?>): Rate {
+        val start = System.nanoTime()
+        transaction(db) {
+            execute(db, DatabaseContract.SQL_DROP_PATIENT_SEARCH_TRIGGERS)
+            execute(db, DatabaseContract.SQL_CREATE_PATIENT_SEARCH_QUEUE_TRIGGERS)
+        }
+        db.prepareStatement(BulkImporter.insertSqlFor(target)).use { insert ->
+            db.prepareStatement(CHECKPOINT).use { checkpoint ->
+                for (first in 1..rows step Constants.IMPORT_BATCH_SIZE) {
+                    val last = minOf(first + Constants.IMPORT_BATCH_SIZE - 1, rows)
+                    transaction(db) {
+                        for (i in first..last) {
+                            row(i).forEachIndexed { column, value -> insert.setObject(column + 1, value) }
+                            insert.executeUpdate()
+                        }
+                        checkpoint.setString(1, target.name)
+                        checkpoint.setLong(2, last.toLong())
+                        checkpoint.setLong(3, last.toLong())
+                        checkpoint.setLong(4, System.currentTimeMillis())
+                        checkpoint.executeUpdate()
+                    }
+                }
+            }
+        }
+        val inserted = System.nanoTime()
+        transaction(db) {
+            execute(db, DatabaseContract.SQL_DROP_PATIENT_SEARCH_QUEUE_TRIGGERS)
+            execute(db, DatabaseContract.SQL_CREATE_PATIENT_SEARCH_TRIGGERS)
+            execute(db, DatabaseContract.SQL_REINDEX_PENDING_PATIENT_SEARCH)
+        }
+        return Rate(target, rows, inserted - start, System.nanoTime() - inserted)
+    }
+
+    // The same schema DatabaseHelper.onCreate builds, without the sample data
+    private fun withDatabase(block: (Connection) -> Unit) {
+        val file = File.createTempFile("bulk_import", ".db")
+        try {
+            DriverManager.getConnection("jdbc:sqlite:" + file.path).use { db ->
+                execute(db, arrayOf("PRAGMA journal_mode = WAL", "PRAGMA synchronous = NORMAL",
+                        "PRAGMA foreign_keys = ON"))
+                execute(db, arrayOf(DatabaseContract.SQL_CREATE_PATIENTS_TABLE,
+                        DatabaseContract.SQL_CREATE_MEDICAL_RECORDS_TABLE, DatabaseContract.SQL_CREATE_MEDICATIONS_TABLE))
+                execute(db, DatabaseContract.SQL_CREATE_INDEXES)
+                execute(db, arrayOf(DatabaseContract.SQL_CREATE_PATIENT_SEARCH_TABLE))
+                execute(db, DatabaseContract.SQL_CREATE_PATIENT_SEARCH_TRIGGERS)
+                execute(db, arrayOf(DatabaseContract.SQL_CREATE_STATS_COUNTERS_TABLE))
+                execute(db, DatabaseContract.SQL_CREATE_STATS_COUNTER_TRIGGERS)
+                execute(db, DatabaseContract.SQL_REBUILD_STATS_COUNTERS)
+                execute(db, arrayOf(DatabaseContract.SQL_CREATE_IMPORT_CHECKPOINTS_TABLE,
+                        DatabaseContract.SQL_CREATE_PATIENT_SEARCH_PENDING_TABLE))
+                execute(db, arrayOf(DatabaseContract.SQL_CREATE_VITAL_OBSERVATIONS_TABLE))
+                execute(db, DatabaseContract.SQL_CREATE_VITAL_OBSERVATIONS_INDEXES)
+                execute(db, arrayOf(DatabaseContract.SQL_CREATE_REPORT_ROLLUPS_TABLE))
+                execute(db, DatabaseContract.SQL_CREATE_REPORT_ROLLUP_TRIGGERS)
+                execute(db, DatabaseContract.SQL_REBUILD_REPORT_ROLLUPS)
+                block(db)
+            }
+        } finally {
+            listOf("", "-wal", "-shm").forEach { File(file.path + it).delete() }
+        }
+    }
+
+    private fun transaction(db: Connection, commit: Boolean = true, block: () -> Unit) {
+        db.autoCommit = false
+        try {
+            block()
+            if (commit) db.commit() else db.rollback()
+        } catch (e: Exception) {
+            db.rollback()
+            throw e
+        } finally {
+            db.autoCommit = true
+        }
+    }
+
+    private fun execute(db: Connection, statements: Array<String>) {
+        db.createStatement().use { statement -> statements.forEach { statement.execute(it) } }
+    }
+
+    private fun query(db: Connection, sql: String): List<List<Any?>> {
+        val rows = ArrayList<List<Any?>>()
+        db.createStatement().use { statement ->
+            statement.executeQuery(sql).use {
+                val columns = it.metaData.columnCount
+                while (it.next()) rows.add((1..columns).map { column -> it.getObject(column) })
+            }
+        }
+        return rows.map { row -> row.map { value -> if (value is Int) value.toLong() else value } }
+    }
+
+    // Counters that went back to zero stay in the table, the recount leaves them out
+    private fun counters(db: Connection, sql: String): Map<Any?, Any?> =
+            query(db, sql).associate { it[0] to it[1] }.filterValues { it != 0L }
+
+    private class Rate(val target: Target, val rows: Int, val insertNanos: Long, val reindexNanos: Long) {
+        fun insertRowsPerSecond() = rows * 1e9 / insertNanos
+        fun overallRowsPerSecond() = rows * 1e9 / (insertNanos + reindexNanos)
+    }
+
+    companion object {
+        private const val PATIENTS = 20_000
+        private const val RUNS = 3
+        // The fastest insert phase, measured at 23,000 to 26,000 rows/s for patients and more
+        // for the other targets on a single-core build machine
+        private const val MIN_INSERT_ROWS_PER_SECOND = 20_000.0
+        private const val FIRST_DAY = 19_000L // 2022-01-08
+        private const val SPAN_DAYS = 900
+        private const val CREATED_AT = 1_700_000_000_000L
+
+        private const val CHECKPOINT = "INSERT OR REPLACE INTO import_checkpoints" +
+                " (job_id, rows_read, rows_imported, rows_failed, updated_at) VALUES (?, ?, ?, 0, ?)"
+        private const val SEARCH_DOCUMENTS = "SELECT docid, * FROM patient_search ORDER BY docid"
+
+        private val GENDERS = arrayOf("Male", "Female", "Other")
+        private val BLOOD_TYPES = arrayOf("O+", "A-", "B+", "AB+")
+        private val MEDICATIONS = arrayOf("Amoxicillin", "Metformin", "Lisinopril")
+    }
+}
@@ -0,0 +1,130 @@
+package com.david.patientrecords.database
+
+import android.database.Cursor
+import com.david.patientrecords.database.DatabaseContract.PatientEntry
+import com.david.patientrecords.models.Patient
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.lang.reflect.Proxy
+import java.util.Locale
+
+/**
+ * Compares PatientMapper with looking every column up by name on every row, the way
+ * the repository's cursorToPatient used to.
+ *
+ * Runs on the host JVM over an in-memory cursor that counts name lookups. The lookup
+ * counts are asserted; the timings are only printed, since they depend on the machine.
+ */
+class CursorMappersBenchmarkTest {
+
+    private val columns = arrayOf(PatientEntry._ID, PatientEntry.COLUMN_PATIENT_NAME, PatientEntry.COLUMN_AGE,
+            PatientEntry.COLUMN_GENDER, PatientEntry.COLUMN_PHONE, PatientEntry.COLUMN_ADDRESS,
+            PatientEntry.COLUMN_BLOOD_TYPE, PatientEntry.COLUMN_EMERGENCY_CONTACT, PatientEntry.COLUMN_EMERGENCY_PHONE,
+            PatientEntry.COLUMN_MEDICAL_CONDITIONS, PatientEntry.COLUMN_ALLERGIES, PatientEntry.COLUMN_PROFILE_IMAGE,
+            PatientEntry.COLUMN_IMAGE_PATH, PatientEntry.COLUMN_REGISTRATION_DATE, PatientEntry.COLUMN_IS_ACTIVE,
+            PatientEntry.COLUMN_CREATED_AT, PatientEntry.COLUMN_UPDATED_AT)
+
+    private val rows = Array(ROWS) { i ->
+        arrayOf<Any?>(i + 1L, "Patient $i", 20 + i % 70, if (i % 2 == 0) "Male" else "Female", "+1-555-$i",
+                "$i Main St", "O+", "Contact $i", "+1-555-0000", null, "Penicillin", null, null,
+                19_000L + i % 900, 1, 1_700_000_000_000L + i, 1_700_000_000_000L + i)
+    }
+
+    private var lookups = 0
+
+    @Test
+    fun mapsTheSameRowsWithOneLookupPerColumn() {
+        val byName = mapByName(cursor())
+        val lookupsByName = lookups
+        lookups = 0
+        val mapped = mapWithMapper(cursor())
+
+        assertEquals(ROWS * columns.size, lookupsByName)
+        assertEquals(columns.size, lookups)
+        assertEquals(byName.map { describe(it) }, mapped.map { describe(it) })
+    }
+
+    @Test
+    fun reportMappingSpeed() {
+        repeat(WARMUP_ROUNDS) { mapByName(cursor()); mapWithMapper(cursor()) }
+
+        val byNameNanos = timed { mapByName(cursor()) }
+        val mapperNanos = timed { mapWithMapper(cursor()) }
+        println(String.format(Locale.US, "By name %.0f ns/row, PatientMapper %.0f ns/row, %.1fx",
+                byNameNanos.toDouble() / ROWS, mapperNanos.toDouble() / ROWS, byNameNanos.toDouble() / mapperNanos))
+    }
+
+    private fun mapWithMapper(cursor: Cursor): List<Patient> {
+        val patients = ArrayList<Patient>(ROWS)
+        val mapper = CursorMappers.PatientMapper(cursor)
+        while (cursor.moveToNext()) {
+            patients.add(mapper.map(cursor))
+        }
+        return patients
+    }
+
+    private fun mapByName(cursor: Cursor): List<Patient> {
+        val patients = ArrayList<Patient>(ROWS)
+        while (cursor.moveToNext()) {
+            patients.add(Patient().apply {
+                id = cursor.getLong(cursor.getColumnIndexOrThrow(PatientEntry._ID))
+                patientName = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_PATIENT_NAME))
+                age = cursor.getInt(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_AGE))
+                gender = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_GENDER))
+                phone = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_PHONE))
+                address = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_ADDRESS))
+                bloodType = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_BLOOD_TYPE))
+                emergencyContact = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_EMERGENCY_CONTACT))
+                emergencyPhone = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_EMERGENCY_PHONE))
+                medicalConditions = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_MEDICAL_CONDITIONS))
+                allergies = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_ALLERGIES))
+                profileImage = cursor.getString(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_PROFILE_IMAGE))
+                imagePath = cursor.getString(cursor.getColumnIndex(PatientEntry.COLUMN_IMAGE_PATH))
+                registrationDay = CursorMappers.getEpochDay(cursor,
+                        cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_REGISTRATION_DATE))
+                isActive = cursor.getInt(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_IS_ACTIVE)) == 1
+                createdAt = cursor.getLong(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_CREATED_AT))
+                updatedAt = cursor.getLong(cursor.getColumnIndexOrThrow(PatientEntry.COLUMN_UPDATED_AT))
+            })
+        }
+        return patients
+    }
+
+    private fun describe(patient: Patient) = listOf(patient.id, patient.patientName, patient.age, patient.gender,
+            patient.phone, patient.address, patient.bloodType, patient.emergencyContact, patient.emergencyPhone,
+            patient.medicalConditions, patient.allergies, patient.profileImage, patient.imagePath,
+            patient.registrationDay, patient.isActive, patient.createdAt, patient.updatedAt)
+
+    // Only the calls the mappers make are answered; android.database classes are stubs on the host JVM
+    private fun cursor(): Cursor {
+        var position = -1
+        return Proxy.newProxyInstance(Cursor::class.java.classLoader, arrayOf(Cursor::class.java)) { _, method, args ->
+            when (method.name) {
+                "getColumnIndex", "getColumnIndexOrThrow" -> {
+                    lookups++
+                    val index = columns.indexOf(args[0] as String)
+                    require(index != -1 || method.name == "getColumnIndex") { "No column ${args[0]}" }
+                    index
+                }
+                "moveToNext" -> ++position < ROWS
+                "isNull" -> rows[position][args[0] as Int] == null
+                "getString" -> rows[position][args[0] as Int]?.toString()
+                "getLong" -> (rows[position][args[0] as Int] as Number).toLong()
+                "getInt" -> (rows[position][args[0] as Int] as Number).toInt()
+                "close" -> null
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as Cursor
+    }
+
+    private inline fun timed(block: () -> Unit): Long {
+        val start = System.nanoTime()
+        block()
+        return System.nanoTime() - start
+    }
+
+    companion object {
+        private const val ROWS = 20_000
+        private const val WARMUP_ROUNDS = 3
+    }
+}